@@ -0,0 +1,63 @@
+package com.ainory.dev.utils.elastic;
+
+import com.ainory.dev.utils.elastic.entity.ElasticSearchAggregationListInfo;
+import org.elasticsearch.action.search.SearchResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aggregation mapping benchmark
+ * ( getAggregationData : setAggregationData / setAggregationData2 + checkAggregationData gap filling )
+ *
+ * fillRatio 1.0 : every bucket returned by ES, 0.5 : half of the buckets are filled by checkAggregationData
+ *
+ * run) mvn -P jmh package && java -jar target/benchmarks.jar ElasticSearchAggregationMappingBenchmark -prof gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ElasticSearchAggregationMappingBenchmark {
+
+    @Param({"ALL", "HOST", "HOST_FILE"})
+    public String aggregationType;
+
+    @Param({"10", "500", "5000"})
+    public int bucketCount;
+
+    @Param({"10"})
+    public int keyCount;
+
+    @Param({"1.0", "0.5"})
+    public double fillRatio;
+
+    private ElasticSearchSearchUtil.AGGREGATION_TYPE aggregation_type;
+    private String endTime;
+    private SearchResponse searchResponse;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception{
+        aggregation_type = ElasticSearchSearchUtil.AGGREGATION_TYPE.valueOf(aggregationType);
+        endTime = ElasticSearchResponseFixture.getEndTime(bucketCount);
+        searchResponse = ElasticSearchResponseFixture.aggregation(aggregation_type, keyCount, bucketCount, fillRatio);
+    }
+
+    @Benchmark
+    public ElasticSearchAggregationListInfo getAggregationData(){
+        return ElasticSearchSearchUtil.getAggregationData(aggregation_type, ElasticSearchResponseFixture.START_TIME, endTime, 1, "m", searchResponse, System.nanoTime());
+    }
+}
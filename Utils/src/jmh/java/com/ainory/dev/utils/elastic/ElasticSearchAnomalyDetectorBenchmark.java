@@ -0,0 +1,102 @@
+package com.ainory.dev.utils.elastic;
+
+import com.ainory.dev.utils.elastic.entity.ElasticSearchAggregationListInfo;
+import com.ainory.dev.utils.elastic.entity.ElasticSearchAggregationSeries;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Anomaly detector benchmark ( one incremental pass : keyCount series, newBuckets closed buckets per series )
+ *
+ * Every invocation clears the detector, loads WARMUP_BUCKETS buckets of history and replays PASSES passes over the same series,
+ * the request end time moving newBuckets buckets per pass. The history pass is in the measured time
+ * ( +10% at newBuckets 1, +1% at newBuckets 10 ). Counts 90 ~ 110, 1 / 1000 buckets spiked to 1000.
+ *
+ * run) mvn -P jmh package && java -jar target/benchmarks.jar ElasticSearchAnomalyDetectorBenchmark -prof gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ElasticSearchAnomalyDetectorBenchmark {
+
+    static final int PASSES = 300;
+    static final int WARMUP_BUCKETS = 30;
+
+    private static final String START_TIME = "2017-12-20 00:00:00.000";
+    private static final DateTimeFormatter REQUEST_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+    private static final long MINUTE_MILLIS = 60000L;
+
+    @Param({"200", "2000"})
+    public int keyCount;
+
+    @Param({"1", "10"})
+    public int newBuckets;
+
+    private ElasticSearchAnomalyDetector detector;
+    private ElasticSearchAggregationListInfo elasticSearchAggregationListInfo;
+
+    // request end time of the history pass & every pass
+    private String[] endTimes;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception{
+
+        Random random = new Random(keyCount);
+
+        int bucketCount = WARMUP_BUCKETS + PASSES * newBuckets;
+        long startMillis = Long.parseLong(ElasticSearchSearchUtil.getMilliTime(START_TIME));
+
+        elasticSearchAggregationListInfo = new ElasticSearchAggregationListInfo();
+        elasticSearchAggregationListInfo.setPeriod(1);
+        elasticSearchAggregationListInfo.setPeriodUnit(ElasticSearchSearchUtil.PERIOD_UNIT_MINUTE);
+
+        for(int key = 0; key < keyCount; key++){
+            ElasticSearchAggregationSeries series = new ElasticSearchAggregationSeries(bucketCount);
+            for(int i = 0; i < bucketCount; i++){
+                series.add(startMillis + i * MINUTE_MILLIS, random.nextInt(1000) == 0 ? 1000 : 90 + random.nextInt(21));
+            }
+            elasticSearchAggregationListInfo.putSeries("host-" + key, series);
+        }
+
+        LocalDateTime start = LocalDateTime.parse(START_TIME, REQUEST_FORMAT);
+
+        endTimes = new String[PASSES + 1];
+        for(int pass = 0; pass <= PASSES; pass++){
+            endTimes[pass] = start.plusMinutes(WARMUP_BUCKETS + pass * newBuckets).format(REQUEST_FORMAT);
+        }
+
+        detector = new ElasticSearchAnomalyDetector();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PASSES)
+    public void detect(Blackhole blackhole){
+
+        detector.clear();
+
+        for(String endTime : endTimes){
+            elasticSearchAggregationListInfo.setRequestEndTime(endTime);
+            blackhole.consume(detector.detect(elasticSearchAggregationListInfo, 10));
+        }
+    }
+}
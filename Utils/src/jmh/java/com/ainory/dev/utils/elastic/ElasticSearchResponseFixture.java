@@ -0,0 +1,217 @@
+package com.ainory.dev.utils.elastic;
+
+import org.apache.commons.lang3.time.FastDateFormat;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.common.ParseField;
+import org.elasticsearch.common.io.Streams;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.search.aggregations.Aggregation;
+import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.histogram.ParsedDateHistogram;
+import org.elasticsearch.search.aggregations.bucket.terms.ParsedStringTerms;
+import org.elasticsearch.search.aggregations.bucket.terms.StringTerms;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * SearchResponse fixtures for benchmarks
+ *
+ * Builds search / aggregation response JSON in the shape returned by ES 5.6 ( typed_keys ) and parses it
+ * with the same parsers as RestHighLevelClient, so the mapping code sees real SearchResponse objects.
+ * A response recorded from a live cluster ( GET ..._search?typed_keys ) can be loaded with load(path),
+ * recorded responses shipped with the benchmarks are under src/jmh/resources.
+ */
+public class ElasticSearchResponseFixture {
+
+    public static final String START_TIME = "2017-12-20 00:00:00.000";
+
+    private static final long START_MILLIS = 1513695600000L; // START_TIME ( Asia/Seoul )
+    private static final long MINUTE_MILLIS = 60000L;
+
+    private static final FastDateFormat ISO_FORMAT = FastDateFormat.getInstance("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", TimeZone.getTimeZone("UTC"));
+    private static final FastDateFormat REQUEST_FORMAT = FastDateFormat.getInstance("yyyy-MM-dd HH:mm:ss.SSS", TimeZone.getTimeZone("Asia/Seoul"));
+
+    private static final NamedXContentRegistry REGISTRY = new NamedXContentRegistry(Arrays.asList(
+            new NamedXContentRegistry.Entry(Aggregation.class, new ParseField(DateHistogramAggregationBuilder.NAME), (parser, name) -> ParsedDateHistogram.fromXContent(parser, (String) name)),
+            new NamedXContentRegistry.Entry(Aggregation.class, new ParseField(StringTerms.NAME), (parser, name) -> ParsedStringTerms.fromXContent(parser, (String) name))
+    ));
+
+    private ElasticSearchResponseFixture() {
+    }
+
+    /**
+     * Search response with hitCount log hits ( 1 hit / 10ms, ~200 byte message )
+     *
+     * @param hitCount
+     * @return
+     * @throws IOException
+     */
+    public static SearchResponse hits(int hitCount) throws IOException{
+
+        Random random = new Random(hitCount);
+        StringBuilder json = new StringBuilder(hitCount * 400 + 256);
+
+        json.append("{\"took\":").append(5 + hitCount / 1000).append(",\"timed_out\":false,\"_shards\":{\"total\":5,\"successful\":5,\"failed\":0},")
+                .append("\"hits\":{\"total\":").append(hitCount).append(",\"max_score\":null,\"hits\":[");
+
+        for(int i = 0; i < hitCount; i++){
+            long time = START_MILLIS + i * 10L;
+
+            if(i > 0){
+                json.append(',');
+            }
+            json.append("{\"_index\":\"index-2017.12.20\",\"_type\":\"log\",\"_id\":\"id").append(i).append("\",\"_score\":null,\"_source\":{")
+                    .append("\"@timestamp\":\"").append(ISO_FORMAT.format(time)).append("\",")
+                    .append("\"host\":\"host-").append(random.nextInt(50)).append("\",")
+                    .append("\"file\":\"/var/log/app/application-").append(random.nextInt(20)).append(".log\",")
+                    .append("\"message\":\"").append(ISO_FORMAT.format(time)).append(" INFO [worker-").append(random.nextInt(32))
+                    .append("] c.a.d.service.RequestHandler - request processed uri=/api/v1/resource/").append(random.nextInt(100000))
+                    .append(" status=200 elapsed=").append(random.nextInt(500)).append("ms user=user").append(random.nextInt(1000))
+                    .append(" session=").append(Long.toHexString(random.nextLong())).append("\"}")
+                    .append(",\"sort\":[").append(time).append(",\"log#id").append(i).append("\"]}");
+        }
+
+        json.append("]}}");
+
+        return parse(json.toString());
+    }
+
+    /**
+     * Aggregation response ( 1 minute buckets from START_TIME )
+     *
+     * @param aggregation_type - ALL, HOST, FILE, HOST_FILE
+     * @param keyCount - Terms keys ( HOST_FILE : hosts, files per host = keyCount )
+     * @param bucketCount - Histogram buckets per key
+     * @param fillRatio - Ratio of non empty buckets returned ( 1.0 : dense, < 1.0 : gaps to fill )
+     * @return
+     * @throws IOException
+     */
+    public static SearchResponse aggregation(ElasticSearchSearchUtil.AGGREGATION_TYPE aggregation_type, int keyCount, int bucketCount, double fillRatio) throws IOException{
+
+        Random random = new Random(bucketCount);
+        StringBuilder json = new StringBuilder(256);
+
+        json.append("{\"took\":12,\"timed_out\":false,\"_shards\":{\"total\":5,\"successful\":5,\"failed\":0},")
+                .append("\"hits\":{\"total\":0,\"max_score\":0.0,\"hits\":[]},\"aggregations\":{");
+
+        switch (aggregation_type){
+            case ALL:
+                appendHistogram(json, bucketCount, fillRatio, random);
+                break;
+            case HOST:
+            case FILE:
+                appendTerms(json, aggregation_type.name(), aggregation_type == ElasticSearchSearchUtil.AGGREGATION_TYPE.HOST ? "host-" : "file-", keyCount, bucketCount, fillRatio, random, 0);
+                break;
+            case HOST_FILE:
+                appendTerms(json, aggregation_type.name(), "host-", keyCount, bucketCount, fillRatio, random, keyCount);
+                break;
+            default:
+                throw new IllegalArgumentException(aggregation_type.name());
+        }
+
+        json.append("}}");
+
+        return parse(json.toString());
+    }
+
+    /**
+     * Request end time of bucketCount 1 minute buckets from START_TIME
+     *
+     * @param bucketCount
+     * @return
+     */
+    public static String getEndTime(int bucketCount){
+        return REQUEST_FORMAT.format(START_MILLIS + (bucketCount - 1) * MINUTE_MILLIS);
+    }
+
+    /**
+     * Recorded response ( JSON, typed_keys )
+     *
+     * @param path
+     * @return
+     * @throws IOException
+     */
+    public static SearchResponse load(Path path) throws IOException{
+        return parse(new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Recorded response on the classpath ( src/jmh/resources, packed in benchmarks.jar )
+     *
+     * @param resourceName - ex) search-response-hits.json
+     * @return
+     * @throws IOException
+     */
+    public static SearchResponse load(String resourceName) throws IOException{
+        try(InputStream inputStream = ElasticSearchResponseFixture.class.getClassLoader().getResourceAsStream(resourceName)){
+            if(inputStream == null){
+                throw new FileNotFoundException(resourceName);
+            }
+            return parse(Streams.copyToString(new InputStreamReader(inputStream, StandardCharsets.UTF_8)));
+        }
+    }
+
+    public static SearchResponse parse(String json) throws IOException{
+        try(XContentParser parser = XContentType.JSON.xContent().createParser(REGISTRY, json)){
+            return SearchResponse.fromXContent(parser);
+        }
+    }
+
+    private static void appendTerms(StringBuilder json, String name, String keyPrefix, int keyCount, int bucketCount, double fillRatio, Random random, int innerKeyCount){
+
+        json.append("\"sterms#").append(name).append("\":{\"doc_count_error_upper_bound\":0,\"sum_other_doc_count\":0,\"buckets\":[");
+
+        for(int i = 0; i < keyCount; i++){
+            if(i > 0){
+                json.append(',');
+            }
+            json.append("{\"key\":\"").append(keyPrefix).append(i).append("\",\"doc_count\":").append(1000 + random.nextInt(1000)).append(',');
+
+            if(innerKeyCount > 0){
+                appendTerms(json, ElasticSearchSearchUtil.AGGREGATION_TYPE.FILE.name(), "file-", innerKeyCount, bucketCount, fillRatio, random, 0);
+            }else{
+                appendHistogram(json, bucketCount, fillRatio, random);
+            }
+
+            json.append('}');
+        }
+
+        json.append("]}");
+    }
+
+    private static void appendHistogram(StringBuilder json, int bucketCount, double fillRatio, Random random){
+
+        json.append("\"date_histogram#").append(ElasticSearchSearchUtil.AGGREGATION_TYPE.TIME_COUNT.name()).append("\":{\"buckets\":[");
+
+        boolean first = true;
+        for(int i = 0; i < bucketCount; i++){
+
+            // first bucket always returned, others by fillRatio
+            if(i > 0 && random.nextDouble() >= fillRatio){
+                continue;
+            }
+
+            long time = START_MILLIS + i * MINUTE_MILLIS;
+
+            if(!first){
+                json.append(',');
+            }
+            first = false;
+
+            json.append("{\"key_as_string\":\"").append(ISO_FORMAT.format(time)).append("\",\"key\":").append(time).append(",\"doc_count\":").append(random.nextInt(100)).append('}');
+        }
+
+        json.append("]}");
+    }
+}
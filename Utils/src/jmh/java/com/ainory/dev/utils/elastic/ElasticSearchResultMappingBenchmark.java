@@ -0,0 +1,131 @@
+package com.ainory.dev.utils.elastic;
+
+import com.ainory.dev.utils.elastic.entity.ElasticSearchDataListInfo;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.common.text.Text;
+import org.elasticsearch.search.DocValueFormat;
+import org.elasticsearch.search.SearchHit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hit mapping benchmark ( setData : SearchHit[] -> ElasticSearchDataListInfo )
+ *
+ * setData       : generated hits ( hitCount, ~200 byte single line message )
+ * setDataRecord : recorded response ( src/jmh/resources/search-response-hits.json, 500 hits,
+ *                 access / gc / multi line stack trace / escaped JSON / non ASCII messages )
+ *
+ * run) mvn -P jmh package && java -jar target/benchmarks.jar ElasticSearchResultMappingBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ElasticSearchResultMappingBenchmark {
+
+    // hit arrays cycled per invocation ( power of 2 )
+    static final int POOL_SIZE = 4;
+
+    static final String RECORDED_RESPONSE = "search-response-hits.json";
+
+    @State(Scope.Thread)
+    public static class GeneratedHits extends HitPool {
+
+        @Param({"1000", "10000", "100000"})
+        public int hitCount;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception{
+            init(ElasticSearchResponseFixture.hits(hitCount));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class RecordedHits extends HitPool {
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception{
+            init(ElasticSearchResponseFixture.load(RECORDED_RESPONSE));
+        }
+    }
+
+    @Benchmark
+    public ElasticSearchDataListInfo setData(GeneratedHits generatedHits){
+        return generatedHits.setData();
+    }
+
+    @Benchmark
+    public ElasticSearchDataListInfo setDataRecord(RecordedHits recordedHits){
+        return recordedHits.setData();
+    }
+
+    /**
+     * POOL_SIZE copies of the response hits, built once per trial
+     *
+     * getSourceAsMap caches the parsed source in the hit, so a hit array is put back after every mapping
+     * with sourceRef ( same source bytes, cached map dropped : no allocation, no copy ) and the next
+     * invocation decodes every _source again like a fresh response.
+     */
+    public abstract static class HitPool {
+
+        private long totalHits;
+        private SearchHit[][] hitPool;
+        private int next;
+
+        void init(SearchResponse searchResponse){
+
+            SearchHit[] templateHits = searchResponse.getHits().getHits();
+
+            totalHits = searchResponse.getHits().getTotalHits();
+            hitPool = new SearchHit[POOL_SIZE][];
+            for(int i = 0; i < POOL_SIZE; i++){
+                hitPool[i] = copyHits(templateHits);
+            }
+        }
+
+        ElasticSearchDataListInfo setData(){
+
+            SearchHit[] searchHits = hitPool[next++ & (POOL_SIZE - 1)];
+
+            ElasticSearchDataListInfo elasticSearchDataListInfo = ElasticSearchSearchUtil.setData(searchHits, totalHits);
+
+            for(SearchHit searchHit : searchHits){
+                searchHit.sourceRef(searchHit.getSourceRef());
+            }
+
+            return elasticSearchDataListInfo;
+        }
+
+        private static SearchHit[] copyHits(SearchHit[] templateHits){
+
+            SearchHit[] searchHits = new SearchHit[templateHits.length];
+            for(int i = 0; i < templateHits.length; i++){
+                SearchHit templateHit = templateHits[i];
+
+                SearchHit searchHit = new SearchHit(templateHit.docId(), templateHit.getId(), new Text(templateHit.getType()), null);
+                searchHit.sourceRef(templateHit.getSourceRef());
+                Object[] sortValues = templateHit.getSortValues();
+                DocValueFormat[] sortValueFormats = new DocValueFormat[sortValues.length];
+                Arrays.fill(sortValueFormats, DocValueFormat.RAW);
+                searchHit.sortValues(sortValues, sortValueFormats);
+
+                searchHits[i] = searchHit;
+            }
+            return searchHits;
+        }
+    }
+}
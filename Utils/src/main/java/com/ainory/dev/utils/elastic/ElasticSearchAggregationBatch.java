@@ -0,0 +1,436 @@
+package com.ainory.dev.utils.elastic;
+
+import com.ainory.dev.utils.elastic.ElasticSearchSearchUtil.AGGREGATION_TYPE;
+import com.ainory.dev.utils.elastic.entity.ElasticSearchAggregationListInfo;
+import com.ainory.dev.utils.elastic.entity.ElasticSearchDataListInfo;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.elasticsearch.action.search.MultiSearchRequest;
+import org.elasticsearch.action.search.MultiSearchResponse;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.SearchHit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * ElasticSearch Aggregation Batch
+ *
+ * Collects several dashboard panels, aggregation panels ( All / Host / File / Host_File ) and search panels
+ * ( first page of a query spec ), and sends them as one _msearch request.
+ * Every panel is its own search of the _msearch, results are demultiplexed back per panel name :
+ *     a failed panel gets an empty result ( the other panels keep theirs ),
+ *     a panel over the panel timeout returns what its shards collected in time ( setPanelTimeout ).
+ * Every aggregation period is coarsened above ElasticSearchSearchUtil.getMaxAggregationPoints() buckets ( requestPeriod keeps the request ).
+ * Panel names are unique ( IllegalArgumentException ).
+ *
+ * ex) ElasticSearchAggregationBatch.Result result = new ElasticSearchAggregationBatch("127.0.0.1", 9400)
+ *          .aggregationAll("all", startTime, endTime, 1, ElasticSearchSearchUtil.PERIOD_UNIT_MINUTE)
+ *          .aggregationHost("host", startTime, endTime, 1, ElasticSearchSearchUtil.PERIOD_UNIT_MINUTE)
+ *          .search("log", querySpec, 100)
+ *          .execute();
+ *     result.getAggregation("host");
+ *     result.getSearch("log").getNextCursor(); // next page : ElasticSearchSearchUtil.searchAfter
+ *
+ * ( the 5.x high level client has no _msearch API, it is sent on the low level client, ElasticSearchGuardedClient.multiSearch )
+ */
+public class ElasticSearchAggregationBatch {
+
+    private static final Logger logger = LoggerFactory.getLogger(ElasticSearchAggregationBatch.class);
+
+    private final String esHost;
+    private final int esPort;
+
+    private final ArrayList<Panel> panelList = new ArrayList<>();
+
+    private long panelTimeoutMs = 0;
+
+    private abstract static class Panel {
+        protected final String name;
+
+        private Panel(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @return null : nothing to search ( empty result )
+         */
+        abstract SearchRequest getSearchRequest() throws Exception;
+
+        abstract void setData(Result result, SearchResponse searchResponse, long start);
+
+        abstract void setErrorData(Result result, long start);
+    }
+
+    private static class AggregationPanel extends Panel {
+        private final AGGREGATION_TYPE aggregation_type;
+        private final String startTime;
+        private final String endTime;
+        private final int requestPeriod;
+        private final String requestPeriodUnit;
+
+        // effective resolution ( ElasticSearchResolutionPlanner )
+        private final int period;
+        private final String periodUnit;
+
+        private AggregationPanel(String name, AGGREGATION_TYPE aggregation_type, String startTime, String endTime, int requestPeriod, String requestPeriodUnit) {
+            super(name);
+            this.aggregation_type = aggregation_type;
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.requestPeriod = requestPeriod;
+            this.requestPeriodUnit = requestPeriodUnit;
+
+            ElasticSearchResolutionPlanner.Resolution resolution = ElasticSearchResolutionPlanner.plan(startTime, endTime, requestPeriod, requestPeriodUnit, ElasticSearchSearchUtil.getMaxAggregationPoints());
+            this.period = resolution.getPeriod();
+            this.periodUnit = resolution.getPeriodUnit();
+        }
+
+        @Override
+        SearchRequest getSearchRequest() throws Exception {
+            return ElasticSearchSearchUtil.getAggregationSearchRequest(aggregation_type, startTime, endTime, period, periodUnit);
+        }
+
+        @Override
+        void setData(Result result, SearchResponse searchResponse, long start) {
+
+            ElasticSearchAggregationListInfo elasticSearchAggregationListInfo = ElasticSearchSearchUtil.getAggregationData(aggregation_type, startTime, endTime, period, periodUnit, searchResponse, start);
+            elasticSearchAggregationListInfo.setRequestPeriod(requestPeriod);
+            elasticSearchAggregationListInfo.setRequestPeriodUnit(requestPeriodUnit);
+
+            result.aggregationMap.put(name, elasticSearchAggregationListInfo);
+        }
+
+        @Override
+        void setErrorData(Result result, long start) {
+            result.aggregationMap.put(name, ElasticSearchSearchUtil.getAggregationErrorData(startTime, endTime, start));
+        }
+    }
+
+    private static class SearchPanel extends Panel {
+        private final ElasticSearchQuerySpec querySpec;
+        private final int pagingSize;
+
+        private SearchPanel(String name, ElasticSearchQuerySpec querySpec, int pagingSize) {
+            super(name);
+            this.querySpec = querySpec;
+            this.pagingSize = ElasticSearchSearchUtil.getPagingSize(Math.max(0, pagingSize));
+        }
+
+        @Override
+        SearchRequest getSearchRequest() {
+            return ElasticSearchSearchUtil.getSearchAfterRequest(querySpec, pagingSize, null);
+        }
+
+        @Override
+        void setData(Result result, SearchResponse searchResponse, long start) {
+
+            SearchHit[] searchHits = searchResponse.getHits().getHits();
+
+            ElasticSearchDataListInfo elasticSearchDataListInfo = ElasticSearchSearchUtil.setData(searchHits, searchResponse.getHits().getTotalHits());
+
+            int totalPageCount = (int) Math.ceil((double)elasticSearchDataListInfo.getTotalCount()/(double)pagingSize);
+            elasticSearchDataListInfo.setTotalPageCount(totalPageCount);
+            elasticSearchDataListInfo.setCurrentPageCount(1);
+
+            if(searchHits.length == pagingSize && 1 < totalPageCount){
+                elasticSearchDataListInfo.setNextCursor(ElasticSearchSearchUtil.getCursor(2, searchHits[searchHits.length-1].getSortValues()));
+            }
+
+            elasticSearchDataListInfo.setElapsedMsTime((System.nanoTime()-start)/ 1000000.0);
+
+            result.searchMap.put(name, elasticSearchDataListInfo);
+        }
+
+        @Override
+        void setErrorData(Result result, long start) {
+            ElasticSearchDataListInfo elasticSearchDataListInfo = new ElasticSearchDataListInfo();
+            elasticSearchDataListInfo.setElapsedMsTime((System.nanoTime()-start)/ 1000000.0);
+            result.searchMap.put(name, elasticSearchDataListInfo);
+        }
+    }
+
+    /**
+     * Batch Result ( panel name -> result, in panel order )
+     */
+    public static class Result {
+
+        private final LinkedHashMap<String, ElasticSearchAggregationListInfo> aggregationMap = new LinkedHashMap<>();
+        private final LinkedHashMap<String, ElasticSearchDataListInfo> searchMap = new LinkedHashMap<>();
+
+        /**
+         * @param name - Aggregation panel name
+         * @return null : no such panel
+         */
+        public ElasticSearchAggregationListInfo getAggregation(String name) {
+            return aggregationMap.get(name);
+        }
+
+        /**
+         * @param name - Search panel name
+         * @return null : no such panel
+         */
+        public ElasticSearchDataListInfo getSearch(String name) {
+            return searchMap.get(name);
+        }
+
+        public LinkedHashMap<String, ElasticSearchAggregationListInfo> getAggregationMap() {
+            return aggregationMap;
+        }
+
+        public LinkedHashMap<String, ElasticSearchDataListInfo> getSearchMap() {
+            return searchMap;
+        }
+    }
+
+    /**
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     */
+    public ElasticSearchAggregationBatch(String esHost, int esPort) {
+        this.esHost = esHost;
+        this.esPort = esPort;
+    }
+
+    /**
+     * Panel timeout ( a panel over it returns its partial result, the other panels are not held by it )
+     *
+     * @param panelTimeoutMs - Search timeout of every panel (ms), 0 : none
+     * @return
+     */
+    public ElasticSearchAggregationBatch setPanelTimeout(long panelTimeoutMs){
+        this.panelTimeoutMs = panelTimeoutMs;
+        return this;
+    }
+
+    /**
+     * Add Aggregation All
+     *
+     * @param name - Panel name ( result key )
+     * @param startTime - Aggregation Start Time
+     * @param endTime - Aggregation End Time
+     * @param period - Period
+     * @param periodUnit - d:Day, h:Hour, m:Minute, s:Seconds (refer to PERIOD_UNIT_DAY, PERIOD_UNIT_HOUR, PERIOD_UNIT_MINUTE, PERIOD_UNIT_SECOND)
+     * @return
+     */
+    public ElasticSearchAggregationBatch aggregationAll(String name, String startTime, String endTime, int period, String periodUnit){
+        return add(new AggregationPanel(name, AGGREGATION_TYPE.ALL, startTime, endTime, period, periodUnit));
+    }
+
+    /**
+     * Add Aggregation Host
+     *
+     * @param name - Panel name ( result key )
+     * @param startTime - Aggregation Start Time
+     * @param endTime - Aggregation End Time
+     * @param period - Period
+     * @param periodUnit - d:Day, h:Hour, m:Minute, s:Seconds (refer to PERIOD_UNIT_DAY, PERIOD_UNIT_HOUR, PERIOD_UNIT_MINUTE, PERIOD_UNIT_SECOND)
+     * @return
+     */
+    public ElasticSearchAggregationBatch aggregationHost(String name, String startTime, String endTime, int period, String periodUnit){
+        return add(new AggregationPanel(name, AGGREGATION_TYPE.HOST, startTime, endTime, period, periodUnit));
+    }
+
+    /**
+     * Add Aggregation File
+     *
+     * @param name - Panel name ( result key )
+     * @param startTime - Aggregation Start Time
+     * @param endTime - Aggregation End Time
+     * @param period - Period
+     * @param periodUnit - d:Day, h:Hour, m:Minute, s:Seconds (refer to PERIOD_UNIT_DAY, PERIOD_UNIT_HOUR, PERIOD_UNIT_MINUTE, PERIOD_UNIT_SECOND)
+     * @return
+     */
+    public ElasticSearchAggregationBatch aggregationFile(String name, String startTime, String endTime, int period, String periodUnit){
+        return add(new AggregationPanel(name, AGGREGATION_TYPE.FILE, startTime, endTime, period, periodUnit));
+    }
+
+    /**
+     * Add Aggregation Host_File
+     *
+     * @param name - Panel name ( result key )
+     * @param startTime - Aggregation Start Time
+     * @param endTime - Aggregation End Time
+     * @param period - Period
+     * @param periodUnit - d:Day, h:Hour, m:Minute, s:Seconds (refer to PERIOD_UNIT_DAY, PERIOD_UNIT_HOUR, PERIOD_UNIT_MINUTE, PERIOD_UNIT_SECOND)
+     * @return
+     */
+    public ElasticSearchAggregationBatch aggregationHostFile(String name, String startTime, String endTime, int period, String periodUnit){
+        return add(new AggregationPanel(name, AGGREGATION_TYPE.HOST_FILE, startTime, endTime, period, periodUnit));
+    }
+
+    /**
+     * Add Search ( first page, search_after order, next pages : ElasticSearchSearchUtil.searchAfter with the result nextCursor )
+     *
+     * @param name - Panel name ( result key )
+     * @param querySpec - Query Spec
+     * @param pagingSize - Page Size
+     * @return
+     */
+    public ElasticSearchAggregationBatch search(String name, ElasticSearchQuerySpec querySpec, int pagingSize){
+        return add(new SearchPanel(name, querySpec, pagingSize));
+    }
+
+    private ElasticSearchAggregationBatch add(Panel panel){
+
+        for(Panel added : panelList){
+            if(added.name.equals(panel.name)){
+                throw new IllegalArgumentException("Duplicate panel name : " + panel.name);
+            }
+        }
+
+        panelList.add(panel);
+        return this;
+    }
+
+    /**
+     * Execute ( one _msearch request )
+     *
+     * @return panel name, result ( failed panel : empty result )
+     */
+    public Result execute(){
+
+        long start = System.nanoTime();
+
+        try{
+            ArrayList<Panel> requestPanelList = new ArrayList<>();
+            MultiSearchRequest multiSearchRequest = getMultiSearchRequest(requestPanelList);
+
+            if(requestPanelList.isEmpty()){
+                return getData(requestPanelList, null, start);
+            }
+
+            MultiSearchResponse multiSearchResponse = ElasticSearchClientRegistry.getGuardedClient(esHost, esPort).multiSearch(multiSearchRequest);
+
+            return getData(requestPanelList, multiSearchResponse, start);
+
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
+            return getErrorData(start);
+        }
+    }
+
+    /**
+     * Execute ( one _msearch request, async, parsed & decoded on the ElasticSearchAsyncSearchUtil decode executor )
+     *
+     * @return panel name, result ( failed panel : empty result )
+     */
+    public CompletableFuture<Result> executeAsync(){
+
+        long start = System.nanoTime();
+
+        try{
+            ArrayList<Panel> requestPanelList = new ArrayList<>();
+            MultiSearchRequest multiSearchRequest = getMultiSearchRequest(requestPanelList);
+
+            if(requestPanelList.isEmpty()){
+                return CompletableFuture.completedFuture(getData(requestPanelList, null, start));
+            }
+
+            CompletableFuture<Response> future = new CompletableFuture<>();
+            ElasticSearchClientRegistry.getGuardedClient(esHost, esPort).multiSearchAsync(multiSearchRequest, ElasticSearchAsyncSearchUtil.getListener(future));
+
+            return future.thenApplyAsync(response -> {
+                        try{
+                            return getData(requestPanelList, ElasticSearchRequestConverter.parseMultiSearchResponse(response.getEntity()), start);
+                        }catch (Exception e){
+                            logger.error(ExceptionUtils.getStackTrace(e));
+                            return getErrorData(start);
+                        }
+                    }, ElasticSearchAsyncSearchUtil.getDecodeExecutor())
+                    .exceptionally(throwable -> {
+                        logger.error(ExceptionUtils.getStackTrace(throwable));
+                        return getErrorData(start);
+                    });
+
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
+            return CompletableFuture.completedFuture(getErrorData(start));
+        }
+    }
+
+    /**
+     * Batch Multi Search Request
+     *
+     * @param requestPanelList - Panels sent, in request order ( out )
+     * @return
+     * @throws Exception
+     */
+    private MultiSearchRequest getMultiSearchRequest(ArrayList<Panel> requestPanelList) throws Exception{
+
+        MultiSearchRequest multiSearchRequest = new MultiSearchRequest();
+
+        for(Panel panel : panelList){
+
+            SearchRequest searchRequest = panel.getSearchRequest();
+            if(searchRequest == null){
+                continue;
+            }
+
+            if(panelTimeoutMs > 0){
+                searchRequest.source().timeout(TimeValue.timeValueMillis(panelTimeoutMs));
+            }
+
+            multiSearchRequest.add(searchRequest);
+            requestPanelList.add(panel);
+        }
+
+        return multiSearchRequest;
+    }
+
+    /**
+     * Demultiplex response per panel
+     *
+     * @param requestPanelList - Panels sent, in request order
+     * @param multiSearchResponse - null : nothing sent
+     * @param start - Request start nano time
+     * @return
+     */
+    private Result getData(ArrayList<Panel> requestPanelList, MultiSearchResponse multiSearchResponse, long start){
+
+        Result result = new Result();
+
+        for(Panel panel : panelList){
+
+            int index = requestPanelList.indexOf(panel);
+            MultiSearchResponse.Item item = index < 0 || multiSearchResponse == null || index >= multiSearchResponse.getResponses().length ? null : multiSearchResponse.getResponses()[index];
+
+            if(item == null || item.isFailure()){
+                if(item != null){
+                    logger.error("Batch panel fail : " + panel.name + " : " + item.getFailureMessage());
+                }
+                panel.setErrorData(result, start);
+                continue;
+            }
+
+            if(item.getResponse().isTimedOut()){
+                logger.warn("Batch panel timeout ( partial result ) : " + panel.name);
+            }
+
+            try{
+                panel.setData(result, item.getResponse(), start);
+            }catch (Exception e){
+                logger.error(ExceptionUtils.getStackTrace(e));
+                panel.setErrorData(result, start);
+            }
+        }
+
+        return result;
+    }
+
+    private Result getErrorData(long start){
+
+        Result result = new Result();
+
+        for(Panel panel : panelList){
+            panel.setErrorData(result, start);
+        }
+
+        return result;
+    }
+}
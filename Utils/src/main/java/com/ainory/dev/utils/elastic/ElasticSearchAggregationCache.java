@@ -0,0 +1,522 @@
+package com.ainory.dev.utils.elastic;
+
+import com.ainory.dev.utils.elastic.ElasticSearchSearchUtil.AGGREGATION_TYPE;
+import com.ainory.dev.utils.elastic.entity.ElasticSearchAggregationListInfo;
+import com.ainory.dev.utils.elastic.entity.ElasticSearchAggregationSeries;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.bucket.filter.ParsedFilter;
+import org.elasticsearch.search.aggregations.bucket.terms.ParsedStringTerms;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.elasticsearch.search.aggregations.bucket.terms.TermsAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.terms.support.IncludeExclude;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ElasticSearch Aggregation Cache
+ *
+ * Caches aggregation results per ( host:port, aggregation type, period, periodUnit, query context ) with LRU eviction.
+ * A new query context ( ElasticSearchSearchUtil.setQueryContext : index, fields, time zone ) never reads the entries of the previous one.
+ * When the same panel is refreshed with a window sliding forward, closed buckets are reused and only the
+ * open tail bucket ( last cached bucket ) plus newly elapsed buckets are queried.
+ *
+ * Dashboards opt in per cluster, the ElasticSearchSearchUtil aggregation* entry points of host:port then go through the cache.
+ * ex) ElasticSearchAggregationCache.start("127.0.0.1", 9400);
+ *     ElasticSearchSearchUtil.aggregationAll("127.0.0.1", 9400, "2017-11-07 03:00:00.000", "2017-11-07 04:00:00.000", 1, PERIOD_UNIT_MINUTE);
+ *     ElasticSearchSearchUtil.aggregationAll("127.0.0.1", 9400, "2017-11-07 03:00:10.000", "2017-11-07 04:00:10.000", 1, PERIOD_UNIT_MINUTE); // tail only
+ *
+ * A private instance ( new ElasticSearchAggregationCache(100).aggregationAll(...) ) works the same without affecting other callers.
+ *
+ * The resolution is planned once for the whole window ( ElasticSearchResolutionPlanner ) and kept by the tail request.
+ * Host / File / Host_File keep the top terms of the whole window. Their tail is one request over the window with
+ *     TOP_<type> : top terms of the whole window, terms only ( no histogram )
+ *     TAIL       : histogram from the open bucket, restricted to the cached terms ( include list )
+ * The tail is merged while the top terms equal the cached terms ( a cached term without tail documents gets 0 buckets ),
+ * when they changed the whole window is queried again.
+ *
+ * Returned results are shared with the cache, do not modify them.
+ */
+public class ElasticSearchAggregationCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ElasticSearchAggregationCache.class);
+
+    public static final int DEFAULT_MAX_ENTRY_COUNT = 100;
+
+    static final String TOP_AGGREGATION_PREFIX = "TOP_";
+    static final String TAIL_AGGREGATION = "TAIL";
+
+    // Host_File series key : host + "_" + file
+    private static final char HOST_FILE_SEPARATOR = '_';
+
+    // started caches ( host:port )
+    private static final ConcurrentHashMap<String, ElasticSearchAggregationCache> CACHE_MAP = new ConcurrentHashMap<>();
+
+    private final LinkedHashMap<String, ElasticSearchAggregationListInfo> cacheMap;
+
+    public ElasticSearchAggregationCache() {
+        this(DEFAULT_MAX_ENTRY_COUNT);
+    }
+
+    /**
+     * @param maxEntryCount - Max cached aggregation count ( LRU eviction )
+     */
+    public ElasticSearchAggregationCache(int maxEntryCount) {
+        this.cacheMap = new LinkedHashMap<String, ElasticSearchAggregationListInfo>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ElasticSearchAggregationListInfo> eldest) {
+                return size() > maxEntryCount;
+            }
+        };
+    }
+
+    /**
+     * Start caching the aggregations of host:port ( DEFAULT_MAX_ENTRY_COUNT entries )
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @return
+     */
+    public static ElasticSearchAggregationCache start(String esHost, int esPort){
+        return start(esHost, esPort, DEFAULT_MAX_ENTRY_COUNT);
+    }
+
+    /**
+     * Start caching the aggregations of host:port
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param maxEntryCount - Max cached aggregation count ( LRU eviction )
+     * @return running cache of host:port ( an existing cache is returned as is )
+     */
+    public static ElasticSearchAggregationCache start(String esHost, int esPort, int maxEntryCount){
+        return CACHE_MAP.computeIfAbsent(esHost + ":" + esPort, key -> new ElasticSearchAggregationCache(maxEntryCount));
+    }
+
+    /**
+     * Running cache of host:port
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @return null : not cached
+     */
+    public static ElasticSearchAggregationCache get(String esHost, int esPort){
+        return CACHE_MAP.isEmpty() ? null : CACHE_MAP.get(esHost + ":" + esPort);
+    }
+
+    /**
+     * Stop & drop the cache of host:port
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     */
+    public static void stop(String esHost, int esPort){
+        CACHE_MAP.remove(esHost + ":" + esPort);
+    }
+
+    /**
+     * Clear every started cache ( query context switched )
+     */
+    static void clearAll(){
+        CACHE_MAP.values().forEach(ElasticSearchAggregationCache::clear);
+    }
+
+    /**
+     * Aggregation All ( cached )
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param startTime - Aggregation Start Time
+     * @param endTime - Aggregation End Time
+     * @param period - Period
+     * @param periodUnit - d:Day, h:Hour, m:Minute, s:Seconds (refer to PERIOD_UNIT_DAY, PERIOD_UNIT_HOUR, PERIOD_UNIT_MINUTE, PERIOD_UNIT_SECOND)
+     * @return
+     */
+    public ElasticSearchAggregationListInfo aggregationAll(String esHost, int esPort, String startTime, String endTime, int period, String periodUnit){
+        return aggregation(esHost, esPort, AGGREGATION_TYPE.ALL, startTime, endTime, period, periodUnit, ElasticSearchSearchUtil.getMaxAggregationPoints());
+    }
+
+    /**
+     * Aggregation Host ( cached )
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param startTime - Aggregation Start Time
+     * @param endTime - Aggregation End Time
+     * @param period - Period
+     * @param periodUnit - d:Day, h:Hour, m:Minute, s:Seconds (refer to PERIOD_UNIT_DAY, PERIOD_UNIT_HOUR, PERIOD_UNIT_MINUTE, PERIOD_UNIT_SECOND)
+     * @return
+     */
+    public ElasticSearchAggregationListInfo aggregationHost(String esHost, int esPort, String startTime, String endTime, int period, String periodUnit){
+        return aggregation(esHost, esPort, AGGREGATION_TYPE.HOST, startTime, endTime, period, periodUnit, ElasticSearchSearchUtil.getMaxAggregationPoints());
+    }
+
+    /**
+     * Aggregation File ( cached )
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param startTime - Aggregation Start Time
+     * @param endTime - Aggregation End Time
+     * @param period - Period
+     * @param periodUnit - d:Day, h:Hour, m:Minute, s:Seconds (refer to PERIOD_UNIT_DAY, PERIOD_UNIT_HOUR, PERIOD_UNIT_MINUTE, PERIOD_UNIT_SECOND)
+     * @return
+     */
+    public ElasticSearchAggregationListInfo aggregationFile(String esHost, int esPort, String startTime, String endTime, int period, String periodUnit){
+        return aggregation(esHost, esPort, AGGREGATION_TYPE.FILE, startTime, endTime, period, periodUnit, ElasticSearchSearchUtil.getMaxAggregationPoints());
+    }
+
+    /**
+     * Aggregation Host_File ( cached )
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param startTime - Aggregation Start Time
+     * @param endTime - Aggregation End Time
+     * @param period - Period
+     * @param periodUnit - d:Day, h:Hour, m:Minute, s:Seconds (refer to PERIOD_UNIT_DAY, PERIOD_UNIT_HOUR, PERIOD_UNIT_MINUTE, PERIOD_UNIT_SECOND)
+     * @return
+     */
+    public ElasticSearchAggregationListInfo aggregationHostFile(String esHost, int esPort, String startTime, String endTime, int period, String periodUnit){
+        return aggregation(esHost, esPort, AGGREGATION_TYPE.HOST_FILE, startTime, endTime, period, periodUnit, ElasticSearchSearchUtil.getMaxAggregationPoints());
+    }
+
+    /**
+     * Clear Cache
+     */
+    public synchronized void clear(){
+        cacheMap.clear();
+    }
+
+    /**
+     * Cached aggregation count
+     *
+     * @return
+     */
+    public synchronized int size(){
+        return cacheMap.size();
+    }
+
+    /**
+     * Aggregation ( cached )
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param aggregation_type - refer to AGGREAGTION_TYPE
+     * @param startTime - Aggregation Start Time
+     * @param endTime - Aggregation End Time
+     * @param requestPeriod - Requested Period
+     * @param requestPeriodUnit - Requested Period Unit ( d:Day, h:Hour, m:Minute, s:Seconds )
+     * @param maxPoints - Max buckets per series ( <= 0 : requested period )
+     * @return
+     */
+    ElasticSearchAggregationListInfo aggregation(String esHost, int esPort, AGGREGATION_TYPE aggregation_type, String startTime, String endTime, int requestPeriod, String requestPeriodUnit, int maxPoints){
+
+        String key = getKey(esHost, esPort, aggregation_type, requestPeriod, requestPeriodUnit);
+
+        // resolution of the whole window, kept by the tail request
+        ElasticSearchResolutionPlanner.Resolution resolution = ElasticSearchResolutionPlanner.plan(startTime, endTime, requestPeriod, requestPeriodUnit, maxPoints);
+        int period = resolution.getPeriod();
+        String periodUnit = resolution.getPeriodUnit();
+
+        try{
+            ElasticSearchAggregationListInfo cached = get(key);
+
+            if(cached != null && cached.getPeriod() == period && StringUtils.equals(cached.getPeriodUnit(), periodUnit)){
+
+                long startMillis = Long.parseLong(ElasticSearchSearchUtil.getMilliTime(startTime));
+                long endMillis = Long.parseLong(ElasticSearchSearchUtil.getMilliTime(endTime));
+                long cachedStartMillis = Long.parseLong(ElasticSearchSearchUtil.getMilliTime(cached.getRequestStartTime()));
+                long openBucketTime = getLastBucketTime(cached);
+
+                // window slid forward ( or same ) and still overlaps the cached buckets -> tail only
+                if(openBucketTime >= 0 && startMillis >= cachedStartMillis && startMillis <= openBucketTime && endMillis >= openBucketTime){
+
+                    // planned resolution as is
+                    ElasticSearchAggregationListInfo tail = aggregation_type == AGGREGATION_TYPE.ALL
+                            ? ElasticSearchSearchUtil.aggregationUncached(esHost, esPort, aggregation_type, ElasticSearchSearchUtil.getTimeString(openBucketTime), endTime, period, periodUnit, 0)
+                            : aggregationTermsTail(esHost, esPort, aggregation_type, cached.getSeriesMap().keySet(), startTime, ElasticSearchSearchUtil.getTimeString(openBucketTime), endTime, period, periodUnit);
+
+                    // top terms of the window changed
+                    if(tail == null){
+                        logger.debug("Aggregation cache terms changed, whole window : " + key);
+                        return aggregationWindow(key, esHost, esPort, aggregation_type, startTime, endTime, requestPeriod, requestPeriodUnit, maxPoints);
+                    }
+
+                    // tail request fail
+                    if(tail.getPeriodUnit() == null){
+                        return tail;
+                    }
+
+                    ElasticSearchAggregationListInfo merged = merge(cached, tail, aggregation_type, ElasticSearchSearchUtil.getBucketStartMillis(startTime, period, periodUnit), openBucketTime);
+
+                    merged.setRequestStartTime(startTime);
+                    merged.setRequestEndTime(endTime);
+                    merged.setPeriod(period);
+                    merged.setPeriodUnit(periodUnit);
+                    merged.setRequestPeriod(requestPeriod);
+                    merged.setRequestPeriodUnit(requestPeriodUnit);
+                    merged.setElapsedMsTime(tail.getElapsedMsTime());
+
+                    merged = ElasticSearchSearchUtil.checkAggregationData(merged, aggregation_type.name());
+
+                    put(key, merged);
+                    return merged;
+                }
+            }
+
+            return aggregationWindow(key, esHost, esPort, aggregation_type, startTime, endTime, requestPeriod, requestPeriodUnit, maxPoints);
+
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
+            return ElasticSearchSearchUtil.aggregationUncached(esHost, esPort, aggregation_type, startTime, endTime, requestPeriod, requestPeriodUnit, maxPoints);
+        }
+    }
+
+    /**
+     * Whole window aggregation, cached on success
+     */
+    private ElasticSearchAggregationListInfo aggregationWindow(String key, String esHost, int esPort, AGGREGATION_TYPE aggregation_type, String startTime, String endTime, int requestPeriod, String requestPeriodUnit, int maxPoints){
+
+        ElasticSearchAggregationListInfo elasticSearchAggregationListInfo = ElasticSearchSearchUtil.aggregationUncached(esHost, esPort, aggregation_type, startTime, endTime, requestPeriod, requestPeriodUnit, maxPoints);
+
+        if(elasticSearchAggregationListInfo.getPeriodUnit() != null){
+            put(key, elasticSearchAggregationListInfo);
+        }
+
+        return elasticSearchAggregationListInfo;
+    }
+
+    /**
+     * Tail of a cached terms aggregation ( Host / File / Host_File ), one request over the window
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param aggregation_type - HOST, FILE, HOST_FILE
+     * @param cachedKeySet - Series keys of the cached window
+     * @param startTime - Window Start Time
+     * @param tailStartTime - Open bucket time
+     * @param endTime - Window End Time
+     * @param period - Planned Period
+     * @param periodUnit - Planned Period Unit
+     * @return tail of the cached terms, null : top terms of the window changed, no periodUnit : request failed
+     */
+    private ElasticSearchAggregationListInfo aggregationTermsTail(String esHost, int esPort, AGGREGATION_TYPE aggregation_type, Set<String> cachedKeySet,
+                                                                  String startTime, String tailStartTime, String endTime, int period, String periodUnit){
+
+        long start = System.nanoTime();
+
+        try{
+            SearchRequest searchRequest = ElasticSearchSearchUtil.getSearchRequest(ElasticSearchSearchUtil.getMilliTime(startTime), ElasticSearchSearchUtil.getMilliTime(endTime));
+
+            SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder();
+            searchSourceBuilder.query(QueryBuilders.boolQuery().must(ElasticSearchSearchUtil.getAggregationRangeQueryBuilder(startTime, endTime)));
+            searchSourceBuilder.aggregation(getTopAggregationBuilder(aggregation_type));
+            searchSourceBuilder.aggregation(AggregationBuilders.filter(TAIL_AGGREGATION, ElasticSearchSearchUtil.getAggregationRangeQueryBuilder(tailStartTime, endTime))
+                    .subAggregation(getTailAggregationBuilder(aggregation_type, cachedKeySet, tailStartTime, endTime, period, periodUnit)));
+            searchSourceBuilder.size(0);
+            searchRequest.source(searchSourceBuilder);
+
+            ElasticSearchMetrics.Sample sample = ElasticSearchMetrics.start(ElasticSearchSearchUtil.getAggregationMetricsName(aggregation_type), aggregation_type.name());
+
+            long requestStart = System.nanoTime();
+            SearchResponse searchResponse = ElasticSearchClientRegistry.getClient(esHost, esPort).search(searchRequest);
+            sample.response(searchResponse, requestStart);
+
+            if(!cachedKeySet.equals(getTopKeySet(aggregation_type, searchResponse.getAggregations().get(TOP_AGGREGATION_PREFIX + aggregation_type.name())))){
+                sample.end();
+                return null;
+            }
+
+            long decodeStart = System.nanoTime();
+            ParsedFilter parsedFilter = searchResponse.getAggregations().get(TAIL_AGGREGATION);
+            ElasticSearchAggregationListInfo tail = ElasticSearchSearchUtil.getAggregationData(aggregation_type, tailStartTime, endTime, period, periodUnit, parsedFilter.getAggregations(), start);
+            sample.decode(decodeStart);
+            sample.end();
+
+            return tail;
+
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
+
+            return ElasticSearchSearchUtil.getAggregationErrorData(tailStartTime, endTime, start);
+        }
+    }
+
+    /**
+     * Top terms of the window ( same terms as the window aggregation, no histogram )
+     */
+    private static AggregationBuilder getTopAggregationBuilder(AGGREGATION_TYPE aggregation_type){
+
+        ElasticSearchQueryContext queryContext = ElasticSearchSearchUtil.getQueryContext();
+        String name = TOP_AGGREGATION_PREFIX + aggregation_type.name();
+
+        if(aggregation_type == AGGREGATION_TYPE.HOST){
+            return AggregationBuilders.terms(name).field(queryContext.getAggregationFieldHost());
+        }else if(aggregation_type == AGGREGATION_TYPE.FILE){
+            return AggregationBuilders.terms(name).field(queryContext.getAggregationFieldFile());
+        }
+
+        return AggregationBuilders.terms(name).field(queryContext.getAggregationFieldHost())
+                .subAggregation(AggregationBuilders.terms(AGGREGATION_TYPE.FILE.name()).field(queryContext.getAggregationFieldFile()));
+    }
+
+    /**
+     * Tail histogram of the cached terms ( aggregation name : aggregation_type name, parsed like the window aggregation )
+     *
+     * Host_File keys are host + "_" + file and host / file may contain "_" : every split is included,
+     * pairs outside the cached keys are dropped by merge.
+     */
+    private static AggregationBuilder getTailAggregationBuilder(AGGREGATION_TYPE aggregation_type, Set<String> cachedKeySet, String startTime, String endTime, int period, String periodUnit) throws Exception{
+
+        ElasticSearchQueryContext queryContext = ElasticSearchSearchUtil.getQueryContext();
+        AggregationBuilder dateHistogramAggregationBuilder = ElasticSearchSearchUtil.getAggregationBuilder(AGGREGATION_TYPE.ALL, startTime, endTime, period, periodUnit);
+
+        if(aggregation_type != AGGREGATION_TYPE.HOST_FILE){
+            String field = aggregation_type == AGGREGATION_TYPE.HOST ? queryContext.getAggregationFieldHost() : queryContext.getAggregationFieldFile();
+            return getIncludeTerms(aggregation_type.name(), field, cachedKeySet).subAggregation(dateHistogramAggregationBuilder);
+        }
+
+        TreeSet<String> hostSet = new TreeSet<>();
+        TreeSet<String> fileSet = new TreeSet<>();
+        for(String key : cachedKeySet){
+            for(int index = key.indexOf(HOST_FILE_SEPARATOR); index >= 0; index = key.indexOf(HOST_FILE_SEPARATOR, index + 1)){
+                hostSet.add(key.substring(0, index));
+                fileSet.add(key.substring(index + 1));
+            }
+        }
+
+        return getIncludeTerms(aggregation_type.name(), queryContext.getAggregationFieldHost(), hostSet)
+                .subAggregation(getIncludeTerms(AGGREGATION_TYPE.FILE.name(), queryContext.getAggregationFieldFile(), fileSet).subAggregation(dateHistogramAggregationBuilder));
+    }
+
+    private static TermsAggregationBuilder getIncludeTerms(String name, String field, Set<String> includeSet){
+        return AggregationBuilders.terms(name).field(field)
+                .includeExclude(new IncludeExclude(includeSet.toArray(new String[includeSet.size()]), null))
+                .size(Math.max(1, includeSet.size()));
+    }
+
+    /**
+     * Series keys of the top terms ( Host_File : host + "_" + file )
+     */
+    private static Set<String> getTopKeySet(AGGREGATION_TYPE aggregation_type, ParsedStringTerms parsedStringTerms){
+
+        LinkedHashSet<String> keySet = new LinkedHashSet<>();
+
+        for(Terms.Bucket bucket : parsedStringTerms.getBuckets()){
+            if(aggregation_type != AGGREGATION_TYPE.HOST_FILE){
+                keySet.add(bucket.getKeyAsString());
+                continue;
+            }
+
+            ParsedStringTerms fileTerms = bucket.getAggregations().get(AGGREGATION_TYPE.FILE.name());
+            for(Terms.Bucket fileBucket : fileTerms.getBuckets()){
+                keySet.add(bucket.getKeyAsString() + HOST_FILE_SEPARATOR + fileBucket.getKeyAsString());
+            }
+        }
+
+        return keySet;
+    }
+
+    /**
+     * Merge closed buckets ( bucketStartMillis <= time < openBucketTime ) of cached with tail
+     *
+     * Terms aggregations keep the cached keys : a key missing in the tail gets 0 buckets ( checkAggregationData ),
+     * tail keys outside the cached keys are dropped.
+     *
+     * @param cached - Cached aggregation
+     * @param tail - Aggregation from openBucketTime
+     * @param aggregation_type - refer to AGGREAGTION_TYPE
+     * @param bucketStartMillis - First bucket of new window
+     * @param openBucketTime - Last cached bucket ( re-queried )
+     * @return
+     */
+    private ElasticSearchAggregationListInfo merge(ElasticSearchAggregationListInfo cached, ElasticSearchAggregationListInfo tail, AGGREGATION_TYPE aggregation_type, long bucketStartMillis, long openBucketTime){
+
+        ElasticSearchAggregationListInfo merged = new ElasticSearchAggregationListInfo();
+
+        LinkedHashSet<String> keySet = new LinkedHashSet<>(cached.getSeriesMap().keySet());
+        if(aggregation_type == AGGREGATION_TYPE.ALL){
+            keySet.addAll(tail.getSeriesMap().keySet());
+        }
+
+        for(String key : keySet){
+
+            ElasticSearchAggregationSeries cachedSeries = cached.getSeries(key);
+            ElasticSearchAggregationSeries tailSeries = tail.getSeries(key);
+
+            ElasticSearchAggregationSeries series = new ElasticSearchAggregationSeries((cachedSeries == null ? 0 : cachedSeries.size()) + (tailSeries == null ? 0 : tailSeries.size()));
+            series.setTimeZone(tailSeries != null ? tailSeries.getTimeZone() : cachedSeries.getTimeZone());
+
+            if(cachedSeries != null){
+                for(int i = 0; i < cachedSeries.size(); i++){
+                    long time = cachedSeries.getTime(i);
+                    if(time >= bucketStartMillis && time < openBucketTime){
+                        series.add(time, cachedSeries.getCount(i));
+                    }
+                }
+            }
+
+            if(tailSeries != null){
+                for(int i = 0; i < tailSeries.size(); i++){
+                    series.add(tailSeries.getTime(i), tailSeries.getCount(i));
+                }
+            }
+
+            if(series.isEmpty()){
+                continue;
+            }
+
+            merged.putSeries(key, series);
+        }
+
+        return merged;
+    }
+
+    /**
+     * Last bucket time of every series ( open bucket )
+     *
+     * @param elasticSearchAggregationListInfo
+     * @return -1 : empty
+     */
+    private long getLastBucketTime(ElasticSearchAggregationListInfo elasticSearchAggregationListInfo){
+
+        long lastBucketTime = -1;
+
+        for(ElasticSearchAggregationSeries series : elasticSearchAggregationListInfo.getSeriesMap().values()){
+            if(!series.isEmpty()){
+                lastBucketTime = Math.max(lastBucketTime, series.getLastTime());
+            }
+        }
+
+        return lastBucketTime;
+    }
+
+    private synchronized ElasticSearchAggregationListInfo get(String key){
+        return cacheMap.get(key);
+    }
+
+    private synchronized void put(String key, ElasticSearchAggregationListInfo elasticSearchAggregationListInfo){
+        cacheMap.put(key, elasticSearchAggregationListInfo);
+    }
+
+    /**
+     * Cache key ( the query context holds every other input of the aggregation request : indices, fields, time zone )
+     */
+    private String getKey(String esHost, int esPort, AGGREGATION_TYPE aggregation_type, int period, String periodUnit){
+        return esHost + ":" + esPort + "|" + aggregation_type.name() + "|" + period + periodUnit + "|" + ElasticSearchSearchUtil.getQueryContext();
+    }
+}
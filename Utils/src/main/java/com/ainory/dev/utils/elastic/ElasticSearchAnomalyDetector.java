@@ -0,0 +1,300 @@
+package com.ainory.dev.utils.elastic;
+
+import com.ainory.dev.utils.elastic.entity.ElasticSearchAggregationListInfo;
+import com.ainory.dev.utils.elastic.entity.ElasticSearchAggregationSeries;
+import com.ainory.dev.utils.elastic.entity.ElasticSearchAnomalyInfo;
+import com.ainory.dev.utils.elastic.entity.ElasticSearchAnomalyListInfo;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * ElasticSearch Aggregation Anomaly Detector
+ *
+ * Keeps an EWMA mean / variance per series key ( aggregationHost, aggregationFile ... ) and scores every closed bucket
+ * against the baseline before it : score = ( count - mean ) / max( stddev, sqrt(mean), 1 ).
+ * A bucket is an anomaly when |score| >= threshold and |count - mean| >= minDelta, after warmup buckets of the key.
+ * Anomalous counts are clipped to mean +- threshold * stddev before the update, so one spike does not inflate the baseline.
+ *
+ * Incremental : the last processed bucket time is kept per key, every detect call processes only the buckets
+ * closed since the previous call ( bucket end <= requestEndTime ). The state is reset when the period changes.
+ * State is held in primitive arrays indexed by key, detect is O(new buckets) per key.
+ * A key without a new bucket for evictBuckets buckets ( host / file gone ) is evicted, it warms up again when it comes back.
+ *
+ *  ex) ElasticSearchAnomalyDetector detector = new ElasticSearchAnomalyDetector();
+ *      // every minute
+ *      detector.detect(ElasticSearchSearchUtil.aggregationHost("127.0.0.1", 9400, startTime, endTime, 1, "m"), 10);
+ */
+public class ElasticSearchAnomalyDetector {
+
+    private static final Logger logger = LoggerFactory.getLogger(ElasticSearchAnomalyDetector.class);
+
+    public static final double DEFAULT_ALPHA = 0.1;
+    public static final double DEFAULT_THRESHOLD = 4.0;
+    public static final int DEFAULT_WARMUP = 10;
+    public static final long DEFAULT_MIN_DELTA = 10;
+    public static final int DEFAULT_EVICT_BUCKETS = 60;
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private final double alpha;
+    private final double threshold;
+    private final int warmup;
+    private final long minDelta;
+    private final int evictBuckets;
+
+    // period of the state ( -1 : none )
+    private long periodMillis = -1;
+
+    // newest processed bucket time of every key
+    private long lastTime = Long.MIN_VALUE;
+
+    //                      key   , state index
+    private final HashMap<String, Integer> keyIndexMap = new HashMap<>();
+
+    private String[] keys = new String[DEFAULT_CAPACITY];
+    private double[] means = new double[DEFAULT_CAPACITY];
+    private double[] variances = new double[DEFAULT_CAPACITY];
+    private long[] lastTimes = new long[DEFAULT_CAPACITY];
+    private int[] sampleCounts = new int[DEFAULT_CAPACITY];
+
+    public ElasticSearchAnomalyDetector() {
+        this(DEFAULT_ALPHA, DEFAULT_THRESHOLD, DEFAULT_WARMUP, DEFAULT_MIN_DELTA);
+    }
+
+    /**
+     * @param alpha - EWMA weight of a new bucket ( 0 ~ 1, bigger : faster baseline )
+     * @param threshold - Min |score| of an anomaly
+     * @param warmup - Buckets of a key before it is scored
+     * @param minDelta - Min |count - mean| of an anomaly ( ignores noise of small series )
+     */
+    public ElasticSearchAnomalyDetector(double alpha, double threshold, int warmup, long minDelta) {
+        this(alpha, threshold, warmup, minDelta, DEFAULT_EVICT_BUCKETS);
+    }
+
+    /**
+     * @param alpha - EWMA weight of a new bucket ( 0 ~ 1, bigger : faster baseline )
+     * @param threshold - Min |score| of an anomaly
+     * @param warmup - Buckets of a key before it is scored
+     * @param minDelta - Min |count - mean| of an anomaly ( ignores noise of small series )
+     * @param evictBuckets - Buckets without a new bucket of a key before its state is evicted
+     */
+    public ElasticSearchAnomalyDetector(double alpha, double threshold, int warmup, long minDelta, int evictBuckets) {
+        this.alpha = Math.min(1.0, Math.max(0.0, alpha));
+        this.threshold = threshold;
+        this.warmup = Math.max(1, warmup);
+        this.minDelta = minDelta;
+        this.evictBuckets = Math.max(1, evictBuckets);
+    }
+
+    /**
+     * Detect anomalies of the buckets closed since the previous call
+     *
+     * @param elasticSearchAggregationListInfo - Aggregation ( aggregationAll / Host / File / HostFile )
+     * @param limit - Max anomalies returned ( |score| desc, <= 0 : every anomaly )
+     * @return
+     */
+    public synchronized ElasticSearchAnomalyListInfo detect(ElasticSearchAggregationListInfo elasticSearchAggregationListInfo, int limit){
+
+        long start = System.nanoTime();
+
+        ElasticSearchAnomalyListInfo elasticSearchAnomalyListInfo = new ElasticSearchAnomalyListInfo();
+
+        // failed aggregation
+        if(elasticSearchAggregationListInfo == null || elasticSearchAggregationListInfo.getPeriodUnit() == null){
+            return elasticSearchAnomalyListInfo;
+        }
+
+        try{
+            long period = ElasticSearchSearchUtil.dateUnitConvertMillis(elasticSearchAggregationListInfo.getPeriod(), elasticSearchAggregationListInfo.getPeriodUnit());
+            if(period != periodMillis){
+                clear();
+                periodMillis = period;
+            }
+
+            long closedTime = elasticSearchAggregationListInfo.getRequestEndTime() == null ? Long.MAX_VALUE
+                    : Long.parseLong(ElasticSearchSearchUtil.getMilliTime(elasticSearchAggregationListInfo.getRequestEndTime()));
+
+            for(Map.Entry<String, ElasticSearchAggregationSeries> entry : elasticSearchAggregationListInfo.getSeriesMap().entrySet()){
+                elasticSearchAnomalyListInfo.setBucketCount(elasticSearchAnomalyListInfo.getBucketCount()
+                        + detect(entry.getKey(), entry.getValue(), closedTime, elasticSearchAnomalyListInfo));
+            }
+
+            elasticSearchAnomalyListInfo.setKeyCount(elasticSearchAggregationListInfo.getSeriesMap().size());
+            elasticSearchAnomalyListInfo.setEvictedKeyCount(evict());
+            elasticSearchAnomalyListInfo.getAnomalyList().sort((anomaly1, anomaly2) -> Double.compare(Math.abs(anomaly2.getScore()), Math.abs(anomaly1.getScore())));
+
+            if(limit > 0 && elasticSearchAnomalyListInfo.getAnomalyList().size() > limit){
+                elasticSearchAnomalyListInfo.getAnomalyList().subList(limit, elasticSearchAnomalyListInfo.getAnomalyList().size()).clear();
+            }
+
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
+            return new ElasticSearchAnomalyListInfo();
+        }
+
+        elasticSearchAnomalyListInfo.setElapsedMsTime((System.nanoTime()-start)/ 1000000.0);
+
+        return elasticSearchAnomalyListInfo;
+    }
+
+    /**
+     * Score & update the new closed buckets of one series
+     *
+     * @return processed bucket count
+     */
+    private int detect(String key, ElasticSearchAggregationSeries series, long closedTime, ElasticSearchAnomalyListInfo elasticSearchAnomalyListInfo){
+
+        int index = getIndex(key);
+
+        long[] times = series.getTimes();
+        long[] counts = series.getCounts();
+
+        // first bucket after the last processed one
+        int from = Arrays.binarySearch(times, lastTimes[index]);
+        from = from < 0 ? -from - 1 : from + 1;
+
+        int processed = 0;
+
+        for(int i = from; i < times.length && times[i] + periodMillis <= closedTime; i++){
+
+            long count = counts[i];
+            double value = count;
+
+            if(sampleCounts[index] == 0){
+                means[index] = value;
+                variances[index] = 0;
+            }else{
+                double mean = means[index];
+                double stddev = Math.sqrt(variances[index]);
+                double deviation = Math.max(stddev, Math.max(Math.sqrt(Math.abs(mean)), 1.0));
+                double score = (value - mean) / deviation;
+
+                if(sampleCounts[index] >= warmup && Math.abs(score) >= threshold && Math.abs(value - mean) >= minDelta){
+
+                    ElasticSearchAnomalyInfo elasticSearchAnomalyInfo = new ElasticSearchAnomalyInfo();
+                    elasticSearchAnomalyInfo.setKey(key);
+                    elasticSearchAnomalyInfo.setTime(times[i]);
+                    elasticSearchAnomalyInfo.setTimeStr(series.getTimeStr(i));
+                    elasticSearchAnomalyInfo.setCount(count);
+                    elasticSearchAnomalyInfo.setExpected(mean);
+                    elasticSearchAnomalyInfo.setDeviation(deviation);
+                    elasticSearchAnomalyInfo.setScore(score);
+
+                    elasticSearchAnomalyListInfo.addAnomalyList(elasticSearchAnomalyInfo);
+
+                    // clip to the threshold band
+                    value = mean + Math.signum(score) * threshold * deviation;
+                }
+
+                // EWMA mean / variance
+                double diff = value - mean;
+                double increment = alpha * diff;
+                means[index] = mean + increment;
+                variances[index] = (1 - alpha) * (variances[index] + diff * increment);
+            }
+
+            sampleCounts[index]++;
+            lastTimes[index] = times[i];
+            processed++;
+        }
+
+        if(processed > 0 && lastTimes[index] > lastTime){
+            lastTime = lastTimes[index];
+        }
+
+        return processed;
+    }
+
+    /**
+     * Evict the keys without a new bucket for evictBuckets buckets before lastTime
+     * ( the last state is moved into the evicted index )
+     *
+     * @return evicted key count
+     */
+    private int evict(){
+
+        if(lastTime == Long.MIN_VALUE){
+            return 0;
+        }
+
+        long evictTime = lastTime - evictBuckets * periodMillis;
+
+        int evicted = 0;
+        int index = 0;
+        while(index < keyIndexMap.size()){
+
+            if(lastTimes[index] > evictTime){
+                index++;
+                continue;
+            }
+
+            keyIndexMap.remove(keys[index]);
+
+            int last = keyIndexMap.size();
+            if(index != last){
+                keys[index] = keys[last];
+                means[index] = means[last];
+                variances[index] = variances[last];
+                lastTimes[index] = lastTimes[last];
+                sampleCounts[index] = sampleCounts[last];
+
+                keyIndexMap.put(keys[index], index);
+            }
+            keys[last] = null;
+
+            evicted++;
+        }
+
+        return evicted;
+    }
+
+    /**
+     * State index of key ( created on demand )
+     */
+    private int getIndex(String key){
+
+        Integer index = keyIndexMap.get(key);
+        if(index != null){
+            return index;
+        }
+
+        index = keyIndexMap.size();
+        if(index == means.length){
+            int capacity = means.length << 1;
+            keys = Arrays.copyOf(keys, capacity);
+            means = Arrays.copyOf(means, capacity);
+            variances = Arrays.copyOf(variances, capacity);
+            lastTimes = Arrays.copyOf(lastTimes, capacity);
+            sampleCounts = Arrays.copyOf(sampleCounts, capacity);
+        }
+
+        keys[index] = key;
+        means[index] = 0;
+        variances[index] = 0;
+        lastTimes[index] = Long.MIN_VALUE;
+        sampleCounts[index] = 0;
+
+        keyIndexMap.put(key, index);
+
+        return index;
+    }
+
+    public synchronized int getKeyCount(){
+        return keyIndexMap.size();
+    }
+
+    /**
+     * Clear every key state
+     */
+    public synchronized void clear(){
+        keyIndexMap.clear();
+        Arrays.fill(keys, null);
+        periodMillis = -1;
+        lastTime = Long.MIN_VALUE;
+    }
+}
@@ -0,0 +1,677 @@
+package com.ainory.dev.utils.elastic;
+
+import com.ainory.dev.utils.elastic.ElasticSearchSearchUtil.AGGREGATION_TYPE;
+import com.ainory.dev.utils.elastic.entity.ElasticSearchAggregationListInfo;
+import com.ainory.dev.utils.elastic.entity.ElasticSearchDataListInfo;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.ClearScrollRequest;
+import org.elasticsearch.action.search.ClearScrollResponse;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchScrollRequest;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.Scroll;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ElasticSearch Async Search Util
+ *
+ * Non-blocking facade of ElasticSearchSearchUtil. Requests run on the REST client I/O reactor,
+ * the calling thread returns immediately. Failures complete with an empty result ( same as the blocking API ).
+ * Responses are decoded on the decode executor ( setDecodeExecutor ), the few I/O reactor threads shared by every pooled
+ * request only move bytes. Searches follow the blocking sequence : segment cache, raw search. Aggregations follow
+ * the blocking sequence : aggregation cache, resolution plan, rollup store, raw aggregation. Raw requests record an ElasticSearchMetrics
+ * sample under the same method name as the blocking API.
+ * The aggregation cache ( ElasticSearchAggregationCache.start ) and the rollup store answer with blocking requests ( tail, raw edges ),
+ * they run on the blocking executor ( setBlockingExecutor ) so they never hold the decode threads that complete their requests.
+ * Futures complete on the decode executor or the blocking executor.
+ *
+ * ex) CompletableFuture<ElasticSearchAggregationListInfo> all = ElasticSearchAsyncSearchUtil.aggregationAll(...);
+ *     CompletableFuture<ElasticSearchAggregationListInfo> host = ElasticSearchAsyncSearchUtil.aggregationHost(...);
+ *     CompletableFuture.allOf(all, host).join();
+ */
+public class ElasticSearchAsyncSearchUtil {
+
+    private static final Logger logger = LoggerFactory.getLogger(ElasticSearchAsyncSearchUtil.class);
+
+    // from + size over max_result_window ( index.max_result_window default 10000 ) -> scroll
+    private static final int MAX_RESULT_WINDOW = 10000;
+
+    private static final Scroll SCROLL = new Scroll(TimeValue.timeValueMinutes(1L));
+
+    // concurrent blocking aggregations ( cache tails, rollup edges ) of the default blocking executor
+    public static final int DEFAULT_BLOCKING_THREAD_COUNT = 16;
+
+    private static final ThreadPoolExecutor DEFAULT_DECODE_EXECUTOR;
+    private static final ThreadPoolExecutor DEFAULT_BLOCKING_EXECUTOR;
+
+    static {
+        int threadCount = Runtime.getRuntime().availableProcessors();
+        DEFAULT_DECODE_EXECUTOR = new ThreadPoolExecutor(threadCount, threadCount, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "es-async-decode");
+            thread.setDaemon(true);
+            return thread;
+        });
+        DEFAULT_DECODE_EXECUTOR.allowCoreThreadTimeOut(true);
+
+        DEFAULT_BLOCKING_EXECUTOR = new ThreadPoolExecutor(DEFAULT_BLOCKING_THREAD_COUNT, DEFAULT_BLOCKING_THREAD_COUNT, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "es-async-blocking");
+            thread.setDaemon(true);
+            return thread;
+        });
+        DEFAULT_BLOCKING_EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private static volatile Executor decodeExecutor = DEFAULT_DECODE_EXECUTOR;
+    private static volatile Executor blockingExecutor = DEFAULT_BLOCKING_EXECUTOR;
+
+    /**
+     * View log using time filter only
+     *
+     * ex) time -> 2017-09-24 00:05:00.000
+     *     plusMinusMinute -> 5
+     *
+     *     Search Range : 2017-09-24 00:00:00.000 ~ 2017-09-24 00:10:00.000
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param time - Standard Time (Format : yyyy-MM-dd HH:mm:ss.SSS)
+     * @param plusMinusMinute - Standard Time Plus Minus Minute
+     * @param sort - Result Sort Default ASC
+     * @param pagingSize - Page Size
+     * @param pageNum - Select page num
+     * @return
+     */
+    public static CompletableFuture<ElasticSearchDataListInfo> searchAll(String esHost, int esPort, String time, int plusMinusMinute, String sort, int pagingSize, int pageNum){
+        try{
+            return search(esHost, esPort, ElasticSearchQuerySpec.around(time, plusMinusMinute).sort(sort).name("searchAll"), pagingSize, pageNum);
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
+            return CompletableFuture.completedFuture(new ElasticSearchDataListInfo());
+        }
+    }
+
+    /**
+     * View log using time filter only (start/end time use)
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param startTime - Search Start Time (Format : yyyy-MM-dd HH:mm:ss.SSS)
+     * @param endTime - Search End Time (Format : yyyy-MM-dd HH:mm:ss.SSS)
+     * @param sort - Result Sort Default ASC
+     * @param pagingSize - Page Size
+     * @param pageNum - Select page num
+     * @return
+     */
+    public static CompletableFuture<ElasticSearchDataListInfo> searchAll(String esHost, int esPort, String startTime, String endTime, String sort, int pagingSize, int pageNum){
+        try{
+            return search(esHost, esPort, ElasticSearchQuerySpec.range(startTime, endTime).sort(sort).name("searchAll"), pagingSize, pageNum);
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
+            return CompletableFuture.completedFuture(new ElasticSearchDataListInfo());
+        }
+    }
+
+    /**
+     * Host Filter Search ( Host & Message )
+     *
+     * ex) time -> 2017-09-24 00:05:00.000
+     *     plusMinusMinute -> 5
+     *
+     *     Search Range : 2017-09-24 00:00:00.000 ~ 2017-09-24 00:10:00.000
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param time - Standard Time (Format : yyyy-MM-dd HH:mm:ss.SSS)
+     * @param plusMinusMinute - Standard Time Plus Minus Minute
+     * @param hostFilterList - Host List
+     * @param messageFilter - Message Filter ( null : none )
+     * @param sort - Result Sort Default ASC
+     * @param pagingSize - Page Size
+     * @param pageNum - Select page num
+     * @return
+     */
+    public static CompletableFuture<ElasticSearchDataListInfo> searchHostFilter(String esHost, int esPort, String time, int plusMinusMinute, ArrayList<String> hostFilterList, String messageFilter, String sort, int pagingSize, int pageNum){
+        try{
+            return search(esHost, esPort, ElasticSearchQuerySpec.around(time, plusMinusMinute).hosts(hostFilterList).message(messageFilter).sort(sort).name("searchHostFilter"), pagingSize, pageNum);
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
+            return CompletableFuture.completedFuture(new ElasticSearchDataListInfo());
+        }
+    }
+
+    /**
+     * Host Filter Search ( Host & Message )
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param startTime - Search Start Time (Format : yyyy-MM-dd HH:mm:ss.SSS)
+     * @param endTime - Search End Time (Format : yyyy-MM-dd HH:mm:ss.SSS)
+     * @param hostFilterList - Host List
+     * @param messageFilter - Message Filter ( null : none )
+     * @param sort - Result Sort Default ASC
+     * @param pagingSize - Page Size
+     * @param pageNum - Select page num
+     * @return
+     */
+    public static CompletableFuture<ElasticSearchDataListInfo> searchHostFilter(String esHost, int esPort, String startTime, String endTime, ArrayList<String> hostFilterList, String messageFilter, String sort, int pagingSize, int pageNum){
+        try{
+            return search(esHost, esPort, ElasticSearchQuerySpec.range(startTime, endTime).hosts(hostFilterList).message(messageFilter).sort(sort).name("searchHostFilter"), pagingSize, pageNum);
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
+            return CompletableFuture.completedFuture(new ElasticSearchDataListInfo());
+        }
+    }
+
+    /**
+     * File Filter Search ( File & Message )
+     *
+     * ex) time -> 2017-09-24 00:05:00.000
+     *     plusMinusMinute -> 5
+     *
+     *     Search Range : 2017-09-24 00:00:00.000 ~ 2017-09-24 00:10:00.000
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param time - Standard Time (Format : yyyy-MM-dd HH:mm:ss.SSS)
+     * @param plusMinusMinute - Standard Time Plus Minus Minute
+     * @param fileFilterList - File List
+     * @param messageFilter - Message Filter ( null : none )
+     * @param sort - Result Sort Default ASC
+     * @param pagingSize - Page Size
+     * @param pageNum - Select page num
+     * @return
+     */
+    public static CompletableFuture<ElasticSearchDataListInfo> searchFileFilter(String esHost, int esPort, String time, int plusMinusMinute, ArrayList<String> fileFilterList, String messageFilter, String sort, int pagingSize, int pageNum){
+        try{
+            return search(esHost, esPort, ElasticSearchQuerySpec.around(time, plusMinusMinute).files(fileFilterList).message(messageFilter).sort(sort).name("searchFileFilter"), pagingSize, pageNum);
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
+            return CompletableFuture.completedFuture(new ElasticSearchDataListInfo());
+        }
+    }
+
+    /**
+     * File Filter Search ( File & Message )
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param startTime - Search Start Time (Format : yyyy-MM-dd HH:mm:ss.SSS)
+     * @param endTime - Search End Time (Format : yyyy-MM-dd HH:mm:ss.SSS)
+     * @param fileFilterList - File List
+     * @param messageFilter - Message Filter ( null : none )
+     * @param sort - Result Sort Default ASC
+     * @param pagingSize - Page Size
+     * @param pageNum - Select page num
+     * @return
+     */
+    public static CompletableFuture<ElasticSearchDataListInfo> searchFileFilter(String esHost, int esPort, String startTime, String endTime, ArrayList<String> fileFilterList, String messageFilter, String sort, int pagingSize, int pageNum){
+        try{
+            return search(esHost, esPort, ElasticSearchQuerySpec.range(startTime, endTime).files(fileFilterList).message(messageFilter).sort(sort).name("searchFileFilter"), pagingSize, pageNum);
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
+            return CompletableFuture.completedFuture(new ElasticSearchDataListInfo());
+        }
+    }
+
+    /**
+     * Filter Search ( Host & File & Message)
+     *
+     * ex) time -> 2017-09-24 00:05:00.000
+     *     plusMinusMinute -> 5
+     *
+     *     Search Range : 2017-09-24 00:00:00.000 ~ 2017-09-24 00:10:00.000
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param time - Standard Time (Format : yyyy-MM-dd HH:mm:ss.SSS)
+     * @param plusMinusMinute - Standard Time Plus Minus Minute
+     * @param hostFilterList - Host List ( null : none )
+     * @param fileFilterList - File List ( null : none )
+     * @param messageFilter - Message Filter ( null : none )
+     * @param sort - Result Sort Default ASC
+     * @param pagingSize - Page Size
+     * @param pageNum - Select page num
+     * @return
+     */
+    public static CompletableFuture<ElasticSearchDataListInfo> searchFilter(String esHost, int esPort, String time, int plusMinusMinute, ArrayList<String> hostFilterList, ArrayList<String> fileFilterList, String messageFilter, String sort, int pagingSize, int pageNum){
+        try{
+            return search(esHost, esPort, ElasticSearchQuerySpec.around(time, plusMinusMinute).hosts(hostFilterList).files(fileFilterList).message(messageFilter).sort(sort).name("searchFilter"), pagingSize, pageNum);
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
+            return CompletableFuture.completedFuture(new ElasticSearchDataListInfo());
+        }
+    }
+
+    /**
+     * Filter Search ( Host & File & Message)
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param startTime - Search Start Time (Format : yyyy-MM-dd HH:mm:ss.SSS)
+     * @param endTime - Search End Time (Format : yyyy-MM-dd HH:mm:ss.SSS)
+     * @param hostFilterList - Host List ( null : none )
+     * @param fileFilterList - File List ( null : none )
+     * @param messageFilter - Message Filter ( null : none )
+     * @param sort - Result Sort Default ASC
+     * @param pagingSize - Page Size
+     * @param pageNum - Select page num
+     * @return
+     */
+    public static CompletableFuture<ElasticSearchDataListInfo> searchFilter(String esHost, int esPort, String startTime, String endTime, ArrayList<String> hostFilterList, ArrayList<String> fileFilterList, String messageFilter, String sort, int pagingSize, int pageNum){
+        try{
+            return search(esHost, esPort, ElasticSearchQuerySpec.range(startTime, endTime).hosts(hostFilterList).files(fileFilterList).message(messageFilter).sort(sort).name("searchFilter"), pagingSize, pageNum);
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
+            return CompletableFuture.completedFuture(new ElasticSearchDataListInfo());
+        }
+    }
+
+    /**
+     * LogEventManager Use... ( paged )
+     *
+     * ex) time -> 2017-09-24 00:05:00.000
+     *     minusMinute -> 5
+     *
+     *     Search Range : 2017-09-24 00:00:00.000 ~ 2017-09-24 00:05:00.000
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param time - Standard Time (Format : yyyy-MM-dd HH:mm:ss.SSS)
+     * @param minusMinute - Standard Time Minus Minute
+     * @param hostFilterList - Host List ( null : none )
+     * @param fileFilterList - File List ( null : none )
+     * @param messageFilter - Message Filter ( null : none )
+     * @param sort - Result Sort Default ASC
+     * @param pagingSize - Page Size
+     * @param pageNum - Select page num
+     * @return
+     */
+    public static CompletableFuture<ElasticSearchDataListInfo> searchLog(String esHost, int esPort, String time, int minusMinute, ArrayList<String> hostFilterList, ArrayList<String> fileFilterList, String messageFilter, String sort, int pagingSize, int pageNum){
+        try{
+            return search(esHost, esPort, ElasticSearchQuerySpec.before(time, minusMinute).hosts(hostFilterList).files(fileFilterList).message(messageFilter).sort(sort).name("searchLog"), pagingSize, pageNum);
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
+            return CompletableFuture.completedFuture(new ElasticSearchDataListInfo());
+        }
+    }
+
+    /**
+     * Aggregation All
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param startTime - Aggregation Start Time
+     * @param endTime - Aggregation End Time
+     * @param period - Period
+     * @param periodUnit - d:Day, h:Hour, m:Minute, s:Seconds (refer to PERIOD_UNIT_DAY, PERIOD_UNIT_HOUR, PERIOD_UNIT_MINUTE, PERIOD_UNIT_SECOND)
+     * @return
+     */
+    public static CompletableFuture<ElasticSearchAggregationListInfo> aggregationAll(String esHost, int esPort, String startTime, String endTime, int period, String periodUnit){
+        return aggregation(esHost, esPort, AGGREGATION_TYPE.ALL, startTime, endTime, period, periodUnit);
+    }
+
+    /**
+     * Aggregation Host
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param startTime - Aggregation Start Time
+     * @param endTime - Aggregation End Time
+     * @param period - Period
+     * @param periodUnit - d:Day, h:Hour, m:Minute, s:Seconds (refer to PERIOD_UNIT_DAY, PERIOD_UNIT_HOUR, PERIOD_UNIT_MINUTE, PERIOD_UNIT_SECOND)
+     * @return
+     */
+    public static CompletableFuture<ElasticSearchAggregationListInfo> aggregationHost(String esHost, int esPort, String startTime, String endTime, int period, String periodUnit){
+        return aggregation(esHost, esPort, AGGREGATION_TYPE.HOST, startTime, endTime, period, periodUnit);
+    }
+
+    /**
+     * Aggregation File
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param startTime - Aggregation Start Time
+     * @param endTime - Aggregation End Time
+     * @param period - Period
+     * @param periodUnit - d:Day, h:Hour, m:Minute, s:Seconds (refer to PERIOD_UNIT_DAY, PERIOD_UNIT_HOUR, PERIOD_UNIT_MINUTE, PERIOD_UNIT_SECOND)
+     * @return
+     */
+    public static CompletableFuture<ElasticSearchAggregationListInfo> aggregationFile(String esHost, int esPort, String startTime, String endTime, int period, String periodUnit){
+        return aggregation(esHost, esPort, AGGREGATION_TYPE.FILE, startTime, endTime, period, periodUnit);
+    }
+
+    /**
+     * Aggregation Host_File
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param startTime - Aggregation Start Time
+     * @param endTime - Aggregation End Time
+     * @param period - Period
+     * @param periodUnit - d:Day, h:Hour, m:Minute, s:Seconds (refer to PERIOD_UNIT_DAY, PERIOD_UNIT_HOUR, PERIOD_UNIT_MINUTE, PERIOD_UNIT_SECOND)
+     * @return
+     */
+    public static CompletableFuture<ElasticSearchAggregationListInfo> aggregationHostFile(String esHost, int esPort, String startTime, String endTime, int period, String periodUnit){
+        return aggregation(esHost, esPort, AGGREGATION_TYPE.HOST_FILE, startTime, endTime, period, periodUnit);
+    }
+
+    /**
+     * Search ( async, query spec, same sequence as ElasticSearchSearchUtil search )
+     * Served from the segment cache when one of host:port is started and the closed window is filled,
+     * otherwise searched raw while the window fills in the background.
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param querySpec - Query Spec
+     * @param pagingSize - Page Size
+     * @param pageNum - Select page num
+     * @return
+     */
+    public static CompletableFuture<ElasticSearchDataListInfo> search(String esHost, int esPort, ElasticSearchQuerySpec querySpec, int pagingSize, int pageNum){
+
+        ElasticSearchSegmentCache segmentCache = ElasticSearchSegmentCache.get(esHost, esPort);
+        if(segmentCache == null){
+            return searchRaw(esHost, esPort, querySpec, pagingSize, pageNum);
+        }
+
+        // segment read on the decode executor ( mapped file ), miss -> raw
+        return CompletableFuture.supplyAsync(() -> segmentCache.search(querySpec, pagingSize, pageNum), decodeExecutor)
+                .thenCompose(elasticSearchDataListInfo -> elasticSearchDataListInfo != null
+                        ? CompletableFuture.completedFuture(elasticSearchDataListInfo)
+                        : searchRaw(esHost, esPort, querySpec, pagingSize, pageNum));
+    }
+
+    /**
+     * Search ( async, query spec, raw documents )
+     *
+     * Page within max_result_window : one from/size request
+     * Deeper page                   : scroll walk chained on the I/O reactor ( no blocked thread )
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param querySpec - Query Spec
+     * @param pagingSize - Page Size
+     * @param pageNum - Select page num
+     * @return
+     */
+    private static CompletableFuture<ElasticSearchDataListInfo> searchRaw(String esHost, int esPort, ElasticSearchQuerySpec querySpec, int pagingSize, int pageNum){
+
+        long start = System.nanoTime();
+
+        try{
+            ElasticSearchMetrics.Sample sample = ElasticSearchMetrics.start(ElasticSearchSearchUtil.getMetricsName(querySpec, "search"), null);
+
+            RestHighLevelClient restHighLevelClient = ElasticSearchClientRegistry.getClient(esHost, esPort);
+
+            SearchRequest searchRequest = ElasticSearchSearchUtil.getPagingSearchRequest(querySpec, pagingSize);
+
+            int size = ElasticSearchSearchUtil.getPagingSize(pagingSize);
+            int page = Math.max(1, pageNum);
+
+            CompletableFuture<ElasticSearchDataListInfo> future;
+
+            long requestStart = System.nanoTime();
+
+            if((long) page * size <= MAX_RESULT_WINDOW){
+                searchRequest.source().from((page - 1) * size);
+
+                future = searchAsync(restHighLevelClient, searchRequest)
+                        .thenApplyAsync(searchResponse -> {
+                            sample.response(searchResponse, requestStart);
+                            return decode(sample, searchResponse);
+                        }, decodeExecutor);
+            }else {
+                searchRequest.scroll(SCROLL);
+
+                future = searchAsync(restHighLevelClient, searchRequest)
+                        .thenCompose(searchResponse -> {
+                            sample.response(searchResponse, requestStart);
+                            return scrollToPage(restHighLevelClient, sample, searchResponse, 1, page);
+                        });
+            }
+
+            return future.thenApply(elasticSearchDataListInfo -> {
+                ElasticSearchSearchUtil.setPagingData(elasticSearchDataListInfo, pagingSize, pageNum);
+                elasticSearchDataListInfo.setElapsedMsTime((System.nanoTime()-start)/ 1000000.0);
+                sample.end();
+                return elasticSearchDataListInfo;
+            }).exceptionally(throwable -> {
+                logger.error(ExceptionUtils.getStackTrace(throwable));
+                return new ElasticSearchDataListInfo();
+            });
+
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
+            return CompletableFuture.completedFuture(new ElasticSearchDataListInfo());
+        }
+    }
+
+    /**
+     * Decode the hits of a page response into the sample
+     *
+     * @param sample - Metrics sample of the call
+     * @param searchResponse - page response
+     * @return
+     */
+    private static ElasticSearchDataListInfo decode(ElasticSearchMetrics.Sample sample, SearchResponse searchResponse){
+
+        long decodeStart = System.nanoTime();
+        ElasticSearchDataListInfo elasticSearchDataListInfo = ElasticSearchSearchUtil.setData(searchResponse.getHits().getHits(), searchResponse.getHits().getTotalHits());
+        sample.decode(decodeStart, searchResponse.getHits().getHits());
+
+        return elasticSearchDataListInfo;
+    }
+
+    /**
+     * Scroll until pageNum ( async ), scroll is cleared at the end or when a scroll request fails
+     *
+     * @param restHighLevelClient
+     * @param sample - Metrics sample of the call
+     * @param searchResponse - current page response
+     * @param currentPageNum - current page num
+     * @param pageNum - Select page num
+     * @return
+     */
+    private static CompletableFuture<ElasticSearchDataListInfo> scrollToPage(RestHighLevelClient restHighLevelClient, ElasticSearchMetrics.Sample sample, SearchResponse searchResponse, int currentPageNum, int pageNum){
+
+        if(currentPageNum == pageNum || searchResponse.getHits().getHits().length == 0){
+
+            clearScrollAsync(restHighLevelClient, searchResponse.getScrollId());
+
+            // walk ended before pageNum -> page out of range ( emptied by setPagingData )
+            return CompletableFuture.supplyAsync(() -> decode(sample, searchResponse), decodeExecutor);
+        }
+
+        SearchScrollRequest searchScrollRequest = new SearchScrollRequest(searchResponse.getScrollId());
+        searchScrollRequest.scroll(SCROLL);
+
+        long scrollRequestStart = System.nanoTime();
+
+        CompletableFuture<SearchResponse> future = new CompletableFuture<>();
+        try{
+            restHighLevelClient.searchScrollAsync(searchScrollRequest, getListener(future));
+        }catch (Exception e){
+            future.completeExceptionally(e);
+        }
+
+        return future.whenComplete((nextResponse, throwable) -> {
+            // failed walk -> clear the last known scroll
+            if(throwable != null){
+                clearScrollAsync(restHighLevelClient, searchResponse.getScrollId());
+            }
+        }).thenCompose(nextResponse -> {
+            sample.response(nextResponse, scrollRequestStart);
+            return scrollToPage(restHighLevelClient, sample, nextResponse, currentPageNum + 1, pageNum);
+        });
+    }
+
+    /**
+     * Aggregation ( async, same sequence as ElasticSearchSearchUtil aggregation )
+     * Answered by the aggregation cache of host:port when started. Otherwise the period is coarsened above
+     * ElasticSearchSearchUtil.getMaxAggregationPoints() buckets, answered from the rollups when a rollup store of host:port
+     * is started and covers the range, otherwise raw.
+     *
+     * @return period / periodUnit : effective resolution, requestPeriod / requestPeriodUnit : requested resolution
+     */
+    private static CompletableFuture<ElasticSearchAggregationListInfo> aggregation(String esHost, int esPort, AGGREGATION_TYPE aggregation_type, String startTime, String endTime, int requestPeriod, String requestPeriodUnit){
+
+        ElasticSearchAggregationCache aggregationCache = ElasticSearchAggregationCache.get(esHost, esPort);
+        if(aggregationCache != null){
+            // cache tail / whole window are blocking requests -> blocking executor
+            return CompletableFuture.supplyAsync(() -> aggregationCache.aggregation(esHost, esPort, aggregation_type, startTime, endTime, requestPeriod, requestPeriodUnit,
+                    ElasticSearchSearchUtil.getMaxAggregationPoints()), blockingExecutor);
+        }
+
+        ElasticSearchResolutionPlanner.Resolution resolution = ElasticSearchResolutionPlanner.plan(startTime, endTime, requestPeriod, requestPeriodUnit, ElasticSearchSearchUtil.getMaxAggregationPoints());
+        int period = resolution.getPeriod();
+        String periodUnit = resolution.getPeriodUnit();
+
+        CompletableFuture<ElasticSearchAggregationListInfo> future;
+
+        ElasticSearchRollupStore rollupStore = ElasticSearchRollupStore.get(esHost, esPort);
+        if(rollupStore != null){
+            // rollup edges are blocking raw requests -> blocking executor
+            future = CompletableFuture.supplyAsync(() -> rollupStore.aggregation(aggregation_type, startTime, endTime, period, periodUnit), blockingExecutor)
+                    .thenCompose(elasticSearchAggregationListInfo -> elasticSearchAggregationListInfo != null ? CompletableFuture.completedFuture(elasticSearchAggregationListInfo)
+                            : aggregationRaw(esHost, esPort, aggregation_type, startTime, endTime, period, periodUnit));
+        }else{
+            future = aggregationRaw(esHost, esPort, aggregation_type, startTime, endTime, period, periodUnit);
+        }
+
+        return future.thenApply(elasticSearchAggregationListInfo -> {
+            elasticSearchAggregationListInfo.setRequestPeriod(requestPeriod);
+            elasticSearchAggregationListInfo.setRequestPeriodUnit(requestPeriodUnit);
+            return elasticSearchAggregationListInfo;
+        });
+    }
+
+    /**
+     * Aggregation ( async, raw documents )
+     *
+     * @return
+     */
+    private static CompletableFuture<ElasticSearchAggregationListInfo> aggregationRaw(String esHost, int esPort, AGGREGATION_TYPE aggregation_type, String startTime, String endTime, int period, String periodUnit){
+
+        long start = System.nanoTime();
+
+        try{
+            SearchRequest searchRequest = ElasticSearchSearchUtil.getAggregationSearchRequest(aggregation_type, startTime, endTime, period, periodUnit);
+
+            if(searchRequest == null){
+                return CompletableFuture.completedFuture(ElasticSearchSearchUtil.getAggregationErrorData(startTime, endTime, start));
+            }
+
+            ElasticSearchMetrics.Sample sample = ElasticSearchMetrics.start(ElasticSearchSearchUtil.getAggregationMetricsName(aggregation_type), aggregation_type.name());
+
+            long requestStart = System.nanoTime();
+
+            return searchAsync(ElasticSearchClientRegistry.getClient(esHost, esPort), searchRequest)
+                    .thenApplyAsync(searchResponse -> {
+                        sample.response(searchResponse, requestStart);
+
+                        long decodeStart = System.nanoTime();
+                        ElasticSearchAggregationListInfo elasticSearchAggregationListInfo = ElasticSearchSearchUtil.getAggregationData(aggregation_type, startTime, endTime, period, periodUnit, searchResponse, start);
+                        sample.decode(decodeStart);
+                        sample.end();
+
+                        return elasticSearchAggregationListInfo;
+                    }, decodeExecutor)
+                    .exceptionally(throwable -> {
+                        logger.error(ExceptionUtils.getStackTrace(throwable));
+                        return ElasticSearchSearchUtil.getAggregationErrorData(startTime, endTime, start);
+                    });
+
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
+            return CompletableFuture.completedFuture(ElasticSearchSearchUtil.getAggregationErrorData(startTime, endTime, start));
+        }
+    }
+
+    private static CompletableFuture<SearchResponse> searchAsync(RestHighLevelClient restHighLevelClient, SearchRequest searchRequest){
+
+        CompletableFuture<SearchResponse> future = new CompletableFuture<>();
+        restHighLevelClient.searchAsync(searchRequest, getListener(future));
+
+        return future;
+    }
+
+    private static void clearScrollAsync(RestHighLevelClient restHighLevelClient, String scrollId){
+
+        if(scrollId == null){
+            return;
+        }
+
+        ClearScrollRequest clearScrollRequest = new ClearScrollRequest();
+        clearScrollRequest.addScrollId(scrollId);
+
+        restHighLevelClient.clearScrollAsync(clearScrollRequest, new ActionListener<ClearScrollResponse>() {
+            @Override
+            public void onResponse(ClearScrollResponse clearScrollResponse) {
+                if(!clearScrollResponse.isSucceeded()){
+                    logger.error("Clear Scroll Response : " + clearScrollResponse.isSucceeded());
+                }
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                logger.error(ExceptionUtils.getStackTrace(e));
+            }
+        });
+    }
+
+    /**
+     * Executor decoding responses ( hits, aggregations )
+     *
+     * @param executor - null : default pool ( availableProcessors daemon threads )
+     */
+    public static void setDecodeExecutor(Executor executor){
+        decodeExecutor = executor == null ? DEFAULT_DECODE_EXECUTOR : executor;
+    }
+
+    static Executor getDecodeExecutor(){
+        return decodeExecutor;
+    }
+
+    /**
+     * Executor running blocking aggregations ( aggregation cache, rollup store )
+     * Keep it apart from the decode executor : a blocking task waits for a response decoded there.
+     *
+     * @param executor - null : default pool ( DEFAULT_BLOCKING_THREAD_COUNT daemon threads )
+     */
+    public static void setBlockingExecutor(Executor executor){
+        blockingExecutor = executor == null ? DEFAULT_BLOCKING_EXECUTOR : executor;
+    }
+
+    /**
+     * ActionListener -> CompletableFuture
+     *
+     * @param future
+     * @param <T>
+     * @return
+     */
+    static <T> ActionListener<T> getListener(CompletableFuture<T> future){
+
+        return new ActionListener<T>() {
+            @Override
+            public void onResponse(T response) {
+                future.complete(response);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                future.completeExceptionally(e);
+            }
+        };
+    }
+}
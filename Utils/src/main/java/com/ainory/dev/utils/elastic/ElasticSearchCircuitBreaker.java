@@ -0,0 +1,185 @@
+package com.ainory.dev.utils.elastic;
+
+import java.io.IOException;
+
+/**
+ * ElasticSearch Circuit Breaker ( per cluster )
+ *
+ * CLOSED    : calls pass, the outcome of the last windowSize calls is kept.
+ *             Opens when at least minimumCallCount calls were made and the failure rate reaches failureRatePercent.
+ * OPEN      : calls fail fast ( CircuitOpenException ) for openMs.
+ * HALF_OPEN : one probe call passes, success -> CLOSED, failure -> OPEN.
+ */
+public class ElasticSearchCircuitBreaker {
+
+    public enum STATE {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    public static final int DEFAULT_FAILURE_RATE_PERCENT = 50;
+    public static final int DEFAULT_MINIMUM_CALL_COUNT = 20;
+    public static final int DEFAULT_WINDOW_SIZE = 50;
+    public static final long DEFAULT_OPEN_MS = 10000;
+
+    private final String name;
+    private final int failureRatePercent;
+    private final int minimumCallCount;
+    private final long openMs;
+
+    // outcome ring ( true : failure )
+    private final boolean[] window;
+    private int windowIndex = 0;
+    private int callCount = 0;
+    private int failureCount = 0;
+
+    private STATE state = STATE.CLOSED;
+    private long openedAt = 0;
+    private boolean probing = false;
+
+    /**
+     * Fail fast exception ( no stack trace )
+     */
+    public static class CircuitOpenException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        public CircuitOpenException(String name) {
+            super("Circuit open : " + name);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    /**
+     * @param name - Cluster name ( host:port )
+     * @param failureRatePercent - Failure rate to open (%)
+     * @param minimumCallCount - Minimum calls in window before the rate is evaluated
+     * @param windowSize - Number of last calls evaluated
+     * @param openMs - Open duration (ms)
+     */
+    public ElasticSearchCircuitBreaker(String name, int failureRatePercent, int minimumCallCount, int windowSize, long openMs) {
+        this.name = name;
+        this.failureRatePercent = failureRatePercent;
+        this.minimumCallCount = Math.min(minimumCallCount, windowSize);
+        this.openMs = openMs;
+        this.window = new boolean[Math.max(1, windowSize)];
+    }
+
+    /**
+     * Acquire permission for one call ( every acquired call must report onSuccess / onFailure / release )
+     *
+     * @throws CircuitOpenException
+     */
+    public synchronized void acquire() throws CircuitOpenException{
+
+        if(state == STATE.OPEN){
+            if(System.currentTimeMillis() - openedAt < openMs){
+                throw new CircuitOpenException(name);
+            }
+            state = STATE.HALF_OPEN;
+            probing = false;
+        }
+
+        if(state == STATE.HALF_OPEN){
+            if(probing){
+                throw new CircuitOpenException(name);
+            }
+            probing = true;
+        }
+    }
+
+    public synchronized void onSuccess(){
+
+        if(state == STATE.HALF_OPEN){
+            reset();
+            state = STATE.CLOSED;
+            return;
+        }
+
+        record(false);
+    }
+
+    /**
+     * Call ended without a cluster outcome ( client side timeout ) : not recorded, a half open probe may be retried
+     */
+    public synchronized void release(){
+        if(state == STATE.HALF_OPEN){
+            probing = false;
+        }
+    }
+
+    public synchronized void onFailure(){
+
+        if(state == STATE.HALF_OPEN){
+            open();
+            return;
+        }
+
+        record(true);
+
+        if(state == STATE.CLOSED && callCount >= minimumCallCount && failureCount * 100 >= failureRatePercent * callCount){
+            open();
+        }
+    }
+
+    private void record(boolean failure){
+
+        if(callCount == window.length){
+            if(window[windowIndex]){
+                failureCount--;
+            }
+        }else{
+            callCount++;
+        }
+
+        window[windowIndex] = failure;
+        if(failure){
+            failureCount++;
+        }
+
+        windowIndex = (windowIndex + 1) % window.length;
+    }
+
+    private void open(){
+        reset();
+        state = STATE.OPEN;
+        openedAt = System.currentTimeMillis();
+    }
+
+    private void reset(){
+        windowIndex = 0;
+        callCount = 0;
+        failureCount = 0;
+        probing = false;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized STATE getState() {
+        return state;
+    }
+
+    /**
+     * Failure rate of the current window (%)
+     *
+     * @return
+     */
+    public synchronized int getFailureRatePercent() {
+        return callCount == 0 ? 0 : failureCount * 100 / callCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ElasticSearchCircuitBreaker{" +
+                "name='" + name + '\'' +
+                ", state=" + state +
+                ", callCount=" + callCount +
+                ", failureCount=" + failureCount +
+                '}';
+    }
+}
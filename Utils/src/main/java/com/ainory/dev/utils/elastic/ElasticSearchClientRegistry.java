@@ -0,0 +1,392 @@
+package com.ainory.dev.utils.elastic;
+
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpHost;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.message.BasicHeader;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ElasticSearch Client Registry
+ *
+ * Long-lived RestHighLevelClient per host:port.
+ * Connections are pooled and kept alive between calls, idle connections are evicted periodically
+ * and every client is closed on shutdown (JVM shutdown hook or shutdown()).
+ * Searches are guarded by a per client circuit breaker, adaptive timeout and optional hedging ( ElasticSearchGuardedClient ).
+ * A host:port can be routed to a local stand-in ( ElasticSearchStandIn, test source set ) without changing the callers.
+ */
+public class ElasticSearchClientRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(ElasticSearchClientRegistry.class);
+
+    private static final Header[] HEADERS = { new BasicHeader(HttpHeaders.CONTENT_TYPE, "application/json"),  new BasicHeader("Role", "Read") };
+
+    public static final int DEFAULT_MAX_CONN_TOTAL = 100;
+    public static final int DEFAULT_MAX_CONN_PER_ROUTE = 50;
+    public static final long DEFAULT_KEEP_ALIVE_MS = 60000;
+    public static final long DEFAULT_IDLE_EVICT_MS = 30000;
+    public static final int DEFAULT_CONNECT_TIMEOUT_MS = 1000;
+    public static final int DEFAULT_SOCKET_TIMEOUT_MS = 30000;
+    public static final int DEFAULT_MAX_RETRY_TIMEOUT_MS = 30000;
+    public static final int DEFAULT_IO_THREAD_COUNT = Runtime.getRuntime().availableProcessors();
+    public static final double DEFAULT_TIMEOUT_PERCENTILE = 0.99;
+    public static final double DEFAULT_TIMEOUT_MULTIPLIER = 3.0;
+    public static final long DEFAULT_MIN_TIMEOUT_MS = 1000;
+    public static final double DEFAULT_HEDGE_PERCENTILE = 0.95;
+
+    private static volatile int maxConnTotal = DEFAULT_MAX_CONN_TOTAL;
+    private static volatile int maxConnPerRoute = DEFAULT_MAX_CONN_PER_ROUTE;
+    private static volatile long keepAliveMs = DEFAULT_KEEP_ALIVE_MS;
+    private static volatile long idleEvictMs = DEFAULT_IDLE_EVICT_MS;
+    private static volatile int connectTimeoutMs = DEFAULT_CONNECT_TIMEOUT_MS;
+    private static volatile int socketTimeoutMs = DEFAULT_SOCKET_TIMEOUT_MS;
+    private static volatile int maxRetryTimeoutMs = DEFAULT_MAX_RETRY_TIMEOUT_MS;
+    private static volatile int ioThreadCount = DEFAULT_IO_THREAD_COUNT;
+    private static volatile int failureRatePercent = ElasticSearchCircuitBreaker.DEFAULT_FAILURE_RATE_PERCENT;
+    private static volatile int minimumCallCount = ElasticSearchCircuitBreaker.DEFAULT_MINIMUM_CALL_COUNT;
+    private static volatile long openMs = ElasticSearchCircuitBreaker.DEFAULT_OPEN_MS;
+    private static volatile double timeoutPercentile = DEFAULT_TIMEOUT_PERCENTILE;
+    private static volatile double timeoutMultiplier = DEFAULT_TIMEOUT_MULTIPLIER;
+    private static volatile long minTimeoutMs = DEFAULT_MIN_TIMEOUT_MS;
+    private static volatile double hedgePercentile = DEFAULT_HEDGE_PERCENTILE;
+
+    //                      host:port, client
+    private static final ConcurrentHashMap<String, ClientHolder> CLIENT_MAP = new ConcurrentHashMap<>();
+
+    //                      host:port, hedge host:port
+    private static final ConcurrentHashMap<String, String> HEDGE_MAP = new ConcurrentHashMap<>();
+
+    //                      host:port, routed host:port
+    private static final ConcurrentHashMap<String, String> ROUTE_MAP = new ConcurrentHashMap<>();
+
+    private static ScheduledExecutorService evictor;
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(ElasticSearchClientRegistry::shutdown, "es-client-registry-shutdown"));
+    }
+
+    private static class ClientHolder {
+        private final RestClient restClient;
+        private final ElasticSearchGuardedClient restHighLevelClient;
+        private final PoolingNHttpClientConnectionManager connectionManager;
+
+        private ClientHolder(RestClient restClient, ElasticSearchGuardedClient restHighLevelClient, PoolingNHttpClientConnectionManager connectionManager) {
+            this.restClient = restClient;
+            this.restHighLevelClient = restHighLevelClient;
+            this.connectionManager = connectionManager;
+        }
+    }
+
+    /**
+     * Get (or create) pooled client
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @return
+     */
+    public static RestHighLevelClient getClient(String esHost, int esPort){
+        return getHolder(esHost, esPort).restHighLevelClient;
+    }
+
+    /**
+     * Get (or create) pooled client as guarded client ( multiSearch )
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @return
+     */
+    static ElasticSearchGuardedClient getGuardedClient(String esHost, int esPort){
+        return getHolder(esHost, esPort).restHighLevelClient;
+    }
+
+    /**
+     * Get (or create) pooled low level client
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @return
+     */
+    public static RestClient getRestClient(String esHost, int esPort){
+        return getHolder(esHost, esPort).restClient;
+    }
+
+    /**
+     * Circuit breaker of pooled client
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @return
+     */
+    public static ElasticSearchCircuitBreaker getCircuitBreaker(String esHost, int esPort){
+        return getHolder(esHost, esPort).restHighLevelClient.getCircuitBreaker();
+    }
+
+    /**
+     * Hedge client of host:port
+     *
+     * @param name - host:port
+     * @return null : no hedge node
+     */
+    static ElasticSearchGuardedClient getHedgeClient(String name){
+
+        String hedgeName = HEDGE_MAP.get(name);
+        if(hedgeName == null){
+            return null;
+        }
+
+        int index = hedgeName.lastIndexOf(':');
+        return getHolder(hedgeName.substring(0, index), Integer.parseInt(hedgeName.substring(index + 1))).restHighLevelClient;
+    }
+
+    private static ClientHolder getHolder(String esHost, int esPort){
+        return CLIENT_MAP.computeIfAbsent(getKey(esHost, esPort), key -> createHolder(esHost, esPort));
+    }
+
+    private static ClientHolder createHolder(String esHost, int esPort){
+
+        try{
+            IOReactorConfig ioReactorConfig = IOReactorConfig.custom()
+                    .setIoThreadCount(ioThreadCount)
+                    .setConnectTimeout(connectTimeoutMs)
+                    .setSoTimeout(socketTimeoutMs)
+                    .setSoKeepAlive(true)
+                    .build();
+
+            PoolingNHttpClientConnectionManager connectionManager = new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor(ioReactorConfig));
+            connectionManager.setMaxTotal(maxConnTotal);
+            connectionManager.setDefaultMaxPerRoute(maxConnPerRoute);
+
+            final long keepAlive = keepAliveMs;
+
+            RestClient restClient = RestClient.builder(getHttpHost(esHost, esPort))
+                    .setDefaultHeaders(HEADERS)
+                    .setMaxRetryTimeoutMillis(maxRetryTimeoutMs)
+                    .setRequestConfigCallback(requestConfigBuilder -> requestConfigBuilder.setConnectTimeout(connectTimeoutMs).setSocketTimeout(socketTimeoutMs))
+                    .setHttpClientConfigCallback(httpClientBuilder -> httpClientBuilder
+                            .setConnectionManager(connectionManager)
+                            .setKeepAliveStrategy((response, context) -> keepAlive))
+                    .build();
+
+            startEvictor();
+
+            logger.info("ElasticSearch client created : " + getKey(esHost, esPort) + (ROUTE_MAP.containsKey(getKey(esHost, esPort)) ? " -> " + ROUTE_MAP.get(getKey(esHost, esPort)) : ""));
+
+            String name = getKey(esHost, esPort);
+            ElasticSearchCircuitBreaker circuitBreaker = new ElasticSearchCircuitBreaker(name, failureRatePercent, minimumCallCount, ElasticSearchCircuitBreaker.DEFAULT_WINDOW_SIZE, openMs);
+            ElasticSearchLatencyTracker latencyTracker = new ElasticSearchLatencyTracker(timeoutPercentile, timeoutMultiplier, Math.min(minTimeoutMs, socketTimeoutMs), socketTimeoutMs, hedgePercentile);
+
+            return new ClientHolder(restClient, new ElasticSearchGuardedClient(restClient, name, circuitBreaker, latencyTracker), connectionManager);
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
+            throw new IllegalStateException("ElasticSearch client create fail : " + getKey(esHost, esPort), e);
+        }
+    }
+
+    private static synchronized void startEvictor(){
+
+        if(evictor != null){
+            return;
+        }
+
+        evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "es-client-registry-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long interval = Math.max(1000, idleEvictMs / 2);
+        evictor.scheduleWithFixedDelay(ElasticSearchClientRegistry::evictIdleConnections, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Close expired/idle connections of every registered client
+     */
+    public static void evictIdleConnections(){
+
+        for(ClientHolder clientHolder : CLIENT_MAP.values()){
+            try{
+                clientHolder.connectionManager.closeExpiredConnections();
+                clientHolder.connectionManager.closeIdleConnections(idleEvictMs, TimeUnit.MILLISECONDS);
+            }catch (Exception e){
+                logger.error(ExceptionUtils.getStackTrace(e));
+            }
+        }
+    }
+
+    /**
+     * Close & remove one client
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     */
+    public static void close(String esHost, int esPort){
+        close(CLIENT_MAP.remove(getKey(esHost, esPort)));
+    }
+
+    /**
+     * Close & remove every client ( registered as JVM shutdown hook )
+     */
+    public static void shutdown(){
+
+        for(Iterator<Map.Entry<String, ClientHolder>> iter = CLIENT_MAP.entrySet().iterator(); iter.hasNext();){
+            Map.Entry<String, ClientHolder> entry = iter.next();
+            iter.remove();
+            close(entry.getValue());
+        }
+
+        synchronized (ElasticSearchClientRegistry.class){
+            if(evictor != null){
+                evictor.shutdownNow();
+                evictor = null;
+            }
+        }
+    }
+
+    private static void close(ClientHolder clientHolder){
+        try{
+            if(clientHolder != null){
+                clientHolder.restClient.close();
+            }
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
+        }
+    }
+
+    private static HttpHost getHttpHost(String esHost, int esPort){
+
+        String route = ROUTE_MAP.get(getKey(esHost, esPort));
+        if(route == null){
+            return new HttpHost(esHost, esPort, HttpHost.DEFAULT_SCHEME_NAME);
+        }
+
+        int index = route.lastIndexOf(':');
+        return new HttpHost(route.substring(0, index), Integer.parseInt(route.substring(index + 1)), HttpHost.DEFAULT_SCHEME_NAME);
+    }
+
+    private static String getKey(String esHost, int esPort){
+        return esHost + ":" + esPort;
+    }
+
+    /**
+     * Pool settings are applied to clients created after the call
+     *
+     * @param maxConnTotal - Max connections ( all routes )
+     * @param maxConnPerRoute - Max connections per route
+     */
+    public static void setPoolSize(int maxConnTotal, int maxConnPerRoute){
+        ElasticSearchClientRegistry.maxConnTotal = maxConnTotal;
+        ElasticSearchClientRegistry.maxConnPerRoute = maxConnPerRoute;
+    }
+
+    /**
+     * Keep-alive / idle eviction settings are applied to clients created after the call
+     *
+     * @param keepAliveMs - Connection keep alive (ms)
+     * @param idleEvictMs - Idle connection evict time (ms)
+     */
+    public static void setKeepAlive(long keepAliveMs, long idleEvictMs){
+        ElasticSearchClientRegistry.keepAliveMs = keepAliveMs;
+        ElasticSearchClientRegistry.idleEvictMs = idleEvictMs;
+    }
+
+    /**
+     * Timeout settings are applied to clients created after the call
+     *
+     * @param connectTimeoutMs - Connect timeout (ms)
+     * @param socketTimeoutMs - Socket timeout (ms)
+     * @param maxRetryTimeoutMs - Max retry timeout (ms)
+     */
+    public static void setTimeout(int connectTimeoutMs, int socketTimeoutMs, int maxRetryTimeoutMs){
+        ElasticSearchClientRegistry.connectTimeoutMs = connectTimeoutMs;
+        ElasticSearchClientRegistry.socketTimeoutMs = socketTimeoutMs;
+        ElasticSearchClientRegistry.maxRetryTimeoutMs = maxRetryTimeoutMs;
+    }
+
+    /**
+     * Circuit breaker settings are applied to clients created after the call
+     *
+     * @param failureRatePercent - Failure rate to open (%)
+     * @param minimumCallCount - Minimum calls before the rate is evaluated
+     * @param openMs - Open duration (ms)
+     */
+    public static void setCircuitBreaker(int failureRatePercent, int minimumCallCount, long openMs){
+        ElasticSearchClientRegistry.failureRatePercent = failureRatePercent;
+        ElasticSearchClientRegistry.minimumCallCount = minimumCallCount;
+        ElasticSearchClientRegistry.openMs = openMs;
+    }
+
+    /**
+     * Adaptive timeout settings are applied to clients created after the call
+     * ( timeout = timeoutPercentile latency * timeoutMultiplier, between minTimeoutMs and socket timeout )
+     *
+     * @param timeoutPercentile - Timeout base percentile ( 0 ~ 1 )
+     * @param timeoutMultiplier - Timeout multiplier
+     * @param minTimeoutMs - Timeout lower bound (ms)
+     * @param hedgePercentile - Hedge delay percentile ( 0 ~ 1 )
+     */
+    public static void setAdaptiveTimeout(double timeoutPercentile, double timeoutMultiplier, long minTimeoutMs, double hedgePercentile){
+        ElasticSearchClientRegistry.timeoutPercentile = timeoutPercentile;
+        ElasticSearchClientRegistry.timeoutMultiplier = timeoutMultiplier;
+        ElasticSearchClientRegistry.minTimeoutMs = minTimeoutMs;
+        ElasticSearchClientRegistry.hedgePercentile = hedgePercentile;
+    }
+
+    /**
+     * Hedge node ( a second coordinating node of the same cluster )
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param hedgeHost - Hedge node HTTP Host ( null : remove )
+     * @param hedgePort - Hedge node HTTP Port
+     */
+    public static void setHedge(String esHost, int esPort, String hedgeHost, int hedgePort){
+        if(hedgeHost == null){
+            HEDGE_MAP.remove(getKey(esHost, esPort));
+        }else{
+            HEDGE_MAP.put(getKey(esHost, esPort), getKey(hedgeHost, hedgePort));
+        }
+    }
+
+    /**
+     * Route host:port to another address ( the current client of host:port is closed, the next call connects to the route )
+     * Circuit breaker, latency and metrics stay named after host:port.
+     * Test support ( ElasticSearchStandIn of the test source set ), not a public API.
+     *
+     * @param esHost - ElasticSearch HTTP Host used by the caller
+     * @param esPort - ElasticSearch HTTP Port used by the caller
+     * @param routeHost - Routed HTTP Host ( null : remove )
+     * @param routePort - Routed HTTP Port
+     */
+    static void setRoute(String esHost, int esPort, String routeHost, int routePort){
+        if(routeHost == null){
+            ROUTE_MAP.remove(getKey(esHost, esPort));
+        }else{
+            ROUTE_MAP.put(getKey(esHost, esPort), getKey(routeHost, routePort));
+        }
+
+        close(esHost, esPort);
+    }
+
+    /**
+     * I/O reactor thread count is applied to clients created after the call
+     *
+     * @param ioThreadCount
+     */
+    public static void setIoThreadCount(int ioThreadCount){
+        ElasticSearchClientRegistry.ioThreadCount = ioThreadCount;
+    }
+}
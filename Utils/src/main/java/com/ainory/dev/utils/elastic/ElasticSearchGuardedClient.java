@@ -0,0 +1,501 @@
+package com.ainory.dev.utils.elastic;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.ClearScrollRequest;
+import org.elasticsearch.action.search.ClearScrollResponse;
+import org.elasticsearch.action.search.MultiSearchRequest;
+import org.elasticsearch.action.search.MultiSearchResponse;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchScrollRequest;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.client.ResponseListener;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestHighLevelClient;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * ElasticSearch Guarded Client
+ *
+ * RestHighLevelClient of ElasticSearchClientRegistry. search / searchScroll ( sync & async ) / multiSearch are guarded by
+ *     circuit breaker    : fail fast while the cluster is failing ( ElasticSearchCircuitBreaker )
+ *     adaptive timeout   : a plain search ( no scroll, no aggregation ) fails after a timeout derived from the observed latency
+ *                          of plain searches ( ElasticSearchLatencyTracker ). Scroll pages and aggregations are heavy and scroll
+ *                          is not retryable, they are not timed out ( socket timeout only ) and not recorded.
+ *                          A timed out call is recorded as a timeoutMs sample, so the timeout climbs when the cluster gets
+ *                          slower for good. A single client side timeout is not a cluster failure, from the
+ *                          TIMEOUT_FAILURE_COUNT-th consecutive timeout on every timeout is counted by the circuit breaker.
+ *     hedged request     : a plain search is sent again to the hedge node when it is slower than the hedge delay,
+ *                          the first response wins ( ElasticSearchClientRegistry.setHedge )
+ * A timed out call only releases the caller, the HTTP request itself ends by the socket timeout.
+ * Sync scroll / aggregation searches and scroll pages run on the caller thread ( response parsed there, not on the I/O reactor ).
+ * Sync plain searches go through the low level async client for the timeout & hedge, the raw response is handed to the caller
+ * thread and parsed there ( ElasticSearchRequestConverter ).
+ */
+public class ElasticSearchGuardedClient extends RestHighLevelClient {
+
+    // consecutive timeouts before a timeout counts as a circuit breaker failure
+    static final int TIMEOUT_FAILURE_COUNT = 3;
+
+    private static final ScheduledThreadPoolExecutor TIMER;
+
+    static {
+        TIMER = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "es-guarded-client-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        TIMER.setRemoveOnCancelPolicy(true);
+    }
+
+    private final RestClient lowLevelClient;
+    private final String name;
+    private final ElasticSearchCircuitBreaker circuitBreaker;
+    private final ElasticSearchLatencyTracker latencyTracker;
+
+    private final AtomicLong timeoutCount = new AtomicLong(0);
+    private final AtomicInteger consecutiveTimeoutCount = new AtomicInteger(0);
+    private final AtomicLong hedgeCount = new AtomicLong(0);
+
+    ElasticSearchGuardedClient(RestClient restClient, String name, ElasticSearchCircuitBreaker circuitBreaker, ElasticSearchLatencyTracker latencyTracker) {
+        super(restClient);
+        this.lowLevelClient = restClient;
+        this.name = name;
+        this.circuitBreaker = circuitBreaker;
+        this.latencyTracker = latencyTracker;
+    }
+
+    @Override
+    public SearchResponse search(SearchRequest searchRequest, Header... headers) throws IOException {
+
+        // no timeout, no hedge -> caller thread
+        if(!isPlainSearch(searchRequest)){
+            return executeSync(() -> super.search(searchRequest, headers));
+        }
+
+        ElasticSearchGuardedClient hedgeClient = ElasticSearchClientRegistry.getHedgeClient(name);
+
+        // raw response only on the I/O reactor, parsed on the caller thread
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        execute(attemptListener -> performSearchAsync(searchRequest, attemptListener, headers),
+                hedgeClient == null ? null : attemptListener -> hedgeClient.performSearchAsync(searchRequest, attemptListener, headers),
+                true,
+                null,
+                ElasticSearchAsyncSearchUtil.getListener(future));
+
+        Response response = get(future);
+        return ElasticSearchRequestConverter.parseSearchResponse(response.getEntity());
+    }
+
+    @Override
+    public void searchAsync(SearchRequest searchRequest, ActionListener<SearchResponse> listener, Header... headers) {
+
+        boolean scroll = searchRequest.scroll() != null;
+
+        // scroll search is not hedged ( a second scroll context would leak )
+        ElasticSearchGuardedClient hedgeClient = !scroll ? ElasticSearchClientRegistry.getHedgeClient(name) : null;
+
+        execute(attemptListener -> super.searchAsync(searchRequest, attemptListener, headers),
+                hedgeClient == null ? null : attemptListener -> hedgeClient.searchAsyncUnguarded(searchRequest, attemptListener, headers),
+                isPlainSearch(searchRequest),
+                scroll ? this::clearLateScroll : null,
+                listener);
+    }
+
+    @Override
+    public SearchResponse searchScroll(SearchScrollRequest searchScrollRequest, Header... headers) throws IOException {
+        return executeSync(() -> super.searchScroll(searchScrollRequest, headers));
+    }
+
+    @Override
+    public void searchScrollAsync(SearchScrollRequest searchScrollRequest, ActionListener<SearchResponse> listener, Header... headers) {
+        // scroll is not idempotent -> no hedge, no timeout ( the server cursor moves even when the response is abandoned )
+        execute(attemptListener -> super.searchScrollAsync(searchScrollRequest, attemptListener, headers), null, false, null, listener);
+    }
+
+    /**
+     * Multi search ( _msearch on the low level client, the 5.x high level client has no multi search API )
+     * Runs on the caller thread with the circuit breaker only ( no adaptive timeout, no hedge ), response parsed there.
+     * A failed search is a failure item of the response, the other items keep their responses.
+     *
+     * @param multiSearchRequest
+     * @param headers
+     * @return items in request order
+     * @throws IOException - whole request failed
+     */
+    public MultiSearchResponse multiSearch(MultiSearchRequest multiSearchRequest, Header... headers) throws IOException {
+
+        HttpEntity entity = ElasticSearchRequestConverter.getMultiSearchEntity(multiSearchRequest);
+
+        Response response = executeSync(() -> {
+            try{
+                return lowLevelClient.performRequest(ElasticSearchRequestConverter.MULTI_SEARCH_METHOD, ElasticSearchRequestConverter.MULTI_SEARCH_ENDPOINT,
+                        ElasticSearchRequestConverter.getMultiSearchParams(multiSearchRequest), entity, headers);
+            }catch (ResponseException e){
+                throw ElasticSearchRequestConverter.parseResponseException(e);
+            }
+        });
+
+        return ElasticSearchRequestConverter.parseMultiSearchResponse(response.getEntity());
+    }
+
+    /**
+     * Plain search ( no scroll, no aggregation ) : adaptive timeout & hedge apply
+     */
+    private static boolean isPlainSearch(SearchRequest searchRequest){
+        return searchRequest.scroll() == null && (searchRequest.source() == null || searchRequest.source().aggregations() == null);
+    }
+
+    private interface SyncRequest<Resp> {
+        Resp execute() throws IOException;
+    }
+
+    /**
+     * Guarded call on the caller thread ( circuit breaker only )
+     *
+     * @param request - Blocking request
+     * @param <Resp>
+     * @return
+     * @throws IOException
+     */
+    private <Resp> Resp executeSync(SyncRequest<Resp> request) throws IOException{
+
+        circuitBreaker.acquire();
+
+        boolean done = false;
+        boolean clusterFailure = false;
+        try{
+            Resp response = request.execute();
+            done = true;
+            return response;
+        }catch (IOException | RuntimeException e){
+            done = true;
+            clusterFailure = isClusterFailure(e);
+            throw e;
+        }finally {
+            if(!done){
+                circuitBreaker.release();
+            }else if(clusterFailure){
+                circuitBreaker.onFailure();
+            }else{
+                circuitBreaker.onSuccess();
+            }
+        }
+    }
+
+    /**
+     * Search on the low level client ( unguarded, response not parsed )
+     */
+    private void performSearchAsync(SearchRequest searchRequest, ActionListener<Response> listener, Header... headers){
+
+        HttpEntity entity;
+        try{
+            entity = ElasticSearchRequestConverter.getSearchEntity(searchRequest);
+        }catch (IOException e){
+            listener.onFailure(e);
+            return;
+        }
+
+        lowLevelClient.performRequestAsync(ElasticSearchRequestConverter.SEARCH_METHOD, ElasticSearchRequestConverter.getSearchEndpoint(searchRequest),
+                ElasticSearchRequestConverter.getSearchParams(searchRequest), entity, getResponseListener(listener), headers);
+    }
+
+    /**
+     * Multi search ( async, circuit breaker only ), raw response : parse it off the I/O reactor
+     * ( ElasticSearchRequestConverter.parseMultiSearchResponse )
+     */
+    void multiSearchAsync(MultiSearchRequest multiSearchRequest, ActionListener<Response> listener, Header... headers){
+
+        HttpEntity entity;
+        try{
+            entity = ElasticSearchRequestConverter.getMultiSearchEntity(multiSearchRequest);
+        }catch (IOException e){
+            listener.onFailure(e);
+            return;
+        }
+
+        execute(attemptListener -> lowLevelClient.performRequestAsync(ElasticSearchRequestConverter.MULTI_SEARCH_METHOD, ElasticSearchRequestConverter.MULTI_SEARCH_ENDPOINT,
+                        ElasticSearchRequestConverter.getMultiSearchParams(multiSearchRequest), entity, getResponseListener(attemptListener), headers),
+                null, false, null, listener);
+    }
+
+    /**
+     * Low level listener, status error -> ElasticsearchException ( 4xx is not a cluster failure )
+     */
+    private static ResponseListener getResponseListener(ActionListener<Response> listener){
+
+        return new ResponseListener() {
+            @Override
+            public void onSuccess(Response response) {
+                listener.onResponse(response);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                listener.onFailure(e instanceof ResponseException ? ElasticSearchRequestConverter.parseResponseException((ResponseException) e) : e);
+            }
+        };
+    }
+
+    private void searchAsyncUnguarded(SearchRequest searchRequest, ActionListener<SearchResponse> listener, Header... headers){
+        super.searchAsync(searchRequest, listener, headers);
+    }
+
+    /**
+     * Clear the scroll context of a scroll search response that arrived after its call ended
+     */
+    private void clearLateScroll(SearchResponse searchResponse){
+
+        if(searchResponse.getScrollId() == null){
+            return;
+        }
+
+        ClearScrollRequest clearScrollRequest = new ClearScrollRequest();
+        clearScrollRequest.addScrollId(searchResponse.getScrollId());
+
+        clearScrollAsync(clearScrollRequest, new ActionListener<ClearScrollResponse>() {
+            @Override
+            public void onResponse(ClearScrollResponse clearScrollResponse) {
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                // expires by keep alive
+            }
+        });
+    }
+
+    /**
+     * Guarded call
+     *
+     * @param primary - Request to this node
+     * @param hedge - Request to hedge node ( null : no hedge )
+     * @param adaptiveTimeout - Apply & record the adaptive timeout ( plain search only )
+     * @param lateResponse - Response arriving after the call ended ( timeout, hedge loser, null : dropped )
+     * @param listener - Caller listener ( called once )
+     * @param <Resp>
+     */
+    private <Resp> void execute(Consumer<ActionListener<Resp>> primary, Consumer<ActionListener<Resp>> hedge, boolean adaptiveTimeout, Consumer<Resp> lateResponse, ActionListener<Resp> listener){
+
+        try{
+            circuitBreaker.acquire();
+        }catch (ElasticSearchCircuitBreaker.CircuitOpenException e){
+            listener.onFailure(e);
+            return;
+        }
+
+        long timeoutMs = latencyTracker.getTimeoutMs();
+        long hedgeDelayMs = latencyTracker.getHedgeDelayMs();
+
+        Call<Resp> call = new Call<>(listener, adaptiveTimeout, lateResponse);
+
+        if(adaptiveTimeout){
+            call.timeoutFuture = TIMER.schedule(() -> {
+                timeoutCount.incrementAndGet();
+                call.fail(new CallTimeoutException("ElasticSearch call timeout " + timeoutMs + "ms : " + name, timeoutMs));
+            }, timeoutMs, TimeUnit.MILLISECONDS);
+        }
+
+        call.attempt(primary);
+
+        // hedge delay is derived from plain searches too
+        if(hedge != null && adaptiveTimeout && hedgeDelayMs > 0 && hedgeDelayMs < timeoutMs){
+            call.hedgeFuture = TIMER.schedule(() -> {
+                if(!call.done.get()){
+                    hedgeCount.incrementAndGet();
+                    call.attempt(hedge);
+                }
+            }, hedgeDelayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Client side timeout ( not a cluster failure )
+     */
+    private static class CallTimeoutException extends SocketTimeoutException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long timeoutMs;
+
+        private CallTimeoutException(String message, long timeoutMs) {
+            super(message);
+            this.timeoutMs = timeoutMs;
+        }
+    }
+
+    /**
+     * One guarded call ( first response wins, fails when every attempt failed or on timeout )
+     */
+    private class Call<Resp> {
+
+        private final ActionListener<Resp> listener;
+        private final boolean adaptiveTimeout;
+        private final Consumer<Resp> lateResponse;
+        private final long start = System.nanoTime();
+        private final AtomicBoolean done = new AtomicBoolean(false);
+        private final AtomicInteger outstanding = new AtomicInteger(0);
+
+        private volatile ScheduledFuture<?> timeoutFuture;
+        private volatile ScheduledFuture<?> hedgeFuture;
+
+        private Call(ActionListener<Resp> listener, boolean adaptiveTimeout, Consumer<Resp> lateResponse) {
+            this.listener = listener;
+            this.adaptiveTimeout = adaptiveTimeout;
+            this.lateResponse = lateResponse;
+        }
+
+        private void attempt(Consumer<ActionListener<Resp>> request){
+
+            outstanding.incrementAndGet();
+
+            try{
+                request.accept(new ActionListener<Resp>() {
+                    @Override
+                    public void onResponse(Resp response) {
+                        succeed(response);
+                    }
+
+                    @Override
+                    public void onFailure(Exception e) {
+                        if(outstanding.decrementAndGet() == 0){
+                            fail(e);
+                        }
+                    }
+                });
+            }catch (Exception e){
+                if(outstanding.decrementAndGet() == 0){
+                    fail(e);
+                }
+            }
+        }
+
+        private void succeed(Resp response){
+
+            if(!done.compareAndSet(false, true)){
+                if(lateResponse != null){
+                    lateResponse.accept(response);
+                }
+                return;
+            }
+            cancelTimers();
+
+            if(adaptiveTimeout){
+                latencyTracker.record((System.nanoTime() - start) / 1000000);
+                consecutiveTimeoutCount.set(0);
+            }
+            circuitBreaker.onSuccess();
+
+            listener.onResponse(response);
+        }
+
+        private void fail(Exception e){
+
+            if(!done.compareAndSet(false, true)){
+                return;
+            }
+            cancelTimers();
+
+            if(e instanceof CallTimeoutException){
+                // the call took at least the timeout ( its late response is dropped )
+                latencyTracker.record(((CallTimeoutException) e).timeoutMs);
+
+                if(consecutiveTimeoutCount.incrementAndGet() >= TIMEOUT_FAILURE_COUNT){
+                    circuitBreaker.onFailure();
+                }else{
+                    circuitBreaker.release();
+                }
+            }else if(isClusterFailure(e)){
+                circuitBreaker.onFailure();
+            }else{
+                circuitBreaker.onSuccess();
+            }
+
+            listener.onFailure(e);
+        }
+
+        private void cancelTimers(){
+            if(timeoutFuture != null){
+                timeoutFuture.cancel(false);
+            }
+            if(hedgeFuture != null){
+                hedgeFuture.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Cluster side failure ( I/O, socket timeout, 5xx, 429 ) , request errors ( 4xx ) do not count
+     *
+     * @param e
+     * @return
+     */
+    private static boolean isClusterFailure(Exception e){
+
+        if(e instanceof ElasticsearchException){
+            int status = ((ElasticsearchException) e).status().getStatus();
+            return status >= 500 || status == 429;
+        }
+
+        return true;
+    }
+
+    private static <T> T get(CompletableFuture<T> future) throws IOException{
+
+        try{
+            return future.get();
+        }catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        }catch (ExecutionException e){
+            Throwable cause = e.getCause();
+            if(cause instanceof IOException){
+                throw (IOException) cause;
+            }
+            if(cause instanceof RuntimeException){
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public ElasticSearchCircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * Current adaptive timeout of plain searches (ms)
+     *
+     * @return
+     */
+    public long getTimeoutMs() {
+        return latencyTracker.getTimeoutMs();
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount.get();
+    }
+
+    public long getHedgeCount() {
+        return hedgeCount.get();
+    }
+}
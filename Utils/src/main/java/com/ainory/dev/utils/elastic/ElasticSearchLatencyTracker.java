@@ -0,0 +1,100 @@
+package com.ainory.dev.utils.elastic;
+
+import java.util.Arrays;
+
+/**
+ * ElasticSearch Latency Tracker ( per cluster )
+ *
+ * Keeps the latency of the last sampleSize calls ( successful calls, timed out calls as their timeout ) and derives
+ *     timeout     : timeoutPercentile latency * timeoutMultiplier, clamped to [ minTimeoutMs, maxTimeoutMs ]
+ *     hedge delay : hedgePercentile latency
+ * Percentiles are recomputed every RECOMPUTE_INTERVAL samples. Until minimumSampleCount samples exist
+ * the timeout is maxTimeoutMs and no hedge delay is given.
+ */
+class ElasticSearchLatencyTracker {
+
+    static final int DEFAULT_SAMPLE_SIZE = 512;
+    static final int DEFAULT_MINIMUM_SAMPLE_COUNT = 20;
+
+    private static final int RECOMPUTE_INTERVAL = 16;
+
+    private final long[] samples;
+    private final int minimumSampleCount;
+    private final double timeoutPercentile;
+    private final double timeoutMultiplier;
+    private final long minTimeoutMs;
+    private final long maxTimeoutMs;
+    private final double hedgePercentile;
+
+    private int sampleIndex = 0;
+    private int sampleCount = 0;
+    private int sinceRecompute = 0;
+
+    private volatile long timeoutMs;
+    private volatile long hedgeDelayMs = -1;
+
+    /**
+     * @param timeoutPercentile - Timeout base percentile ( 0 ~ 1 )
+     * @param timeoutMultiplier - Timeout = percentile latency * multiplier
+     * @param minTimeoutMs - Timeout lower bound (ms)
+     * @param maxTimeoutMs - Timeout upper bound (ms)
+     * @param hedgePercentile - Hedge delay percentile ( 0 ~ 1 )
+     */
+    ElasticSearchLatencyTracker(double timeoutPercentile, double timeoutMultiplier, long minTimeoutMs, long maxTimeoutMs, double hedgePercentile) {
+        this.samples = new long[DEFAULT_SAMPLE_SIZE];
+        this.minimumSampleCount = DEFAULT_MINIMUM_SAMPLE_COUNT;
+        this.timeoutPercentile = timeoutPercentile;
+        this.timeoutMultiplier = timeoutMultiplier;
+        this.minTimeoutMs = minTimeoutMs;
+        this.maxTimeoutMs = maxTimeoutMs;
+        this.hedgePercentile = hedgePercentile;
+        this.timeoutMs = maxTimeoutMs;
+    }
+
+    synchronized void record(long latencyMs){
+
+        samples[sampleIndex] = latencyMs;
+        sampleIndex = (sampleIndex + 1) % samples.length;
+        if(sampleCount < samples.length){
+            sampleCount++;
+        }
+
+        if(sampleCount >= minimumSampleCount && ++sinceRecompute >= RECOMPUTE_INTERVAL){
+            sinceRecompute = 0;
+            recompute();
+        }
+    }
+
+    private void recompute(){
+
+        long[] sorted = Arrays.copyOf(samples, sampleCount);
+        Arrays.sort(sorted);
+
+        long timeoutBase = percentile(sorted, timeoutPercentile);
+        timeoutMs = Math.max(minTimeoutMs, Math.min(maxTimeoutMs, (long) Math.ceil(timeoutBase * timeoutMultiplier)));
+        hedgeDelayMs = Math.max(1, percentile(sorted, hedgePercentile));
+    }
+
+    private static long percentile(long[] sorted, double percentile){
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    /**
+     * Current timeout (ms)
+     *
+     * @return
+     */
+    long getTimeoutMs() {
+        return timeoutMs;
+    }
+
+    /**
+     * Current hedge delay (ms)
+     *
+     * @return -1 : not enough samples
+     */
+    long getHedgeDelayMs() {
+        return hedgeDelayMs;
+    }
+}
@@ -0,0 +1,336 @@
+package com.ainory.dev.utils.elastic;
+
+import com.ainory.dev.utils.elastic.entity.ElasticSearchDataInfo;
+import com.ainory.dev.utils.elastic.entity.ElasticSearchLogPatternInfo;
+import com.ainory.dev.utils.elastic.entity.ElasticSearchLogPatternListInfo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * ElasticSearch Log Pattern Miner
+ *
+ * Online log template clustering ( Drain : fixed depth parse tree ).
+ * A message is split into tokens, tokens with a digit are masked as <*>, then the tree is walked by token count
+ * and the first ( depth - 2 ) tokens. In the leaf the most similar pattern ( same tokens / token count >= similarity )
+ * absorbs the line, its differing tokens becoming <*>, otherwise the line starts a new pattern.
+ *
+ * Lines are consumed one by one ( scroll batches, searchStream consumer ), memory is bounded by
+ * maxPatterns ( smallest of the least recently matched patterns evicted ), maxChildren per tree node, maxTokens per line
+ * and sampleCount lines kept per pattern. Not thread safe.
+ *
+ *  ex) ElasticSearchLogPatternMiner miner = new ElasticSearchLogPatternMiner();
+ *      ElasticSearchSearchUtil.searchStream("127.0.0.1", 9400, querySpec, miner);
+ *      miner.getPatternListInfo(50);
+ */
+public class ElasticSearchLogPatternMiner implements Consumer<ElasticSearchDataInfo> {
+
+    public static final String WILDCARD = "<*>";
+
+    public static final int DEFAULT_DEPTH = 4;
+    public static final double DEFAULT_SIMILARITY = 0.4;
+    public static final int DEFAULT_MAX_CHILDREN = 100;
+    public static final int DEFAULT_MAX_PATTERNS = 1000;
+    public static final int DEFAULT_MAX_TOKENS = 80;
+    public static final int DEFAULT_SAMPLE_COUNT = 3;
+
+    // least recently matched patterns scanned for the smallest one on eviction
+    private static final int EVICTION_SCAN_COUNT = 16;
+
+    private final int depth;
+    private final double similarity;
+    private final int maxChildren;
+    private final int maxTokens;
+    private final int sampleCount;
+    private final int maxPatterns;
+
+    private final Node root = new Node();
+
+    //                          pattern id, pattern ( access order : least recently matched first )
+    private final LinkedHashMap<Long, Pattern> patternMap;
+
+    private long patternId = 0;
+    private long totalCount = 0;
+    private long evictedCount = 0;
+
+    private static class Node {
+        private final HashMap<String, Node> childMap = new HashMap<>();
+        private List<Pattern> patternList;
+    }
+
+    private static class Pattern {
+        private final long id;
+        private final String[] tokens;
+        private final List<Pattern> leaf;
+        private final ArrayList<ElasticSearchDataInfo> sampleList = new ArrayList<>();
+        private long count = 0;
+        private long firstTime = Long.MAX_VALUE;
+        private long lastTime = Long.MIN_VALUE;
+
+        private Pattern(long id, String[] tokens, List<Pattern> leaf) {
+            this.id = id;
+            this.tokens = tokens;
+            this.leaf = leaf;
+        }
+    }
+
+    public ElasticSearchLogPatternMiner() {
+        this(DEFAULT_MAX_PATTERNS);
+    }
+
+    /**
+     * @param maxPatterns - Max patterns kept ( smallest of the least recently matched patterns evicted )
+     */
+    public ElasticSearchLogPatternMiner(int maxPatterns) {
+        this(DEFAULT_DEPTH, DEFAULT_SIMILARITY, DEFAULT_MAX_CHILDREN, maxPatterns, DEFAULT_MAX_TOKENS, DEFAULT_SAMPLE_COUNT);
+    }
+
+    /**
+     * @param depth - Parse tree depth ( 3 or more, prefix tokens = depth - 2 )
+     * @param similarity - Min similarity to join a pattern ( 0 ~ 1 )
+     * @param maxChildren - Max children per tree node ( further tokens go to the <*> child )
+     * @param maxPatterns - Max patterns kept ( smallest of the least recently matched patterns evicted )
+     * @param maxTokens - Tokens per line ( longer lines are cut )
+     * @param sampleCount - Sample lines per pattern
+     */
+    public ElasticSearchLogPatternMiner(int depth, double similarity, int maxChildren, int maxPatterns, int maxTokens, int sampleCount) {
+        this.depth = Math.max(3, depth);
+        this.similarity = similarity;
+        this.maxChildren = Math.max(1, maxChildren);
+        this.maxTokens = Math.max(1, maxTokens);
+        this.sampleCount = Math.max(0, sampleCount);
+
+        this.maxPatterns = Math.max(1, maxPatterns);
+        this.patternMap = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Add one line
+     *
+     * @param elasticSearchDataInfo - Hit ( message null : ignored )
+     */
+    @Override
+    public void accept(ElasticSearchDataInfo elasticSearchDataInfo) {
+
+        if(elasticSearchDataInfo == null || elasticSearchDataInfo.getMessage() == null){
+            return;
+        }
+
+        String[] tokens = tokenize(elasticSearchDataInfo.getMessage());
+        List<Pattern> leaf = getLeaf(tokens);
+
+        Pattern pattern = match(leaf, tokens);
+
+        if(pattern == null){
+            if(patternMap.size() >= maxPatterns){
+                evict();
+            }
+            pattern = new Pattern(++patternId, tokens, leaf);
+            leaf.add(pattern);
+            patternMap.put(pattern.id, pattern);
+        }else{
+            merge(pattern, tokens);
+            // access order
+            patternMap.get(pattern.id);
+        }
+
+        pattern.count++;
+        pattern.firstTime = Math.min(pattern.firstTime, elasticSearchDataInfo.getTime());
+        pattern.lastTime = Math.max(pattern.lastTime, elasticSearchDataInfo.getTime());
+
+        if(pattern.sampleList.size() < sampleCount){
+            pattern.sampleList.add(elasticSearchDataInfo);
+        }
+
+        totalCount++;
+    }
+
+    /**
+     * Patterns by count desc
+     *
+     * @param limit - Max patterns returned ( <= 0 : every pattern )
+     * @return
+     */
+    public ElasticSearchLogPatternListInfo getPatternListInfo(int limit){
+
+        ArrayList<Pattern> patternList = new ArrayList<>(patternMap.values());
+        patternList.sort((pattern1, pattern2) -> Long.compare(pattern2.count, pattern1.count));
+
+        ElasticSearchLogPatternListInfo elasticSearchLogPatternListInfo = new ElasticSearchLogPatternListInfo();
+        elasticSearchLogPatternListInfo.setTotalCount(totalCount);
+        elasticSearchLogPatternListInfo.setEvictedCount(evictedCount);
+
+        int size = limit <= 0 ? patternList.size() : Math.min(limit, patternList.size());
+        for(int i = 0; i < size; i++){
+            Pattern pattern = patternList.get(i);
+
+            ElasticSearchLogPatternInfo elasticSearchLogPatternInfo = new ElasticSearchLogPatternInfo();
+            elasticSearchLogPatternInfo.setTemplate(String.join(" ", pattern.tokens));
+            elasticSearchLogPatternInfo.setCount(pattern.count);
+            elasticSearchLogPatternInfo.setFirstTime(pattern.firstTime);
+            elasticSearchLogPatternInfo.setLastTime(pattern.lastTime);
+            elasticSearchLogPatternInfo.setSampleList(new ArrayList<>(pattern.sampleList));
+
+            elasticSearchLogPatternListInfo.addPatternList(elasticSearchLogPatternInfo);
+        }
+
+        return elasticSearchLogPatternListInfo;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public int getPatternCount() {
+        return patternMap.size();
+    }
+
+    /**
+     * Leaf of token count & prefix tokens ( created on demand )
+     */
+    private List<Pattern> getLeaf(String[] tokens){
+
+        Node node = root.childMap.computeIfAbsent(String.valueOf(tokens.length), key -> new Node());
+
+        int prefixCount = Math.min(depth - 2, tokens.length);
+        for(int i = 0; i < prefixCount; i++){
+
+            String token = tokens[i];
+            Node child = node.childMap.get(token);
+
+            if(child == null){
+                if(node.childMap.size() < maxChildren - 1 || (node.childMap.size() < maxChildren && WILDCARD.equals(token))){
+                    child = new Node();
+                    node.childMap.put(token, child);
+                }else{
+                    // node full -> <*> child ( one slot kept for it )
+                    child = node.childMap.computeIfAbsent(WILDCARD, key -> new Node());
+                }
+            }
+
+            node = child;
+        }
+
+        if(node.patternList == null){
+            node.patternList = new ArrayList<>();
+        }
+
+        return node.patternList;
+    }
+
+    /**
+     * Most similar pattern of leaf ( ties : more <*> ), null : none reaches similarity
+     */
+    private Pattern match(List<Pattern> leaf, String[] tokens){
+
+        Pattern matched = null;
+        double maxSimilarity = -1;
+        int maxWildcardCount = -1;
+
+        for(Pattern pattern : leaf){
+
+            int sameCount = 0;
+            int wildcardCount = 0;
+
+            for(int i = 0; i < tokens.length; i++){
+                String patternToken = pattern.tokens[i];
+                if(WILDCARD.equals(patternToken)){
+                    wildcardCount++;
+                }else if(patternToken.equals(tokens[i])){
+                    sameCount++;
+                }
+            }
+
+            double tokenSimilarity = tokens.length == 0 ? 1.0 : (double) sameCount / tokens.length;
+
+            if(tokenSimilarity > maxSimilarity || (tokenSimilarity == maxSimilarity && wildcardCount > maxWildcardCount)){
+                maxSimilarity = tokenSimilarity;
+                maxWildcardCount = wildcardCount;
+                matched = pattern;
+            }
+        }
+
+        return maxSimilarity >= similarity ? matched : null;
+    }
+
+    /**
+     * Remove the smallest of the least recently matched patterns ( a burst of one-off lines does not flush frequent patterns )
+     */
+    private void evict(){
+
+        Pattern evicted = null;
+
+        Iterator<Pattern> iter = patternMap.values().iterator();
+        for(int i = 0; i < EVICTION_SCAN_COUNT && iter.hasNext(); i++){
+            Pattern pattern = iter.next();
+            if(evicted == null || pattern.count < evicted.count){
+                evicted = pattern;
+            }
+        }
+
+        if(evicted != null){
+            patternMap.remove(evicted.id);
+            evicted.leaf.remove(evicted);
+            evictedCount += evicted.count;
+        }
+    }
+
+    private static void merge(Pattern pattern, String[] tokens){
+        for(int i = 0; i < tokens.length; i++){
+            if(!pattern.tokens[i].equals(tokens[i])){
+                pattern.tokens[i] = WILDCARD;
+            }
+        }
+    }
+
+    /**
+     * Whitespace tokens ( at most maxTokens ), tokens with a digit -> <*>
+     */
+    private String[] tokenize(String message){
+
+        String[] tokens = new String[Math.min(maxTokens, 16)];
+        int count = 0;
+
+        int length = message.length();
+        int index = 0;
+
+        while(index < length && count < maxTokens){
+
+            while(index < length && Character.isWhitespace(message.charAt(index))){
+                index++;
+            }
+            if(index >= length){
+                break;
+            }
+
+            int begin = index;
+            boolean hasDigit = false;
+            while(index < length && !Character.isWhitespace(message.charAt(index))){
+                hasDigit |= Character.isDigit(message.charAt(index));
+                index++;
+            }
+
+            if(count == tokens.length){
+                tokens = Arrays.copyOf(tokens, Math.min(maxTokens, tokens.length << 1));
+            }
+            tokens[count++] = hasDigit ? WILDCARD : message.substring(begin, index);
+        }
+
+        return count == tokens.length ? tokens : Arrays.copyOf(tokens, count);
+    }
+
+    /**
+     * Clear every pattern
+     */
+    public void clear(){
+        root.childMap.clear();
+        patternMap.clear();
+        totalCount = 0;
+        evictedCount = 0;
+    }
+}
@@ -0,0 +1,399 @@
+package com.ainory.dev.utils.elastic;
+
+import com.ainory.dev.utils.elastic.entity.ElasticSearchMetricsInfo;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.search.SearchHit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ElasticSearch Metrics
+ *
+ * HDR histograms per ( method, aggregationType ) of
+ *     TOOK_MS       : server side took
+ *     ROUND_TRIP_MS : client round trip ( request sent -> response parsed )
+ *     DECODE_MS     : hits / aggregation -> entity
+ *     HITS          : decoded hits per call
+ *     BYTES         : decoded _source bytes per call
+ * A call with several round trips ( scroll, partitions ) is recorded once with the sums.
+ * Recording is wait free ( HdrHistogram Recorder ). Cumulative metrics are exposed through JMX ( registerMBean ),
+ * interval metrics are pushed to reporters ( addReporter, startReporting ).
+ *
+ * ex) ElasticSearchMetrics.addReporter(metricsInfoList -> metricsInfoList.forEach(metricsInfo -> logger.info(metricsInfo.toString())));
+ *     ElasticSearchMetrics.startReporting(60000);
+ *     ElasticSearchMetrics.registerMBean();
+ */
+public class ElasticSearchMetrics implements ElasticSearchMetricsMBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(ElasticSearchMetrics.class);
+
+    public enum METRIC {
+        TOOK_MS, ROUND_TRIP_MS, DECODE_MS, HITS, BYTES
+    }
+
+    public static final String OBJECT_NAME = "com.ainory.dev.utils.elastic:type=ElasticSearchMetrics";
+
+    private static final String NONE = "-";
+    private static final String KEY_DELIMITER = "|";
+    private static final int SIGNIFICANT_DIGITS = 2;
+
+    private static final ElasticSearchMetrics INSTANCE = new ElasticSearchMetrics();
+
+    //                      method|aggregationType, histograms
+    private final ConcurrentHashMap<String, MetricSet> metricSetMap = new ConcurrentHashMap<>();
+    private final CopyOnWriteArrayList<ElasticSearchMetricsReporter> reporterList = new CopyOnWriteArrayList<>();
+    private final AtomicLong callCount = new AtomicLong(0);
+
+    private volatile boolean enabled = true;
+    private ScheduledExecutorService reportScheduler;
+
+    private ElasticSearchMetrics() {
+    }
+
+    /**
+     * Histograms of one ( method, aggregationType )
+     */
+    private static class MetricSet {
+
+        private final String method;
+        private final String aggregationType;
+
+        private final Recorder[] recorders = new Recorder[METRIC.values().length];
+        private final Histogram[] cumulative = new Histogram[METRIC.values().length];
+        private final Histogram[] interval = new Histogram[METRIC.values().length];
+
+        private MetricSet(String method, String aggregationType) {
+            this.method = method;
+            this.aggregationType = aggregationType;
+            for(int i = 0; i < recorders.length; i++){
+                recorders[i] = new Recorder(SIGNIFICANT_DIGITS);
+                cumulative[i] = new Histogram(SIGNIFICANT_DIGITS);
+                interval[i] = new Histogram(SIGNIFICANT_DIGITS);
+            }
+        }
+
+        private void record(METRIC metric, long value){
+            recorders[metric.ordinal()].recordValue(Math.max(0, value));
+        }
+
+        /**
+         * Recorder -> cumulative & interval
+         */
+        private synchronized void flush(){
+            for(int i = 0; i < recorders.length; i++){
+                Histogram histogram = recorders[i].getIntervalHistogram();
+                cumulative[i].add(histogram);
+                interval[i].add(histogram);
+            }
+        }
+
+        private synchronized void toMetricsInfo(List<ElasticSearchMetricsInfo> metricsInfoList, boolean cumulativeOnly){
+            flush();
+
+            Histogram[] histograms = cumulativeOnly ? cumulative : interval;
+
+            for(METRIC metric : METRIC.values()){
+                Histogram histogram = histograms[metric.ordinal()];
+                if(histogram.getTotalCount() > 0){
+                    metricsInfoList.add(getMetricsInfo(method, aggregationType, metric, histogram));
+                }
+            }
+
+            if(!cumulativeOnly){
+                for(Histogram histogram : interval){
+                    histogram.reset();
+                }
+            }
+        }
+
+        private synchronized void reset(){
+            for(int i = 0; i < recorders.length; i++){
+                recorders[i].reset();
+                cumulative[i].reset();
+                interval[i].reset();
+            }
+        }
+    }
+
+    /**
+     * One call ( not thread safe, use from the calling thread )
+     */
+    public static class Sample {
+
+        private final String method;
+        private final String aggregationType;
+
+        private long tookMs = 0;
+        private long roundTripNanos = 0;
+        private long decodeNanos = 0;
+        private long hits = 0;
+        private long bytes = 0;
+
+        private Sample(String method, String aggregationType) {
+            this.method = method;
+            this.aggregationType = aggregationType;
+        }
+
+        /**
+         * Round trip end
+         *
+         * @param searchResponse
+         * @param requestStartNanos - System.nanoTime() before the request
+         */
+        public void response(SearchResponse searchResponse, long requestStartNanos){
+            roundTripNanos += System.nanoTime() - requestStartNanos;
+            tookMs += searchResponse.getTookInMillis();
+        }
+
+        /**
+         * Decode end ( aggregation )
+         *
+         * @param decodeStartNanos - System.nanoTime() before decoding
+         */
+        public void decode(long decodeStartNanos){
+            decodeNanos += System.nanoTime() - decodeStartNanos;
+        }
+
+        /**
+         * Decode end ( hits )
+         *
+         * @param decodeStartNanos - System.nanoTime() before decoding
+         * @param searchHits - Decoded hits
+         */
+        public void decode(long decodeStartNanos, SearchHit[] searchHits){
+            decode(decodeStartNanos);
+
+            if(searchHits != null){
+                for(SearchHit hit : searchHits){
+                    addHit(hit);
+                }
+            }
+        }
+
+        /**
+         * Decode end ( one hit )
+         *
+         * @param decodeStartNanos - System.nanoTime() before decoding
+         * @param hit - Decoded hit
+         */
+        public void decode(long decodeStartNanos, SearchHit hit){
+            decode(decodeStartNanos);
+            addHit(hit);
+        }
+
+        private void addHit(SearchHit hit){
+            if(hit != null){
+                hits++;
+                if(hit.hasSource()){
+                    bytes += hit.getSourceRef().length();
+                }
+            }
+        }
+
+        /**
+         * Record the call
+         */
+        public void end(){
+            INSTANCE.record(this);
+        }
+    }
+
+    /**
+     * Start one call
+     *
+     * @param method - Method name ( ex. searchFilter, aggregationHost )
+     * @param aggregationType - Aggregation type ( null : none )
+     * @return
+     */
+    public static Sample start(String method, String aggregationType){
+        return new Sample(StringUtils.defaultIfEmpty(method, NONE), StringUtils.defaultIfEmpty(aggregationType, NONE));
+    }
+
+    private void record(Sample sample){
+
+        if(!enabled){
+            return;
+        }
+
+        callCount.incrementAndGet();
+
+        MetricSet metricSet = metricSetMap.computeIfAbsent(sample.method + KEY_DELIMITER + sample.aggregationType, key -> new MetricSet(sample.method, sample.aggregationType));
+
+        // latency in microseconds
+        metricSet.record(METRIC.TOOK_MS, sample.tookMs * 1000);
+        metricSet.record(METRIC.ROUND_TRIP_MS, sample.roundTripNanos / 1000);
+        metricSet.record(METRIC.DECODE_MS, sample.decodeNanos / 1000);
+        metricSet.record(METRIC.HITS, sample.hits);
+        metricSet.record(METRIC.BYTES, sample.bytes);
+    }
+
+    private static ElasticSearchMetricsInfo getMetricsInfo(String method, String aggregationType, METRIC metric, Histogram histogram){
+
+        double scale = metric.name().endsWith("_MS") ? 1000.0 : 1.0;
+
+        ElasticSearchMetricsInfo elasticSearchMetricsInfo = new ElasticSearchMetricsInfo();
+        elasticSearchMetricsInfo.setMethod(method);
+        elasticSearchMetricsInfo.setAggregationType(aggregationType);
+        elasticSearchMetricsInfo.setMetric(metric.name());
+        elasticSearchMetricsInfo.setCount(histogram.getTotalCount());
+        elasticSearchMetricsInfo.setMin(histogram.getMinValue() / scale);
+        elasticSearchMetricsInfo.setMean(histogram.getMean() / scale);
+        elasticSearchMetricsInfo.setP50(histogram.getValueAtPercentile(50.0) / scale);
+        elasticSearchMetricsInfo.setP90(histogram.getValueAtPercentile(90.0) / scale);
+        elasticSearchMetricsInfo.setP99(histogram.getValueAtPercentile(99.0) / scale);
+        elasticSearchMetricsInfo.setMax(histogram.getMaxValue() / scale);
+
+        return elasticSearchMetricsInfo;
+    }
+
+    /**
+     * Cumulative metrics ( sorted by method, aggregationType )
+     *
+     * @return
+     */
+    public static List<ElasticSearchMetricsInfo> getMetricsInfoList(){
+
+        ArrayList<ElasticSearchMetricsInfo> metricsInfoList = new ArrayList<>();
+
+        for(MetricSet metricSet : new TreeMap<>(INSTANCE.metricSetMap).values()){
+            metricSet.toMetricsInfo(metricsInfoList, true);
+        }
+
+        return metricsInfoList;
+    }
+
+    /**
+     * Add reporter ( called by startReporting )
+     *
+     * @param reporter
+     */
+    public static void addReporter(ElasticSearchMetricsReporter reporter){
+        INSTANCE.reporterList.add(reporter);
+    }
+
+    public static void removeReporter(ElasticSearchMetricsReporter reporter){
+        INSTANCE.reporterList.remove(reporter);
+    }
+
+    /**
+     * Report interval metrics to every reporter periodically ( daemon thread )
+     *
+     * @param periodMs - Report period (ms)
+     */
+    public static synchronized void startReporting(long periodMs){
+
+        stopReporting();
+
+        INSTANCE.reportScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "es-metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        INSTANCE.reportScheduler.scheduleAtFixedRate(ElasticSearchMetrics::report, periodMs, periodMs, TimeUnit.MILLISECONDS);
+    }
+
+    public static synchronized void stopReporting(){
+        if(INSTANCE.reportScheduler != null){
+            INSTANCE.reportScheduler.shutdownNow();
+            INSTANCE.reportScheduler = null;
+        }
+    }
+
+    /**
+     * Report interval metrics now
+     */
+    public static void report(){
+
+        ArrayList<ElasticSearchMetricsInfo> metricsInfoList = new ArrayList<>();
+
+        for(MetricSet metricSet : new TreeMap<>(INSTANCE.metricSetMap).values()){
+            metricSet.toMetricsInfo(metricsInfoList, false);
+        }
+
+        for(ElasticSearchMetricsReporter reporter : INSTANCE.reporterList){
+            try{
+                reporter.report(metricsInfoList);
+            }catch (Exception e){
+                logger.error(ExceptionUtils.getStackTrace(e));
+            }
+        }
+    }
+
+    /**
+     * Register JMX MBean ( OBJECT_NAME )
+     */
+    public static synchronized void registerMBean(){
+        try{
+            ObjectName objectName = new ObjectName(OBJECT_NAME);
+            if(!ManagementFactory.getPlatformMBeanServer().isRegistered(objectName)){
+                ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, objectName);
+            }
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
+        }
+    }
+
+    public static void setMetricsEnabled(boolean enabled){
+        INSTANCE.enabled = enabled;
+    }
+
+    public static void resetMetrics(){
+        INSTANCE.reset();
+    }
+
+    @Override
+    public String[] getSummary() {
+
+        List<ElasticSearchMetricsInfo> metricsInfoList = getMetricsInfoList();
+        String[] summary = new String[metricsInfoList.size()];
+
+        for(int i = 0; i < summary.length; i++){
+            ElasticSearchMetricsInfo metricsInfo = metricsInfoList.get(i);
+            summary[i] = String.format("%s %s %s count=%d mean=%.2f p50=%.2f p90=%.2f p99=%.2f max=%.2f",
+                    metricsInfo.getMethod(), metricsInfo.getAggregationType(), metricsInfo.getMetric(), metricsInfo.getCount(),
+                    metricsInfo.getMean(), metricsInfo.getP50(), metricsInfo.getP90(), metricsInfo.getP99(), metricsInfo.getMax());
+        }
+
+        return summary;
+    }
+
+    @Override
+    public long getCallCount() {
+        return callCount.get();
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public void reset() {
+        for(Map.Entry<String, MetricSet> entry : metricSetMap.entrySet()){
+            entry.getValue().reset();
+        }
+        callCount.set(0);
+    }
+}
@@ -0,0 +1,30 @@
+package com.ainory.dev.utils.elastic;
+
+/**
+ * ElasticSearch Metrics JMX interface ( com.ainory.dev.utils.elastic:type=ElasticSearchMetrics )
+ */
+public interface ElasticSearchMetricsMBean {
+
+    /**
+     * Cumulative summary, one line per ( method, aggregationType, metric )
+     *
+     * @return
+     */
+    String[] getSummary();
+
+    /**
+     * Recorded call count
+     *
+     * @return
+     */
+    long getCallCount();
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    /**
+     * Clear every histogram
+     */
+    void reset();
+}
@@ -0,0 +1,18 @@
+package com.ainory.dev.utils.elastic;
+
+import com.ainory.dev.utils.elastic.entity.ElasticSearchMetricsInfo;
+
+import java.util.List;
+
+/**
+ * ElasticSearch Metrics Reporter
+ *
+ * Receives the metrics recorded since the previous report ( ElasticSearchMetrics.startReporting ).
+ */
+public interface ElasticSearchMetricsReporter {
+
+    /**
+     * @param metricsInfoList - Interval metrics ( metrics without calls in the interval are omitted )
+     */
+    void report(List<ElasticSearchMetricsInfo> metricsInfoList);
+}
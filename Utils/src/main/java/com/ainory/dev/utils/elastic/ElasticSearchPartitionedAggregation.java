@@ -0,0 +1,298 @@
+package com.ainory.dev.utils.elastic;
+
+import com.ainory.dev.utils.elastic.ElasticSearchSearchUtil.AGGREGATION_TYPE;
+import com.ainory.dev.utils.elastic.entity.ElasticSearchAggregationListInfo;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.elasticsearch.search.aggregations.bucket.terms.TermsAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.terms.support.IncludeExclude;
+import org.elasticsearch.search.aggregations.metrics.cardinality.ParsedCardinality;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.function.Consumer;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * ElasticSearch Partitioned Aggregation
+ *
+ * Complete Host / File / Host_File breakdown without the default top 10 terms truncation.
+ * The distinct key count is estimated first ( cardinality ), then the terms are split into hash partitions
+ * ( terms include partition / num_partitions ) of about partitionSize keys, requested one after another.
+ * Only one partition is held by the coordinating node and by this client at a time.
+ *
+ * Partitions are not ordered by doc count, keys come in hash order.
+ * A partition with keys left out ( sum_other_doc_count > 0, HOST_FILE : also of the nested file terms ) is requested again
+ * with a doubled terms size, up to MAX_RETRY_COUNT times, then the aggregation fails ( no silently partial breakdown ).
+ * ( composite aggregation / after_key is not available in ES 5.x, terms partitioning is its 5.x equivalent )
+ */
+final class ElasticSearchPartitionedAggregation {
+
+    private static final Logger logger = LoggerFactory.getLogger(ElasticSearchPartitionedAggregation.class);
+
+    static final int DEFAULT_PARTITION_SIZE = 500;
+
+    private static final String CARDINALITY_HOST = "CARDINALITY_HOST";
+    private static final String CARDINALITY_FILE = "CARDINALITY_FILE";
+
+    // cardinality is approximate and hash partitions are uneven -> terms size headroom
+    private static final double TERMS_SIZE_FACTOR = 1.5;
+
+    // re-requests of a truncated partition ( terms size doubled each time )
+    static final int MAX_RETRY_COUNT = 3;
+
+    private ElasticSearchPartitionedAggregation() {
+    }
+
+    /**
+     * Partitioned Aggregation
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param aggregation_type - HOST, FILE, HOST_FILE
+     * @param startTime - Aggregation Start Time
+     * @param endTime - Aggregation End Time
+     * @param requestPeriod - Period ( coarsened above ElasticSearchSearchUtil.getMaxAggregationPoints() buckets )
+     * @param requestPeriodUnit - d:Day, h:Hour, m:Minute, s:Seconds
+     * @param partitionSize - Keys per partition ( HOST_FILE : hosts per partition )
+     * @param partitionConsumer - Checked aggregation of every partition ( series of that partition only )
+     * @return request info & elapsed time ( series are empty ) , periodUnit null : request fail
+     */
+    static ElasticSearchAggregationListInfo aggregation(String esHost, int esPort, AGGREGATION_TYPE aggregation_type, String startTime, String endTime, int requestPeriod, String requestPeriodUnit,
+                                                        int partitionSize, Consumer<ElasticSearchAggregationListInfo> partitionConsumer){
+
+        long start = System.nanoTime();
+
+        ElasticSearchResolutionPlanner.Resolution resolution = ElasticSearchResolutionPlanner.plan(startTime, endTime, requestPeriod, requestPeriodUnit, ElasticSearchSearchUtil.getMaxAggregationPoints());
+        int period = resolution.getPeriod();
+        String periodUnit = resolution.getPeriodUnit();
+
+        try{
+
+            ElasticSearchMetrics.Sample sample = ElasticSearchMetrics.start(ElasticSearchSearchUtil.getAggregationMetricsName(aggregation_type) + "Partitioned", aggregation_type.name());
+
+            forEachPartition(esHost, esPort, aggregation_type, startTime, endTime, period, periodUnit, partitionSize, sample, (searchResponse, partitionStart) -> {
+
+                long decodeStart = System.nanoTime();
+                ElasticSearchAggregationListInfo partitionInfo = ElasticSearchSearchUtil.getAggregationData(aggregation_type, startTime, endTime, period, periodUnit, searchResponse, partitionStart);
+                sample.decode(decodeStart);
+
+                if(partitionInfo.getPeriodUnit() == null){
+                    throw new IllegalStateException("Partition parse fail");
+                }
+
+                partitionInfo.setRequestPeriod(requestPeriod);
+                partitionInfo.setRequestPeriodUnit(requestPeriodUnit);
+
+                partitionConsumer.accept(partitionInfo);
+            });
+
+            sample.end();
+
+            ElasticSearchAggregationListInfo elasticSearchAggregationListInfo = new ElasticSearchAggregationListInfo();
+            elasticSearchAggregationListInfo.setRequestStartTime(startTime);
+            elasticSearchAggregationListInfo.setRequestEndTime(endTime);
+            elasticSearchAggregationListInfo.setPeriod(period);
+            elasticSearchAggregationListInfo.setPeriodUnit(periodUnit);
+            elasticSearchAggregationListInfo.setRequestPeriod(requestPeriod);
+            elasticSearchAggregationListInfo.setRequestPeriodUnit(requestPeriodUnit);
+            elasticSearchAggregationListInfo.setElapsedMsTime((System.nanoTime()-start)/ 1000000.0);
+
+            return elasticSearchAggregationListInfo;
+
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
+            return ElasticSearchSearchUtil.getAggregationErrorData(startTime, endTime, start);
+        }
+    }
+
+    /**
+     * Request every partition in turn
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param aggregation_type - HOST, FILE, HOST_FILE
+     * @param startTime - Aggregation Start Time
+     * @param endTime - Aggregation End Time
+     * @param period - Period
+     * @param periodUnit - d:Day, h:Hour, m:Minute, s:Seconds
+     * @param partitionSize - Keys per partition ( HOST_FILE : hosts per partition, <= 0 : DEFAULT_PARTITION_SIZE )
+     * @param sample - Metrics sample ( response time of every request )
+     * @param responseConsumer - Response of every partition ( aggregation name : aggregation_type name ) & partition start nano time
+     * @throws Exception ( IllegalStateException : partition still truncated after MAX_RETRY_COUNT retries )
+     */
+    static void forEachPartition(String esHost, int esPort, AGGREGATION_TYPE aggregation_type, String startTime, String endTime, int period, String periodUnit,
+                                 int partitionSize, ElasticSearchMetrics.Sample sample, ObjLongConsumer<SearchResponse> responseConsumer) throws Exception{
+
+        if(partitionSize <= 0){
+            partitionSize = DEFAULT_PARTITION_SIZE;
+        }
+
+        RestHighLevelClient restHighLevelClient = ElasticSearchClientRegistry.getClient(esHost, esPort);
+
+        // Key count
+        long requestStart = System.nanoTime();
+        SearchResponse cardinalityResponse = restHighLevelClient.search(getSearchRequest(startTime, endTime, getCardinalityBuilder(aggregation_type, CARDINALITY_HOST), getCardinalityBuilder(AGGREGATION_TYPE.FILE, CARDINALITY_FILE)));
+        sample.response(cardinalityResponse, requestStart);
+
+        long keyCount = ((ParsedCardinality) cardinalityResponse.getAggregations().get(CARDINALITY_HOST)).getValue();
+        long fileCount = ((ParsedCardinality) cardinalityResponse.getAggregations().get(CARDINALITY_FILE)).getValue();
+
+        int numPartitions = (int) Math.max(1, (keyCount + partitionSize - 1) / partitionSize);
+        int termsSize = getTermsSize(Math.min(keyCount, partitionSize));
+        int innerTermsSize = getTermsSize(fileCount);
+
+        for(int partition = 0; partition < numPartitions; partition++){
+
+            long partitionStart = System.nanoTime();
+
+            SearchResponse searchResponse;
+            for(int retry = 0; ; retry++){
+
+                AggregationBuilder aggregationBuilder = getTermsBuilder(aggregation_type, startTime, endTime, period, periodUnit, partition, numPartitions, termsSize, innerTermsSize);
+
+                requestStart = System.nanoTime();
+                searchResponse = restHighLevelClient.search(getSearchRequest(startTime, endTime, aggregationBuilder));
+                sample.response(searchResponse, requestStart);
+
+                long otherDocCount = getOtherDocCount(aggregation_type, searchResponse);
+                long innerOtherDocCount = getInnerOtherDocCount(aggregation_type, searchResponse);
+
+                if(otherDocCount == 0 && innerOtherDocCount == 0){
+                    break;
+                }
+
+                // keys missing from the breakdown -> fail rather than return a silently partial result
+                if(retry == MAX_RETRY_COUNT){
+                    throw new IllegalStateException("Partition " + partition + "/" + numPartitions + " truncated after " + MAX_RETRY_COUNT + " retries ( terms size : " + termsSize
+                            + ", sum_other_doc_count : " + otherDocCount + ", file terms size : " + innerTermsSize + ", file sum_other_doc_count : " + innerOtherDocCount + " )");
+                }
+
+                // grown sizes are kept for the next partitions ( key count underestimated )
+                if(otherDocCount > 0){
+                    termsSize = getRetryTermsSize(termsSize);
+                }
+                if(innerOtherDocCount > 0){
+                    innerTermsSize = getRetryTermsSize(innerTermsSize);
+                }
+
+                logger.warn("Partition " + partition + "/" + numPartitions + " truncated, retry with terms size : " + termsSize + ", file terms size : " + innerTermsSize);
+            }
+
+            responseConsumer.accept(searchResponse, partitionStart);
+        }
+    }
+
+    /**
+     * Docs of the partition terms left out by the terms size
+     *
+     * @param aggregation_type - HOST, FILE, HOST_FILE
+     * @param searchResponse - Partition response
+     * @return sum_other_doc_count
+     */
+    static long getOtherDocCount(AGGREGATION_TYPE aggregation_type, SearchResponse searchResponse){
+        Terms terms = searchResponse.getAggregations().get(aggregation_type.name());
+        return terms.getSumOfOtherDocCounts();
+    }
+
+    /**
+     * Docs of the nested file terms left out by the file terms size ( HOST_FILE only )
+     *
+     * @param aggregation_type - HOST, FILE, HOST_FILE
+     * @param searchResponse - Partition response
+     * @return max sum_other_doc_count of the host buckets ( 0 : not HOST_FILE )
+     */
+    static long getInnerOtherDocCount(AGGREGATION_TYPE aggregation_type, SearchResponse searchResponse){
+
+        if(aggregation_type != AGGREGATION_TYPE.HOST_FILE){
+            return 0;
+        }
+
+        long otherDocCount = 0;
+
+        Terms terms = searchResponse.getAggregations().get(aggregation_type.name());
+        for(Terms.Bucket bucket : terms.getBuckets()){
+            Terms fileTerms = bucket.getAggregations().get(AGGREGATION_TYPE.FILE.name());
+            otherDocCount = Math.max(otherDocCount, fileTerms.getSumOfOtherDocCounts());
+        }
+
+        return otherDocCount;
+    }
+
+    /**
+     * Partition Terms Builder ( HOST_FILE : host partitioned, file terms nested )
+     *
+     * @return
+     * @throws Exception
+     */
+    private static AggregationBuilder getTermsBuilder(AGGREGATION_TYPE aggregation_type, String startTime, String endTime, int period, String periodUnit,
+                                                      int partition, int numPartitions, int termsSize, int innerTermsSize) throws Exception{
+
+        ElasticSearchQueryContext queryContext = ElasticSearchSearchUtil.getQueryContext();
+
+        AggregationBuilder dateHistogramAggregationBuilder = ElasticSearchSearchUtil.getAggregationBuilder(AGGREGATION_TYPE.ALL, startTime, endTime, period, periodUnit);
+
+        TermsAggregationBuilder termsAggregationBuilder = AggregationBuilders.terms(aggregation_type.name())
+                .field(aggregation_type == AGGREGATION_TYPE.FILE ? queryContext.getAggregationFieldFile() : queryContext.getAggregationFieldHost())
+                .includeExclude(new IncludeExclude(partition, numPartitions))
+                .size(termsSize);
+
+        if(aggregation_type == AGGREGATION_TYPE.HOST_FILE){
+            return termsAggregationBuilder.subAggregation(AggregationBuilders.terms(AGGREGATION_TYPE.FILE.name())
+                    .field(queryContext.getAggregationFieldFile())
+                    .size(innerTermsSize)
+                    .subAggregation(dateHistogramAggregationBuilder));
+        }
+
+        return termsAggregationBuilder.subAggregation(dateHistogramAggregationBuilder);
+    }
+
+    /**
+     * Cardinality Builder ( partitioned key field )
+     *
+     * @param aggregation_type - FILE : file field, others : host field
+     * @param name - Aggregation name
+     * @return
+     */
+    private static AggregationBuilder getCardinalityBuilder(AGGREGATION_TYPE aggregation_type, String name){
+        ElasticSearchQueryContext queryContext = ElasticSearchSearchUtil.getQueryContext();
+        return AggregationBuilders.cardinality(name).field(aggregation_type == AGGREGATION_TYPE.FILE ? queryContext.getAggregationFieldFile() : queryContext.getAggregationFieldHost());
+    }
+
+    private static int getTermsSize(long keyCount){
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(10, (long) Math.ceil(keyCount * TERMS_SIZE_FACTOR)));
+    }
+
+    static int getRetryTermsSize(int termsSize){
+        return (int) Math.min(Integer.MAX_VALUE, termsSize * 2L);
+    }
+
+    /**
+     * Aggregation Search Request ( time range, size 0 )
+     *
+     * @return
+     * @throws Exception
+     */
+    private static SearchRequest getSearchRequest(String startTime, String endTime, AggregationBuilder... aggregationBuilders) throws Exception{
+
+        SearchRequest searchRequest = ElasticSearchSearchUtil.getSearchRequest(ElasticSearchSearchUtil.getMilliTime(startTime), ElasticSearchSearchUtil.getMilliTime(endTime));
+        SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder();
+
+        for(AggregationBuilder aggregationBuilder : aggregationBuilders){
+            searchSourceBuilder.aggregation(aggregationBuilder);
+        }
+
+        searchSourceBuilder.query(ElasticSearchSearchUtil.getAggregationRangeQueryBuilder(startTime, endTime));
+        searchSourceBuilder.size(0);
+
+        searchRequest.source(searchSourceBuilder);
+
+        return searchRequest;
+    }
+}
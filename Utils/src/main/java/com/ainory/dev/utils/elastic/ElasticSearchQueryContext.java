@@ -0,0 +1,288 @@
+package com.ainory.dev.utils.elastic;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+
+/**
+ * ElasticSearch Query Context
+ *
+ * Index pattern, field mapping and time zone used by ElasticSearchSearchUtil.
+ * With DAILY / MONTHLY index routing a time range query is sent only to the indices overlapping the range
+ * ( indexPrefix + date formatted by indexDateFormat in indexZoneId ), missing indices are ignored.
+ * When the range covers more than maxIndexCount indices, indexPattern is used instead.
+ *
+ * ex) ElasticSearchQueryContext queryContext = new ElasticSearchQueryContext();
+ *     queryContext.setIndexPrefix("logstash-");
+ *     queryContext.setIndexPattern("logstash-*");
+ *     queryContext.setIndexRouting(ElasticSearchQueryContext.INDEX_ROUTING.DAILY);
+ *     ElasticSearchSearchUtil.setQueryContext(queryContext);
+ *
+ * ElasticSearchSearchUtil keeps a read only copy of the context it is given : later changes of the caller's context
+ * are not applied until it is set again, and the context returned by getQueryContext rejects every setter.
+ */
+public class ElasticSearchQueryContext {
+
+    public enum INDEX_ROUTING {
+        NONE, DAILY, MONTHLY
+    }
+
+    public static final String INDEX_DATE_FORMAT_DAILY = "yyyy.MM.dd";
+    public static final String INDEX_DATE_FORMAT_MONTHLY = "yyyy.MM";
+
+    // Index
+    private String indexPattern = "index-*";
+    private String indexPrefix = "index-";
+    private INDEX_ROUTING indexRouting = INDEX_ROUTING.NONE;
+    private String indexDateFormat;
+    private String indexZoneId = "UTC";
+    private int maxIndexCount = 62;
+
+    // Field
+    private String fieldTimestamp = "@timestamp";
+    private String fieldHost = "host";
+    private String fieldFile = "file";
+    private String fieldMessage = "message";
+    private String aggregationFieldHost = "host.keyword";
+    private String aggregationFieldFile = "file.keyword";
+
+    // Request / Response time zone
+    private String zoneId = "Asia/Seoul";
+
+    private final boolean readOnly;
+
+    public ElasticSearchQueryContext() {
+        this.readOnly = false;
+    }
+
+    /**
+     * Copy of a context ( modifiable )
+     *
+     * @param elasticSearchQueryContext - Source context
+     */
+    public ElasticSearchQueryContext(ElasticSearchQueryContext elasticSearchQueryContext) {
+        this(elasticSearchQueryContext, false);
+    }
+
+    ElasticSearchQueryContext(ElasticSearchQueryContext elasticSearchQueryContext, boolean readOnly) {
+        this.indexPattern = elasticSearchQueryContext.indexPattern;
+        this.indexPrefix = elasticSearchQueryContext.indexPrefix;
+        this.indexRouting = elasticSearchQueryContext.indexRouting;
+        this.indexDateFormat = elasticSearchQueryContext.indexDateFormat;
+        this.indexZoneId = elasticSearchQueryContext.indexZoneId;
+        this.maxIndexCount = elasticSearchQueryContext.maxIndexCount;
+        this.fieldTimestamp = elasticSearchQueryContext.fieldTimestamp;
+        this.fieldHost = elasticSearchQueryContext.fieldHost;
+        this.fieldFile = elasticSearchQueryContext.fieldFile;
+        this.fieldMessage = elasticSearchQueryContext.fieldMessage;
+        this.aggregationFieldHost = elasticSearchQueryContext.aggregationFieldHost;
+        this.aggregationFieldFile = elasticSearchQueryContext.aggregationFieldFile;
+        this.zoneId = elasticSearchQueryContext.zoneId;
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * Read only copy ( context of ElasticSearchSearchUtil )
+     */
+    ElasticSearchQueryContext readOnlyCopy(){
+        return new ElasticSearchQueryContext(this, true);
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * Indices for time range
+     *
+     * @param startMillis - Range start ( epoch millis )
+     * @param endMillis - Range end ( epoch millis )
+     * @return routed indices or indexPattern
+     */
+    public String[] getIndices(long startMillis, long endMillis){
+
+        if(indexRouting == null || indexRouting == INDEX_ROUTING.NONE || startMillis > endMillis){
+            return new String[]{indexPattern};
+        }
+
+        ZoneId zone = ZoneId.of(indexZoneId);
+        DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern(getIndexDateFormat());
+
+        LocalDate date = Instant.ofEpochMilli(startMillis).atZone(zone).toLocalDate();
+        LocalDate endDate = Instant.ofEpochMilli(endMillis).atZone(zone).toLocalDate();
+
+        if(indexRouting == INDEX_ROUTING.MONTHLY){
+            date = date.withDayOfMonth(1);
+            endDate = endDate.withDayOfMonth(1);
+        }
+
+        ArrayList<String> indexList = new ArrayList<>();
+
+        while (!date.isAfter(endDate)){
+
+            if(indexList.size() >= maxIndexCount){
+                return new String[]{indexPattern};
+            }
+
+            indexList.add(indexPrefix + date.format(dateTimeFormatter));
+
+            date = indexRouting == INDEX_ROUTING.MONTHLY ? date.plusMonths(1) : date.plusDays(1);
+        }
+
+        return indexList.toArray(new String[indexList.size()]);
+    }
+
+    public String getIndexPattern() {
+        return indexPattern;
+    }
+
+    public void setIndexPattern(String indexPattern) {
+        checkWritable();
+        this.indexPattern = indexPattern;
+    }
+
+    public String getIndexPrefix() {
+        return indexPrefix;
+    }
+
+    public void setIndexPrefix(String indexPrefix) {
+        checkWritable();
+        this.indexPrefix = indexPrefix;
+    }
+
+    public INDEX_ROUTING getIndexRouting() {
+        return indexRouting;
+    }
+
+    public void setIndexRouting(INDEX_ROUTING indexRouting) {
+        checkWritable();
+        this.indexRouting = indexRouting;
+    }
+
+    /**
+     * Index date format ( default : INDEX_DATE_FORMAT_DAILY or INDEX_DATE_FORMAT_MONTHLY by indexRouting )
+     *
+     * @return
+     */
+    public String getIndexDateFormat() {
+        if(StringUtils.isNotEmpty(indexDateFormat)){
+            return indexDateFormat;
+        }
+        return indexRouting == INDEX_ROUTING.MONTHLY ? INDEX_DATE_FORMAT_MONTHLY : INDEX_DATE_FORMAT_DAILY;
+    }
+
+    public void setIndexDateFormat(String indexDateFormat) {
+        checkWritable();
+        this.indexDateFormat = indexDateFormat;
+    }
+
+    public String getIndexZoneId() {
+        return indexZoneId;
+    }
+
+    public void setIndexZoneId(String indexZoneId) {
+        checkWritable();
+        this.indexZoneId = indexZoneId;
+    }
+
+    public int getMaxIndexCount() {
+        return maxIndexCount;
+    }
+
+    public void setMaxIndexCount(int maxIndexCount) {
+        checkWritable();
+        this.maxIndexCount = maxIndexCount;
+    }
+
+    public String getFieldTimestamp() {
+        return fieldTimestamp;
+    }
+
+    public void setFieldTimestamp(String fieldTimestamp) {
+        checkWritable();
+        this.fieldTimestamp = fieldTimestamp;
+    }
+
+    public String getFieldHost() {
+        return fieldHost;
+    }
+
+    public void setFieldHost(String fieldHost) {
+        checkWritable();
+        this.fieldHost = fieldHost;
+    }
+
+    public String getFieldFile() {
+        return fieldFile;
+    }
+
+    public void setFieldFile(String fieldFile) {
+        checkWritable();
+        this.fieldFile = fieldFile;
+    }
+
+    public String getFieldMessage() {
+        return fieldMessage;
+    }
+
+    public void setFieldMessage(String fieldMessage) {
+        checkWritable();
+        this.fieldMessage = fieldMessage;
+    }
+
+    public String getAggregationFieldHost() {
+        return aggregationFieldHost;
+    }
+
+    public void setAggregationFieldHost(String aggregationFieldHost) {
+        checkWritable();
+        this.aggregationFieldHost = aggregationFieldHost;
+    }
+
+    public String getAggregationFieldFile() {
+        return aggregationFieldFile;
+    }
+
+    public void setAggregationFieldFile(String aggregationFieldFile) {
+        checkWritable();
+        this.aggregationFieldFile = aggregationFieldFile;
+    }
+
+    public String getZoneId() {
+        return zoneId;
+    }
+
+    public void setZoneId(String zoneId) {
+        checkWritable();
+        this.zoneId = zoneId;
+    }
+
+    private void checkWritable(){
+        if(readOnly){
+            throw new UnsupportedOperationException("Read only query context ( copy it with new ElasticSearchQueryContext(context) and set the copy )");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ElasticSearchQueryContext{" +
+                "indexPattern='" + indexPattern + '\'' +
+                ", indexPrefix='" + indexPrefix + '\'' +
+                ", indexRouting=" + indexRouting +
+                ", indexDateFormat='" + getIndexDateFormat() + '\'' +
+                ", indexZoneId='" + indexZoneId + '\'' +
+                ", maxIndexCount=" + maxIndexCount +
+                ", fieldTimestamp='" + fieldTimestamp + '\'' +
+                ", fieldHost='" + fieldHost + '\'' +
+                ", fieldFile='" + fieldFile + '\'' +
+                ", fieldMessage='" + fieldMessage + '\'' +
+                ", aggregationFieldHost='" + aggregationFieldHost + '\'' +
+                ", aggregationFieldFile='" + aggregationFieldFile + '\'' +
+                ", zoneId='" + zoneId + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,264 @@
+package com.ainory.dev.utils.elastic;
+
+import org.apache.commons.lang3.StringUtils;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.index.query.RangeQueryBuilder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ElasticSearch Query Spec
+ *
+ * Immutable log search condition ( time range, host / file / message filter, sort ).
+ * Every method returns a new spec, so a spec can be shared and extended safely.
+ * The query is compiled to filter context only ( no scoring, cacheable by ES ) :
+ *     range on timestamp, terms on host keyword, terms on file keyword, match_phrase on message
+ *
+ * ex) ElasticSearchQuerySpec spec = ElasticSearchQuerySpec.range("2017-11-07 03:00:00.000", "2017-11-07 04:00:00.000")
+ *          .hosts(hostList)
+ *          .message("Exception")
+ *          .sort(ElasticSearchSearchUtil.SORT_DESC);
+ *     ElasticSearchSearchUtil.search("127.0.0.1", 9400, spec, 100, 1);
+ */
+public final class ElasticSearchQuerySpec {
+
+    private final long startTime;
+    private final long endTime;
+    private final boolean endExclusive;
+
+    private final List<String> hostList;
+    private final List<String> fileList;
+    private final String messageFilter;
+    private final String sort;
+
+    // metrics method tag ( null : entry method name )
+    private final String name;
+
+    private ElasticSearchQuerySpec(long startTime, long endTime, boolean endExclusive, List<String> hostList, List<String> fileList, String messageFilter, String sort, String name) {
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.endExclusive = endExclusive;
+        this.hostList = hostList;
+        this.fileList = fileList;
+        this.messageFilter = messageFilter;
+        this.sort = sort;
+        this.name = name;
+    }
+
+    /**
+     * startTime <= @timestamp <= endTime
+     *
+     * @param startTime - Search Start Time (Format : yyyy-MM-dd HH:mm:ss.SSS)
+     * @param endTime - Search End Time (Format : yyyy-MM-dd HH:mm:ss.SSS)
+     * @return
+     * @throws Exception
+     */
+    public static ElasticSearchQuerySpec range(String startTime, String endTime) throws Exception{
+        return rangeMillis(Long.parseLong(ElasticSearchSearchUtil.getMilliTime(startTime)), Long.parseLong(ElasticSearchSearchUtil.getMilliTime(endTime)));
+    }
+
+    /**
+     * time - plusMinusMinute <= @timestamp <= time + plusMinusMinute
+     *
+     * @param time - Standard Time (Format : yyyy-MM-dd HH:mm:ss.SSS)
+     * @param plusMinusMinute - Standard Time Plus Minus Minute
+     * @return
+     * @throws Exception
+     */
+    public static ElasticSearchQuerySpec around(String time, int plusMinusMinute) throws Exception{
+        return rangeMillis(Long.parseLong(ElasticSearchSearchUtil.getSearchStartTime(time, plusMinusMinute)), Long.parseLong(ElasticSearchSearchUtil.getSearchEndTime(time, plusMinusMinute)));
+    }
+
+    /**
+     * time - minusMinute <= @timestamp < time
+     *
+     * @param time - Standard Time (Format : yyyy-MM-dd HH:mm:ss.SSS)
+     * @param minusMinute - Standard Time Minus Minute
+     * @return
+     * @throws Exception
+     */
+    public static ElasticSearchQuerySpec before(String time, int minusMinute) throws Exception{
+        return new ElasticSearchQuerySpec(Long.parseLong(ElasticSearchSearchUtil.getSearchStartTime(time, minusMinute)), Long.parseLong(ElasticSearchSearchUtil.getMilliTime(time)), true,
+                Collections.emptyList(), Collections.emptyList(), null, ElasticSearchSearchUtil.SORT_ASC, null);
+    }
+
+    /**
+     * startTime <= @timestamp <= endTime
+     *
+     * @param startTime - Search Start Time (milliseconds)
+     * @param endTime - Search End Time (milliseconds)
+     * @return
+     */
+    public static ElasticSearchQuerySpec rangeMillis(long startTime, long endTime){
+        return new ElasticSearchQuerySpec(startTime, endTime, false, Collections.emptyList(), Collections.emptyList(), null, ElasticSearchSearchUtil.SORT_ASC, null);
+    }
+
+    /**
+     * Time Range ( filters & sort kept )
+     *
+     * startTime <= @timestamp <= endTime
+     *
+     * @param startTime - Search Start Time (milliseconds)
+     * @param endTime - Search End Time (milliseconds)
+     * @return
+     */
+    public ElasticSearchQuerySpec between(long startTime, long endTime){
+        return new ElasticSearchQuerySpec(startTime, endTime, false, hostList, fileList, messageFilter, sort, name);
+    }
+
+    /**
+     * Host Filter ( any of, exact )
+     *
+     * @param hostFilterList - Host List ( null / empty : none )
+     * @return
+     */
+    public ElasticSearchQuerySpec hosts(Collection<String> hostFilterList){
+        return new ElasticSearchQuerySpec(startTime, endTime, endExclusive, getFilterList(hostFilterList), fileList, messageFilter, sort, name);
+    }
+
+    /**
+     * File Filter ( any of, exact )
+     *
+     * @param fileFilterList - File List ( null / empty : none )
+     * @return
+     */
+    public ElasticSearchQuerySpec files(Collection<String> fileFilterList){
+        return new ElasticSearchQuerySpec(startTime, endTime, endExclusive, hostList, getFilterList(fileFilterList), messageFilter, sort, name);
+    }
+
+    /**
+     * Message Filter ( phrase )
+     *
+     * @param messageFilter - Message Filter ( null / empty : none )
+     * @return
+     */
+    public ElasticSearchQuerySpec message(String messageFilter){
+        return new ElasticSearchQuerySpec(startTime, endTime, endExclusive, hostList, fileList, StringUtils.isEmpty(messageFilter) ? null : messageFilter, sort, name);
+    }
+
+    /**
+     * Sort
+     *
+     * @param sort - Result Sort Default ASC (refer to SORT_ASC, SORT_DESC)
+     * @return
+     */
+    public ElasticSearchQuerySpec sort(String sort){
+        return new ElasticSearchQuerySpec(startTime, endTime, endExclusive, hostList, fileList, messageFilter, sort, name);
+    }
+
+    /**
+     * Name ( method tag of ElasticSearchMetrics, ex. dashboard panel name )
+     *
+     * @param name - Name ( null : entry method name )
+     * @return
+     */
+    public ElasticSearchQuerySpec name(String name){
+        return new ElasticSearchQuerySpec(startTime, endTime, endExclusive, hostList, fileList, messageFilter, sort, name);
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public long getEndTime() {
+        return endTime;
+    }
+
+    public boolean isEndExclusive() {
+        return endExclusive;
+    }
+
+    public List<String> getHostList() {
+        return hostList;
+    }
+
+    public List<String> getFileList() {
+        return fileList;
+    }
+
+    public String getMessageFilter() {
+        return messageFilter;
+    }
+
+    public String getSort() {
+        return sort;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Time Range Query
+     *
+     * @return
+     */
+    RangeQueryBuilder toRangeQueryBuilder(){
+        RangeQueryBuilder rangeQueryBuilder = QueryBuilders.rangeQuery(ElasticSearchSearchUtil.getQueryContext().getFieldTimestamp()).gte(startTime);
+        return endExclusive ? rangeQueryBuilder.lt(endTime) : rangeQueryBuilder.lte(endTime);
+    }
+
+    /**
+     * Filter Context Query ( Time Range & Host & File & Message )
+     *
+     * @return
+     */
+    BoolQueryBuilder toQueryBuilder(){
+
+        ElasticSearchQueryContext queryContext = ElasticSearchSearchUtil.getQueryContext();
+
+        BoolQueryBuilder boolQueryBuilder = QueryBuilders.boolQuery();
+        boolQueryBuilder.filter(toRangeQueryBuilder());
+
+        // Host Filter
+        if(!hostList.isEmpty()){
+            boolQueryBuilder.filter(QueryBuilders.termsQuery(queryContext.getAggregationFieldHost(), hostList));
+        }
+
+        // File Filter
+        if(!fileList.isEmpty()){
+            boolQueryBuilder.filter(QueryBuilders.termsQuery(queryContext.getAggregationFieldFile(), fileList));
+        }
+
+        // Message Filter
+        if(messageFilter != null){
+            boolQueryBuilder.filter(QueryBuilders.matchPhraseQuery(queryContext.getFieldMessage(), messageFilter));
+        }
+
+        return boolQueryBuilder;
+    }
+
+    private static List<String> getFilterList(Collection<String> filterList){
+
+        if(filterList == null || filterList.isEmpty()){
+            return Collections.emptyList();
+        }
+
+        ArrayList<String> list = new ArrayList<>(filterList.size());
+        for(String filter : filterList){
+            if(StringUtils.isNotBlank(filter)){
+                list.add(filter.trim());
+            }
+        }
+
+        return Collections.unmodifiableList(list);
+    }
+
+    @Override
+    public String toString() {
+        return "ElasticSearchQuerySpec{" +
+                "startTime=" + startTime +
+                ", endTime=" + endTime +
+                ", endExclusive=" + endExclusive +
+                ", hostList=" + hostList +
+                ", fileList=" + fileList +
+                ", messageFilter='" + messageFilter + '\'' +
+                ", sort='" + sort + '\'' +
+                ", name='" + name + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,363 @@
+package com.ainory.dev.utils.elastic;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.ElasticsearchStatusException;
+import org.elasticsearch.action.search.MultiSearchRequest;
+import org.elasticsearch.action.search.MultiSearchResponse;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.support.IndicesOptions;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.common.ParseField;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.common.xcontent.ToXContent;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.XContentParserUtils;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.rest.BytesRestResponse;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.search.aggregations.Aggregation;
+import org.elasticsearch.search.aggregations.bucket.filter.FilterAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.filter.ParsedFilter;
+import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.histogram.ParsedDateHistogram;
+import org.elasticsearch.search.aggregations.bucket.terms.DoubleTerms;
+import org.elasticsearch.search.aggregations.bucket.terms.LongTerms;
+import org.elasticsearch.search.aggregations.bucket.terms.ParsedDoubleTerms;
+import org.elasticsearch.search.aggregations.bucket.terms.ParsedLongTerms;
+import org.elasticsearch.search.aggregations.bucket.terms.ParsedStringTerms;
+import org.elasticsearch.search.aggregations.bucket.terms.StringTerms;
+import org.elasticsearch.search.aggregations.metrics.cardinality.CardinalityAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.cardinality.ParsedCardinality;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * ElasticSearch Request Converter
+ *
+ * SearchRequest -> low level request ( method, endpoint, params, entity ) and low level response -> SearchResponse,
+ * the same conversion as the 5.x RestHighLevelClient ( its converter is package private ).
+ * Used where the raw response has to leave the I/O reactor unparsed ( ElasticSearchGuardedClient ),
+ * and for _msearch that the 5.x RestHighLevelClient does not have.
+ *
+ * Only the aggregations built by this package are registered
+ * ( date_histogram, terms, cardinality, filter ), responses with other aggregations fail to parse.
+ */
+final class ElasticSearchRequestConverter {
+
+    static final String SEARCH_METHOD = "GET";
+    static final String MULTI_SEARCH_METHOD = "POST";
+    static final String MULTI_SEARCH_ENDPOINT = "/_msearch";
+
+    private static final ContentType MULTI_SEARCH_CONTENT_TYPE = ContentType.create("application/x-ndjson", StandardCharsets.UTF_8);
+
+    static final NamedXContentRegistry REGISTRY = new NamedXContentRegistry(Arrays.asList(
+            new NamedXContentRegistry.Entry(Aggregation.class, new ParseField(DateHistogramAggregationBuilder.NAME), (parser, name) -> ParsedDateHistogram.fromXContent(parser, (String) name)),
+            new NamedXContentRegistry.Entry(Aggregation.class, new ParseField(StringTerms.NAME), (parser, name) -> ParsedStringTerms.fromXContent(parser, (String) name)),
+            new NamedXContentRegistry.Entry(Aggregation.class, new ParseField(LongTerms.NAME), (parser, name) -> ParsedLongTerms.fromXContent(parser, (String) name)),
+            new NamedXContentRegistry.Entry(Aggregation.class, new ParseField(DoubleTerms.NAME), (parser, name) -> ParsedDoubleTerms.fromXContent(parser, (String) name)),
+            new NamedXContentRegistry.Entry(Aggregation.class, new ParseField(CardinalityAggregationBuilder.NAME), (parser, name) -> ParsedCardinality.fromXContent(parser, (String) name)),
+            new NamedXContentRegistry.Entry(Aggregation.class, new ParseField(FilterAggregationBuilder.NAME), (parser, name) -> ParsedFilter.fromXContent(parser, (String) name))
+    ));
+
+    private ElasticSearchRequestConverter() {
+    }
+
+    /**
+     * Search endpoint ( /index1,index2/type/_search )
+     *
+     * @param searchRequest
+     * @return
+     */
+    static String getSearchEndpoint(SearchRequest searchRequest){
+
+        StringJoiner endpoint = new StringJoiner("/", "/", "");
+
+        if(searchRequest.indices().length > 0){
+            endpoint.add(String.join(",", searchRequest.indices()));
+        }
+        if(searchRequest.types().length > 0){
+            endpoint.add(String.join(",", searchRequest.types()));
+        }
+
+        return endpoint.add("_search").toString();
+    }
+
+    /**
+     * Search query string parameters ( typed_keys : aggregation type prefix needed by the parser )
+     *
+     * @param searchRequest
+     * @return
+     */
+    static Map<String, String> getSearchParams(SearchRequest searchRequest){
+
+        Map<String, String> params = new HashMap<>();
+
+        params.put("typed_keys", "true");
+        if(searchRequest.routing() != null){
+            params.put("routing", searchRequest.routing());
+        }
+        if(searchRequest.preference() != null){
+            params.put("preference", searchRequest.preference());
+        }
+        putIndicesOptions(params, searchRequest.indicesOptions());
+        params.put("search_type", searchRequest.searchType().name().toLowerCase(Locale.ROOT));
+        if(searchRequest.requestCache() != null){
+            params.put("request_cache", Boolean.toString(searchRequest.requestCache()));
+        }
+        params.put("batched_reduce_size", Integer.toString(searchRequest.getBatchedReduceSize()));
+        if(searchRequest.scroll() != null){
+            params.put("scroll", searchRequest.scroll().keepAlive().getStringRep());
+        }
+
+        return params;
+    }
+
+    private static void putIndicesOptions(Map<String, String> params, IndicesOptions indicesOptions){
+
+        params.put("ignore_unavailable", Boolean.toString(indicesOptions.ignoreUnavailable()));
+        params.put("allow_no_indices", Boolean.toString(indicesOptions.allowNoIndices()));
+
+        StringJoiner expandWildcards = new StringJoiner(",");
+        if(indicesOptions.expandWildcardsOpen()){
+            expandWildcards.add("open");
+        }
+        if(indicesOptions.expandWildcardsClosed()){
+            expandWildcards.add("closed");
+        }
+        params.put("expand_wildcards", expandWildcards.length() == 0 ? "none" : expandWildcards.toString());
+    }
+
+    /**
+     * Search body
+     *
+     * @param searchRequest
+     * @return null : no source
+     * @throws IOException
+     */
+    static HttpEntity getSearchEntity(SearchRequest searchRequest) throws IOException{
+
+        if(searchRequest.source() == null){
+            return null;
+        }
+
+        BytesReference source = toBytes(searchRequest.source());
+        return new ByteArrayEntity(BytesReference.toBytes(source), ContentType.APPLICATION_JSON);
+    }
+
+    static BytesReference toBytes(ToXContent toXContent) throws IOException{
+
+        XContentBuilder builder = XContentFactory.jsonBuilder();
+        toXContent.toXContent(builder, ToXContent.EMPTY_PARAMS);
+        return builder.bytes();
+    }
+
+    /**
+     * Parse search response ( run it on the caller thread, not on the I/O reactor )
+     *
+     * @param entity - Low level response body
+     * @return
+     * @throws IOException
+     */
+    static SearchResponse parseSearchResponse(HttpEntity entity) throws IOException{
+
+        if(entity == null){
+            throw new IllegalStateException("Response body expected but not returned");
+        }
+
+        XContentType xContentType = entity.getContentType() == null ? null : XContentType.fromMediaTypeOrFormat(entity.getContentType().getValue());
+        if(xContentType == null){
+            throw new IllegalStateException("Unsupported Content-Type: " + (entity.getContentType() == null ? null : entity.getContentType().getValue()));
+        }
+
+        try(InputStream inputStream = entity.getContent();
+            XContentParser parser = xContentType.xContent().createParser(REGISTRY, inputStream)){
+            return SearchResponse.fromXContent(parser);
+        }
+    }
+
+    /**
+     * Multi search query string parameters
+     *
+     * @param multiSearchRequest
+     * @return
+     */
+    static Map<String, String> getMultiSearchParams(MultiSearchRequest multiSearchRequest){
+
+        Map<String, String> params = new HashMap<>();
+
+        params.put("typed_keys", "true");
+        if(multiSearchRequest.maxConcurrentSearchRequests() > 0){
+            params.put("max_concurrent_searches", Integer.toString(multiSearchRequest.maxConcurrentSearchRequests()));
+        }
+
+        return params;
+    }
+
+    /**
+     * Multi search body ( header line + source line per search, new line delimited )
+     *
+     * @param multiSearchRequest
+     * @return
+     * @throws IOException
+     */
+    static HttpEntity getMultiSearchEntity(MultiSearchRequest multiSearchRequest) throws IOException{
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        for(SearchRequest searchRequest : multiSearchRequest.requests()){
+
+            XContentBuilder header = XContentFactory.jsonBuilder().startObject();
+            if(searchRequest.indices().length > 0){
+                header.array("index", searchRequest.indices());
+            }
+            if(searchRequest.types().length > 0){
+                header.array("type", searchRequest.types());
+            }
+            header.field("search_type", searchRequest.searchType().name().toLowerCase(Locale.ROOT));
+            if(searchRequest.requestCache() != null){
+                header.field("request_cache", searchRequest.requestCache());
+            }
+            if(searchRequest.routing() != null){
+                header.field("routing", searchRequest.routing());
+            }
+            if(searchRequest.preference() != null){
+                header.field("preference", searchRequest.preference());
+            }
+
+            Map<String, String> indicesOptions = new HashMap<>();
+            putIndicesOptions(indicesOptions, searchRequest.indicesOptions());
+            for(Map.Entry<String, String> entry : indicesOptions.entrySet()){
+                header.field(entry.getKey(), entry.getValue());
+            }
+            header.endObject();
+
+            header.bytes().writeTo(body);
+            body.write('\n');
+
+            if(searchRequest.source() != null){
+                toBytes(searchRequest.source()).writeTo(body);
+            }else{
+                body.write('{');
+                body.write('}');
+            }
+            body.write('\n');
+        }
+
+        return new ByteArrayEntity(body.toByteArray(), MULTI_SEARCH_CONTENT_TYPE);
+    }
+
+    /**
+     * Parse multi search response ( run it on the caller thread, not on the I/O reactor )
+     * Every item is parsed on its own, a failed item ( or an item that does not parse ) is a failure item, the others keep their responses.
+     *
+     * @param entity - Low level response body
+     * @return items in request order
+     * @throws IOException
+     */
+    static MultiSearchResponse parseMultiSearchResponse(HttpEntity entity) throws IOException{
+
+        if(entity == null){
+            throw new IllegalStateException("Response body expected but not returned");
+        }
+
+        XContentType xContentType = entity.getContentType() == null ? null : XContentType.fromMediaTypeOrFormat(entity.getContentType().getValue());
+        if(xContentType == null){
+            throw new IllegalStateException("Unsupported Content-Type: " + (entity.getContentType() == null ? null : entity.getContentType().getValue()));
+        }
+
+        List<MultiSearchResponse.Item> itemList = new ArrayList<>();
+
+        try(InputStream inputStream = entity.getContent();
+            XContentParser parser = xContentType.xContent().createParser(REGISTRY, inputStream)){
+
+            XContentParserUtils.ensureExpectedToken(XContentParser.Token.START_OBJECT, parser.nextToken(), parser::getTokenLocation);
+
+            XContentParser.Token token;
+            while((token = parser.nextToken()) != XContentParser.Token.END_OBJECT){
+
+                if(token == XContentParser.Token.FIELD_NAME && "responses".equals(parser.currentName())){
+                    XContentParserUtils.ensureExpectedToken(XContentParser.Token.START_ARRAY, parser.nextToken(), parser::getTokenLocation);
+
+                    while(parser.nextToken() == XContentParser.Token.START_OBJECT){
+                        // item copied out, a malformed item does not stop the others
+                        XContentBuilder item = XContentFactory.contentBuilder(xContentType).copyCurrentStructure(parser);
+                        itemList.add(parseMultiSearchItem(xContentType, item.bytes()));
+                    }
+                }else if(token == XContentParser.Token.START_OBJECT || token == XContentParser.Token.START_ARRAY){
+                    parser.skipChildren();
+                }
+            }
+        }
+
+        return new MultiSearchResponse(itemList.toArray(new MultiSearchResponse.Item[itemList.size()]));
+    }
+
+    private static MultiSearchResponse.Item parseMultiSearchItem(XContentType xContentType, BytesReference item){
+
+        try{
+            boolean failure;
+            try(XContentParser parser = xContentType.xContent().createParser(REGISTRY, item)){
+                parser.nextToken();
+                failure = parser.nextToken() == XContentParser.Token.FIELD_NAME && "error".equals(parser.currentName());
+            }
+
+            try(XContentParser parser = xContentType.xContent().createParser(REGISTRY, item)){
+                if(failure){
+                    return new MultiSearchResponse.Item(null, BytesRestResponse.errorFromXContent(parser));
+                }
+                return new MultiSearchResponse.Item(SearchResponse.fromXContent(parser), null);
+            }
+        }catch (Exception e){
+            return new MultiSearchResponse.Item(null, new ElasticsearchStatusException("Unable to parse multi search item", RestStatus.INTERNAL_SERVER_ERROR, e));
+        }
+    }
+
+    /**
+     * Error response -> ElasticsearchException with the response status
+     * ( status decides circuit breaker failures, the body is the ES error when it parses )
+     *
+     * @param responseException
+     * @return
+     */
+    static ElasticsearchException parseResponseException(ResponseException responseException){
+
+        Response response = responseException.getResponse();
+        RestStatus restStatus = RestStatus.fromCode(response.getStatusLine().getStatusCode());
+        HttpEntity entity = response.getEntity();
+
+        if(entity == null || entity.getContentType() == null || XContentType.fromMediaTypeOrFormat(entity.getContentType().getValue()) == null){
+            return new ElasticsearchStatusException(responseException.getMessage(), restStatus, responseException);
+        }
+
+        XContentType xContentType = XContentType.fromMediaTypeOrFormat(entity.getContentType().getValue());
+
+        try(InputStream inputStream = entity.getContent();
+            XContentParser parser = xContentType.xContent().createParser(REGISTRY, inputStream)){
+            ElasticsearchStatusException elasticsearchException = BytesRestResponse.errorFromXContent(parser);
+            elasticsearchException.addSuppressed(responseException);
+            return elasticsearchException;
+        }catch (Exception e){
+            ElasticsearchStatusException elasticsearchException = new ElasticsearchStatusException("Unable to parse response body", restStatus, responseException);
+            elasticsearchException.addSuppressed(e);
+            return elasticsearchException;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.ainory.dev.utils.elastic;
+
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.ainory.dev.utils.elastic.ElasticSearchSearchUtil.PERIOD_UNIT_DAY;
+import static com.ainory.dev.utils.elastic.ElasticSearchSearchUtil.PERIOD_UNIT_HOUR;
+import static com.ainory.dev.utils.elastic.ElasticSearchSearchUtil.PERIOD_UNIT_MINUTE;
+import static com.ainory.dev.utils.elastic.ElasticSearchSearchUtil.PERIOD_UNIT_SECOND;
+
+/**
+ * ElasticSearch Aggregation Resolution Planner
+ *
+ * Coarsens the histogram period of a request so the bucket count stays within maxPoints.
+ * The requested period is kept when it fits, otherwise the finest step of the resolution ladder
+ * ( 1s, 5s, 10s, 15s, 30s, 1m, 5m ... 12h, 1d, 7d, 30d ) coarser than the request that fits is used.
+ * Counts of coarser buckets are exact sums, no point is dropped.
+ *
+ * Multi-unit steps ( 5m, 3h, 7d ... ) are bucketed by ES on the local epoch grid, client side bucket times
+ * ( gap filling, cache merge, rollups ) use the same rounding ( ElasticSearchSearchUtil.getBucketStartMillis ).
+ */
+final class ElasticSearchResolutionPlanner {
+
+    private static final Logger logger = LoggerFactory.getLogger(ElasticSearchResolutionPlanner.class);
+
+    private static final Resolution[] LADDER = {
+            new Resolution(1, PERIOD_UNIT_SECOND), new Resolution(5, PERIOD_UNIT_SECOND), new Resolution(10, PERIOD_UNIT_SECOND),
+            new Resolution(15, PERIOD_UNIT_SECOND), new Resolution(30, PERIOD_UNIT_SECOND),
+            new Resolution(1, PERIOD_UNIT_MINUTE), new Resolution(5, PERIOD_UNIT_MINUTE), new Resolution(10, PERIOD_UNIT_MINUTE),
+            new Resolution(15, PERIOD_UNIT_MINUTE), new Resolution(30, PERIOD_UNIT_MINUTE),
+            new Resolution(1, PERIOD_UNIT_HOUR), new Resolution(3, PERIOD_UNIT_HOUR), new Resolution(6, PERIOD_UNIT_HOUR),
+            new Resolution(12, PERIOD_UNIT_HOUR),
+            new Resolution(1, PERIOD_UNIT_DAY), new Resolution(7, PERIOD_UNIT_DAY), new Resolution(30, PERIOD_UNIT_DAY)
+    };
+
+    static final class Resolution {
+        private final int period;
+        private final String periodUnit;
+
+        Resolution(int period, String periodUnit) {
+            this.period = period;
+            this.periodUnit = periodUnit;
+        }
+
+        int getPeriod() {
+            return period;
+        }
+
+        String getPeriodUnit() {
+            return periodUnit;
+        }
+    }
+
+    private ElasticSearchResolutionPlanner() {
+    }
+
+    /**
+     * Effective resolution of a request
+     *
+     * @param startTime - Aggregation Start Time
+     * @param endTime - Aggregation End Time
+     * @param period - Requested Period
+     * @param periodUnit - Requested Period Unit ( d:Day, h:Hour, m:Minute, s:Seconds )
+     * @param maxPoints - Max buckets per series ( <= 0 : requested resolution )
+     * @return requested resolution when it fits ( or on parse error ), else the coarsened one ( last ladder step at most )
+     */
+    static Resolution plan(String startTime, String endTime, int period, String periodUnit, int maxPoints){
+
+        Resolution requested = new Resolution(period, periodUnit);
+
+        if(maxPoints <= 0){
+            return requested;
+        }
+
+        try{
+            long rangeMillis = Long.parseLong(ElasticSearchSearchUtil.getMilliTime(endTime)) - Long.parseLong(ElasticSearchSearchUtil.getMilliTime(startTime));
+            long periodMillis = ElasticSearchSearchUtil.dateUnitConvertMillis(period, periodUnit);
+
+            if(getPointCount(rangeMillis, periodMillis) <= maxPoints){
+                return requested;
+            }
+
+            Resolution resolution = requested;
+            for(Resolution step : LADDER){
+
+                long stepMillis = ElasticSearchSearchUtil.dateUnitConvertMillis(step.period, step.periodUnit);
+                if(stepMillis <= periodMillis){
+                    continue;
+                }
+
+                resolution = step;
+                if(getPointCount(rangeMillis, stepMillis) <= maxPoints){
+                    break;
+                }
+            }
+
+            logger.debug("Resolution " + period + periodUnit + " -> " + resolution.period + resolution.periodUnit + " ( " + startTime + " ~ " + endTime + ", max " + maxPoints + " points )");
+
+            return resolution;
+
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
+            return requested;
+        }
+    }
+
+    /**
+     * Max bucket count of range ( +2 : partial first & last bucket )
+     */
+    private static long getPointCount(long rangeMillis, long periodMillis){
+        return periodMillis <= 0 ? Long.MAX_VALUE : Math.max(0, rangeMillis) / periodMillis + 2;
+    }
+}
@@ -0,0 +1,667 @@
+package com.ainory.dev.utils.elastic;
+
+import com.ainory.dev.utils.elastic.ElasticSearchSearchUtil.AGGREGATION_TYPE;
+import com.ainory.dev.utils.elastic.entity.ElasticSearchAggregationListInfo;
+import com.ainory.dev.utils.elastic.entity.ElasticSearchAggregationSeries;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.search.aggregations.bucket.histogram.Histogram;
+import org.elasticsearch.search.aggregations.bucket.histogram.ParsedDateHistogram;
+import org.elasticsearch.search.aggregations.bucket.terms.ParsedStringTerms;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ElasticSearch Rollup Store
+ *
+ * Local rollup of host / file / time bucket doc counts ( default 1 hour buckets ) of one host:port,
+ * kept up to date by a periodic job. Buckets are only rolled up once they are settleMs old ( late documents ).
+ *
+ * While a store is started, ElasticSearchSearchUtil aggregation answers ranges at a multiple of the rollup
+ * period ( ex. 1h, 1d over a month ) from the rollups : only the partial first bucket and the recent edge
+ * not rolled up yet are queried from the raw documents. Other requests are unchanged.
+ *
+ * Host / file / host_file rollups are complete ( partitioned terms ), answers keep the top DEFAULT_TERMS_SIZE keys by
+ * doc count like the raw terms aggregation. Every type is rolled up from its own terms aggregation, so counts match the raw
+ * aggregation of that type ( HOST counts documents without file, FILE counts documents without host ).
+ *
+ *  ex) ElasticSearchRollupStore.start("127.0.0.1", 9400);
+ *      ElasticSearchSearchUtil.aggregationHost("127.0.0.1", 9400, "2017-11-01 00:00:00.000", "2017-12-01 00:00:00.000", 1, PERIOD_UNIT_HOUR);
+ */
+public class ElasticSearchRollupStore implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ElasticSearchRollupStore.class);
+
+    public static final int DEFAULT_ROLLUP_PERIOD = 1;
+    public static final String DEFAULT_ROLLUP_PERIOD_UNIT = ElasticSearchSearchUtil.PERIOD_UNIT_HOUR;
+    public static final long DEFAULT_RETENTION_MS = TimeUnit.DAYS.toMillis(35);
+    public static final long DEFAULT_SETTLE_MS = TimeUnit.MINUTES.toMillis(10);
+    public static final long DEFAULT_REFRESH_MS = TimeUnit.MINUTES.toMillis(5);
+    public static final long DEFAULT_CHUNK_MS = TimeUnit.DAYS.toMillis(1);
+    public static final int DEFAULT_TERMS_SIZE = 10;
+
+    private static final String EMPTY_KEY = "";
+
+    //                      host:port, store
+    private static final ConcurrentHashMap<String, ElasticSearchRollupStore> STORE_MAP = new ConcurrentHashMap<>();
+
+    private final String esHost;
+    private final int esPort;
+    private final int rollupPeriod;
+    private final String rollupPeriodUnit;
+    private final long rollupMillis;
+    private final long retentionMs;
+    private final long settleMs;
+
+    private volatile long chunkMs = DEFAULT_CHUNK_MS;
+    private volatile int partitionSize = ElasticSearchPartitionedAggregation.DEFAULT_PARTITION_SIZE;
+
+    // rolled up terms types
+    private static final AGGREGATION_TYPE[] TERMS_TYPES = {AGGREGATION_TYPE.HOST, AGGREGATION_TYPE.FILE, AGGREGATION_TYPE.HOST_FILE};
+
+    //             type ( HOST, FILE, HOST_FILE ),  bucket time, key ( host / file ), inner key ( HOST_FILE file, others EMPTY_KEY ), count
+    private final EnumMap<AGGREGATION_TYPE, ConcurrentSkipListMap<Long, Map<String, Map<String, Long>>>> rollupMap = new EnumMap<>(AGGREGATION_TYPE.class);
+
+    //                              bucket time, count ( every document, with or without host / file )
+    private final ConcurrentSkipListMap<Long, Long> allMap = new ConcurrentSkipListMap<>();
+
+    // rolled up range [coveredFrom, coveredTo) , -1 : nothing yet
+    private volatile long coveredFrom = -1;
+    private volatile long coveredTo = -1;
+
+    private volatile ScheduledExecutorService scheduler;
+
+    // query context of the rolled up buckets ( ElasticSearchSearchUtil.setQueryContext -> rolled up again )
+    private volatile ElasticSearchQueryContext rollupQueryContext;
+
+    private interface CountConsumer {
+        void accept(String key, String innerKey, long time, long count);
+    }
+
+    private ElasticSearchRollupStore(String esHost, int esPort, int rollupPeriod, String rollupPeriodUnit, long retentionMs, long settleMs) throws Exception{
+        this.esHost = esHost;
+        this.esPort = esPort;
+        this.rollupPeriod = rollupPeriod;
+        this.rollupPeriodUnit = rollupPeriodUnit;
+        this.rollupMillis = ElasticSearchSearchUtil.dateUnitConvertMillis(rollupPeriod, rollupPeriodUnit);
+        this.retentionMs = retentionMs;
+        this.settleMs = settleMs;
+
+        for(AGGREGATION_TYPE aggregation_type : TERMS_TYPES){
+            rollupMap.put(aggregation_type, new ConcurrentSkipListMap<>());
+        }
+    }
+
+    /**
+     * Start rollup of host:port with default settings ( 1 hour buckets, 35 days, refresh every 5 minutes )
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @return
+     */
+    public static ElasticSearchRollupStore start(String esHost, int esPort){
+        return start(esHost, esPort, DEFAULT_ROLLUP_PERIOD, DEFAULT_ROLLUP_PERIOD_UNIT, DEFAULT_RETENTION_MS, DEFAULT_SETTLE_MS, DEFAULT_REFRESH_MS);
+    }
+
+    /**
+     * Start rollup of host:port ( the first refresh backfills retentionMs in chunks, in the background )
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param rollupPeriod - Rollup bucket period
+     * @param rollupPeriodUnit - d:Day, h:Hour, m:Minute ( answered periods must be multiples of the rollup period )
+     * @param retentionMs - Rolled up range (ms)
+     * @param settleMs - Bucket age before rollup (ms), later documents are only seen by raw queries
+     * @param refreshMs - Refresh interval (ms)
+     * @return running store of host:port ( an existing store is returned as is )
+     */
+    public static ElasticSearchRollupStore start(String esHost, int esPort, int rollupPeriod, String rollupPeriodUnit, long retentionMs, long settleMs, long refreshMs){
+
+        return STORE_MAP.computeIfAbsent(getKey(esHost, esPort), key -> {
+            try{
+                ElasticSearchRollupStore store = new ElasticSearchRollupStore(esHost, esPort, rollupPeriod, rollupPeriodUnit, retentionMs, settleMs);
+                store.schedule(refreshMs);
+                return store;
+            }catch (Exception e){
+                logger.error(ExceptionUtils.getStackTrace(e));
+                throw new IllegalArgumentException("Rollup start fail : " + key, e);
+            }
+        });
+    }
+
+    /**
+     * Running store of host:port
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @return null : no rollup
+     */
+    public static ElasticSearchRollupStore get(String esHost, int esPort){
+        return STORE_MAP.isEmpty() ? null : STORE_MAP.get(getKey(esHost, esPort));
+    }
+
+    /**
+     * Stop & drop rollup of host:port
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     */
+    public static void stop(String esHost, int esPort){
+        ElasticSearchRollupStore store = STORE_MAP.remove(getKey(esHost, esPort));
+        if(store != null){
+            store.shutdown();
+        }
+    }
+
+    /**
+     * Refresh every started store now ( query context switched : buckets of the previous context are dropped )
+     */
+    static void refreshAll(){
+        STORE_MAP.values().forEach(ElasticSearchRollupStore::refreshNow);
+    }
+
+    @Override
+    public void close(){
+        STORE_MAP.remove(getKey(esHost, esPort), this);
+        shutdown();
+    }
+
+    private synchronized void schedule(long refreshMs){
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "es-rollup-" + getKey(esHost, esPort));
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::refreshQuietly, 0, refreshMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void shutdown(){
+
+        // interrupt a running refresh before waiting for it
+        ScheduledExecutorService runningScheduler = scheduler;
+        if(runningScheduler != null){
+            runningScheduler.shutdownNow();
+        }
+
+        synchronized (this){
+            scheduler = null;
+            clear();
+        }
+    }
+
+    private void clear(){
+        coveredFrom = -1;
+        coveredTo = -1;
+        rollupMap.values().forEach(Map::clear);
+        allMap.clear();
+    }
+
+    private void refreshNow(){
+        ScheduledExecutorService runningScheduler = scheduler;
+        try{
+            if(runningScheduler != null){
+                runningScheduler.execute(this::refreshQuietly);
+            }
+        }catch (RejectedExecutionException e){
+            // stopped meanwhile
+        }
+    }
+
+    private void refreshQuietly(){
+        try{
+            refresh();
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
+        }
+    }
+
+    /**
+     * Roll up closed buckets up to now - settleMs ( chunk by chunk, coverage advances after every chunk ) & evict expired buckets
+     *
+     * @throws Exception
+     */
+    public synchronized void refresh() throws Exception{
+
+        long now = System.currentTimeMillis();
+        long closedTo = align(now - settleMs);
+        long retentionFrom = align(now - retentionMs);
+
+        ElasticSearchQueryContext queryContext = ElasticSearchSearchUtil.getQueryContext();
+        if(queryContext != rollupQueryContext){
+            clear();
+            rollupQueryContext = queryContext;
+        }
+
+        if(coveredTo < retentionFrom){
+            clear();
+            coveredTo = retentionFrom;
+            coveredFrom = retentionFrom;
+        }
+
+        while(coveredTo < closedTo && !Thread.currentThread().isInterrupted()){
+
+            long chunkEnd = Math.min(closedTo, coveredTo + Math.max(rollupMillis, chunkMs - chunkMs % rollupMillis));
+
+            fetch(coveredTo, chunkEnd);
+
+            // context switched during the chunk -> dropped by the next refresh
+            if(queryContext != ElasticSearchSearchUtil.getQueryContext()){
+                return;
+            }
+
+            // buckets are in place before the range is published
+            coveredTo = chunkEnd;
+        }
+
+        if(coveredFrom < retentionFrom){
+            coveredFrom = retentionFrom;
+            rollupMap.values().forEach(bucketMap -> bucketMap.headMap(retentionFrom).clear());
+            allMap.headMap(retentionFrom).clear();
+        }
+    }
+
+    /**
+     * Roll up [from, to)
+     */
+    private void fetch(long from, long to) throws Exception{
+
+        String startTime = ElasticSearchSearchUtil.getTimeString(from);
+        String endTime = ElasticSearchSearchUtil.getTimeString(to - 1);
+
+        ElasticSearchAggregationListInfo all = ElasticSearchSearchUtil.aggregationRaw(esHost, esPort, AGGREGATION_TYPE.ALL, startTime, endTime, rollupPeriod, rollupPeriodUnit);
+        if(all.getPeriodUnit() == null){
+            throw new IllegalStateException("Rollup fail : " + startTime + " ~ " + endTime);
+        }
+
+        // every type from its own terms ( HOST_FILE drops documents without host or file, HOST / FILE do not )
+        EnumMap<AGGREGATION_TYPE, HashMap<Long, Map<String, Map<String, Long>>>> chunkMap = new EnumMap<>(AGGREGATION_TYPE.class);
+
+        for(AGGREGATION_TYPE aggregation_type : TERMS_TYPES){
+
+            HashMap<Long, Map<String, Map<String, Long>>> typeChunkMap = new HashMap<>();
+
+            ElasticSearchMetrics.Sample sample = ElasticSearchMetrics.start("aggregationRollupRefresh", aggregation_type.name());
+
+            ElasticSearchPartitionedAggregation.forEachPartition(esHost, esPort, aggregation_type, startTime, endTime, rollupPeriod, rollupPeriodUnit, partitionSize, sample,
+                    (searchResponse, partitionStart) -> addCounts(searchResponse, aggregation_type, (key, innerKey, time, count) -> {
+                        if(time >= from && time < to){
+                            typeChunkMap.computeIfAbsent(time, k -> new HashMap<>()).computeIfAbsent(key, k -> new HashMap<>())
+                                    .merge(aggregation_type == AGGREGATION_TYPE.HOST_FILE ? innerKey : EMPTY_KEY, count, Long::sum);
+                        }
+                    }));
+
+            sample.end();
+
+            chunkMap.put(aggregation_type, typeChunkMap);
+        }
+
+        // every type of the chunk is fetched before any is published
+        for(AGGREGATION_TYPE aggregation_type : TERMS_TYPES){
+            HashMap<Long, Map<String, Map<String, Long>>> typeChunkMap = chunkMap.get(aggregation_type);
+            for(long time = from; time < to; time += rollupMillis){
+                Map<String, Map<String, Long>> keyMap = typeChunkMap.get(time);
+                rollupMap.get(aggregation_type).put(time, keyMap == null ? Collections.emptyMap() : keyMap);
+            }
+        }
+
+        ElasticSearchAggregationSeries allSeries = all.getSeries(AGGREGATION_TYPE.ALL.name());
+        if(allSeries != null){
+            for(int i = 0; i < allSeries.size(); i++){
+                long time = allSeries.getTime(i);
+                if(time >= from && time < to){
+                    allMap.put(time, allSeries.getCount(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Aggregation from the rollups ( + raw edges )
+     *
+     * @param aggregation_type - refer to AGGREAGTION_TYPE
+     * @param startTime - Aggregation Start Time
+     * @param endTime - Aggregation End Time
+     * @param period - Period
+     * @param periodUnit - d:Day, h:Hour, m:Minute, s:Seconds
+     * @return null : not answerable from the rollups ( period, alignment, coverage ) or edge request fail -> raw aggregation
+     */
+    ElasticSearchAggregationListInfo aggregation(AGGREGATION_TYPE aggregation_type, String startTime, String endTime, int period, String periodUnit){
+
+        long start = System.nanoTime();
+
+        try{
+            long periodMillis = ElasticSearchSearchUtil.dateUnitConvertMillis(period, periodUnit);
+            long from = coveredFrom;
+            long to = coveredTo;
+
+            if(from < 0 || periodMillis % rollupMillis != 0 || rollupQueryContext != ElasticSearchSearchUtil.getQueryContext()){
+                return null;
+            }
+
+            long startMillis = Long.parseLong(ElasticSearchSearchUtil.getMilliTime(startTime));
+            long endMillis = Long.parseLong(ElasticSearchSearchUtil.getMilliTime(endTime));
+            long bucketStartMillis = ElasticSearchSearchUtil.getBucketStartMillis(startTime, period, periodUnit);
+            long bucketEndMillis = ElasticSearchSearchUtil.getBucketStartMillis(endTime, period, periodUnit);
+
+            // request buckets made of whole rollup buckets only ( request grid on the rollup grid )
+            if(startMillis < bucketStartMillis || bucketEndMillis < bucketStartMillis || align(bucketStartMillis) != bucketStartMillis){
+                return null;
+            }
+
+            // partial first bucket is raw
+            long rollupStart = startMillis == bucketStartMillis ? startMillis : bucketStartMillis + periodMillis;
+            long rollupEnd = Math.min(to, align(endMillis + 1));
+
+            if(rollupStart < from || rollupEnd - rollupStart < periodMillis){
+                return null;
+            }
+
+            ElasticSearchMetrics.Sample sample = ElasticSearchMetrics.start(ElasticSearchSearchUtil.getAggregationMetricsName(aggregation_type) + "Rollup", aggregation_type.name());
+
+            int bucketCount = (int) ((bucketEndMillis - bucketStartMillis) / periodMillis) + 1;
+
+            //          key ( ALL / host / file ), inner key ( HOST_FILE file ), counts per request bucket
+            HashMap<String, HashMap<String, long[]>> countMap = new HashMap<>();
+
+            CountConsumer countConsumer = (key, innerKey, time, count) -> {
+                if(count > 0){
+                    int index = (int) Math.floorDiv(time - bucketStartMillis, periodMillis);
+                    if(index >= 0 && index < bucketCount){
+                        countMap.computeIfAbsent(key, k -> new HashMap<>()).computeIfAbsent(innerKey, k -> new long[bucketCount])[index] += count;
+                    }
+                }
+            };
+
+            // head edge
+            if(startMillis < rollupStart && !addRaw(aggregation_type, startTime, ElasticSearchSearchUtil.getTimeString(rollupStart - 1), period, periodUnit, sample, countConsumer)){
+                return null;
+            }
+
+            // rollups
+            long decodeStart = System.nanoTime();
+            addRollup(aggregation_type, rollupStart, rollupEnd, countConsumer);
+            sample.decode(decodeStart);
+
+            // evicted while reading
+            if(coveredFrom != from){
+                return null;
+            }
+
+            // recent edge
+            if(rollupEnd <= endMillis && !addRaw(aggregation_type, ElasticSearchSearchUtil.getTimeString(rollupEnd), endTime, period, periodUnit, sample, countConsumer)){
+                return null;
+            }
+
+            decodeStart = System.nanoTime();
+            ElasticSearchAggregationListInfo elasticSearchAggregationListInfo = getAggregationListInfo(aggregation_type, startTime, endTime, period, periodUnit, countMap, bucketStartMillis, periodMillis, bucketCount);
+            sample.decode(decodeStart);
+            sample.end();
+
+            elasticSearchAggregationListInfo.setElapsedMsTime((System.nanoTime()-start)/ 1000000.0);
+
+            return elasticSearchAggregationListInfo;
+
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
+            return null;
+        }
+    }
+
+    private void addRollup(AGGREGATION_TYPE aggregation_type, long rollupStart, long rollupEnd, CountConsumer countConsumer){
+
+        if(aggregation_type == AGGREGATION_TYPE.ALL){
+            for(Map.Entry<Long, Long> entry : allMap.subMap(rollupStart, rollupEnd).entrySet()){
+                countConsumer.accept(AGGREGATION_TYPE.ALL.name(), EMPTY_KEY, entry.getKey(), entry.getValue());
+            }
+            return;
+        }
+
+        for(Map.Entry<Long, Map<String, Map<String, Long>>> entry : rollupMap.get(aggregation_type).subMap(rollupStart, rollupEnd).entrySet()){
+            long time = entry.getKey();
+
+            for(Map.Entry<String, Map<String, Long>> keyEntry : entry.getValue().entrySet()){
+                for(Map.Entry<String, Long> innerEntry : keyEntry.getValue().entrySet()){
+                    countConsumer.accept(keyEntry.getKey(), innerEntry.getKey(), time, innerEntry.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Raw aggregation of an edge ( HOST / FILE / HOST_FILE : complete partitioned terms )
+     *
+     * @return false : request fail
+     */
+    private boolean addRaw(AGGREGATION_TYPE aggregation_type, String startTime, String endTime, int period, String periodUnit, ElasticSearchMetrics.Sample sample, CountConsumer countConsumer){
+
+        try{
+            if(aggregation_type == AGGREGATION_TYPE.ALL){
+                ElasticSearchAggregationListInfo all = ElasticSearchSearchUtil.aggregationRaw(esHost, esPort, AGGREGATION_TYPE.ALL, startTime, endTime, period, periodUnit);
+                if(all.getPeriodUnit() == null){
+                    return false;
+                }
+
+                ElasticSearchAggregationSeries series = all.getSeries(AGGREGATION_TYPE.ALL.name());
+                for(int i = 0; series != null && i < series.size(); i++){
+                    countConsumer.accept(AGGREGATION_TYPE.ALL.name(), EMPTY_KEY, series.getTime(i), series.getCount(i));
+                }
+                return true;
+            }
+
+            ElasticSearchPartitionedAggregation.forEachPartition(esHost, esPort, aggregation_type, startTime, endTime, period, periodUnit, partitionSize, sample,
+                    (searchResponse, partitionStart) -> addCounts(searchResponse, aggregation_type, (key, innerKey, time, count) -> accept(aggregation_type, key, innerKey, time, count, countConsumer)));
+
+            return true;
+
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
+            return false;
+        }
+    }
+
+    /**
+     * ( host, file ) count -> key of aggregation_type
+     */
+    private static void accept(AGGREGATION_TYPE aggregation_type, String host, String file, long time, long count, CountConsumer countConsumer){
+        if(aggregation_type == AGGREGATION_TYPE.HOST_FILE){
+            countConsumer.accept(host, file, time, count);
+        }else if(aggregation_type == AGGREGATION_TYPE.HOST){
+            countConsumer.accept(host, EMPTY_KEY, time, count);
+        }else if(aggregation_type == AGGREGATION_TYPE.FILE){
+            countConsumer.accept(file, EMPTY_KEY, time, count);
+        }
+    }
+
+    /**
+     * Terms / histogram buckets of a partition response
+     * ( HOST, FILE : key = term, innerKey = term / HOST_FILE : key = host, innerKey = file )
+     */
+    private static void addCounts(SearchResponse searchResponse, AGGREGATION_TYPE aggregation_type, CountConsumer countConsumer){
+
+        ParsedStringTerms parsedStringTerms = searchResponse.getAggregations().get(aggregation_type.name());
+
+        for(Object termsBucket : parsedStringTerms.getBuckets()){
+            ParsedStringTerms.ParsedBucket bucket = (ParsedStringTerms.ParsedBucket) termsBucket;
+            String key = (String) bucket.getKey();
+
+            if(aggregation_type == AGGREGATION_TYPE.HOST_FILE){
+                ParsedStringTerms innerParsedStringTerms = bucket.getAggregations().get(AGGREGATION_TYPE.FILE.name());
+
+                for(Object innerTermsBucket : innerParsedStringTerms.getBuckets()){
+                    ParsedStringTerms.ParsedBucket innerBucket = (ParsedStringTerms.ParsedBucket) innerTermsBucket;
+                    addHistogram(innerBucket.getAggregations().get(AGGREGATION_TYPE.TIME_COUNT.name()), key, (String) innerBucket.getKey(), countConsumer);
+                }
+            }else{
+                addHistogram(bucket.getAggregations().get(AGGREGATION_TYPE.TIME_COUNT.name()), key, key, countConsumer);
+            }
+        }
+    }
+
+    private static void addHistogram(ParsedDateHistogram parsedDateHistogram, String key, String innerKey, CountConsumer countConsumer){
+        for(Histogram.Bucket bucket : parsedDateHistogram.getBuckets()){
+            if(bucket.getDocCount() > 0){
+                countConsumer.accept(key, innerKey, ((DateTime) bucket.getKey()).getMillis(), bucket.getDocCount());
+            }
+        }
+    }
+
+    /**
+     * Series of the top DEFAULT_TERMS_SIZE keys ( doc count desc, key asc ), every request bucket set
+     */
+    private static ElasticSearchAggregationListInfo getAggregationListInfo(AGGREGATION_TYPE aggregation_type, String startTime, String endTime, int period, String periodUnit,
+                                                                           HashMap<String, HashMap<String, long[]>> countMap, long bucketStartMillis, long periodMillis, int bucketCount){
+
+        ElasticSearchAggregationListInfo elasticSearchAggregationListInfo = new ElasticSearchAggregationListInfo();
+        elasticSearchAggregationListInfo.setRequestStartTime(startTime);
+        elasticSearchAggregationListInfo.setRequestEndTime(endTime);
+        elasticSearchAggregationListInfo.setPeriod(period);
+        elasticSearchAggregationListInfo.setPeriodUnit(periodUnit);
+
+        TimeZone timeZone = TimeZone.getTimeZone(ElasticSearchSearchUtil.getQueryContext().getZoneId());
+
+        long[] times = new long[bucketCount];
+        for(int i = 0; i < bucketCount; i++){
+            times[i] = bucketStartMillis + i * periodMillis;
+        }
+
+        if(aggregation_type == AGGREGATION_TYPE.ALL){
+            HashMap<String, long[]> innerMap = countMap.get(AGGREGATION_TYPE.ALL.name());
+            long[] counts = innerMap == null ? new long[bucketCount] : innerMap.get(EMPTY_KEY);
+
+            ElasticSearchAggregationSeries series = new ElasticSearchAggregationSeries(times, counts);
+            series.setTimeZone(timeZone);
+            elasticSearchAggregationListInfo.putSeries(AGGREGATION_TYPE.ALL.name(), series);
+
+            return elasticSearchAggregationListInfo;
+        }
+
+        for(String key : getTopKeys(countMap)){
+            HashMap<String, long[]> innerMap = countMap.get(key);
+
+            if(aggregation_type == AGGREGATION_TYPE.HOST_FILE){
+                for(String innerKey : getTopKeys(innerMap)){
+                    ElasticSearchAggregationSeries series = new ElasticSearchAggregationSeries(times.clone(), innerMap.get(innerKey));
+                    series.setTimeZone(timeZone);
+                    elasticSearchAggregationListInfo.putSeries(key + "_" + innerKey, series);
+                }
+            }else{
+                ElasticSearchAggregationSeries series = new ElasticSearchAggregationSeries(times.clone(), innerMap.get(EMPTY_KEY));
+                series.setTimeZone(timeZone);
+                elasticSearchAggregationListInfo.putSeries(key, series);
+            }
+        }
+
+        return elasticSearchAggregationListInfo;
+    }
+
+    /**
+     * Top DEFAULT_TERMS_SIZE keys by total count ( doc count desc, key asc : terms aggregation order )
+     */
+    private static List<String> getTopKeys(Map<String, ?> map){
+
+        HashMap<String, Long> totalMap = new HashMap<>(map.size() * 2);
+        for(Map.Entry<String, ?> entry : map.entrySet()){
+            totalMap.put(entry.getKey(), getTotal(entry.getValue()));
+        }
+
+        List<String> keyList = new ArrayList<>(totalMap.keySet());
+        keyList.sort((key1, key2) -> {
+            int compare = Long.compare(totalMap.get(key2), totalMap.get(key1));
+            return compare != 0 ? compare : key1.compareTo(key2);
+        });
+
+        return keyList.size() > DEFAULT_TERMS_SIZE ? keyList.subList(0, DEFAULT_TERMS_SIZE) : keyList;
+    }
+
+    private static long getTotal(Object value){
+
+        long total = 0;
+
+        if(value instanceof long[]){
+            for(long count : (long[]) value){
+                total += count;
+            }
+        }else if(value instanceof Map){
+            for(Object innerValue : ((Map<?, ?>) value).values()){
+                total += getTotal(innerValue);
+            }
+        }
+
+        return total;
+    }
+
+    /**
+     * Rollup bucket start of time ( rounded like the ES date_histogram of the rollup period )
+     */
+    private long align(long time){
+        return ElasticSearchSearchUtil.getBucketStartMillis(time, rollupMillis);
+    }
+
+    private static String getKey(String esHost, int esPort){
+        return esHost + ":" + esPort;
+    }
+
+    /**
+     * Rolled up range start ( epoch millis, -1 : nothing yet )
+     *
+     * @return
+     */
+    public long getCoveredFrom() {
+        return coveredFrom;
+    }
+
+    /**
+     * Rolled up range end ( epoch millis, exclusive, -1 : nothing yet )
+     *
+     * @return
+     */
+    public long getCoveredTo() {
+        return coveredTo;
+    }
+
+    public int getBucketCount() {
+        return allMap.size();
+    }
+
+    public long getChunkMs() {
+        return chunkMs;
+    }
+
+    /**
+     * Range rolled up per request ( backfill chunk )
+     *
+     * @param chunkMs
+     */
+    public void setChunkMs(long chunkMs) {
+        this.chunkMs = chunkMs;
+    }
+
+    public int getPartitionSize() {
+        return partitionSize;
+    }
+
+    /**
+     * Hosts per partitioned terms request
+     *
+     * @param partitionSize
+     */
+    public void setPartitionSize(int partitionSize) {
+        this.partitionSize = partitionSize;
+    }
+}
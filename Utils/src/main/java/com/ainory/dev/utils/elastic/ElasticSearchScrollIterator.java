@@ -0,0 +1,178 @@
+package com.ainory.dev.utils.elastic;
+
+import com.ainory.dev.utils.elastic.entity.ElasticSearchDataInfo;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.elasticsearch.action.search.ClearScrollRequest;
+import org.elasticsearch.action.search.ClearScrollResponse;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchScrollRequest;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.Scroll;
+import org.elasticsearch.search.SearchHit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * ElasticSearch Scroll Iterator
+ *
+ * Pull based hit iterator. The next scroll batch is requested only after the current batch is consumed,
+ * so memory stays proportional to one batch. close() clears the scroll context.
+ */
+public class ElasticSearchScrollIterator implements Iterator<ElasticSearchDataInfo>, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ElasticSearchScrollIterator.class);
+
+    private final RestHighLevelClient restHighLevelClient;
+    private final Scroll scroll;
+
+    private String scrollId;
+    private SearchHit[] searchHits;
+    private int hitIndex = 0;
+    private long totalCount = 0;
+    private boolean closed = false;
+
+    // null : not recorded
+    private final ElasticSearchMetrics.Sample sample;
+
+    /**
+     * @param restHighLevelClient - Client
+     * @param searchRequest - Search Request ( size : scroll batch size )
+     * @param keepAlive - Scroll keep alive
+     * @throws Exception
+     */
+    public ElasticSearchScrollIterator(RestHighLevelClient restHighLevelClient, SearchRequest searchRequest, TimeValue keepAlive) throws Exception{
+        this(restHighLevelClient, searchRequest, keepAlive, null);
+    }
+
+    /**
+     * @param restHighLevelClient - Client
+     * @param searchRequest - Search Request ( size : scroll batch size )
+     * @param keepAlive - Scroll keep alive
+     * @param sample - Metrics sample ( recorded on close, null : none )
+     * @throws Exception
+     */
+    ElasticSearchScrollIterator(RestHighLevelClient restHighLevelClient, SearchRequest searchRequest, TimeValue keepAlive, ElasticSearchMetrics.Sample sample) throws Exception{
+
+        this.restHighLevelClient = restHighLevelClient;
+        this.scroll = new Scroll(keepAlive);
+        this.sample = sample;
+
+        searchRequest.scroll(scroll);
+
+        long requestStart = System.nanoTime();
+        setResponse(restHighLevelClient.search(searchRequest), requestStart);
+    }
+
+    private void setResponse(SearchResponse searchResponse, long requestStart){
+        if(sample != null){
+            sample.response(searchResponse, requestStart);
+        }
+
+        scrollId = searchResponse.getScrollId();
+        searchHits = searchResponse.getHits().getHits();
+        totalCount = searchResponse.getHits().getTotalHits();
+        hitIndex = 0;
+    }
+
+    @Override
+    public boolean hasNext() {
+
+        if(closed){
+            return false;
+        }
+
+        if(searchHits != null && hitIndex < searchHits.length){
+            return true;
+        }
+
+        // Last batch was empty -> end of scroll
+        if(searchHits == null || searchHits.length == 0){
+            close();
+            return false;
+        }
+
+        try{
+            SearchScrollRequest searchScrollRequest = new SearchScrollRequest(scrollId);
+            searchScrollRequest.scroll(scroll);
+
+            long requestStart = System.nanoTime();
+            setResponse(restHighLevelClient.searchScroll(searchScrollRequest), requestStart);
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
+            close();
+            throw new IllegalStateException("Scroll request fail", e);
+        }
+
+        if(searchHits.length == 0){
+            close();
+            return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public ElasticSearchDataInfo next() {
+
+        if(!hasNext()){
+            throw new NoSuchElementException();
+        }
+
+        SearchHit hit = searchHits[hitIndex];
+        searchHits[hitIndex++] = null;
+
+        if(sample == null){
+            return ElasticSearchSearchUtil.getDataInfo(hit);
+        }
+
+        long decodeStart = System.nanoTime();
+        ElasticSearchDataInfo elasticSearchDataInfo = ElasticSearchSearchUtil.getDataInfo(hit);
+        sample.decode(decodeStart, hit);
+
+        return elasticSearchDataInfo;
+    }
+
+    /**
+     * Total hit count of the query
+     *
+     * @return
+     */
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    @Override
+    public void close() {
+
+        if(closed){
+            return;
+        }
+        closed = true;
+        searchHits = null;
+
+        if(sample != null){
+            sample.end();
+        }
+
+        try{
+            if(StringUtils.isNotEmpty(scrollId)){
+                ClearScrollRequest clearScrollRequest = new ClearScrollRequest();
+                clearScrollRequest.addScrollId(scrollId);
+                ClearScrollResponse clearScrollResponse = restHighLevelClient.clearScroll(clearScrollRequest);
+
+                if(!clearScrollResponse.isSucceeded()){
+                    logger.error("Clear Scroll Response : " + clearScrollResponse.isSucceeded());
+                }
+            }
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
+        }
+    }
+}
@@ -1,33 +1,34 @@
 package com.ainory.dev.utils.elastic;
 
 
-import com.ainory.dev.utils.elastic.entity.ElasticSearchAggregationInfo;
 import com.ainory.dev.utils.elastic.entity.ElasticSearchAggregationListInfo;
+import com.ainory.dev.utils.elastic.entity.ElasticSearchAggregationSeries;
 import com.ainory.dev.utils.elastic.entity.ElasticSearchDataInfo;
 import com.ainory.dev.utils.elastic.entity.ElasticSearchDataListInfo;
-import org.apache.commons.lang3.ArrayUtils;
+import com.ainory.dev.utils.elastic.entity.ElasticSearchLogPatternListInfo;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.commons.lang3.time.DateFormatUtils;
-import org.apache.http.Header;
-import org.apache.http.HttpHeaders;
-import org.apache.http.HttpHost;
-import org.apache.http.message.BasicHeader;
 import org.elasticsearch.action.search.*;
-import org.elasticsearch.client.RestClient;
+import org.elasticsearch.action.support.IndicesOptions;
 import org.elasticsearch.client.RestHighLevelClient;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.index.query.BoolQueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.index.query.RangeQueryBuilder;
 import org.elasticsearch.search.Scroll;
 import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
 import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.Aggregations;
 import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramAggregationBuilder;
 import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramInterval;
+import org.elasticsearch.search.aggregations.bucket.histogram.ExtendedBounds;
 import org.elasticsearch.search.aggregations.bucket.histogram.Histogram.Bucket;
 import org.elasticsearch.search.aggregations.bucket.histogram.ParsedDateHistogram;
 import org.elasticsearch.search.aggregations.bucket.terms.ParsedStringTerms;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.sort.SortBuilder;
 import org.elasticsearch.search.sort.SortBuilders;
 import org.elasticsearch.search.sort.SortOrder;
 import org.joda.time.DateTime;
@@ -35,6 +36,7 @@ import org.joda.time.DateTimeZone;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
@@ -42,9 +44,17 @@ import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
-import java.util.Calendar;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 
 /**
  * ElasticSearch Search Util ( log collect using filebeat )
@@ -55,8 +65,6 @@ public class ElasticSearchSearchUtil {
 
     private static final Logger logger = LoggerFactory.getLogger(ElasticSearchSearchUtil.class);
 
-    private static final Header[] HEADERS = { new BasicHeader(HttpHeaders.CONTENT_TYPE, "application/json"),  new BasicHeader("Role", "Read") };
-
     public static final String SORT_ASC = "ASC";
     public static final String SORT_DESC = "DESC";
 
@@ -65,17 +73,24 @@ public class ElasticSearchSearchUtil {
     public static final String PERIOD_UNIT_HOUR = "h";
     public static final String PERIOD_UNIT_DAY = "d";
 
-    private static final String INDEX = "index-*";
     private static final int DEFAULT_FROM = 0;
     private static final int DEFAULT_SIZE = 10000;
-    private static final String AGGREGATION_FIELD_HOST = "host.keyword";
-    private static final String AGGREGATION_FIELD_FILE = "file.keyword";
-    private static final String FIELD_TIMESTAMP = "@timestamp";
-    private static final String FIELD_HOST = "host";
-    private static final String FIELD_FILE = "file";
-    private static final String FIELD_MESSAGE = "message";
-
-    private enum  AGGREGATION_TYPE {
+    private static final int DEFAULT_STREAM_BATCH_SIZE = 1000;
+    static final TimeValue DEFAULT_SCROLL_KEEP_ALIVE = TimeValue.timeValueMinutes(1L);
+    private static final String FIELD_TIEBREAKER = "_uid";
+    private static final String FIELD_DOC = "_doc";
+
+    private static final String CURSOR_DELIMITER = "\n";
+
+    public static final int DEFAULT_MAX_AGGREGATION_POINTS = 2000;
+
+    // Max histogram buckets per series ( period coarsened above it, <= 0 : unlimited )
+    private static volatile int maxAggregationPoints = DEFAULT_MAX_AGGREGATION_POINTS;
+
+    // Index pattern, field mapping, time zone
+    private static volatile ElasticSearchQueryContext queryContext = new ElasticSearchQueryContext().readOnlyCopy();
+
+    enum  AGGREGATION_TYPE {
         HOST, FILE, HOST_FILE, TIME_COUNT, ALL
     }
 
@@ -101,7 +116,7 @@ public class ElasticSearchSearchUtil {
     public static ElasticSearchDataListInfo searchAll(String esHost, int esPort, String time, int plusMinusMinute, String sort, int pagingSize, int pageNum){
 
         try{
-            return search(esHost,esPort, getSearchStartTime(time, plusMinusMinute), getSearchEndTime(time, plusMinusMinute), new ArrayList<>(), new ArrayList<>(), null, sort, pagingSize, pageNum);
+            return search(esHost, esPort, ElasticSearchQuerySpec.around(time, plusMinusMinute).sort(sort).name("searchAll"), pagingSize, pageNum);
         }catch (Exception e){
             logger.error(ExceptionUtils.getStackTrace(e));
             return new ElasticSearchDataListInfo();
@@ -123,7 +138,7 @@ public class ElasticSearchSearchUtil {
     public static ElasticSearchDataListInfo searchAll(String esHost, int esPort, String startTime, String endTime, String sort, int pagingSize, int pageNum){
 
         try{
-            return search(esHost,esPort, getMilliTime(startTime), getMilliTime(endTime), new ArrayList<>(), new ArrayList<>(), null, sort, pagingSize, pageNum);
+            return search(esHost, esPort, ElasticSearchQuerySpec.range(startTime, endTime).sort(sort).name("searchAll"), pagingSize, pageNum);
         }catch (Exception e){
             logger.error(ExceptionUtils.getStackTrace(e));
             return new ElasticSearchDataListInfo();
@@ -145,7 +160,7 @@ public class ElasticSearchSearchUtil {
      */
     public static ElasticSearchDataListInfo searchHostFilter(String esHost, int esPort, String time, int plusMinusMinute, ArrayList<String> hostFilterList, String sort, int pagingSize, int pageNum){
         try{
-            return search(esHost,esPort, getSearchStartTime(time, plusMinusMinute), getSearchEndTime(time, plusMinusMinute), hostFilterList, new ArrayList<>(), null, sort, pagingSize, pageNum);
+            return search(esHost, esPort, ElasticSearchQuerySpec.around(time, plusMinusMinute).hosts(hostFilterList).sort(sort).name("searchHostFilter"), pagingSize, pageNum);
         }catch (Exception e){
             logger.error(ExceptionUtils.getStackTrace(e));
             return new ElasticSearchDataListInfo();
@@ -166,7 +181,7 @@ public class ElasticSearchSearchUtil {
      */
     public static ElasticSearchDataListInfo searchHostFilter(String esHost, int esPort, String startTime, String endTime, ArrayList<String> hostFilterList, String sort, int pagingSize, int pageNum){
         try{
-            return search(esHost,esPort, getMilliTime(startTime), getMilliTime(endTime), hostFilterList, new ArrayList<>(), null, sort, pagingSize, pageNum);
+            return search(esHost, esPort, ElasticSearchQuerySpec.range(startTime, endTime).hosts(hostFilterList).sort(sort).name("searchHostFilter"), pagingSize, pageNum);
         }catch (Exception e){
             logger.error(ExceptionUtils.getStackTrace(e));
             return new ElasticSearchDataListInfo();
@@ -189,7 +204,7 @@ public class ElasticSearchSearchUtil {
      */
     public static ElasticSearchDataListInfo searchHostFilter(String esHost, int esPort, String time, int plusMinusMinute, ArrayList<String> hostFilterList, String messageFilter, String sort, int pagingSize, int pageNum){
         try{
-            return search(esHost,esPort, getSearchStartTime(time, plusMinusMinute), getSearchEndTime(time, plusMinusMinute), hostFilterList, new ArrayList<>(), messageFilter, sort, pagingSize, pageNum);
+            return search(esHost, esPort, ElasticSearchQuerySpec.around(time, plusMinusMinute).hosts(hostFilterList).message(messageFilter).sort(sort).name("searchHostFilter"), pagingSize, pageNum);
         }catch (Exception e){
             logger.error(ExceptionUtils.getStackTrace(e));
             return new ElasticSearchDataListInfo();
@@ -212,7 +227,7 @@ public class ElasticSearchSearchUtil {
      */
     public static ElasticSearchDataListInfo searchHostFilter(String esHost, int esPort, String startTime, String endTime, ArrayList<String> hostFilterList, String messageFilter, String sort, int pagingSize, int pageNum){
         try{
-            return search(esHost,esPort, getMilliTime(startTime), getMilliTime(endTime), hostFilterList, new ArrayList<>(), messageFilter, sort, pagingSize, pageNum);
+            return search(esHost, esPort, ElasticSearchQuerySpec.range(startTime, endTime).hosts(hostFilterList).message(messageFilter).sort(sort).name("searchHostFilter"), pagingSize, pageNum);
         }catch (Exception e){
             logger.error(ExceptionUtils.getStackTrace(e));
             return new ElasticSearchDataListInfo();
@@ -234,7 +249,7 @@ public class ElasticSearchSearchUtil {
      */
     public static ElasticSearchDataListInfo searchFileFilter(String esHost, int esPort, String time, int plusMinusMinute, ArrayList<String> fileFilterList, String sort, int pagingSize, int pageNum){
         try{
-            return search(esHost,esPort, getSearchStartTime(time, plusMinusMinute), getSearchEndTime(time, plusMinusMinute), new ArrayList<>(), fileFilterList, null, sort, pagingSize, pageNum);
+            return search(esHost, esPort, ElasticSearchQuerySpec.around(time, plusMinusMinute).files(fileFilterList).sort(sort).name("searchFileFilter"), pagingSize, pageNum);
         }catch (Exception e){
             logger.error(ExceptionUtils.getStackTrace(e));
             return new ElasticSearchDataListInfo();
@@ -256,7 +271,7 @@ public class ElasticSearchSearchUtil {
      */
     public static ElasticSearchDataListInfo searchFileFilter(String esHost, int esPort, String startTime, String endTime, ArrayList<String> fileFilterList, String sort, int pagingSize, int pageNum){
         try{
-            return search(esHost,esPort, getMilliTime(startTime), getMilliTime(endTime), new ArrayList<>(), fileFilterList, null, sort, pagingSize, pageNum);
+            return search(esHost, esPort, ElasticSearchQuerySpec.range(startTime, endTime).files(fileFilterList).sort(sort).name("searchFileFilter"), pagingSize, pageNum);
         }catch (Exception e){
             logger.error(ExceptionUtils.getStackTrace(e));
             return new ElasticSearchDataListInfo();
@@ -279,7 +294,7 @@ public class ElasticSearchSearchUtil {
      */
     public static ElasticSearchDataListInfo searchFileFilter(String esHost, int esPort, String time, int plusMinusMinute, ArrayList<String> fileFilterList, String messageFilter, String sort, int pagingSize, int pageNum){
         try{
-            return search(esHost,esPort, getSearchStartTime(time, plusMinusMinute), getSearchEndTime(time, plusMinusMinute), new ArrayList<>(), fileFilterList, null, sort, pagingSize, pageNum);
+            return search(esHost, esPort, ElasticSearchQuerySpec.around(time, plusMinusMinute).files(fileFilterList).message(messageFilter).sort(sort).name("searchFileFilter"), pagingSize, pageNum);
         }catch (Exception e){
             logger.error(ExceptionUtils.getStackTrace(e));
             return new ElasticSearchDataListInfo();
@@ -302,7 +317,7 @@ public class ElasticSearchSearchUtil {
      */
     public static ElasticSearchDataListInfo searchFileFilter(String esHost, int esPort, String startTime, String endTime, ArrayList<String> fileFilterList, String messageFilter, String sort, int pagingSize, int pageNum){
         try{
-            return search(esHost,esPort, getMilliTime(startTime), getMilliTime(endTime), new ArrayList<>(), fileFilterList, null, sort, pagingSize, pageNum);
+            return search(esHost, esPort, ElasticSearchQuerySpec.range(startTime, endTime).files(fileFilterList).message(messageFilter).sort(sort).name("searchFileFilter"), pagingSize, pageNum);
         }catch (Exception e){
             logger.error(ExceptionUtils.getStackTrace(e));
             return new ElasticSearchDataListInfo();
@@ -324,7 +339,7 @@ public class ElasticSearchSearchUtil {
      */
     public static ElasticSearchDataListInfo searchFilter(String esHost, int esPort, String time, int plusMinusMinute, String messageFilter, String sort, int pagingSize, int pageNum){
         try{
-            return search(esHost,esPort, getSearchStartTime(time, plusMinusMinute), getSearchEndTime(time, plusMinusMinute), new ArrayList<>(), new ArrayList<>(), messageFilter, sort, pagingSize, pageNum);
+            return search(esHost, esPort, ElasticSearchQuerySpec.around(time, plusMinusMinute).message(messageFilter).sort(sort).name("searchFilter"), pagingSize, pageNum);
         }catch (Exception e){
             logger.error(ExceptionUtils.getStackTrace(e));
             return new ElasticSearchDataListInfo();
@@ -346,7 +361,7 @@ public class ElasticSearchSearchUtil {
      */
     public static ElasticSearchDataListInfo searchFilter(String esHost, int esPort, String startTime, String endTime, String messageFilter, String sort, int pagingSize, int pageNum){
         try{
-            return search(esHost,esPort, getMilliTime(startTime), getMilliTime(endTime), new ArrayList<>(), new ArrayList<>(), messageFilter, sort, pagingSize, pageNum);
+            return search(esHost, esPort, ElasticSearchQuerySpec.range(startTime, endTime).message(messageFilter).sort(sort).name("searchFilter"), pagingSize, pageNum);
         }catch (Exception e){
             logger.error(ExceptionUtils.getStackTrace(e));
             return new ElasticSearchDataListInfo();
@@ -369,7 +384,7 @@ public class ElasticSearchSearchUtil {
      */
     public static ElasticSearchDataListInfo searchFilter(String esHost, int esPort, String time, int plusMinusMinute, ArrayList<String> hostFilterList, ArrayList<String> fileFilterList, String sort, int pagingSize, int pageNum){
         try{
-            return search(esHost,esPort, getSearchStartTime(time, plusMinusMinute), getSearchEndTime(time, plusMinusMinute), hostFilterList, fileFilterList, null, sort, pagingSize, pageNum);
+            return search(esHost, esPort, ElasticSearchQuerySpec.around(time, plusMinusMinute).hosts(hostFilterList).files(fileFilterList).sort(sort).name("searchFilter"), pagingSize, pageNum);
         }catch (Exception e){
             logger.error(ExceptionUtils.getStackTrace(e));
             return new ElasticSearchDataListInfo();
@@ -393,7 +408,7 @@ public class ElasticSearchSearchUtil {
      */
     public static ElasticSearchDataListInfo searchFilter(String esHost, int esPort, String startTime, String endTime, ArrayList<String> hostFilterList, ArrayList<String> fileFilterList, String sort, int pagingSize, int pageNum){
         try{
-            return search(esHost,esPort, getMilliTime(startTime), getMilliTime(endTime), hostFilterList, fileFilterList, null, sort, pagingSize, pageNum);
+            return search(esHost, esPort, ElasticSearchQuerySpec.range(startTime, endTime).hosts(hostFilterList).files(fileFilterList).sort(sort).name("searchFilter"), pagingSize, pageNum);
         }catch (Exception e){
             logger.error(ExceptionUtils.getStackTrace(e));
             return new ElasticSearchDataListInfo();
@@ -417,7 +432,7 @@ public class ElasticSearchSearchUtil {
      */
     public static ElasticSearchDataListInfo searchFilter(String esHost, int esPort, String time, int plusMinusMinute, ArrayList<String> hostFilterList, ArrayList<String> fileFilterList, String messageFilter, String sort, int pagingSize, int pageNum){
         try{
-            return search(esHost,esPort, getSearchStartTime(time, plusMinusMinute), getSearchEndTime(time, plusMinusMinute), hostFilterList, fileFilterList, messageFilter, sort, pagingSize, pageNum);
+            return search(esHost, esPort, ElasticSearchQuerySpec.around(time, plusMinusMinute).hosts(hostFilterList).files(fileFilterList).message(messageFilter).sort(sort).name("searchFilter"), pagingSize, pageNum);
         }catch (Exception e){
             logger.error(ExceptionUtils.getStackTrace(e));
             return new ElasticSearchDataListInfo();
@@ -442,7 +457,7 @@ public class ElasticSearchSearchUtil {
      */
     public static ElasticSearchDataListInfo searchFilter(String esHost, int esPort, String startTime, String endTime, ArrayList<String> hostFilterList, ArrayList<String> fileFilterList, String messageFilter, String sort, int pagingSize, int pageNum){
         try{
-            return search(esHost,esPort, getMilliTime(startTime), getMilliTime(endTime), hostFilterList, fileFilterList, messageFilter, sort, pagingSize, pageNum);
+            return search(esHost, esPort, ElasticSearchQuerySpec.range(startTime, endTime).hosts(hostFilterList).files(fileFilterList).message(messageFilter).sort(sort).name("searchFilter"), pagingSize, pageNum);
         }catch (Exception e){
             logger.error(ExceptionUtils.getStackTrace(e));
             return new ElasticSearchDataListInfo();
@@ -469,7 +484,7 @@ public class ElasticSearchSearchUtil {
      */
     public static ElasticSearchDataListInfo searchLog(String esHost, int esPort, String time, int minusMinute, ArrayList<String> hostFilterList, ArrayList<String> fileFilterList, String messageFilter, String sort){
         try{
-            return search(esHost,esPort, time, minusMinute, hostFilterList, fileFilterList, messageFilter, sort);
+            return scrollAll(esHost, esPort, ElasticSearchQuerySpec.before(time, minusMinute).hosts(hostFilterList).files(fileFilterList).message(messageFilter).sort(sort).name("searchLog"));
         }catch (Exception e){
             logger.error(ExceptionUtils.getStackTrace(e));
             return new ElasticSearchDataListInfo();
@@ -477,91 +492,117 @@ public class ElasticSearchSearchUtil {
     }
 
     /**
-     * Aggregation All
+     * LogEventManager Use... ( streaming )
+     *
+     * Each hit is pushed to consumer while scrolling. The next scroll batch is requested after consumer returns,
+     * so a slow consumer slows down the scroll instead of growing the heap.
+     * Result has totalCount & elapsed time only ( dataList / messageList are empty )
      *
      * @param esHost - ElasticSearch HTTP Host
      * @param esPort - ElasticSearch HTTP Port
-     * @param startTime - Aggregation Start Time
-     * @param endTime - Aggregation End Time
-     * @param period - Period
-     * @param periodUnit - d:Day, h:Hour, m:Minute, s:Seconds (refer to PERIOD_UNIT_DAY, PERIOD_UNIT_HOUR, PERIOD_UNIT_MINUTE, PERIOD_UNIT_SECOND)
+     * @param time - Standard Time (Format : yyyy-MM-dd HH:mm:ss.SSS)
+     * @param minusMinute - Standard Time Minus Minute
+     * @param hostFilterList - Host List
+     * @param fileFilterList - File List
+     * @param messageFilter - Message Filter
+     * @param sort - Result Sort Default ASC
+     * @param consumer - Hit Consumer
      * @return
      */
-    public static ElasticSearchAggregationListInfo aggregationAll(String esHost, int esPort, String startTime, String endTime, int period, String periodUnit){
-
+    public static ElasticSearchDataListInfo searchLogStream(String esHost, int esPort, String time, int minusMinute, ArrayList<String> hostFilterList, ArrayList<String> fileFilterList, String messageFilter, String sort, Consumer<ElasticSearchDataInfo> consumer){
         try{
-            return aggregation(esHost,esPort, AGGREGATION_TYPE.ALL, startTime, endTime, period, periodUnit);
+            return searchStream(esHost, esPort, ElasticSearchQuerySpec.before(time, minusMinute).hosts(hostFilterList).files(fileFilterList).message(messageFilter).sort(sort).name("searchLogStream"), consumer);
         }catch (Exception e){
             logger.error(ExceptionUtils.getStackTrace(e));
-            return new ElasticSearchAggregationListInfo();
+            return new ElasticSearchDataListInfo();
         }
     }
 
     /**
-     * Aggregation Host
+     * Filter Search ( streaming, start/end time use )
      *
      * @param esHost - ElasticSearch HTTP Host
      * @param esPort - ElasticSearch HTTP Port
-     * @param startTime - Aggregation Start Time
-     * @param endTime - Aggregation End Time
-     * @param period - Period
-     * @param periodUnit - d:Day, h:Hour, m:Minute, s:Seconds (refer to PERIOD_UNIT_DAY, PERIOD_UNIT_HOUR, PERIOD_UNIT_MINUTE, PERIOD_UNIT_SECOND)
+     * @param startTime - Search Start Time (Format : yyyy-MM-dd HH:mm:ss.SSS)
+     * @param endTime - Search End Time (Format : yyyy-MM-dd HH:mm:ss.SSS)
+     * @param hostFilterList - Host List
+     * @param fileFilterList - File List
+     * @param messageFilter - Message Filter
+     * @param sort - Result Sort Default ASC
+     * @param consumer - Hit Consumer
      * @return
      */
-    public static ElasticSearchAggregationListInfo aggregationHost(String esHost, int esPort, String startTime, String endTime, int period, String periodUnit){
-
+    public static ElasticSearchDataListInfo searchStream(String esHost, int esPort, String startTime, String endTime, ArrayList<String> hostFilterList, ArrayList<String> fileFilterList, String messageFilter, String sort, Consumer<ElasticSearchDataInfo> consumer){
         try{
-            return aggregation(esHost,esPort, AGGREGATION_TYPE.HOST, startTime, endTime, period, periodUnit);
+            return searchStream(esHost, esPort, ElasticSearchQuerySpec.range(startTime, endTime).hosts(hostFilterList).files(fileFilterList).message(messageFilter).sort(sort), consumer);
         }catch (Exception e){
             logger.error(ExceptionUtils.getStackTrace(e));
-            return new ElasticSearchAggregationListInfo();
+            return new ElasticSearchDataListInfo();
         }
     }
 
     /**
-     * Aggregation File
+     * LogEventManager Use... ( iterator )
+     *
+     * Caller must close the iterator ( try-with-resources ) when it stops before the end.
      *
      * @param esHost - ElasticSearch HTTP Host
      * @param esPort - ElasticSearch HTTP Port
-     * @param startTime - Aggregation Start Time
-     * @param endTime - Aggregation End Time
-     * @param period - Period
-     * @param periodUnit - d:Day, h:Hour, m:Minute, s:Seconds (refer to PERIOD_UNIT_DAY, PERIOD_UNIT_HOUR, PERIOD_UNIT_MINUTE, PERIOD_UNIT_SECOND)
+     * @param time - Standard Time (Format : yyyy-MM-dd HH:mm:ss.SSS)
+     * @param minusMinute - Standard Time Minus Minute
+     * @param hostFilterList - Host List
+     * @param fileFilterList - File List
+     * @param messageFilter - Message Filter
+     * @param sort - Result Sort Default ASC
      * @return
+     * @throws Exception
      */
-    public static ElasticSearchAggregationListInfo aggregationFile(String esHost, int esPort, String startTime, String endTime, int period, String periodUnit){
-
-        try{
-            return aggregation(esHost,esPort, AGGREGATION_TYPE.FILE, startTime, endTime, period, periodUnit);
-        }catch (Exception e){
-            logger.error(ExceptionUtils.getStackTrace(e));
-            return new ElasticSearchAggregationListInfo();
-        }
+    public static ElasticSearchScrollIterator searchLogIterator(String esHost, int esPort, String time, int minusMinute, ArrayList<String> hostFilterList, ArrayList<String> fileFilterList, String messageFilter, String sort) throws Exception{
+        return searchIterator(esHost, esPort, ElasticSearchQuerySpec.before(time, minusMinute).hosts(hostFilterList).files(fileFilterList).message(messageFilter).sort(sort).name("searchLogIterator"));
     }
 
     /**
-     * Aggregation Host_File
+     * Filter Search ( iterator, start/end time use )
+     *
+     * Caller must close the iterator ( try-with-resources ) when it stops before the end.
      *
      * @param esHost - ElasticSearch HTTP Host
      * @param esPort - ElasticSearch HTTP Port
-     * @param startTime - Aggregation Start Time
-     * @param endTime - Aggregation End Time
-     * @param period - Period
-     * @param periodUnit - d:Day, h:Hour, m:Minute, s:Seconds (refer to PERIOD_UNIT_DAY, PERIOD_UNIT_HOUR, PERIOD_UNIT_MINUTE, PERIOD_UNIT_SECOND)
+     * @param startTime - Search Start Time (Format : yyyy-MM-dd HH:mm:ss.SSS)
+     * @param endTime - Search End Time (Format : yyyy-MM-dd HH:mm:ss.SSS)
+     * @param hostFilterList - Host List
+     * @param fileFilterList - File List
+     * @param messageFilter - Message Filter
+     * @param sort - Result Sort Default ASC
      * @return
+     * @throws Exception
      */
-    public static ElasticSearchAggregationListInfo aggregationHostFile(String esHost, int esPort, String startTime, String endTime, int period, String periodUnit){
+    public static ElasticSearchScrollIterator searchIterator(String esHost, int esPort, String startTime, String endTime, ArrayList<String> hostFilterList, ArrayList<String> fileFilterList, String messageFilter, String sort) throws Exception{
+        return searchIterator(esHost, esPort, ElasticSearchQuerySpec.range(startTime, endTime).hosts(hostFilterList).files(fileFilterList).message(messageFilter).sort(sort));
+    }
 
-        try{
-            return aggregation(esHost,esPort, AGGREGATION_TYPE.HOST_FILE, startTime, endTime, period, periodUnit);
-        }catch (Exception e){
-            logger.error(ExceptionUtils.getStackTrace(e));
-            return new ElasticSearchAggregationListInfo();
-        }
+    /**
+     * Search ( iterator, query spec )
+     *
+     * Caller must close the iterator ( try-with-resources ) when it stops before the end.
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param querySpec - Query Spec
+     * @return
+     * @throws Exception
+     */
+    public static ElasticSearchScrollIterator searchIterator(String esHost, int esPort, ElasticSearchQuerySpec querySpec) throws Exception{
+        return new ElasticSearchScrollIterator(ElasticSearchClientRegistry.getClient(esHost, esPort), getStreamSearchRequest(querySpec), DEFAULT_SCROLL_KEEP_ALIVE, ElasticSearchMetrics.start(getMetricsName(querySpec, "searchIterator"), null));
     }
 
     /**
-     * Search
+     * Filter Search ( parallel sliced scroll, start/end time use )
+     *
+     * The query is split into sliceCount slices fetched concurrently.
+     * ordered true  : slices are merged by @timestamp ( sort ) before consumer, slices run on a pool of sliceCount threads owned by the search
+     * ordered false : hits are passed to consumer as they arrive ( fastest, _doc order ), slices run on executorService
+     * consumer is always called from the calling thread.
      *
      * @param esHost - ElasticSearch HTTP Host
      * @param esPort - ElasticSearch HTTP Port
@@ -570,348 +611,1530 @@ public class ElasticSearchSearchUtil {
      * @param hostFilterList - Host List
      * @param fileFilterList - File List
      * @param messageFilter - Message Filter
-     * @param sort - Result Sort Default ASC
-     * @param pagingSize - Page Size
-     * @param pageNum - Select page num
+     * @param sort - Result Sort Default ASC ( ordered only )
+     * @param sliceCount - Slice Count ( 2 or more, ex) shard count )
+     * @param executorService - Slice fetch executor of unordered search ( null : fixed pool of sliceCount threads, ordered : not used )
+     * @param ordered - Merge by @timestamp
+     * @param consumer - Hit Consumer
      * @return
      */
-    private static ElasticSearchDataListInfo search(String esHost, int esPort, String startTime, String endTime, ArrayList<String> hostFilterList, ArrayList<String> fileFilterList, String messageFilter, String sort, int pagingSize, int pageNum){
-
-        final Scroll scroll = new Scroll(TimeValue.timeValueMinutes(1L));
-        RestClient restClient = null;
+    public static ElasticSearchDataListInfo searchSlicedStream(String esHost, int esPort, String startTime, String endTime, ArrayList<String> hostFilterList, ArrayList<String> fileFilterList, String messageFilter, String sort, int sliceCount, ExecutorService executorService, boolean ordered, Consumer<ElasticSearchDataInfo> consumer){
         try{
+            return searchSlicedStream(esHost, esPort, ElasticSearchQuerySpec.range(startTime, endTime).hosts(hostFilterList).files(fileFilterList).message(messageFilter).sort(sort), sliceCount, executorService, ordered, consumer);
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
+            return new ElasticSearchDataListInfo();
+        }
+    }
 
-            long start = System.nanoTime();
-
-            if(hostFilterList == null || ArrayUtils.isEmpty(hostFilterList.toArray())){
-                hostFilterList = new ArrayList<>();
-            }
-            if(fileFilterList == null || ArrayUtils.isEmpty(fileFilterList.toArray())){
-                fileFilterList = new ArrayList<>();
-            }
-
-            // Connect
-            restClient = RestClient.builder(new HttpHost(esHost, esPort,HttpHost.DEFAULT_SCHEME_NAME)).setDefaultHeaders(HEADERS).build();
-            RestHighLevelClient restHighLevelClient = new RestHighLevelClient(restClient);
-
-            // Indices
-            SearchRequest searchRequest = new SearchRequest(INDEX);
-            SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder();
-
-            // BoolQuery
-            BoolQueryBuilder boolQueryBuilder = QueryBuilders.boolQuery();
-            boolQueryBuilder.filter(QueryBuilders.rangeQuery(FIELD_TIMESTAMP).from(startTime).to(endTime));
-
-            // Host Filter
-            String hostFilter = StringUtils.join(hostFilterList, " ").trim();
-            if(StringUtils.isNotEmpty(hostFilter)){
-                boolQueryBuilder.must(QueryBuilders.matchQuery(FIELD_HOST, hostFilter));
-            }
-            // File Filter
-            for(String fileFilter : fileFilterList){
-                boolQueryBuilder.should(QueryBuilders.matchPhraseQuery(FIELD_FILE, fileFilter)).minimumShouldMatch(1);
-            }
+    /**
+     * Search ( parallel sliced scroll, query spec )
+     *
+     * refer to searchSlicedStream(esHost, esPort, startTime, endTime, ...)
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param querySpec - Query Spec ( sort : ordered only )
+     * @param sliceCount - Slice Count ( 2 or more, ex) shard count )
+     * @param executorService - Slice fetch executor of unordered search ( null : fixed pool of sliceCount threads, ordered : not used )
+     * @param ordered - Merge by @timestamp
+     * @param consumer - Hit Consumer
+     * @return
+     */
+    public static ElasticSearchDataListInfo searchSlicedStream(String esHost, int esPort, ElasticSearchQuerySpec querySpec, int sliceCount, ExecutorService executorService, boolean ordered, Consumer<ElasticSearchDataInfo> consumer){
 
-            // Message Filter
-            if(StringUtils.isNotEmpty(messageFilter)){
-                boolQueryBuilder.must(QueryBuilders.matchPhraseQuery(FIELD_MESSAGE, messageFilter));
-            }
+        if(sliceCount < 2){
+            return searchStream(esHost, esPort, querySpec, consumer);
+        }
 
-            // Order
-            if(StringUtils.equals(sort, SORT_ASC)){
-                searchSourceBuilder.sort(SortBuilders.fieldSort(FIELD_TIMESTAMP).order(SortOrder.ASC));
-            }else if(StringUtils.equals(sort, SORT_DESC)){
-                searchSourceBuilder.sort(SortBuilders.fieldSort(FIELD_TIMESTAMP).order(SortOrder.DESC));
-            }else {
-                searchSourceBuilder.sort(SortBuilders.fieldSort(FIELD_TIMESTAMP).order(SortOrder.ASC));
-            }
-            searchSourceBuilder.query(boolQueryBuilder);
+        long start = System.nanoTime();
+        boolean ownExecutor = executorService == null && !ordered;
 
-            // Size
-            searchSourceBuilder.size(pagingSize);
-            if(pagingSize == 0 || pagingSize > DEFAULT_SIZE){
-                searchSourceBuilder.size(DEFAULT_SIZE);
+        try{
+            if(ownExecutor){
+                executorService = Executors.newFixedThreadPool(sliceCount);
             }
 
-            searchRequest.source(searchSourceBuilder);
-
-            // Scroll
-            searchRequest.scroll(scroll);
-
-            // Query Request & Response
-            SearchResponse searchResponse = restHighLevelClient.search(searchRequest);
-
-            String scrollId = searchResponse.getScrollId();
-
-            SearchHit[] searchHits = searchResponse.getHits().getHits();
-
-            // Query Result Set ElasticSearchDataListInfo
-            ElasticSearchDataListInfo elasticSearchDataListInfo = setData(searchResponse.getHits().getHits(), searchResponse.getHits().getTotalHits());
-
-            int currentPageNum = 1;
-
-            while (searchHits != null && searchHits.length > 0 && pageNum != 1){
-
-                SearchScrollRequest searchScrollRequest = new SearchScrollRequest(scrollId);
-
-                searchScrollRequest.scroll(scroll);
-                searchResponse = restHighLevelClient.searchScroll(searchScrollRequest);
-                scrollId = searchResponse.getScrollId();
-                searchHits = searchResponse.getHits().getHits();
+            SearchRequest searchRequest;
+            Comparator<ElasticSearchDataInfo> comparator = null;
 
-                if(searchResponse.getHits().getHits().length > 0){
-                    currentPageNum++;
-                }
+            if(ordered){
+                searchRequest = getStreamSearchRequest(querySpec);
 
-                if(currentPageNum == pageNum){
-                    elasticSearchDataListInfo = setData(searchResponse.getHits().getHits(), searchResponse.getHits().getTotalHits());
-                    break;
+                comparator = Comparator.comparingLong(ElasticSearchDataInfo::getTime);
+                if(getSortOrder(querySpec.getSort()) == SortOrder.DESC){
+                    comparator = comparator.reversed();
                 }
+            }else {
+                // time is taken from @timestamp source ( refer to getHitTime )
+                searchRequest = getStreamSearchRequest(querySpec, SortBuilders.fieldSort(FIELD_DOC));
             }
 
-            int totalPageCount = (int) Math.ceil((double)elasticSearchDataListInfo.getTotalCount()/(double)pagingSize);
-            elasticSearchDataListInfo.setTotalPageCount(totalPageCount);
-            elasticSearchDataListInfo.setCurrentPageCount(pageNum);
+            ElasticSearchSlicedScroll elasticSearchSlicedScroll = new ElasticSearchSlicedScroll(ElasticSearchClientRegistry.getClient(esHost, esPort), searchRequest, sliceCount, DEFAULT_SCROLL_KEEP_ALIVE);
 
+            ElasticSearchDataListInfo elasticSearchDataListInfo = new ElasticSearchDataListInfo();
+            elasticSearchDataListInfo.setTotalCount(elasticSearchSlicedScroll.export(executorService, comparator, consumer));
             elasticSearchDataListInfo.setElapsedMsTime((System.nanoTime()-start)/ 1000000.0);
 
-            if(elasticSearchDataListInfo.getCurrentPageCount() > elasticSearchDataListInfo.getTotalPageCount()){
-                elasticSearchDataListInfo.setMessageList(new ArrayList<>());
-                elasticSearchDataListInfo.setDataList(new ArrayList<>());
-            }
-
-            ClearScrollRequest clearScrollRequest = new ClearScrollRequest();
-            clearScrollRequest.addScrollId(scrollId);
-            ClearScrollResponse clearScrollResponse = restHighLevelClient.clearScroll(clearScrollRequest);
-
-            if(!clearScrollResponse.isSucceeded()){
-                logger.error("Clear Scroll Response : " + clearScrollResponse.isSucceeded());
-            }
-
             return elasticSearchDataListInfo;
 
         }catch (Exception e){
             logger.error(ExceptionUtils.getStackTrace(e));
             return new ElasticSearchDataListInfo();
-
         }finally {
-            try{
-                if(restClient != null){
-                    restClient.close();
-                }
-            }catch (Exception e){
-                logger.error(ExceptionUtils.getStackTrace(e));
+            if(ownExecutor && executorService != null){
+                executorService.shutdownNow();
             }
         }
     }
 
     /**
-     * Search
+     * Filter Search using search_after cursor ( Host & File & Message )
+     *
+     * ex) first page -> cursor : null
+     *     next page  -> cursor : getNextCursor() of previous page result ( null : last page )
+     *
+     *     Each page costs one request regardless of depth.
      *
      * @param esHost - ElasticSearch HTTP Host
      * @param esPort - ElasticSearch HTTP Port
-     * @param time - Standard Time (Format : yyyy-MM-dd HH:mm:ss.SSS)
-     * @param minusMinute - Standard Time Minus Minute
+     * @param startTime - Search Start Time (Format : yyyy-MM-dd HH:mm:ss.SSS)
+     * @param endTime - Search End Time (Format : yyyy-MM-dd HH:mm:ss.SSS)
      * @param hostFilterList - Host List
      * @param fileFilterList - File List
      * @param messageFilter - Message Filter
      * @param sort - Result Sort Default ASC
+     * @param pagingSize - Page Size
+     * @param cursor - Next page cursor ( null : first page )
      * @return
+     * @throws IllegalArgumentException malformed cursor
      */
-    private static ElasticSearchDataListInfo search(String esHost, int esPort, String time, int minusMinute, ArrayList<String> hostFilterList, ArrayList<String> fileFilterList, String messageFilter, String sort){
-
-        final Scroll scroll = new Scroll(TimeValue.timeValueMinutes(1L));
-        RestClient restClient = null;
-        try{
-
-            long startTime = System.nanoTime();
-
-            if(hostFilterList == null || ArrayUtils.isEmpty(hostFilterList.toArray())){
-                hostFilterList = new ArrayList<>();
-            }
-            if(fileFilterList == null || ArrayUtils.isEmpty(fileFilterList.toArray())){
-                fileFilterList = new ArrayList<>();
-            }
-
-            // Connect
-            restClient = RestClient.builder(new HttpHost(esHost, esPort,HttpHost.DEFAULT_SCHEME_NAME)).setDefaultHeaders(HEADERS).build();
-            RestHighLevelClient restHighLevelClient = new RestHighLevelClient(restClient);
-
-            // Indices
-            SearchRequest searchRequest = new SearchRequest(INDEX);
-            SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder();
-
-            // BoolQuery
-            BoolQueryBuilder boolQueryBuilder = QueryBuilders.boolQuery();
-            boolQueryBuilder.filter(QueryBuilders.rangeQuery(FIELD_TIMESTAMP).gte(getSearchStartTime(time, minusMinute)).lt(getMilliTime(time)));
-
-            // Host Filter
-            String hostFilter = StringUtils.join(hostFilterList, " ").trim();
-            if(StringUtils.isNotEmpty(hostFilter)){
-                boolQueryBuilder.must(QueryBuilders.matchQuery(FIELD_HOST, hostFilter));
-            }
-
-            // File Filter
-            for(String fileFilter : fileFilterList){
-                boolQueryBuilder.should(QueryBuilders.matchPhraseQuery(FIELD_FILE, fileFilter)).minimumShouldMatch(1);
-            }
-            // Message Filter
-            if(StringUtils.isNotEmpty(messageFilter)){
-                boolQueryBuilder.must(QueryBuilders.matchPhraseQuery(FIELD_MESSAGE, messageFilter));
-            }
-
-            // Order
-            if(StringUtils.equals(sort, SORT_ASC)){
-                searchSourceBuilder.sort(SortBuilders.fieldSort(FIELD_TIMESTAMP).order(SortOrder.ASC));
-            }else if(StringUtils.equals(sort, SORT_DESC)){
-                searchSourceBuilder.sort(SortBuilders.fieldSort(FIELD_TIMESTAMP).order(SortOrder.DESC));
-            }else {
-                searchSourceBuilder.sort(SortBuilders.fieldSort(FIELD_TIMESTAMP).order(SortOrder.ASC));
-            }
-            searchSourceBuilder.query(boolQueryBuilder);
-
-            // Size
-            searchSourceBuilder.size(DEFAULT_SIZE);
-
-            searchRequest.source(searchSourceBuilder);
-
-            // Scroll
-            searchRequest.scroll(scroll);
-
-            // Query Request & Response
-            SearchResponse searchResponse = restHighLevelClient.search(searchRequest);
-
-            String scrollId = searchResponse.getScrollId();
-            SearchHit[] searchHits = searchResponse.getHits().getHits();
-
-            // Query Result Set ElasticSearchDataListInfo
-            ElasticSearchDataListInfo elasticSearchDataListInfo = setData(searchResponse.getHits().getHits(), searchResponse.getHits().getTotalHits());
-
-            while (searchHits != null && searchHits.length > 0){
-
-                SearchScrollRequest searchScrollRequest = new SearchScrollRequest(scrollId);
-                searchScrollRequest.scroll(scroll);
-
-                // Query Request & Response ( scroll )
-                searchResponse = restHighLevelClient.searchScroll(searchScrollRequest);
-                scrollId = searchResponse.getScrollId();
-                searchHits = searchResponse.getHits().getHits();
-
-                // MessageList & ElasticsearchDataInfoList Append
-                elasticSearchDataListInfo.getMessageList().addAll(getMessageData(searchResponse.getHits().getHits(), searchResponse.getHits().getTotalHits()));
-                elasticSearchDataListInfo.getDataList().addAll(getElasticsearchData(searchResponse.getHits().getHits(), searchResponse.getHits().getTotalHits()));
-            }
-
-            elasticSearchDataListInfo.setElapsedMsTime((System.nanoTime()-startTime)/ 1000000.0);
-
-            // Clear Scroll
-            ClearScrollRequest clearScrollRequest = new ClearScrollRequest();
-            clearScrollRequest.addScrollId(scrollId);
-            ClearScrollResponse clearScrollResponse = restHighLevelClient.clearScroll(clearScrollRequest);
-
-            if(!clearScrollResponse.isSucceeded()){
-                logger.error("Clear Scroll Response : " + clearScrollResponse.isSucceeded());
-            }
+    public static ElasticSearchDataListInfo searchAfter(String esHost, int esPort, String startTime, String endTime, ArrayList<String> hostFilterList, ArrayList<String> fileFilterList, String messageFilter, String sort, int pagingSize, String cursor){
 
-            return elasticSearchDataListInfo;
+        if(StringUtils.isNotEmpty(cursor)){
+            decodeCursor(cursor);
+        }
 
+        try{
+            return searchAfter(esHost, esPort, ElasticSearchQuerySpec.range(startTime, endTime).hosts(hostFilterList).files(fileFilterList).message(messageFilter).sort(sort), pagingSize, cursor);
         }catch (Exception e){
             logger.error(ExceptionUtils.getStackTrace(e));
             return new ElasticSearchDataListInfo();
-
-        }finally {
-            try{
-                if(restClient != null){
-                    restClient.close();
-                }
-            }catch (Exception e){
-                logger.error(ExceptionUtils.getStackTrace(e));
-            }
         }
     }
 
     /**
-     * Aggregation
+     * Aggregation All
      *
      * @param esHost - ElasticSearch HTTP Host
      * @param esPort - ElasticSearch HTTP Port
-     * @param aggregation_type - refer to AGGREAGTION_TYPE
      * @param startTime - Aggregation Start Time
      * @param endTime - Aggregation End Time
      * @param period - Period
      * @param periodUnit - d:Day, h:Hour, m:Minute, s:Seconds (refer to PERIOD_UNIT_DAY, PERIOD_UNIT_HOUR, PERIOD_UNIT_MINUTE, PERIOD_UNIT_SECOND)
      * @return
      */
-    private static ElasticSearchAggregationListInfo aggregation(String esHost, int esPort, AGGREGATION_TYPE aggregation_type, String startTime, String endTime, int period, String periodUnit){
-
-        RestClient restClient = null;
-        long start = System.nanoTime();
+    public static ElasticSearchAggregationListInfo aggregationAll(String esHost, int esPort, String startTime, String endTime, int period, String periodUnit){
 
         try{
+            return aggregation(esHost,esPort, AGGREGATION_TYPE.ALL, startTime, endTime, period, periodUnit);
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
+            return new ElasticSearchAggregationListInfo();
+        }
+    }
 
-            ElasticSearchAggregationListInfo elasticSearchAggregationListInfo = new ElasticSearchAggregationListInfo();
-
-            elasticSearchAggregationListInfo.setRequestStartTime(startTime);
-            elasticSearchAggregationListInfo.setRequestEndTime(endTime);
-            elasticSearchAggregationListInfo.setPeriod(period);
-            elasticSearchAggregationListInfo.setPeriodUnit(periodUnit);
+    /**
+     * Aggregation Host
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param startTime - Aggregation Start Time
+     * @param endTime - Aggregation End Time
+     * @param period - Period
+     * @param periodUnit - d:Day, h:Hour, m:Minute, s:Seconds (refer to PERIOD_UNIT_DAY, PERIOD_UNIT_HOUR, PERIOD_UNIT_MINUTE, PERIOD_UNIT_SECOND)
+     * @return
+     */
+    public static ElasticSearchAggregationListInfo aggregationHost(String esHost, int esPort, String startTime, String endTime, int period, String periodUnit){
+
+        try{
+            return aggregation(esHost,esPort, AGGREGATION_TYPE.HOST, startTime, endTime, period, periodUnit);
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
+            return new ElasticSearchAggregationListInfo();
+        }
+    }
+
+    /**
+     * Aggregation File
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param startTime - Aggregation Start Time
+     * @param endTime - Aggregation End Time
+     * @param period - Period
+     * @param periodUnit - d:Day, h:Hour, m:Minute, s:Seconds (refer to PERIOD_UNIT_DAY, PERIOD_UNIT_HOUR, PERIOD_UNIT_MINUTE, PERIOD_UNIT_SECOND)
+     * @return
+     */
+    public static ElasticSearchAggregationListInfo aggregationFile(String esHost, int esPort, String startTime, String endTime, int period, String periodUnit){
+
+        try{
+            return aggregation(esHost,esPort, AGGREGATION_TYPE.FILE, startTime, endTime, period, periodUnit);
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
+            return new ElasticSearchAggregationListInfo();
+        }
+    }
+
+    /**
+     * Aggregation Host_File
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param startTime - Aggregation Start Time
+     * @param endTime - Aggregation End Time
+     * @param period - Period
+     * @param periodUnit - d:Day, h:Hour, m:Minute, s:Seconds (refer to PERIOD_UNIT_DAY, PERIOD_UNIT_HOUR, PERIOD_UNIT_MINUTE, PERIOD_UNIT_SECOND)
+     * @return
+     */
+    public static ElasticSearchAggregationListInfo aggregationHostFile(String esHost, int esPort, String startTime, String endTime, int period, String periodUnit){
+
+        try{
+            return aggregation(esHost,esPort, AGGREGATION_TYPE.HOST_FILE, startTime, endTime, period, periodUnit);
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
+            return new ElasticSearchAggregationListInfo();
+        }
+    }
+
+    /**
+     * Aggregation All ( period coarsened to at most maxPoints buckets per series, see getPeriod / getRequestPeriod of the result )
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param startTime - Aggregation Start Time
+     * @param endTime - Aggregation End Time
+     * @param period - Period
+     * @param periodUnit - d:Day, h:Hour, m:Minute, s:Seconds (refer to PERIOD_UNIT_DAY, PERIOD_UNIT_HOUR, PERIOD_UNIT_MINUTE, PERIOD_UNIT_SECOND)
+     * @param maxPoints - Max buckets per series ( <= 0 : requested period )
+     * @return
+     */
+    public static ElasticSearchAggregationListInfo aggregationAll(String esHost, int esPort, String startTime, String endTime, int period, String periodUnit, int maxPoints){
+
+        try{
+            return aggregation(esHost,esPort, AGGREGATION_TYPE.ALL, startTime, endTime, period, periodUnit, maxPoints);
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
+            return new ElasticSearchAggregationListInfo();
+        }
+    }
+
+    /**
+     * Aggregation Host ( period coarsened to at most maxPoints buckets per series, see getPeriod / getRequestPeriod of the result )
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param startTime - Aggregation Start Time
+     * @param endTime - Aggregation End Time
+     * @param period - Period
+     * @param periodUnit - d:Day, h:Hour, m:Minute, s:Seconds (refer to PERIOD_UNIT_DAY, PERIOD_UNIT_HOUR, PERIOD_UNIT_MINUTE, PERIOD_UNIT_SECOND)
+     * @param maxPoints - Max buckets per series ( <= 0 : requested period )
+     * @return
+     */
+    public static ElasticSearchAggregationListInfo aggregationHost(String esHost, int esPort, String startTime, String endTime, int period, String periodUnit, int maxPoints){
+
+        try{
+            return aggregation(esHost,esPort, AGGREGATION_TYPE.HOST, startTime, endTime, period, periodUnit, maxPoints);
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
+            return new ElasticSearchAggregationListInfo();
+        }
+    }
+
+    /**
+     * Aggregation File ( period coarsened to at most maxPoints buckets per series, see getPeriod / getRequestPeriod of the result )
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param startTime - Aggregation Start Time
+     * @param endTime - Aggregation End Time
+     * @param period - Period
+     * @param periodUnit - d:Day, h:Hour, m:Minute, s:Seconds (refer to PERIOD_UNIT_DAY, PERIOD_UNIT_HOUR, PERIOD_UNIT_MINUTE, PERIOD_UNIT_SECOND)
+     * @param maxPoints - Max buckets per series ( <= 0 : requested period )
+     * @return
+     */
+    public static ElasticSearchAggregationListInfo aggregationFile(String esHost, int esPort, String startTime, String endTime, int period, String periodUnit, int maxPoints){
+
+        try{
+            return aggregation(esHost,esPort, AGGREGATION_TYPE.FILE, startTime, endTime, period, periodUnit, maxPoints);
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
+            return new ElasticSearchAggregationListInfo();
+        }
+    }
+
+    /**
+     * Aggregation Host_File ( period coarsened to at most maxPoints buckets per series, see getPeriod / getRequestPeriod of the result )
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param startTime - Aggregation Start Time
+     * @param endTime - Aggregation End Time
+     * @param period - Period
+     * @param periodUnit - d:Day, h:Hour, m:Minute, s:Seconds (refer to PERIOD_UNIT_DAY, PERIOD_UNIT_HOUR, PERIOD_UNIT_MINUTE, PERIOD_UNIT_SECOND)
+     * @param maxPoints - Max buckets per series ( <= 0 : requested period )
+     * @return
+     */
+    public static ElasticSearchAggregationListInfo aggregationHostFile(String esHost, int esPort, String startTime, String endTime, int period, String periodUnit, int maxPoints){
+
+        try{
+            return aggregation(esHost,esPort, AGGREGATION_TYPE.HOST_FILE, startTime, endTime, period, periodUnit, maxPoints);
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
+            return new ElasticSearchAggregationListInfo();
+        }
+    }
+
+    /**
+     * Aggregation Host ( every key, terms partitioned )
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param startTime - Aggregation Start Time
+     * @param endTime - Aggregation End Time
+     * @param period - Period
+     * @param periodUnit - d:Day, h:Hour, m:Minute, s:Seconds (refer to PERIOD_UNIT_DAY, PERIOD_UNIT_HOUR, PERIOD_UNIT_MINUTE, PERIOD_UNIT_SECOND)
+     * @return
+     */
+    public static ElasticSearchAggregationListInfo aggregationHostPartitioned(String esHost, int esPort, String startTime, String endTime, int period, String periodUnit){
+        return aggregationPartitioned(esHost, esPort, AGGREGATION_TYPE.HOST, startTime, endTime, period, periodUnit);
+    }
+
+    /**
+     * Aggregation Host ( every key, terms partitioned, streaming )
+     *
+     * Result has request info & elapsed time only, series of every partition are passed to partitionConsumer.
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param startTime - Aggregation Start Time
+     * @param endTime - Aggregation End Time
+     * @param period - Period
+     * @param periodUnit - d:Day, h:Hour, m:Minute, s:Seconds (refer to PERIOD_UNIT_DAY, PERIOD_UNIT_HOUR, PERIOD_UNIT_MINUTE, PERIOD_UNIT_SECOND)
+     * @param partitionSize - Keys per partition ( 0 : default )
+     * @param partitionConsumer - Aggregation of every partition
+     * @return
+     */
+    public static ElasticSearchAggregationListInfo aggregationHostPartitioned(String esHost, int esPort, String startTime, String endTime, int period, String periodUnit, int partitionSize, Consumer<ElasticSearchAggregationListInfo> partitionConsumer){
+        return ElasticSearchPartitionedAggregation.aggregation(esHost, esPort, AGGREGATION_TYPE.HOST, startTime, endTime, period, periodUnit, partitionSize, partitionConsumer);
+    }
+
+    /**
+     * Aggregation File ( every key, terms partitioned )
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param startTime - Aggregation Start Time
+     * @param endTime - Aggregation End Time
+     * @param period - Period
+     * @param periodUnit - d:Day, h:Hour, m:Minute, s:Seconds (refer to PERIOD_UNIT_DAY, PERIOD_UNIT_HOUR, PERIOD_UNIT_MINUTE, PERIOD_UNIT_SECOND)
+     * @return
+     */
+    public static ElasticSearchAggregationListInfo aggregationFilePartitioned(String esHost, int esPort, String startTime, String endTime, int period, String periodUnit){
+        return aggregationPartitioned(esHost, esPort, AGGREGATION_TYPE.FILE, startTime, endTime, period, periodUnit);
+    }
+
+    /**
+     * Aggregation File ( every key, terms partitioned, streaming )
+     *
+     * Result has request info & elapsed time only, series of every partition are passed to partitionConsumer.
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param startTime - Aggregation Start Time
+     * @param endTime - Aggregation End Time
+     * @param period - Period
+     * @param periodUnit - d:Day, h:Hour, m:Minute, s:Seconds (refer to PERIOD_UNIT_DAY, PERIOD_UNIT_HOUR, PERIOD_UNIT_MINUTE, PERIOD_UNIT_SECOND)
+     * @param partitionSize - Keys per partition ( 0 : default )
+     * @param partitionConsumer - Aggregation of every partition
+     * @return
+     */
+    public static ElasticSearchAggregationListInfo aggregationFilePartitioned(String esHost, int esPort, String startTime, String endTime, int period, String periodUnit, int partitionSize, Consumer<ElasticSearchAggregationListInfo> partitionConsumer){
+        return ElasticSearchPartitionedAggregation.aggregation(esHost, esPort, AGGREGATION_TYPE.FILE, startTime, endTime, period, periodUnit, partitionSize, partitionConsumer);
+    }
+
+    /**
+     * Aggregation Host_File ( every key, terms partitioned )
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param startTime - Aggregation Start Time
+     * @param endTime - Aggregation End Time
+     * @param period - Period
+     * @param periodUnit - d:Day, h:Hour, m:Minute, s:Seconds (refer to PERIOD_UNIT_DAY, PERIOD_UNIT_HOUR, PERIOD_UNIT_MINUTE, PERIOD_UNIT_SECOND)
+     * @return
+     */
+    public static ElasticSearchAggregationListInfo aggregationHostFilePartitioned(String esHost, int esPort, String startTime, String endTime, int period, String periodUnit){
+        return aggregationPartitioned(esHost, esPort, AGGREGATION_TYPE.HOST_FILE, startTime, endTime, period, periodUnit);
+    }
+
+    /**
+     * Aggregation Host_File ( every key, terms partitioned, streaming )
+     *
+     * Result has request info & elapsed time only, series of every partition are passed to partitionConsumer.
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param startTime - Aggregation Start Time
+     * @param endTime - Aggregation End Time
+     * @param period - Period
+     * @param periodUnit - d:Day, h:Hour, m:Minute, s:Seconds (refer to PERIOD_UNIT_DAY, PERIOD_UNIT_HOUR, PERIOD_UNIT_MINUTE, PERIOD_UNIT_SECOND)
+     * @param partitionSize - Keys per partition ( 0 : default )
+     * @param partitionConsumer - Aggregation of every partition
+     * @return
+     */
+    public static ElasticSearchAggregationListInfo aggregationHostFilePartitioned(String esHost, int esPort, String startTime, String endTime, int period, String periodUnit, int partitionSize, Consumer<ElasticSearchAggregationListInfo> partitionConsumer){
+        return ElasticSearchPartitionedAggregation.aggregation(esHost, esPort, AGGREGATION_TYPE.HOST_FILE, startTime, endTime, period, periodUnit, partitionSize, partitionConsumer);
+    }
+
+    /**
+     * Partitioned Aggregation collected into one result
+     *
+     * @return
+     */
+    private static ElasticSearchAggregationListInfo aggregationPartitioned(String esHost, int esPort, AGGREGATION_TYPE aggregation_type, String startTime, String endTime, int period, String periodUnit){
+
+        ElasticSearchAggregationListInfo collected = new ElasticSearchAggregationListInfo();
+
+        ElasticSearchAggregationListInfo elasticSearchAggregationListInfo = ElasticSearchPartitionedAggregation.aggregation(esHost, esPort, aggregation_type, startTime, endTime, period, periodUnit,
+                ElasticSearchPartitionedAggregation.DEFAULT_PARTITION_SIZE, partitionInfo -> partitionInfo.getSeriesMap().forEach(collected::putSeries));
+
+        // request fail
+        if(elasticSearchAggregationListInfo.getPeriodUnit() == null){
+            return elasticSearchAggregationListInfo;
+        }
+
+        elasticSearchAggregationListInfo.setSeriesMap(collected.getSeriesMap());
+
+        return elasticSearchAggregationListInfo;
+    }
+
+    /**
+     * Search ( query spec, served from the segment cache when one of host:port is started and the closed window is filled,
+     * otherwise searched raw while the window fills in the background )
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param querySpec - Query Spec
+     * @param pagingSize - Page Size
+     * @param pageNum - Select page num
+     * @return
+     */
+    public static ElasticSearchDataListInfo search(String esHost, int esPort, ElasticSearchQuerySpec querySpec, int pagingSize, int pageNum){
+
+        ElasticSearchSegmentCache segmentCache = ElasticSearchSegmentCache.get(esHost, esPort);
+        if(segmentCache != null){
+            ElasticSearchDataListInfo elasticSearchDataListInfo = segmentCache.search(querySpec, pagingSize, pageNum);
+            if(elasticSearchDataListInfo != null){
+                return elasticSearchDataListInfo;
+            }
+        }
+
+        return searchRaw(esHost, esPort, querySpec, pagingSize, pageNum);
+    }
+
+    /**
+     * Search ( query spec, raw documents )
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param querySpec - Query Spec
+     * @param pagingSize - Page Size
+     * @param pageNum - Select page num
+     * @return
+     */
+    static ElasticSearchDataListInfo searchRaw(String esHost, int esPort, ElasticSearchQuerySpec querySpec, int pagingSize, int pageNum){
+
+        final Scroll scroll = new Scroll(TimeValue.timeValueMinutes(1L));
+        try{
+
+            long start = System.nanoTime();
+            ElasticSearchMetrics.Sample sample = ElasticSearchMetrics.start(getMetricsName(querySpec, "search"), null);
+
+            // Connect ( pooled )
+            RestHighLevelClient restHighLevelClient = ElasticSearchClientRegistry.getClient(esHost, esPort);
+
+            // Indices & Query & Order & Size
+            SearchRequest searchRequest = getPagingSearchRequest(querySpec, pagingSize);
+
+            // Scroll
+            searchRequest.scroll(scroll);
+
+            // Query Request & Response
+            long requestStart = System.nanoTime();
+            SearchResponse searchResponse = restHighLevelClient.search(searchRequest);
+            sample.response(searchResponse, requestStart);
+
+            String scrollId = searchResponse.getScrollId();
+
+            SearchHit[] searchHits = searchResponse.getHits().getHits();
+
+            // Query Result Set ElasticSearchDataListInfo
+            long decodeStart = System.nanoTime();
+            ElasticSearchDataListInfo elasticSearchDataListInfo = setData(searchResponse.getHits().getHits(), searchResponse.getHits().getTotalHits());
+            sample.decode(decodeStart, searchResponse.getHits().getHits());
+
+            int currentPageNum = 1;
+
+            while (searchHits != null && searchHits.length > 0 && pageNum != 1){
+
+                SearchScrollRequest searchScrollRequest = new SearchScrollRequest(scrollId);
+
+                searchScrollRequest.scroll(scroll);
+                long scrollRequestStart = System.nanoTime();
+                searchResponse = restHighLevelClient.searchScroll(searchScrollRequest);
+                sample.response(searchResponse, scrollRequestStart);
+                scrollId = searchResponse.getScrollId();
+                searchHits = searchResponse.getHits().getHits();
+
+                if(searchResponse.getHits().getHits().length > 0){
+                    currentPageNum++;
+                }
+
+                if(currentPageNum == pageNum){
+                    decodeStart = System.nanoTime();
+                    elasticSearchDataListInfo = setData(searchResponse.getHits().getHits(), searchResponse.getHits().getTotalHits());
+                    sample.decode(decodeStart, searchResponse.getHits().getHits());
+                    break;
+                }
+            }
+
+            elasticSearchDataListInfo = setPagingData(elasticSearchDataListInfo, pagingSize, pageNum);
+            elasticSearchDataListInfo.setElapsedMsTime((System.nanoTime()-start)/ 1000000.0);
+
+            ClearScrollRequest clearScrollRequest = new ClearScrollRequest();
+            clearScrollRequest.addScrollId(scrollId);
+            ClearScrollResponse clearScrollResponse = restHighLevelClient.clearScroll(clearScrollRequest);
+
+            if(!clearScrollResponse.isSucceeded()){
+                logger.error("Clear Scroll Response : " + clearScrollResponse.isSucceeded());
+            }
+
+            sample.end();
+
+            return elasticSearchDataListInfo;
+
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
+            return new ElasticSearchDataListInfo();
+
+        }
+    }
+
+    /**
+     * Count ( query spec, no hits fetched )
+     *
+     * Only totalCount, totalPageCount, elapsedMsTime are set.
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param querySpec - Query Spec
+     * @param pagingSize - Page Size ( for totalPageCount )
+     * @return
+     */
+    public static ElasticSearchDataListInfo count(String esHost, int esPort, ElasticSearchQuerySpec querySpec, int pagingSize){
+
+        try{
+
+            long start = System.nanoTime();
+            ElasticSearchMetrics.Sample sample = ElasticSearchMetrics.start(getMetricsName(querySpec, "count"), null);
+
+            // Connect ( pooled )
+            RestHighLevelClient restHighLevelClient = ElasticSearchClientRegistry.getClient(esHost, esPort);
+
+            // Query Request & Response ( size 0 : total hits only )
+            long requestStart = System.nanoTime();
+            SearchResponse searchResponse = restHighLevelClient.search(getCountSearchRequest(querySpec, 0));
+            sample.response(searchResponse, requestStart);
+
+            ElasticSearchDataListInfo elasticSearchDataListInfo = new ElasticSearchDataListInfo();
+            elasticSearchDataListInfo.setTotalCount(searchResponse.getHits().getTotalHits());
+            elasticSearchDataListInfo.setTotalPageCount((int) Math.ceil((double)elasticSearchDataListInfo.getTotalCount()/(double)getPagingSize(pagingSize)));
+            elasticSearchDataListInfo.setElapsedMsTime((System.nanoTime()-start)/ 1000000.0);
+
+            sample.end();
+
+            return elasticSearchDataListInfo;
+
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
+            return new ElasticSearchDataListInfo();
+        }
+    }
+
+    /**
+     * Count ( no hits fetched )
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param startTime - Search Start Time (Format : yyyy-MM-dd HH:mm:ss.SSS)
+     * @param endTime - Search End Time (Format : yyyy-MM-dd HH:mm:ss.SSS)
+     * @param hostFilterList - Host Filter List
+     * @param fileFilterList - File Filter List
+     * @param messageFilter - Message Filter
+     * @param pagingSize - Page Size ( for totalPageCount )
+     * @return
+     */
+    public static ElasticSearchDataListInfo count(String esHost, int esPort, String startTime, String endTime, ArrayList<String> hostFilterList, ArrayList<String> fileFilterList, String messageFilter, int pagingSize){
+        try{
+            return count(esHost, esPort, ElasticSearchQuerySpec.range(startTime, endTime).hosts(hostFilterList).files(fileFilterList).message(messageFilter), pagingSize);
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
+            return new ElasticSearchDataListInfo();
+        }
+    }
+
+    /**
+     * Exists ( query spec, every shard stops at the first matching doc )
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param querySpec - Query Spec
+     * @return false : no matching doc or request fail
+     */
+    public static boolean exists(String esHost, int esPort, ElasticSearchQuerySpec querySpec){
+
+        try{
+
+            // Connect ( pooled )
+            RestHighLevelClient restHighLevelClient = ElasticSearchClientRegistry.getClient(esHost, esPort);
+
+            // Query Request & Response ( size 0, terminate_after 1 )
+            ElasticSearchMetrics.Sample sample = ElasticSearchMetrics.start(getMetricsName(querySpec, "exists"), null);
+            long requestStart = System.nanoTime();
+            SearchResponse searchResponse = restHighLevelClient.search(getCountSearchRequest(querySpec, 1));
+            sample.response(searchResponse, requestStart);
+            sample.end();
+
+            return searchResponse.getHits().getTotalHits() > 0;
+
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
+            return false;
+        }
+    }
+
+    /**
+     * Search Tail ( tail -f, polls only documents newer than the last delivered one )
+     *
+     * ex) try(ElasticSearchTailSession tailSession = ElasticSearchSearchUtil.searchTail("127.0.0.1", 9400,
+     *             ElasticSearchQuerySpec.rangeMillis(System.currentTimeMillis(), Long.MAX_VALUE).hosts(hostList), 1000)){
+     *         ElasticSearchDataInfo elasticSearchDataInfo;
+     *         while ((elasticSearchDataInfo = tailSession.poll(1, TimeUnit.SECONDS)) != null || tailSession.isRunning()){ ... }
+     *     }
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param querySpec - Query Spec ( startTime : tail start, endTime / sort ignored )
+     * @param bufferSize - Delivery buffer size ( polling pauses while the buffer is full )
+     * @return started tail session
+     */
+    public static ElasticSearchTailSession searchTail(String esHost, int esPort, ElasticSearchQuerySpec querySpec, int bufferSize){
+        return searchTail(esHost, esPort, querySpec, bufferSize, ElasticSearchTailSession.DEFAULT_MIN_POLL_INTERVAL_MS,
+                ElasticSearchTailSession.DEFAULT_MAX_POLL_INTERVAL_MS, ElasticSearchTailSession.DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Search Tail ( tail -f, polls only documents newer than the last delivered one )
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param querySpec - Query Spec ( startTime : tail start, endTime / sort ignored )
+     * @param bufferSize - Delivery buffer size ( polling pauses while the buffer is full )
+     * @param minPollIntervalMs - Poll interval while documents arrive
+     * @param maxPollIntervalMs - Poll interval upper bound when idle
+     * @param batchSize - Max documents per poll
+     * @return tail session started with the settings
+     */
+    public static ElasticSearchTailSession searchTail(String esHost, int esPort, ElasticSearchQuerySpec querySpec, int bufferSize,
+                                                      long minPollIntervalMs, long maxPollIntervalMs, int batchSize){
+        return searchTail(esHost, esPort, querySpec, bufferSize, minPollIntervalMs, maxPollIntervalMs, batchSize, ElasticSearchTailSession.DEFAULT_LAG_MS);
+    }
+
+    /**
+     * Search Tail ( tail -f, polls only documents newer than the last delivered one )
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param querySpec - Query Spec ( startTime : tail start, endTime / sort ignored )
+     * @param bufferSize - Delivery buffer size ( polling pauses while the buffer is full )
+     * @param minPollIntervalMs - Poll interval while documents arrive
+     * @param maxPollIntervalMs - Poll interval upper bound when idle
+     * @param batchSize - Max documents per poll
+     * @param lagMs - Age of the newest polled documents (ms) : refresh interval + ingest delay ( ElasticSearchTailSession.DEFAULT_LAG_MS )
+     * @return tail session started with the settings
+     */
+    public static ElasticSearchTailSession searchTail(String esHost, int esPort, ElasticSearchQuerySpec querySpec, int bufferSize,
+                                                      long minPollIntervalMs, long maxPollIntervalMs, int batchSize, long lagMs){
+        ElasticSearchTailSession tailSession = new ElasticSearchTailSession(esHost, esPort, querySpec, bufferSize);
+        tailSession.setMinPollIntervalMs(minPollIntervalMs);
+        tailSession.setMaxPollIntervalMs(maxPollIntervalMs);
+        tailSession.setBatchSize(batchSize);
+        tailSession.setLagMs(lagMs);
+        tailSession.start();
+        return tailSession;
+    }
+
+    /**
+     * Count Search Request ( Query only, size 0, no sort / source )
+     *
+     * @param querySpec - Query Spec
+     * @param terminateAfter - Max doc count per shard ( 0 : none )
+     * @return
+     */
+    private static SearchRequest getCountSearchRequest(ElasticSearchQuerySpec querySpec, int terminateAfter){
+
+        // Indices
+        SearchRequest searchRequest = getSearchRequest(querySpec.getStartTime(), querySpec.getEndTime());
+        SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder();
+
+        // BoolQuery ( filter context )
+        searchSourceBuilder.query(querySpec.toQueryBuilder());
+
+        // Size
+        searchSourceBuilder.size(0);
+
+        if(terminateAfter > 0){
+            searchSourceBuilder.terminateAfter(terminateAfter);
+        }
+
+        searchRequest.source(searchSourceBuilder);
+
+        return searchRequest;
+    }
+
+    /**
+     * Query Context ( index pattern, field mapping, time zone )
+     *
+     * @return read only context ( setters throw UnsupportedOperationException )
+     */
+    public static ElasticSearchQueryContext getQueryContext(){
+        return queryContext;
+    }
+
+    /**
+     * Max histogram buckets per series of aggregations without maxPoints ( period is coarsened above it )
+     *
+     * @param maxAggregationPoints - <= 0 : unlimited ( requested period )
+     */
+    public static void setMaxAggregationPoints(int maxAggregationPoints){
+        ElasticSearchSearchUtil.maxAggregationPoints = maxAggregationPoints;
+    }
+
+    public static int getMaxAggregationPoints(){
+        return maxAggregationPoints;
+    }
+
+    /**
+     * Set Query Context ( applied to requests created after the call )
+     * A read only copy is kept, later changes of elasticSearchQueryContext need another call.
+     * Started aggregation caches are cleared and started rollup stores roll up again with the new context.
+     *
+     * @param elasticSearchQueryContext - null : default context
+     */
+    public static void setQueryContext(ElasticSearchQueryContext elasticSearchQueryContext){
+        queryContext = elasticSearchQueryContext == null ? new ElasticSearchQueryContext().readOnlyCopy() : elasticSearchQueryContext.readOnlyCopy();
+
+        ElasticSearchAggregationCache.clearAll();
+        ElasticSearchRollupStore.refreshAll();
+    }
+
+    /**
+     * Search Request ( Indices : index pattern )
+     *
+     * @return
+     */
+    static SearchRequest getSearchRequest(){
+        return new SearchRequest(queryContext.getIndexPattern());
+    }
+
+    /**
+     * Search Request ( Indices : routed by time range, missing indices ignored )
+     *
+     * @param startTime - Range Start Time (milliseconds)
+     * @param endTime - Range End Time (milliseconds)
+     * @return
+     */
+    static SearchRequest getSearchRequest(long startTime, long endTime){
+
+        SearchRequest searchRequest = new SearchRequest(queryContext.getIndices(startTime, endTime));
+        searchRequest.indicesOptions(IndicesOptions.lenientExpandOpen());
+
+        return searchRequest;
+    }
+
+    /**
+     * Search Request ( Indices : routed by time range, missing indices ignored )
+     *
+     * @param startTime - Range Start Time (milliseconds)
+     * @param endTime - Range End Time (milliseconds)
+     * @return
+     */
+    static SearchRequest getSearchRequest(String startTime, String endTime){
+        return getSearchRequest(Long.parseLong(startTime), Long.parseLong(endTime));
+    }
+
+    /**
+     * Paging Search Request ( Query & Order & Size )
+     *
+     * @param querySpec - Query Spec
+     * @param pagingSize - Page Size
+     * @return
+     */
+    static SearchRequest getPagingSearchRequest(ElasticSearchQuerySpec querySpec, int pagingSize){
+
+        // Indices
+        SearchRequest searchRequest = getSearchRequest(querySpec.getStartTime(), querySpec.getEndTime());
+        SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder();
+
+        // BoolQuery ( filter context )
+        searchSourceBuilder.query(querySpec.toQueryBuilder());
+
+        // Order ( _uid : same order of equal times on every page, segment cache pages included )
+        searchSourceBuilder.sort(SortBuilders.fieldSort(queryContext.getFieldTimestamp()).order(getSortOrder(querySpec.getSort())));
+        searchSourceBuilder.sort(SortBuilders.fieldSort(FIELD_TIEBREAKER).order(getSortOrder(querySpec.getSort())));
+
+        // Size
+        searchSourceBuilder.size(getPagingSize(pagingSize));
+
+        // Source ( used fields only )
+        searchSourceBuilder.fetchSource(getSourceIncludes(), null);
+
+        searchRequest.source(searchSourceBuilder);
+
+        return searchRequest;
+    }
+
+    /**
+     * Page Size ( <= 0 or over DEFAULT_SIZE -> DEFAULT_SIZE )
+     *
+     * @param pagingSize
+     * @return
+     */
+    static int getPagingSize(int pagingSize){
+        return (pagingSize <= 0 || pagingSize > DEFAULT_SIZE) ? DEFAULT_SIZE : pagingSize;
+    }
+
+    /**
+     * Paging Data Set ( total/current page, empty list when page is out of range )
+     *
+     * @param elasticSearchDataListInfo
+     * @param pagingSize - Page Size
+     * @param pageNum - Select page num
+     * @return
+     */
+    static ElasticSearchDataListInfo setPagingData(ElasticSearchDataListInfo elasticSearchDataListInfo, int pagingSize, int pageNum){
+
+        int totalPageCount = (int) Math.ceil((double)elasticSearchDataListInfo.getTotalCount()/(double)pagingSize);
+        elasticSearchDataListInfo.setTotalPageCount(totalPageCount);
+        elasticSearchDataListInfo.setCurrentPageCount(pageNum);
+
+        if(elasticSearchDataListInfo.getCurrentPageCount() > elasticSearchDataListInfo.getTotalPageCount()){
+            elasticSearchDataListInfo.setMessageList(new ArrayList<>());
+            elasticSearchDataListInfo.setDataList(new ArrayList<>());
+        }
+
+        return elasticSearchDataListInfo;
+    }
+
+    /**
+     * Search ( search_after cursor, query spec )
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param querySpec - Query Spec
+     * @param pagingSize - Page Size
+     * @param cursor - Next page cursor ( null : first page )
+     * @return
+     * @throws IllegalArgumentException malformed cursor
+     */
+    public static ElasticSearchDataListInfo searchAfter(String esHost, int esPort, ElasticSearchQuerySpec querySpec, int pagingSize, String cursor){
+
+        // Cursor ( a malformed cursor is a caller error, not an empty result )
+        int pageNum = 1;
+        Object[] sortValues = null;
+        if(StringUtils.isNotEmpty(cursor)){
+            pageNum = getCursorPageNum(cursor);
+            sortValues = getCursorSortValues(cursor);
+        }
+
+        try{
+
+            long start = System.nanoTime();
+            ElasticSearchMetrics.Sample sample = ElasticSearchMetrics.start(getMetricsName(querySpec, "searchAfter"), null);
+
+            if(pagingSize <= 0 || pagingSize > DEFAULT_SIZE){
+                pagingSize = DEFAULT_SIZE;
+            }
+
+            // Connect ( pooled )
+            RestHighLevelClient restHighLevelClient = ElasticSearchClientRegistry.getClient(esHost, esPort);
+
+            // Indices & Query & Order & Size
+            SearchRequest searchRequest = getSearchAfterRequest(querySpec, pagingSize, sortValues);
+
+            // Query Request & Response
+            long requestStart = System.nanoTime();
+            SearchResponse searchResponse = restHighLevelClient.search(searchRequest);
+            sample.response(searchResponse, requestStart);
+            SearchHit[] searchHits = searchResponse.getHits().getHits();
+
+            // Query Result Set ElasticSearchDataListInfo
+            long decodeStart = System.nanoTime();
+            ElasticSearchDataListInfo elasticSearchDataListInfo = setData(searchHits, searchResponse.getHits().getTotalHits());
+            sample.decode(decodeStart, searchHits);
+
+            int totalPageCount = (int) Math.ceil((double)elasticSearchDataListInfo.getTotalCount()/(double)pagingSize);
+            elasticSearchDataListInfo.setTotalPageCount(totalPageCount);
+            elasticSearchDataListInfo.setCurrentPageCount(pageNum);
+
+            if(searchHits.length == pagingSize && pageNum < totalPageCount){
+                elasticSearchDataListInfo.setNextCursor(getCursor(pageNum + 1, searchHits[searchHits.length-1].getSortValues()));
+            }
+
+            elasticSearchDataListInfo.setElapsedMsTime((System.nanoTime()-start)/ 1000000.0);
+
+            sample.end();
+
+            return elasticSearchDataListInfo;
+
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
+            return new ElasticSearchDataListInfo();
+        }
+    }
+
+    /**
+     * search_after Search Request ( Order : @timestamp + tiebreaker )
+     *
+     * @param querySpec - Query Spec
+     * @param pagingSize - Page Size
+     * @param sortValues - Sort values of the last delivered hit ( null : first page )
+     * @return
+     */
+    static SearchRequest getSearchAfterRequest(ElasticSearchQuerySpec querySpec, int pagingSize, Object[] sortValues){
+
+        // Indices
+        SearchRequest searchRequest = getSearchRequest(querySpec.getStartTime(), querySpec.getEndTime());
+        SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder();
+
+        searchSourceBuilder.query(querySpec.toQueryBuilder());
+
+        // Order ( @timestamp + tiebreaker )
+        SortOrder sortOrder = getSortOrder(querySpec.getSort());
+        searchSourceBuilder.sort(SortBuilders.fieldSort(queryContext.getFieldTimestamp()).order(sortOrder));
+        searchSourceBuilder.sort(SortBuilders.fieldSort(FIELD_TIEBREAKER).order(sortOrder));
+
+        // Size
+        searchSourceBuilder.size(pagingSize);
+
+        // Source ( used fields only )
+        searchSourceBuilder.fetchSource(getSourceIncludes(), null);
+
+        // Cursor
+        if(sortValues != null){
+            searchSourceBuilder.searchAfter(sortValues);
+        }
+
+        searchRequest.source(searchSourceBuilder);
+
+        return searchRequest;
+    }
+
+    /**
+     * Search ( streaming, query spec )
+     *
+     * Result has totalCount & elapsed time only ( dataList / messageList are empty )
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param querySpec - Query Spec
+     * @param consumer - Hit Consumer
+     * @return
+     */
+    public static ElasticSearchDataListInfo searchStream(String esHost, int esPort, ElasticSearchQuerySpec querySpec, Consumer<ElasticSearchDataInfo> consumer){
+
+        long start = System.nanoTime();
+
+        try(ElasticSearchScrollIterator iterator = new ElasticSearchScrollIterator(ElasticSearchClientRegistry.getClient(esHost, esPort),
+                getStreamSearchRequest(querySpec), DEFAULT_SCROLL_KEEP_ALIVE, ElasticSearchMetrics.start(getMetricsName(querySpec, "searchStream"), null))){
+
+            while (iterator.hasNext()){
+                consumer.accept(iterator.next());
+            }
+
+            ElasticSearchDataListInfo elasticSearchDataListInfo = new ElasticSearchDataListInfo();
+            elasticSearchDataListInfo.setTotalCount(iterator.getTotalCount());
+            elasticSearchDataListInfo.setElapsedMsTime((System.nanoTime()-start)/ 1000000.0);
+
+            return elasticSearchDataListInfo;
+
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
+            return new ElasticSearchDataListInfo();
+        }
+    }
+
+    /**
+     * Log Pattern Search ( start/end time use )
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param startTime - Search Start Time (Format : yyyy-MM-dd HH:mm:ss.SSS)
+     * @param endTime - Search End Time (Format : yyyy-MM-dd HH:mm:ss.SSS)
+     * @param hostFilterList - Host List
+     * @param fileFilterList - File List
+     * @param messageFilter - Message Filter
+     * @param maxPatterns - Max patterns returned ( count desc )
+     * @return
+     */
+    public static ElasticSearchLogPatternListInfo searchPattern(String esHost, int esPort, String startTime, String endTime, ArrayList<String> hostFilterList, ArrayList<String> fileFilterList, String messageFilter, int maxPatterns){
+        try{
+            return searchPattern(esHost, esPort, ElasticSearchQuerySpec.range(startTime, endTime).hosts(hostFilterList).files(fileFilterList).message(messageFilter).name("searchPattern"), maxPatterns);
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
+            return new ElasticSearchLogPatternListInfo();
+        }
+    }
+
+    /**
+     * Log Pattern Search ( query spec )
+     *
+     * Every hit is streamed by scroll batches into an ElasticSearchLogPatternMiner ( bounded memory ),
+     * hits are never kept except the pattern samples.
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param querySpec - Query Spec
+     * @param maxPatterns - Max patterns returned ( count desc )
+     * @return
+     */
+    public static ElasticSearchLogPatternListInfo searchPattern(String esHost, int esPort, ElasticSearchQuerySpec querySpec, int maxPatterns){
+
+        long start = System.nanoTime();
+
+        ElasticSearchLogPatternMiner miner = new ElasticSearchLogPatternMiner(Math.max(maxPatterns, ElasticSearchLogPatternMiner.DEFAULT_MAX_PATTERNS));
+
+        try(ElasticSearchScrollIterator iterator = new ElasticSearchScrollIterator(ElasticSearchClientRegistry.getClient(esHost, esPort),
+                getStreamSearchRequest(querySpec), DEFAULT_SCROLL_KEEP_ALIVE, ElasticSearchMetrics.start(getMetricsName(querySpec, "searchPattern"), null))){
+
+            while (iterator.hasNext()){
+                miner.accept(iterator.next());
+            }
+
+            ElasticSearchLogPatternListInfo elasticSearchLogPatternListInfo = miner.getPatternListInfo(maxPatterns);
+            elasticSearchLogPatternListInfo.setElapsedMsTime((System.nanoTime()-start)/ 1000000.0);
+
+            return elasticSearchLogPatternListInfo;
+
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
+            return new ElasticSearchLogPatternListInfo();
+        }
+    }
+
+    /**
+     * Stream Search Request ( scroll batch size : DEFAULT_STREAM_BATCH_SIZE )
+     *
+     * @param querySpec - Query Spec
+     * @return
+     */
+    static SearchRequest getStreamSearchRequest(ElasticSearchQuerySpec querySpec){
+        return getStreamSearchRequest(querySpec, SortBuilders.fieldSort(queryContext.getFieldTimestamp()).order(getSortOrder(querySpec.getSort())));
+    }
+
+    /**
+     * Segment fill Search Request ( ascending time, _uid : same hit order as getPagingSearchRequest )
+     *
+     * @param querySpec - Query Spec ( sort ignored )
+     * @return
+     */
+    static SearchRequest getSegmentSearchRequest(ElasticSearchQuerySpec querySpec){
+        return getStreamSearchRequest(querySpec, SortBuilders.fieldSort(queryContext.getFieldTimestamp()).order(SortOrder.ASC), SortBuilders.fieldSort(FIELD_TIEBREAKER).order(SortOrder.ASC));
+    }
+
+    /**
+     * Stream Search Request ( scroll batch size : DEFAULT_STREAM_BATCH_SIZE )
+     *
+     * @param querySpec - Query Spec ( sort ignored )
+     * @param sortBuilders - Sort
+     * @return
+     */
+    private static SearchRequest getStreamSearchRequest(ElasticSearchQuerySpec querySpec, SortBuilder<?>... sortBuilders){
+
+        SearchRequest searchRequest = getSearchRequest(querySpec.getStartTime(), querySpec.getEndTime());
+        SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder();
+
+        searchSourceBuilder.query(querySpec.toQueryBuilder());
+        for(SortBuilder<?> sortBuilder : sortBuilders){
+            searchSourceBuilder.sort(sortBuilder);
+        }
+        searchSourceBuilder.size(DEFAULT_STREAM_BATCH_SIZE);
+
+        // Source ( used fields only )
+        searchSourceBuilder.fetchSource(getSourceIncludes(), null);
+
+        searchRequest.source(searchSourceBuilder);
+
+        return searchRequest;
+    }
+
+    /**
+     * Metrics method name ( query spec name or entry method )
+     *
+     * @param querySpec - Query Spec
+     * @param method - Entry method name
+     * @return
+     */
+    static String getMetricsName(ElasticSearchQuerySpec querySpec, String method){
+        return StringUtils.defaultIfEmpty(querySpec.getName(), method);
+    }
+
+    /**
+     * Metrics method name of aggregation ( ex. HOST_FILE -> aggregationHostFile )
+     *
+     * @param aggregation_type
+     * @return
+     */
+    static String getAggregationMetricsName(AGGREGATION_TYPE aggregation_type){
+        StringBuilder name = new StringBuilder("aggregation");
+        for(String word : StringUtils.split(aggregation_type.name(), '_')){
+            name.append(StringUtils.capitalize(word.toLowerCase()));
+        }
+        return name.toString();
+    }
+
+    /**
+     * Sort String convert SortOrder ( Default ASC )
+     *
+     * @param sort
+     * @return
+     */
+    private static SortOrder getSortOrder(String sort){
+        return StringUtils.equals(sort, SORT_DESC) ? SortOrder.DESC : SortOrder.ASC;
+    }
+
+    /**
+     * Make Cursor ( pageNum & sort values -> opaque string )
+     *
+     * @param pageNum
+     * @param sortValues - @timestamp, tiebreaker
+     * @return
+     */
+    static String getCursor(int pageNum, Object[] sortValues){
+
+        StringBuilder cursor = new StringBuilder();
+        cursor.append(pageNum).append(CURSOR_DELIMITER).append(sortValues[0]).append(CURSOR_DELIMITER).append(sortValues[1]);
+
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Read Cursor ( opaque string -> pageNum, @timestamp, tiebreaker )
+     *
+     * @param cursor - getNextCursor() of a previous page result
+     * @return pageNum, @timestamp, tiebreaker
+     * @throws IllegalArgumentException malformed cursor
+     */
+    static String[] decodeCursor(String cursor){
+
+        String[] values;
+        try{
+            values = StringUtils.split(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8), CURSOR_DELIMITER, 3);
+        }catch (IllegalArgumentException e){
+            throw new IllegalArgumentException("Malformed cursor ( not base64url ) : " + StringUtils.abbreviate(cursor, 64), e);
+        }
+
+        if(values.length != 3){
+            throw new IllegalArgumentException("Malformed cursor ( pageNum, @timestamp, tiebreaker expected ) : " + StringUtils.abbreviate(cursor, 64));
+        }
+
+        try{
+            // cursor pages start at 2 ( first page : no cursor )
+            if(Integer.parseInt(values[0]) < 2){
+                throw new IllegalArgumentException("Malformed cursor ( pageNum " + values[0] + " ) : " + StringUtils.abbreviate(cursor, 64));
+            }
+            Long.parseLong(values[1]);
+        }catch (NumberFormatException e){
+            throw new IllegalArgumentException("Malformed cursor ( pageNum / @timestamp not a number ) : " + StringUtils.abbreviate(cursor, 64), e);
+        }
+
+        return values;
+    }
+
+    /**
+     * Cursor page num
+     *
+     * @param cursor - getNextCursor() of a previous page result
+     * @return
+     * @throws IllegalArgumentException malformed cursor
+     */
+    static int getCursorPageNum(String cursor){
+        return Integer.parseInt(decodeCursor(cursor)[0]);
+    }
+
+    /**
+     * Cursor sort values ( search_after )
+     *
+     * @param cursor - getNextCursor() of a previous page result
+     * @return @timestamp, tiebreaker
+     * @throws IllegalArgumentException malformed cursor
+     */
+    static Object[] getCursorSortValues(String cursor){
+        String[] values = decodeCursor(cursor);
+        return new Object[]{ Long.parseLong(values[1]), values[2] };
+    }
+
+    /**
+     * Search All ( scroll to the end, LogEventManager Use... )
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param querySpec - Query Spec
+     * @return
+     */
+    private static ElasticSearchDataListInfo scrollAll(String esHost, int esPort, ElasticSearchQuerySpec querySpec){
+
+        final Scroll scroll = new Scroll(TimeValue.timeValueMinutes(1L));
+        try{
+
+            long startTime = System.nanoTime();
+            ElasticSearchMetrics.Sample sample = ElasticSearchMetrics.start(getMetricsName(querySpec, "scrollAll"), null);
+
+            // Connect ( pooled )
+            RestHighLevelClient restHighLevelClient = ElasticSearchClientRegistry.getClient(esHost, esPort);
+
+            // Indices & Query & Order & Source
+            SearchRequest searchRequest = getStreamSearchRequest(querySpec);
+
+            // Size
+            searchRequest.source().size(DEFAULT_SIZE);
+
+            // Scroll
+            searchRequest.scroll(scroll);
+
+            // Query Request & Response
+            long requestStart = System.nanoTime();
+            SearchResponse searchResponse = restHighLevelClient.search(searchRequest);
+            sample.response(searchResponse, requestStart);
+
+            String scrollId = searchResponse.getScrollId();
+            SearchHit[] searchHits = searchResponse.getHits().getHits();
+
+            // Query Result Set ElasticSearchDataListInfo
+            long decodeStart = System.nanoTime();
+            ElasticSearchDataListInfo elasticSearchDataListInfo = setData(searchResponse.getHits().getHits(), searchResponse.getHits().getTotalHits());
+            sample.decode(decodeStart, searchHits);
+
+            while (searchHits != null && searchHits.length > 0){
+
+                SearchScrollRequest searchScrollRequest = new SearchScrollRequest(scrollId);
+                searchScrollRequest.scroll(scroll);
+
+                // Query Request & Response ( scroll )
+                long scrollRequestStart = System.nanoTime();
+                searchResponse = restHighLevelClient.searchScroll(searchScrollRequest);
+                sample.response(searchResponse, scrollRequestStart);
+                scrollId = searchResponse.getScrollId();
+                searchHits = searchResponse.getHits().getHits();
+
+                // MessageList & ElasticsearchDataInfoList Append
+                decodeStart = System.nanoTime();
+                elasticSearchDataListInfo.getMessageList().addAll(getMessageData(searchResponse.getHits().getHits(), searchResponse.getHits().getTotalHits()));
+                elasticSearchDataListInfo.getDataList().addAll(getElasticsearchData(searchResponse.getHits().getHits(), searchResponse.getHits().getTotalHits()));
+                sample.decode(decodeStart, searchHits);
+            }
+
+            elasticSearchDataListInfo.setElapsedMsTime((System.nanoTime()-startTime)/ 1000000.0);
+
+            // Clear Scroll
+            ClearScrollRequest clearScrollRequest = new ClearScrollRequest();
+            clearScrollRequest.addScrollId(scrollId);
+            ClearScrollResponse clearScrollResponse = restHighLevelClient.clearScroll(clearScrollRequest);
+
+            if(!clearScrollResponse.isSucceeded()){
+                logger.error("Clear Scroll Response : " + clearScrollResponse.isSucceeded());
+            }
+
+            sample.end();
+
+            return elasticSearchDataListInfo;
+
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
+            return new ElasticSearchDataListInfo();
+
+        }
+    }
+
+    /**
+     * Aggregation ( answered from the aggregation cache or the rollups of host:port when started )
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param aggregation_type - refer to AGGREAGTION_TYPE
+     * @param startTime - Aggregation Start Time
+     * @param endTime - Aggregation End Time
+     * @param period - Period
+     * @param periodUnit - d:Day, h:Hour, m:Minute, s:Seconds (refer to PERIOD_UNIT_DAY, PERIOD_UNIT_HOUR, PERIOD_UNIT_MINUTE, PERIOD_UNIT_SECOND)
+     * @return
+     */
+    static ElasticSearchAggregationListInfo aggregation(String esHost, int esPort, AGGREGATION_TYPE aggregation_type, String startTime, String endTime, int period, String periodUnit){
+        return aggregation(esHost, esPort, aggregation_type, startTime, endTime, period, periodUnit, maxAggregationPoints);
+    }
+
+    /**
+     * Aggregation at a bounded resolution ( answered from the aggregation cache of host:port when started, ElasticSearchAggregationCache.start )
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param aggregation_type - refer to AGGREAGTION_TYPE
+     * @param startTime - Aggregation Start Time
+     * @param endTime - Aggregation End Time
+     * @param period - Requested Period
+     * @param periodUnit - Requested Period Unit ( d:Day, h:Hour, m:Minute, s:Seconds )
+     * @param maxPoints - Max buckets per series ( <= 0 : requested period )
+     * @return period / periodUnit : effective resolution, requestPeriod / requestPeriodUnit : requested resolution
+     */
+    static ElasticSearchAggregationListInfo aggregation(String esHost, int esPort, AGGREGATION_TYPE aggregation_type, String startTime, String endTime, int period, String periodUnit, int maxPoints){
+
+        ElasticSearchAggregationCache aggregationCache = ElasticSearchAggregationCache.get(esHost, esPort);
+        if(aggregationCache != null){
+            return aggregationCache.aggregation(esHost, esPort, aggregation_type, startTime, endTime, period, periodUnit, maxPoints);
+        }
+
+        return aggregationUncached(esHost, esPort, aggregation_type, startTime, endTime, period, periodUnit, maxPoints);
+    }
+
+    /**
+     * Aggregation at a bounded resolution ( answered from the rollups when a rollup store of host:port is started and covers the range )
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param aggregation_type - refer to AGGREAGTION_TYPE
+     * @param startTime - Aggregation Start Time
+     * @param endTime - Aggregation End Time
+     * @param period - Requested Period
+     * @param periodUnit - Requested Period Unit ( d:Day, h:Hour, m:Minute, s:Seconds )
+     * @param maxPoints - Max buckets per series ( <= 0 : requested period )
+     * @return period / periodUnit : effective resolution, requestPeriod / requestPeriodUnit : requested resolution
+     */
+    static ElasticSearchAggregationListInfo aggregationUncached(String esHost, int esPort, AGGREGATION_TYPE aggregation_type, String startTime, String endTime, int period, String periodUnit, int maxPoints){
+
+        ElasticSearchResolutionPlanner.Resolution resolution = ElasticSearchResolutionPlanner.plan(startTime, endTime, period, periodUnit, maxPoints);
+
+        ElasticSearchAggregationListInfo elasticSearchAggregationListInfo = null;
+
+        ElasticSearchRollupStore rollupStore = ElasticSearchRollupStore.get(esHost, esPort);
+        if(rollupStore != null){
+            elasticSearchAggregationListInfo = rollupStore.aggregation(aggregation_type, startTime, endTime, resolution.getPeriod(), resolution.getPeriodUnit());
+        }
+
+        if(elasticSearchAggregationListInfo == null){
+            elasticSearchAggregationListInfo = aggregationRaw(esHost, esPort, aggregation_type, startTime, endTime, resolution.getPeriod(), resolution.getPeriodUnit());
+        }
+
+        elasticSearchAggregationListInfo.setRequestPeriod(period);
+        elasticSearchAggregationListInfo.setRequestPeriodUnit(periodUnit);
+
+        return elasticSearchAggregationListInfo;
+    }
+
+    /**
+     * Aggregation ( raw documents )
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param aggregation_type - refer to AGGREAGTION_TYPE
+     * @param startTime - Aggregation Start Time
+     * @param endTime - Aggregation End Time
+     * @param period - Period
+     * @param periodUnit - d:Day, h:Hour, m:Minute, s:Seconds (refer to PERIOD_UNIT_DAY, PERIOD_UNIT_HOUR, PERIOD_UNIT_MINUTE, PERIOD_UNIT_SECOND)
+     * @return
+     */
+    static ElasticSearchAggregationListInfo aggregationRaw(String esHost, int esPort, AGGREGATION_TYPE aggregation_type, String startTime, String endTime, int period, String periodUnit){
+
+        long start = System.nanoTime();
+
+        try{
+
+            RestHighLevelClient restHighLevelClient = ElasticSearchClientRegistry.getClient(esHost, esPort);
+
+            SearchRequest searchRequest = getAggregationSearchRequest(aggregation_type, startTime, endTime, period, periodUnit);
+
+            if(searchRequest == null){
+                ElasticSearchAggregationListInfo elasticSearchAggregationListInfo = getAggregationListInfo(startTime, endTime, period, periodUnit);
+                elasticSearchAggregationListInfo.setElapsedMsTime((System.nanoTime()-start)/ 1000000.0);
+                return elasticSearchAggregationListInfo;
+            }
+
+            ElasticSearchMetrics.Sample sample = ElasticSearchMetrics.start(getAggregationMetricsName(aggregation_type), aggregation_type.name());
+
+            long requestStart = System.nanoTime();
+            SearchResponse searchResponse = restHighLevelClient.search(searchRequest);
+            sample.response(searchResponse, requestStart);
+
+            long decodeStart = System.nanoTime();
+            ElasticSearchAggregationListInfo elasticSearchAggregationListInfo = getAggregationData(aggregation_type, startTime, endTime, period, periodUnit, searchResponse, start);
+            sample.decode(decodeStart);
+            sample.end();
+
+            return elasticSearchAggregationListInfo;
+
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
 
-            restClient = RestClient.builder(new HttpHost(esHost, esPort,HttpHost.DEFAULT_SCHEME_NAME)).setDefaultHeaders(HEADERS).build();
-            RestHighLevelClient restHighLevelClient = new RestHighLevelClient(restClient);
+            return getAggregationErrorData(startTime, endTime, start);
+        }
+    }
 
-            // Indices
-            SearchRequest searchRequest = new SearchRequest(INDEX);
-            SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder();
+    /**
+     * Aggregation Search Request
+     *
+     * @param aggregation_type - refer to AGGREAGTION_TYPE
+     * @param startTime - Aggregation Start Time
+     * @param endTime - Aggregation End Time
+     * @param period - Period
+     * @param periodUnit - d:Day, h:Hour, m:Minute, s:Seconds (refer to PERIOD_UNIT_DAY, PERIOD_UNIT_HOUR, PERIOD_UNIT_MINUTE, PERIOD_UNIT_SECOND)
+     * @return null : unsupported aggregation type
+     * @throws Exception
+     */
+    static SearchRequest getAggregationSearchRequest(AGGREGATION_TYPE aggregation_type, String startTime, String endTime, int period, String periodUnit) throws Exception{
 
-            DateHistogramAggregationBuilder dateHistogramAggregationBuilder = AggregationBuilders.dateHistogram(AGGREGATION_TYPE.TIME_COUNT.name()).field(FIELD_TIMESTAMP).dateHistogramInterval(dateUnitConvert(period,periodUnit)).minDocCount(0).timeZone(DateTimeZone.forID("Asia/Seoul"));
+        AggregationBuilder aggregationBuilder = getAggregationBuilder(aggregation_type, startTime, endTime, period, periodUnit);
 
-            if(StringUtils.equals(AGGREGATION_TYPE.ALL.name(), aggregation_type.name())){
-                searchSourceBuilder.aggregation(dateHistogramAggregationBuilder);
-            }else if(StringUtils.equals(AGGREGATION_TYPE.HOST.name(), aggregation_type.name())){
-                searchSourceBuilder.aggregation(AggregationBuilders.terms(AGGREGATION_TYPE.HOST.name()).field(AGGREGATION_FIELD_HOST).subAggregation(dateHistogramAggregationBuilder));
-            }else if(StringUtils.equals(AGGREGATION_TYPE.FILE.name(), aggregation_type.name())){
-                searchSourceBuilder.aggregation(AggregationBuilders.terms(AGGREGATION_TYPE.FILE.name()).field(AGGREGATION_FIELD_FILE).subAggregation(dateHistogramAggregationBuilder));
-            }else if(StringUtils.equals(AGGREGATION_TYPE.HOST_FILE.name(), aggregation_type.name())){
-                searchSourceBuilder.aggregation(AggregationBuilders.terms(AGGREGATION_TYPE.HOST_FILE.name()).field(AGGREGATION_FIELD_HOST).subAggregation(AggregationBuilders.terms(AGGREGATION_TYPE.FILE.name()).field(AGGREGATION_FIELD_FILE).subAggregation(dateHistogramAggregationBuilder)));
-            }else {
-                elasticSearchAggregationListInfo.setElapsedMsTime((System.nanoTime()-start)/ 1000000.0);
-                return elasticSearchAggregationListInfo;
-            }
+        if(aggregationBuilder == null){
+            return null;
+        }
 
-            // BoolQuery
-            BoolQueryBuilder boolQueryBuilder = QueryBuilders.boolQuery();
-            boolQueryBuilder.must(QueryBuilders.matchAllQuery());
-            boolQueryBuilder.must(QueryBuilders.rangeQuery(FIELD_TIMESTAMP).gte(getMilliTime(startTime)).lte(getMilliTime(endTime)));
+        // Indices
+        SearchRequest searchRequest = getSearchRequest(getMilliTime(startTime), getMilliTime(endTime));
+        SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder();
 
-            searchSourceBuilder.query(boolQueryBuilder);
+        searchSourceBuilder.aggregation(aggregationBuilder);
 
-            // Hit Size/
-            searchSourceBuilder.size(0);
+        // BoolQuery
+        BoolQueryBuilder boolQueryBuilder = QueryBuilders.boolQuery();
+        boolQueryBuilder.must(QueryBuilders.matchAllQuery());
+        boolQueryBuilder.must(getAggregationRangeQueryBuilder(startTime, endTime));
 
-            searchRequest.source(searchSourceBuilder);
+        searchSourceBuilder.query(boolQueryBuilder);
 
-            SearchResponse searchResponse = restHighLevelClient.search(searchRequest);
+        // Hit Size/
+        searchSourceBuilder.size(0);
+
+        searchRequest.source(searchSourceBuilder);
+
+        return searchRequest;
+    }
+
+    /**
+     * Aggregation Builder ( aggregation name : aggregation_type name )
+     *
+     * Histogram extended_bounds are set to the request range, so empty leading / trailing buckets are returned by ES.
+     *
+     * @param aggregation_type - refer to AGGREAGTION_TYPE
+     * @param startTime - Aggregation Start Time
+     * @param endTime - Aggregation End Time
+     * @param period - Period
+     * @param periodUnit - d:Day, h:Hour, m:Minute, s:Seconds (refer to PERIOD_UNIT_DAY, PERIOD_UNIT_HOUR, PERIOD_UNIT_MINUTE, PERIOD_UNIT_SECOND)
+     * @return null : unsupported aggregation type
+     * @throws Exception
+     */
+    static AggregationBuilder getAggregationBuilder(AGGREGATION_TYPE aggregation_type, String startTime, String endTime, int period, String periodUnit) throws Exception{
+
+        DateHistogramAggregationBuilder dateHistogramAggregationBuilder = AggregationBuilders.dateHistogram(AGGREGATION_TYPE.TIME_COUNT.name()).field(queryContext.getFieldTimestamp()).dateHistogramInterval(dateUnitConvert(period,periodUnit)).minDocCount(0).timeZone(DateTimeZone.forID(queryContext.getZoneId()));
+        dateHistogramAggregationBuilder.extendedBounds(new ExtendedBounds(getBucketStartMillis(startTime, period, periodUnit), getBucketStartMillis(endTime, period, periodUnit)));
+
+        if(StringUtils.equals(AGGREGATION_TYPE.ALL.name(), aggregation_type.name())){
+            return dateHistogramAggregationBuilder;
+        }else if(StringUtils.equals(AGGREGATION_TYPE.HOST.name(), aggregation_type.name())){
+            return AggregationBuilders.terms(AGGREGATION_TYPE.HOST.name()).field(queryContext.getAggregationFieldHost()).subAggregation(dateHistogramAggregationBuilder);
+        }else if(StringUtils.equals(AGGREGATION_TYPE.FILE.name(), aggregation_type.name())){
+            return AggregationBuilders.terms(AGGREGATION_TYPE.FILE.name()).field(queryContext.getAggregationFieldFile()).subAggregation(dateHistogramAggregationBuilder);
+        }else if(StringUtils.equals(AGGREGATION_TYPE.HOST_FILE.name(), aggregation_type.name())){
+            return AggregationBuilders.terms(AGGREGATION_TYPE.HOST_FILE.name()).field(queryContext.getAggregationFieldHost()).subAggregation(AggregationBuilders.terms(AGGREGATION_TYPE.FILE.name()).field(queryContext.getAggregationFieldFile()).subAggregation(dateHistogramAggregationBuilder));
+        }else {
+            return null;
+        }
+    }
+
+    /**
+     * Aggregation Time Range Query ( start <= @timestamp <= end )
+     *
+     * @param startTime - Aggregation Start Time
+     * @param endTime - Aggregation End Time
+     * @return
+     * @throws Exception
+     */
+    static RangeQueryBuilder getAggregationRangeQueryBuilder(String startTime, String endTime) throws Exception{
+        return QueryBuilders.rangeQuery(queryContext.getFieldTimestamp()).gte(getMilliTime(startTime)).lte(getMilliTime(endTime));
+    }
+
+    /**
+     * Aggregation Response Data Get ( Set & Check )
+     *
+     * @param aggregation_type - refer to AGGREAGTION_TYPE
+     * @param startTime - Aggregation Start Time
+     * @param endTime - Aggregation End Time
+     * @param period - Period
+     * @param periodUnit - d:Day, h:Hour, m:Minute, s:Seconds
+     * @param searchResponse - Aggregation Response
+     * @param start - Request start nano time ( elapsed time )
+     * @return
+     */
+    static ElasticSearchAggregationListInfo getAggregationData(AGGREGATION_TYPE aggregation_type, String startTime, String endTime, int period, String periodUnit, SearchResponse searchResponse, long start){
+        return getAggregationData(aggregation_type, startTime, endTime, period, periodUnit, searchResponse.getAggregations(), start);
+    }
+
+    /**
+     * Aggregation Response Data Get ( Set & Check )
+     *
+     * @param aggregation_type - refer to AGGREAGTION_TYPE
+     * @param startTime - Aggregation Start Time
+     * @param endTime - Aggregation End Time
+     * @param period - Period
+     * @param periodUnit - d:Day, h:Hour, m:Minute, s:Seconds
+     * @param aggregations - Aggregations holding aggregation_type named aggregation
+     * @param start - Request start nano time ( elapsed time )
+     * @return
+     */
+    static ElasticSearchAggregationListInfo getAggregationData(AGGREGATION_TYPE aggregation_type, String startTime, String endTime, int period, String periodUnit, Aggregations aggregations, long start){
+
+        try{
+
+            ElasticSearchAggregationListInfo elasticSearchAggregationListInfo = getAggregationListInfo(startTime, endTime, period, periodUnit);
 
             if(StringUtils.equals(AGGREGATION_TYPE.ALL.name(), aggregation_type.name())){
-                ParsedDateHistogram parsedDateHistogram = (ParsedDateHistogram) searchResponse.getAggregations().asMap().get(AGGREGATION_TYPE.TIME_COUNT.name());
+                ParsedDateHistogram parsedDateHistogram = (ParsedDateHistogram) aggregations.asMap().get(AGGREGATION_TYPE.TIME_COUNT.name());
 
                 elasticSearchAggregationListInfo = setAggregationData(elasticSearchAggregationListInfo, AGGREGATION_TYPE.ALL.name(), parsedDateHistogram);
                 elasticSearchAggregationListInfo.setElapsedMsTime((System.nanoTime()-start)/ 1000000.0);
 
             }else if(StringUtils.equals(AGGREGATION_TYPE.HOST.name(), aggregation_type.name())){
-                ParsedStringTerms parsedStringTerms = (ParsedStringTerms) searchResponse.getAggregations().asMap().get(AGGREGATION_TYPE.HOST.name());
+                ParsedStringTerms parsedStringTerms = (ParsedStringTerms) aggregations.asMap().get(AGGREGATION_TYPE.HOST.name());
 
                 elasticSearchAggregationListInfo =  setAggregationData(elasticSearchAggregationListInfo, parsedStringTerms);
                 elasticSearchAggregationListInfo.setElapsedMsTime((System.nanoTime()-start)/ 1000000.0);
 
             }else if(StringUtils.equals(AGGREGATION_TYPE.FILE.name(), aggregation_type.name())){
-                ParsedStringTerms parsedStringTerms = (ParsedStringTerms) searchResponse.getAggregations().asMap().get(AGGREGATION_TYPE.FILE.name());
+                ParsedStringTerms parsedStringTerms = (ParsedStringTerms) aggregations.asMap().get(AGGREGATION_TYPE.FILE.name());
 
                 elasticSearchAggregationListInfo = setAggregationData(elasticSearchAggregationListInfo, parsedStringTerms);
                 elasticSearchAggregationListInfo.setElapsedMsTime((System.nanoTime()-start)/ 1000000.0);
 
             }else if(StringUtils.equals(AGGREGATION_TYPE.HOST_FILE.name(), aggregation_type.name())){
-                ParsedStringTerms parsedStringTerms = (ParsedStringTerms) searchResponse.getAggregations().asMap().get(AGGREGATION_TYPE.HOST_FILE.name());
+                ParsedStringTerms parsedStringTerms = (ParsedStringTerms) aggregations.asMap().get(AGGREGATION_TYPE.HOST_FILE.name());
 
                 elasticSearchAggregationListInfo = setAggregationData2(elasticSearchAggregationListInfo, parsedStringTerms);
                 elasticSearchAggregationListInfo.setElapsedMsTime((System.nanoTime()-start)/ 1000000.0);
@@ -921,27 +2144,52 @@ public class ElasticSearchSearchUtil {
 //            return elasticSearchAggregationListInfo;
             return checkAggregationData(elasticSearchAggregationListInfo, aggregation_type.name());
 
-
         }catch (Exception e){
             logger.error(ExceptionUtils.getStackTrace(e));
 
-            ElasticSearchAggregationListInfo elasticSearchAggregationListInfo = new ElasticSearchAggregationListInfo();
-            elasticSearchAggregationListInfo.setRequestStartTime(startTime);
-            elasticSearchAggregationListInfo.setRequestEndTime(endTime);
-            elasticSearchAggregationListInfo.setElapsedMsTime((System.nanoTime()-start)/ 1000000.0);
-
-            return elasticSearchAggregationListInfo;
-        }finally {
-            try{
-                if(restClient != null){
-                    restClient.close();
-                }
-            }catch (Exception e){
-                logger.error(ExceptionUtils.getStackTrace(e));
-            }
+            return getAggregationErrorData(startTime, endTime, start);
         }
     }
 
+    /**
+     * Empty Aggregation Data ( request info set )
+     *
+     * @param startTime - Aggregation Start Time
+     * @param endTime - Aggregation End Time
+     * @param period - Period
+     * @param periodUnit - d:Day, h:Hour, m:Minute, s:Seconds
+     * @return
+     */
+    private static ElasticSearchAggregationListInfo getAggregationListInfo(String startTime, String endTime, int period, String periodUnit){
+
+        ElasticSearchAggregationListInfo elasticSearchAggregationListInfo = new ElasticSearchAggregationListInfo();
+
+        elasticSearchAggregationListInfo.setRequestStartTime(startTime);
+        elasticSearchAggregationListInfo.setRequestEndTime(endTime);
+        elasticSearchAggregationListInfo.setPeriod(period);
+        elasticSearchAggregationListInfo.setPeriodUnit(periodUnit);
+
+        return elasticSearchAggregationListInfo;
+    }
+
+    /**
+     * Aggregation Error Data ( request time & elapsed time only )
+     *
+     * @param startTime - Aggregation Start Time
+     * @param endTime - Aggregation End Time
+     * @param start - Request start nano time
+     * @return
+     */
+    static ElasticSearchAggregationListInfo getAggregationErrorData(String startTime, String endTime, long start){
+
+        ElasticSearchAggregationListInfo elasticSearchAggregationListInfo = new ElasticSearchAggregationListInfo();
+        elasticSearchAggregationListInfo.setRequestStartTime(startTime);
+        elasticSearchAggregationListInfo.setRequestEndTime(endTime);
+        elasticSearchAggregationListInfo.setElapsedMsTime((System.nanoTime()-start)/ 1000000.0);
+
+        return elasticSearchAggregationListInfo;
+    }
+
     /**
      * Set Aggregation Data ( 2-Depth ParsedStringTerms Use )
      *
@@ -1021,33 +2269,17 @@ public class ElasticSearchSearchUtil {
     private static ElasticSearchAggregationListInfo setAggregationData(ElasticSearchAggregationListInfo elasticSearchAggregationListInfo, String key, ParsedDateHistogram parsedDateHistogram){
 
         try{
-            HashMap<String, ArrayList<Long>> dataMap = new HashMap<>();
-
-            ArrayList<ElasticSearchAggregationInfo> objectList = new ArrayList<>();
-            ArrayList<Long> xList = new ArrayList<>();
-            ArrayList<Long> yList = new ArrayList<>();
+            ElasticSearchAggregationSeries series = new ElasticSearchAggregationSeries(parsedDateHistogram.getBuckets().size());
+            series.setTimeZone(TimeZone.getTimeZone(queryContext.getZoneId()));
 
             for(Iterator iter = parsedDateHistogram.getBuckets().iterator(); iter.hasNext();){
                 Bucket bucket = (Bucket) iter.next();
 
-                ElasticSearchAggregationInfo elasticSearchAggregationInfo = new ElasticSearchAggregationInfo();
-
-                elasticSearchAggregationInfo.setCount(bucket.getDocCount());
-                elasticSearchAggregationInfo.setTime(((DateTime)bucket.getKey()).getMillis());
-                elasticSearchAggregationInfo.setTimeStr(bucket.getKeyAsString());
-
-                objectList.add(elasticSearchAggregationInfo);
-
-                xList.add(((DateTime)bucket.getKey()).getMillis());
-                yList.add(bucket.getDocCount());
+                series.add(((DateTime)bucket.getKey()).getMillis(), bucket.getDocCount());
             }
 
-            if(parsedDateHistogram.getBuckets().size() > 0 ){
-                dataMap.put("x", xList);
-                dataMap.put("y", yList);
-
-                elasticSearchAggregationListInfo.putAggregationMap(key, dataMap);
-                elasticSearchAggregationListInfo.putAggregationObjectMap(key, objectList);
+            if(!series.isEmpty()){
+                elasticSearchAggregationListInfo.putSeries(key, series);
 
                 return elasticSearchAggregationListInfo;
 //                return checkAggregationData(elasticSearchAggregationListInfo, key);
@@ -1068,7 +2300,7 @@ public class ElasticSearchSearchUtil {
      * @param totalCount
      * @return
      */
-    private static ElasticSearchDataListInfo setData(SearchHit[] arrHit, long totalCount){
+    static ElasticSearchDataListInfo setData(SearchHit[] arrHit, long totalCount){
 
         ElasticSearchDataListInfo elasticSearchDataListInfo = new ElasticSearchDataListInfo();
         try{
@@ -1076,20 +2308,10 @@ public class ElasticSearchSearchUtil {
 
             for(SearchHit hit : arrHit){
 
-                ElasticSearchDataInfo elasticSearchDataInfo = new ElasticSearchDataInfo();
-
-                elasticSearchDataInfo.setTimeStr(String.valueOf(hit.getSource().get("@timestamp")));
-                elasticSearchDataInfo.setTime((Long)hit.getSortValues()[0]);
-                elasticSearchDataInfo.setHost(String.valueOf(hit.getSource().get("host")));
-                elasticSearchDataInfo.setFileName(String.valueOf(hit.getSource().get("file")));
-
-                elasticSearchDataInfo.setMessage(String.valueOf(hit.getSource().get("message")));
-
-                StringBuffer message = new StringBuffer();
-                message.append("[").append(elasticSearchDataInfo.getHost()).append(" | ").append(elasticSearchDataInfo.getFileName()).append("]").append(StringUtils.SPACE).append(elasticSearchDataInfo.getMessage());
+                ElasticSearchDataInfo elasticSearchDataInfo = getDataInfo(hit);
 
                 elasticSearchDataListInfo.addDataList(elasticSearchDataInfo);
-                elasticSearchDataListInfo.addMessageList(message.toString());
+                elasticSearchDataListInfo.addMessageList(getMessage(elasticSearchDataInfo));
             }
 
             return elasticSearchDataListInfo;
@@ -1100,6 +2322,78 @@ public class ElasticSearchSearchUtil {
         }
     }
 
+    /**
+     * Search Result Data Get ( One Hit, _source decoded once )
+     *
+     * @param hit
+     * @return
+     */
+    static ElasticSearchDataInfo getDataInfo(SearchHit hit){
+
+        ElasticSearchQueryContext context = queryContext;
+        Map<String, Object> source = hit.getSourceAsMap();
+
+        ElasticSearchDataInfo elasticSearchDataInfo = new ElasticSearchDataInfo();
+
+        if(source == null){
+            source = Collections.emptyMap();
+        }
+
+        elasticSearchDataInfo.setTimeStr(String.valueOf(source.get(context.getFieldTimestamp())));
+        elasticSearchDataInfo.setTime(getHitTime(hit, elasticSearchDataInfo.getTimeStr()));
+        elasticSearchDataInfo.setHost(String.valueOf(source.get(context.getFieldHost())));
+        elasticSearchDataInfo.setFileName(String.valueOf(source.get(context.getFieldFile())));
+
+        elasticSearchDataInfo.setMessage(String.valueOf(source.get(context.getFieldMessage())));
+
+        return elasticSearchDataInfo;
+    }
+
+    /**
+     * Message Line ( [host | file] message )
+     *
+     * @param elasticSearchDataInfo
+     * @return
+     */
+    static String getMessage(ElasticSearchDataInfo elasticSearchDataInfo){
+
+        StringBuilder message = new StringBuilder();
+        message.append("[").append(elasticSearchDataInfo.getHost()).append(" | ").append(elasticSearchDataInfo.getFileName()).append("]").append(StringUtils.SPACE).append(elasticSearchDataInfo.getMessage());
+
+        return message.toString();
+    }
+
+    /**
+     * _source includes ( timestamp, host, file, message )
+     *
+     * @return
+     */
+    static String[] getSourceIncludes(){
+        ElasticSearchQueryContext context = queryContext;
+        return new String[]{context.getFieldTimestamp(), context.getFieldHost(), context.getFieldFile(), context.getFieldMessage()};
+    }
+
+    /**
+     * Hit Time Get ( @timestamp sort value, or @timestamp source when not sorted by @timestamp ex) _doc )
+     *
+     * @param hit
+     * @param timeStr - @timestamp source value
+     * @return
+     */
+    private static long getHitTime(SearchHit hit, String timeStr){
+
+        Object[] sortValues = hit.getSortValues();
+        if(sortValues != null && sortValues.length > 0 && sortValues[0] instanceof Long){
+            return (Long) sortValues[0];
+        }
+
+        try{
+            return ZonedDateTime.parse(timeStr).toInstant().toEpochMilli();
+        }catch (Exception e){
+            return 0L;
+        }
+    }
+
     /**
      * Search Result Data Get ( Message List Only )
      *
@@ -1115,17 +2409,7 @@ public class ElasticSearchSearchUtil {
 
             for(SearchHit hit : arrHit){
 
-                ElasticSearchDataInfo elasticSearchDataInfo = new ElasticSearchDataInfo();
-
-                elasticSearchDataInfo.setHost(String.valueOf(hit.getSource().get("host")));
-                elasticSearchDataInfo.setFileName(String.valueOf(hit.getSource().get("file")));
-
-                elasticSearchDataInfo.setMessage(String.valueOf(hit.getSource().get("message")));
-
-                StringBuffer message = new StringBuffer();
-                message.append("[").append(elasticSearchDataInfo.getHost()).append(" | ").append(elasticSearchDataInfo.getFileName()).append("]").append(StringUtils.SPACE).append(elasticSearchDataInfo.getMessage());
-
-                elasticSearchDataListInfo.addMessageList(message.toString());
+                elasticSearchDataListInfo.addMessageList(getMessage(getDataInfo(hit)));
             }
 
             return elasticSearchDataListInfo.getMessageList();
@@ -1151,16 +2435,7 @@ public class ElasticSearchSearchUtil {
 
             for(SearchHit hit : arrHit){
 
-                ElasticSearchDataInfo elasticSearchDataInfo = new ElasticSearchDataInfo();
-
-                elasticSearchDataInfo.setTimeStr(String.valueOf(hit.getSource().get("@timestamp")));
-                elasticSearchDataInfo.setTime((Long)hit.getSortValues()[0]);
-                elasticSearchDataInfo.setHost(String.valueOf(hit.getSource().get("host")));
-                elasticSearchDataInfo.setFileName(String.valueOf(hit.getSource().get("file")));
-
-                elasticSearchDataInfo.setMessage(String.valueOf(hit.getSource().get("message")));
-
-                elasticSearchDataListInfo.addDataList(elasticSearchDataInfo);
+                elasticSearchDataListInfo.addDataList(getDataInfo(hit));
             }
 
             return elasticSearchDataListInfo.getDataList();
@@ -1201,12 +2476,12 @@ public class ElasticSearchSearchUtil {
     public static void printAggregationData(ElasticSearchAggregationListInfo elasticSearchAggregationListInfo){
         try{
 
-            for(Iterator<String> iter = elasticSearchAggregationListInfo.getAggregationMap().keySet().iterator(); iter.hasNext();){
-                String key = iter.next();
+            for(Map.Entry<String, ElasticSearchAggregationSeries> entry : elasticSearchAggregationListInfo.getSeriesMap().entrySet()){
+                ElasticSearchAggregationSeries series = entry.getValue();
 
-                logger.debug("-------- " + key + " -------- ");
-                for(int i=0; i < elasticSearchAggregationListInfo.getAggregationMap().get(key).get("x").size(); i++){
-                    logger.debug(DateFormatUtils.format(elasticSearchAggregationListInfo.getAggregationMap().get(key).get("x").get(i), DATE_FORMAT_DEFAULT) + " : " +elasticSearchAggregationListInfo.getAggregationMap().get(key).get("y").get(i));
+                logger.debug("-------- " + entry.getKey() + " -------- ");
+                for(int i=0; i < series.size(); i++){
+                    logger.debug(DateFormatUtils.format(series.getTime(i), DATE_FORMAT_DEFAULT) + " : " + series.getCount(i));
                 }
 
                 logger.error("elapsed time(ms): " + elasticSearchAggregationListInfo.getElapsedMsTime());
@@ -1227,7 +2502,7 @@ public class ElasticSearchSearchUtil {
     public static String getSearchStartTime(String time, int plusMinusMinute) throws Exception{
 
 //        try{
-            LocalDateTime localDateTime = convertLocalDateTime(time, "Asia/Seoul", DATE_FORMAT_DEFAULT);
+            LocalDateTime localDateTime = convertLocalDateTime(time, queryContext.getZoneId(), DATE_FORMAT_DEFAULT);
             localDateTime = localDateTime.minusMinutes(plusMinusMinute);
 
             long millis = localDateTime.toInstant(ZoneId.systemDefault().getRules().getOffset(localDateTime)).toEpochMilli();
@@ -1254,7 +2529,7 @@ public class ElasticSearchSearchUtil {
 
 //        try{
 
-            LocalDateTime localDateTime = convertLocalDateTime(time, "Asia/Seoul", DATE_FORMAT_DEFAULT);
+            LocalDateTime localDateTime = convertLocalDateTime(time, queryContext.getZoneId(), DATE_FORMAT_DEFAULT);
             localDateTime = localDateTime.plusMinutes(plusMinusMinute);
 
             long millis = localDateTime.toInstant(ZoneId.systemDefault().getRules().getOffset(localDateTime)).toEpochMilli();
@@ -1263,7 +2538,7 @@ public class ElasticSearchSearchUtil {
         /*}catch (Exception e){
             logger.error(ExceptionUtils.getStackTrace(e));
 
-            LocalDateTime localDateTime = convertLocalDateTime(time, "Asia/Seoul", DATE_FORMAT_DEFAULT);
+            LocalDateTime localDateTime = convertLocalDateTime(time, queryContext.getZoneId(), DATE_FORMAT_DEFAULT);
 
             long millis = localDateTime.toInstant(ZoneId.systemDefault().getRules().getOffset(localDateTime)).toEpochMilli();
             return String.valueOf(millis);
@@ -1279,20 +2554,59 @@ public class ElasticSearchSearchUtil {
     public static String getMilliTime(String time) throws Exception{
 
 //        try{
-        LocalDateTime localDateTime = convertLocalDateTime(time, "Asia/Seoul", DATE_FORMAT_DEFAULT);
+        LocalDateTime localDateTime = convertLocalDateTime(time, queryContext.getZoneId(), DATE_FORMAT_DEFAULT);
         long millis = localDateTime.toInstant(ZoneId.systemDefault().getRules().getOffset(localDateTime)).toEpochMilli();
 
         return String.valueOf(millis);
         /*}catch (Exception e){
             logger.error(ExceptionUtils.getStackTrace(e));
 
-            LocalDateTime localDateTime = convertLocalDateTime(time, "Asia/Seoul", DATE_FORMAT_DEFAULT);
+            LocalDateTime localDateTime = convertLocalDateTime(time, queryContext.getZoneId(), DATE_FORMAT_DEFAULT);
             long millis = localDateTime.toInstant(ZoneId.systemDefault().getRules().getOffset(localDateTime)).toEpochMilli();
 
             return String.valueOf(millis);
         }*/
     }
 
+    /**
+     * Milliseconds Convert String Time
+     *
+     * @param millis
+     * @return Standard Time (Format : yyyy-MM-dd HH:mm:ss.SSS)
+     */
+    static String getTimeString(long millis){
+        return DateFormatUtils.format(millis, DATE_FORMAT_DEFAULT, TimeZone.getTimeZone(queryContext.getZoneId()));
+    }
+
+    /**
+     * Bucket time of time ( date_histogram key holding the time, rounded like ES )
+     *
+     * ex) 3h bucket of 10:30 -> 09:00, 1d bucket of 15:00 -> 00:00 ( query context time zone )
+     *
+     * @param time - Time (Format : yyyy-MM-dd HH:mm:ss.SSS)
+     * @param period - Period
+     * @param periodUnit - d:Day, h:Hour, m:Minute, s:Seconds
+     * @return
+     * @throws Exception
+     */
+    static long getBucketStartMillis(String time, int period, String periodUnit) throws Exception{
+        return getBucketStartMillis(Long.parseLong(getMilliTime(time)), dateUnitConvertMillis(period, periodUnit));
+    }
+
+    /**
+     * Bucket time of time ( date_histogram key holding the time, rounded like ES )
+     *
+     * floor((time + time zone offset) / period) * period - time zone offset
+     *
+     * @param millis - Time (milliseconds)
+     * @param periodMillis - Bucket size
+     * @return
+     */
+    static long getBucketStartMillis(long millis, long periodMillis){
+        long offset = TimeZone.getTimeZone(queryContext.getZoneId()).getOffset(millis);
+        return Math.floorDiv(millis + offset, periodMillis) * periodMillis - offset;
+    }
+
     /**
      * Converting Other Locale to Current Locale
      * @param strTime
@@ -1353,70 +2667,23 @@ public class ElasticSearchSearchUtil {
         }
     }
 
-    /**
-     * Period Unit Trancate Date
-     *
-     * @param strTime
-     * @param period
-     * @param periodUnit
-     * @return
-     * @throws Exception
-     */
-    private static String periodUnitTruncateDate(String strTime, int period, String periodUnit) throws Exception{
-
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTimeInMillis(Long.parseLong(getMilliTime(strTime)));
-
-        if(StringUtils.equals(periodUnit, PERIOD_UNIT_DAY)){
-            calendar.set(Calendar.HOUR, 0);
-            calendar.set(Calendar.MINUTE, 0);
-            calendar.set(Calendar.SECOND, 0);
-            calendar.set(Calendar.MILLISECOND, 0);
-        }else if(StringUtils.equals(periodUnit, PERIOD_UNIT_HOUR)){
-            if(period == 24){
-                calendar.set(Calendar.HOUR, 0);
-            }
-            calendar.set(Calendar.MINUTE, 0);
-            calendar.set(Calendar.SECOND, 0);
-            calendar.set(Calendar.MILLISECOND, 0);
-        }else if(StringUtils.equals(periodUnit, PERIOD_UNIT_MINUTE)){
-            if(period == 60){
-                calendar.set(Calendar.MINUTE, 0);
-            }
-            calendar.set(Calendar.SECOND, 0);
-            calendar.set(Calendar.MILLISECOND, 0);
-        }else if(StringUtils.equals(periodUnit, PERIOD_UNIT_SECOND)){
-            if(period == 60){
-                calendar.set(Calendar.SECOND, 0);
-            }
-            calendar.set(Calendar.MILLISECOND, 0);
-        }else {
-            return strTime;
-        }
-
-        return DateFormatUtils.format(calendar, DATE_FORMAT_DEFAULT);
-    }
-
-
     /**
      * Check Aggregation Data
      *
      * @param elasticSearchAggregationListInfo
      * @return
      */
-    private static ElasticSearchAggregationListInfo checkAggregationData(ElasticSearchAggregationListInfo elasticSearchAggregationListInfo, String aggregationName){
+    static ElasticSearchAggregationListInfo checkAggregationData(ElasticSearchAggregationListInfo elasticSearchAggregationListInfo, String aggregationName){
 
         ElasticSearchAggregationListInfo elasticSearchAggregationListInfoBackup = elasticSearchAggregationListInfo;
 
-        HashMap<String, HashMap<String, ArrayList<Long>>> aggregationMap = elasticSearchAggregationListInfo.getAggregationMap();
-        HashMap<String, ArrayList<ElasticSearchAggregationInfo>> aggregationObjectMap = elasticSearchAggregationListInfo.getAggregationObjectMap();
+        LinkedHashMap<String, ElasticSearchAggregationSeries> seriesMap = elasticSearchAggregationListInfo.getSeriesMap();
         try{
 
-            HashMap<String, HashMap<String, ArrayList<Long>>> aggregationMapResult = new HashMap<>();
-            HashMap<String, ArrayList<ElasticSearchAggregationInfo>> aggregationObjectMapResult = new HashMap<>();
+            LinkedHashMap<String, ElasticSearchAggregationSeries> seriesMapResult = new LinkedHashMap<>();
 
             // Aggregation Result Empty...
-            if(aggregationObjectMap.size() == 0){
+            if(seriesMap.size() == 0){
 
                 // Aggregation Type ALL Only Set Empty Data
                 if(StringUtils.equals(aggregationName, AGGREGATION_TYPE.ALL.name())){
@@ -1427,14 +2694,17 @@ public class ElasticSearchSearchUtil {
             }
 
 
-            for(Iterator<String> iter = aggregationMap.keySet().iterator(); iter.hasNext();){
+            // Bucket grid ( once per request )
+            long startTimeMillis = getBucketStartMillis(elasticSearchAggregationListInfo.getRequestStartTime(), elasticSearchAggregationListInfo.getPeriod(), elasticSearchAggregationListInfo.getPeriodUnit());
+            long endTimeMillis = getBucketStartMillis(elasticSearchAggregationListInfo.getRequestEndTime(), elasticSearchAggregationListInfo.getPeriod(), elasticSearchAggregationListInfo.getPeriodUnit());
+            long periodMillis = dateUnitConvertMillis(elasticSearchAggregationListInfo.getPeriod(), elasticSearchAggregationListInfo.getPeriodUnit());
+
+            for(Iterator<String> iter = seriesMap.keySet().iterator(); iter.hasNext();){
                 String key = iter.next();
-                aggregationMapResult.put(key, checkAndDummySetAggregationData(aggregationMap.get(key).get("x"), aggregationMap.get(key).get("y"), elasticSearchAggregationListInfo.getRequestStartTime(), elasticSearchAggregationListInfo.getRequestEndTime(), elasticSearchAggregationListInfo.getPeriod(), elasticSearchAggregationListInfo.getPeriodUnit()));
-                aggregationObjectMapResult.put(key, checkAndDummySetAggregationData(aggregationObjectMap.get(key), elasticSearchAggregationListInfo.getRequestStartTime(), elasticSearchAggregationListInfo.getRequestEndTime(), elasticSearchAggregationListInfo.getPeriod(), elasticSearchAggregationListInfo.getPeriodUnit()));
+                seriesMapResult.put(key, checkAndDummySetAggregationData(seriesMap.get(key), startTimeMillis, endTimeMillis, periodMillis));
             }
 
-            elasticSearchAggregationListInfo.setAggregationMap(aggregationMapResult);
-            elasticSearchAggregationListInfo.setAggregationObjectMap(aggregationObjectMapResult);
+            elasticSearchAggregationListInfo.setSeriesMap(seriesMapResult);
 
             return elasticSearchAggregationListInfo;
         }catch (Exception e){
@@ -1444,120 +2714,60 @@ public class ElasticSearchSearchUtil {
     }
 
     /**
-     * Check And Dummy Data Set Aggregation Data (aggregationMap)
+     * Check And Dummy Data Set Aggregation Data
      *
-     * @param xArray
-     * @param yArray
-     * @param startTime
-     * @param endTime
-     * @param period
-     * @param periodUnit
-     * @return
-     * @throws Exception
+     * Missing head / tail / inner buckets are filled with 0 in one pass.
+     * The grid is startTimeMillis + n * periodMillis, bucket times from getBucketStartMillis ( rounded like ES ) are on it.
+     *
+     * @param series - Bucket series ( time ascending )
+     * @param startTimeMillis - Bucket time of request start time ( getBucketStartMillis )
+     * @param endTimeMillis - Bucket time of request end time ( getBucketStartMillis )
+     * @param periodMillis - Bucket size
+     * @return series itself when nothing is missing
      */
-    private static HashMap<String, ArrayList<Long>> checkAndDummySetAggregationData(ArrayList<Long> xArray, ArrayList<Long> yArray, String startTime, String endTime, int period, String periodUnit) throws Exception{
+    static ElasticSearchAggregationSeries checkAndDummySetAggregationData(ElasticSearchAggregationSeries series, long startTimeMillis, long endTimeMillis, long periodMillis){
 
-        HashMap<String, ArrayList<Long>> resultMap = new HashMap<>();
+        if(series.isEmpty() || periodMillis <= 0){
+            return series;
+        }
 
-        startTime = periodUnitTruncateDate(startTime, period, periodUnit);
-        endTime = periodUnitTruncateDate(endTime, period, periodUnit);
+        long firstTime = series.getFirstTime();
+        long lastTime = series.getLastTime();
 
-        long startTimeMillis = Long.parseLong(getMilliTime(startTime));
-        long endTimeMillis = Long.parseLong(getMilliTime(endTime));
+        int headCount = firstTime > startTimeMillis ? (int) ((firstTime - startTimeMillis) / periodMillis) : 0;
+        int tailCount = lastTime < endTimeMillis ? (int) ((endTimeMillis - lastTime) / periodMillis) : 0;
+        long bucketCount = (lastTime - firstTime) / periodMillis + 1;
 
         // Lost Data Nothing..
-        if(xArray.get(0) <= startTimeMillis && xArray.get(xArray.size()-1) >= endTimeMillis){
-            resultMap.put("x", xArray);
-            resultMap.put("y", yArray);
-
-            return resultMap;
+        if(headCount == 0 && tailCount == 0 && bucketCount == series.size()){
+            return series;
         }
 
+        ElasticSearchAggregationSeries result = new ElasticSearchAggregationSeries((int) Math.max(series.size(), bucketCount) + headCount + tailCount);
+        result.setTimeZone(series.getTimeZone());
 
-        if(xArray.get(0) > startTimeMillis){
-
-            while (xArray.get(0)-dateUnitConvertMillis(period, periodUnit) >= startTimeMillis) {
-
-                long dummyTime = xArray.get(0)-dateUnitConvertMillis(period, periodUnit);
-
-                xArray.add(0, dummyTime);
-                yArray.add(0, 0L);
-            }
+        long time = firstTime - periodMillis * headCount;
+        for(; time < firstTime; time += periodMillis){
+            result.add(time, 0L);
         }
 
-        if(xArray.get(xArray.size()-1) < endTimeMillis){
-            while (xArray.get(xArray.size()-1)+dateUnitConvertMillis(period, periodUnit) <= endTimeMillis) {
-
-                long dummyTime = xArray.get(xArray.size()-1)+dateUnitConvertMillis(period, periodUnit);
+        for(int i = 0; i < series.size(); i++){
+            long bucketTime = series.getTime(i);
 
-                xArray.add(dummyTime);
-                yArray.add(0L);
+            // inner gap
+            for(; time < bucketTime; time += periodMillis){
+                result.add(time, 0L);
             }
-        }
-
-        resultMap.put("x", xArray);
-        resultMap.put("y", yArray);
-
-        return resultMap;
-    }
-
-    /**
-     * Check And Dummy Data Set Aggregation Data (aggregationObjectMap)
-     *
-     * @param objectArray
-     * @param startTime
-     * @param endTime
-     * @param period
-     * @param periodUnit
-     * @return
-     * @throws Exception
-     */
-    private static ArrayList<ElasticSearchAggregationInfo> checkAndDummySetAggregationData(ArrayList<ElasticSearchAggregationInfo> objectArray, String startTime, String endTime, int period, String periodUnit) throws Exception{
 
-        startTime = periodUnitTruncateDate(startTime, period, periodUnit);
-        endTime = periodUnitTruncateDate(endTime, period, periodUnit);
-
-        long startTimeMillis = Long.parseLong(getMilliTime(startTime));
-        long endTimeMillis = Long.parseLong(getMilliTime(endTime));
-
-        // Lost Data Nothing..
-        if(objectArray.get(0).getTime() <= startTimeMillis && objectArray.get(objectArray.size()-1).getTime() >= endTimeMillis){
-            return objectArray;
-        }
-
-        if(objectArray.get(0).getTime() > startTimeMillis){
-
-            while (objectArray.get(0).getTime()-dateUnitConvertMillis(period, periodUnit) >= startTimeMillis) {
-
-                long dummyTime = objectArray.get(0).getTime()-dateUnitConvertMillis(period, periodUnit);
-
-                ElasticSearchAggregationInfo elasticSearchAggregationInfo = new ElasticSearchAggregationInfo();
-
-                elasticSearchAggregationInfo.setCount(0L);
-                elasticSearchAggregationInfo.setTime(dummyTime);
-                elasticSearchAggregationInfo.setTimeStr(DateFormatUtils.format(dummyTime, DATE_FORMAT_DEFAULT));
-
-                objectArray.add(0, elasticSearchAggregationInfo);
-            }
+            result.add(bucketTime, series.getCount(i));
+            time = bucketTime + periodMillis;
         }
 
-        if(objectArray.get(objectArray.size()-1).getTime() < endTimeMillis){
-
-            while (objectArray.get(objectArray.size()-1).getTime()+dateUnitConvertMillis(period, periodUnit) <= endTimeMillis) {
-
-                long dummyTime = objectArray.get(objectArray.size()-1).getTime()+dateUnitConvertMillis(period, periodUnit);
-
-                ElasticSearchAggregationInfo elasticSearchAggregationInfo = new ElasticSearchAggregationInfo();
-
-                elasticSearchAggregationInfo.setCount(0L);
-                elasticSearchAggregationInfo.setTime(dummyTime);
-                elasticSearchAggregationInfo.setTimeStr(DateFormatUtils.format(dummyTime, DATE_FORMAT_DEFAULT));
-
-                objectArray.add(elasticSearchAggregationInfo);
-            }
+        for(; time <= lastTime + periodMillis * tailCount; time += periodMillis){
+            result.add(time, 0L);
         }
 
-        return objectArray;
+        return result;
     }
 
     /**
@@ -1568,58 +2778,19 @@ public class ElasticSearchSearchUtil {
      */
     private static ElasticSearchAggregationListInfo setAggregationDataEmpty(ElasticSearchAggregationListInfo elasticSearchAggregationListInfo) throws Exception{
 
-        String startTime = elasticSearchAggregationListInfo.getRequestStartTime();
-        String endTime = elasticSearchAggregationListInfo.getRequestEndTime();
-
-        startTime = periodUnitTruncateDate(startTime, elasticSearchAggregationListInfo.getPeriod(), elasticSearchAggregationListInfo.getPeriodUnit());
-        endTime = periodUnitTruncateDate(endTime, elasticSearchAggregationListInfo.getPeriod(), elasticSearchAggregationListInfo.getPeriodUnit());
-
-        long startTimeMillis = Long.parseLong(getMilliTime(startTime));
-        long endTimeMillis = Long.parseLong(getMilliTime(endTime));
-
-        HashMap<String, ArrayList<Long>> xyListMap = new HashMap<>();
-        ArrayList<Long> xArray = new ArrayList<>();
-        ArrayList<Long> yArray = new ArrayList<>();
-
-        xArray.add(startTimeMillis);
-        yArray.add(0L);
-
-        while (xArray.get(xArray.size()-1)+dateUnitConvertMillis(elasticSearchAggregationListInfo.getPeriod(), elasticSearchAggregationListInfo.getPeriodUnit()) <= endTimeMillis) {
-
-            long dummyTime = xArray.get(xArray.size()-1)+dateUnitConvertMillis(elasticSearchAggregationListInfo.getPeriod(), elasticSearchAggregationListInfo.getPeriodUnit());
-
-            xArray.add(dummyTime);
-            yArray.add(0L);
-        }
-
-        xyListMap.put("x", xArray);
-        xyListMap.put("y", yArray);
-
-        elasticSearchAggregationListInfo.putAggregationMap(AGGREGATION_TYPE.ALL.name(), xyListMap);
-
-        ArrayList<ElasticSearchAggregationInfo> objectArray = new ArrayList<>();
-
-        ElasticSearchAggregationInfo elasticSearchAggregationInfo = new ElasticSearchAggregationInfo();
-        elasticSearchAggregationInfo.setCount(0L);
-        elasticSearchAggregationInfo.setTime(startTimeMillis);
-        elasticSearchAggregationInfo.setTimeStr(startTime);
-
-        objectArray.add(elasticSearchAggregationInfo);
-
-        while (objectArray.get(objectArray.size()-1).getTime()+dateUnitConvertMillis(elasticSearchAggregationListInfo.getPeriod(), elasticSearchAggregationListInfo.getPeriodUnit()) <= endTimeMillis) {
-
-            long dummyTime = objectArray.get(objectArray.size()-1).getTime()+dateUnitConvertMillis(elasticSearchAggregationListInfo.getPeriod(), elasticSearchAggregationListInfo.getPeriodUnit());
+        long startTimeMillis = getBucketStartMillis(elasticSearchAggregationListInfo.getRequestStartTime(), elasticSearchAggregationListInfo.getPeriod(), elasticSearchAggregationListInfo.getPeriodUnit());
+        long endTimeMillis = getBucketStartMillis(elasticSearchAggregationListInfo.getRequestEndTime(), elasticSearchAggregationListInfo.getPeriod(), elasticSearchAggregationListInfo.getPeriodUnit());
 
-            ElasticSearchAggregationInfo elasticSearchAggregationInfo1 = new ElasticSearchAggregationInfo();
+        long periodMillis = dateUnitConvertMillis(elasticSearchAggregationListInfo.getPeriod(), elasticSearchAggregationListInfo.getPeriodUnit());
 
-            elasticSearchAggregationInfo1.setCount(0L);
-            elasticSearchAggregationInfo1.setTime(dummyTime);
-            elasticSearchAggregationInfo1.setTimeStr(DateFormatUtils.format(dummyTime, DATE_FORMAT_DEFAULT));
+        ElasticSearchAggregationSeries series = new ElasticSearchAggregationSeries((int) ((endTimeMillis - startTimeMillis) / periodMillis) + 1);
+        series.setTimeZone(TimeZone.getTimeZone(queryContext.getZoneId()));
 
-            objectArray.add(elasticSearchAggregationInfo1);
+        for(long dummyTime = startTimeMillis; dummyTime <= endTimeMillis; dummyTime += periodMillis){
+            series.add(dummyTime, 0L);
         }
 
-        elasticSearchAggregationListInfo.putAggregationObjectMap(AGGREGATION_TYPE.ALL.name(), objectArray);
+        elasticSearchAggregationListInfo.putSeries(AGGREGATION_TYPE.ALL.name(), series);
 
         return elasticSearchAggregationListInfo;
     }
@@ -0,0 +1,713 @@
+package com.ainory.dev.utils.elastic;
+
+import com.ainory.dev.utils.elastic.entity.ElasticSearchDataInfo;
+import com.ainory.dev.utils.elastic.entity.ElasticSearchDataListInfo;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ElasticSearch Segment Cache
+ *
+ * Local on-disk cache of the hits of closed time windows of one host:port.
+ * A window is closed when its end time is settleMs old ( late documents ), open windows are never cached.
+ *
+ * While a cache is started, the first ElasticSearchSearchUtil search of a closed window is answered by the raw search
+ * and queues a background fill ( one fill thread per cache, every hit of the window streamed once into a segment file ),
+ * later page flips / repeats ( ASC or DESC ) are served from the segment once it is filled.
+ * Segments are filled ordered by time, _uid like the raw paging search, so hits of the same time keep their order
+ * between the raw first page and the pages served from disk ( DESC : reversed ).
+ * A search inside a cached window with the same filters ( host, file, message, query context ) is served by the time index.
+ * Windows over maxSegmentHits hits are not cached.
+ *
+ * Segment file ( memory-mapped, read only ) :
+ *  header ( magic, version, window, filter key, hit count ), time index ( long[hitCount], ascending ),
+ *  offset index ( int[hitCount + 1] ), hit data ( timeStr, host, file, message : length prefixed UTF-8 )
+ *
+ * Segments are kept under maxBytes with LRU eviction ( file modified time keeps the order across restarts ).
+ * Evicted files are deleted, their mapping is released by GC.
+ *
+ *  ex) ElasticSearchSegmentCache.start("127.0.0.1", 9400, Paths.get("/data/es-segment"));
+ *      ElasticSearchSearchUtil.search("127.0.0.1", 9400, ElasticSearchQuerySpec.range("2017-12-20 03:00:00.000", "2017-12-20 04:00:00.000"), 100, 1);
+ *      ElasticSearchSearchUtil.search("127.0.0.1", 9400, ElasticSearchQuerySpec.range("2017-12-20 03:00:00.000", "2017-12-20 04:00:00.000"), 100, 2); // from disk
+ */
+public class ElasticSearchSegmentCache implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ElasticSearchSegmentCache.class);
+
+    public static final long DEFAULT_MAX_BYTES = 1024L * 1024L * 1024L;
+    public static final long DEFAULT_SETTLE_MS = TimeUnit.MINUTES.toMillis(10);
+    public static final int DEFAULT_MAX_SEGMENT_HITS = 500000;
+
+    private static final int MAGIC = 0x45534753;
+    private static final int VERSION = 1;
+
+    // hit data of a segment ( int offsets, one mapping )
+    private static final long MAX_SEGMENT_BYTES = Integer.MAX_VALUE / 2;
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    // windows found over maxSegmentHits ( not checked again )
+    private static final int MAX_SKIP_COUNT = 1000;
+
+    // queued background fills ( further windows are not cached until the queue drains )
+    private static final int FILL_QUEUE_SIZE = 16;
+
+    //                      host:port, cache
+    private static final ConcurrentHashMap<String, ElasticSearchSegmentCache> CACHE_MAP = new ConcurrentHashMap<>();
+
+    private final String esHost;
+    private final int esPort;
+    private final Path directory;
+    private final long maxBytes;
+    private final long settleMs;
+
+    // background fill ( one thread, idle thread ends )
+    private final ThreadPoolExecutor fillExecutor;
+
+    private volatile int maxSegmentHits = DEFAULT_MAX_SEGMENT_HITS;
+
+    //                          file name, segment ( access order )
+    private final LinkedHashMap<String, Segment> segmentMap = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes = 0;
+
+    //                 file name ( segments being filled )
+    private final Set<String> fillingSet = new HashSet<>();
+
+    //                           file name ( windows over maxSegmentHits )
+    private final LinkedHashMap<String, Boolean> skipMap = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > MAX_SKIP_COUNT;
+        }
+    };
+
+    static final class Segment {
+        private final Path path;
+        private final long bytes;
+        private final String filterKey;
+        private final long startTime;
+        private final long endTime;
+        private final boolean endExclusive;
+        private final int hitCount;
+        private final int timeIndexPosition;
+        private final int offsetIndexPosition;
+        private final int dataPosition;
+        private final MappedByteBuffer buffer;
+
+        private Segment(Path path) throws IOException {
+
+            try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+                this.path = path;
+                this.bytes = channel.size();
+                this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, bytes);
+            }
+
+            if(buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION){
+                throw new IOException("Not a segment file : " + path);
+            }
+
+            this.startTime = buffer.getLong(8);
+            this.endTime = buffer.getLong(16);
+            this.endExclusive = buffer.get(24) != 0;
+
+            int filterKeyLength = buffer.getInt(25);
+            byte[] filterKeyBytes = new byte[filterKeyLength];
+            ByteBuffer view = buffer.duplicate();
+            view.position(29);
+            view.get(filterKeyBytes);
+            this.filterKey = new String(filterKeyBytes, StandardCharsets.UTF_8);
+
+            this.hitCount = buffer.getInt(29 + filterKeyLength);
+            this.timeIndexPosition = 33 + filterKeyLength;
+            this.offsetIndexPosition = timeIndexPosition + hitCount * 8;
+            this.dataPosition = offsetIndexPosition + (hitCount + 1) * 4;
+        }
+
+        int getHitCount(){
+            return hitCount;
+        }
+
+        long getTime(int index){
+            return buffer.getLong(timeIndexPosition + index * 8);
+        }
+
+        /**
+         * First hit index with time >= time ( inclusive ) or time > time ( !inclusive )
+         */
+        int search(long time, boolean inclusive){
+            int low = 0;
+            int high = hitCount;
+            while(low < high){
+                int mid = (low + high) >>> 1;
+                long midTime = getTime(mid);
+                if(midTime < time || (!inclusive && midTime == time)){
+                    low = mid + 1;
+                }else{
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        ElasticSearchDataInfo getDataInfo(int index){
+
+            ByteBuffer view = buffer.duplicate();
+            view.position(dataPosition + buffer.getInt(offsetIndexPosition + index * 4));
+
+            ElasticSearchDataInfo elasticSearchDataInfo = new ElasticSearchDataInfo();
+            elasticSearchDataInfo.setTime(getTime(index));
+            elasticSearchDataInfo.setTimeStr(readString(view));
+            elasticSearchDataInfo.setHost(readString(view));
+            elasticSearchDataInfo.setFileName(readString(view));
+            elasticSearchDataInfo.setMessage(readString(view));
+
+            return elasticSearchDataInfo;
+        }
+
+        /**
+         * Segment window covers [startTime, endTime] ( endExclusive : [startTime, endTime) ) of the same filters
+         */
+        boolean covers(String filterKey, long startTime, long endTime, boolean endExclusive){
+            return this.filterKey.equals(filterKey) && startTime >= this.startTime
+                    && (endTime < this.endTime || (endTime == this.endTime && (endExclusive || !this.endExclusive)));
+        }
+    }
+
+    private ElasticSearchSegmentCache(String esHost, int esPort, Path directory, long maxBytes, long settleMs) {
+        this.esHost = esHost;
+        this.esPort = esPort;
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.settleMs = settleMs;
+
+        this.fillExecutor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(FILL_QUEUE_SIZE), runnable -> {
+            Thread thread = new Thread(runnable, "es-segment-fill-" + getKey(esHost, esPort));
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.fillExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Start segment cache of host:port with default settings ( 1GB, windows closed for 10 minutes )
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param directory - Cache directory ( segments of host:port are kept in a sub directory )
+     * @return
+     */
+    public static ElasticSearchSegmentCache start(String esHost, int esPort, Path directory){
+        return start(esHost, esPort, directory, DEFAULT_MAX_BYTES, DEFAULT_SETTLE_MS);
+    }
+
+    /**
+     * Start segment cache of host:port ( segments left by a previous run are loaded )
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param directory - Cache directory ( segments of host:port are kept in a sub directory )
+     * @param maxBytes - Max segment bytes on disk ( LRU eviction )
+     * @param settleMs - Window end age before caching (ms), later documents are not seen by cached searches
+     * @return running cache of host:port ( an existing cache is returned as is )
+     */
+    public static ElasticSearchSegmentCache start(String esHost, int esPort, Path directory, long maxBytes, long settleMs){
+
+        return CACHE_MAP.computeIfAbsent(getKey(esHost, esPort), key -> {
+            try{
+                ElasticSearchSegmentCache cache = new ElasticSearchSegmentCache(esHost, esPort, directory.resolve(esHost + "_" + esPort), maxBytes, settleMs);
+                cache.load();
+                return cache;
+            }catch (Exception e){
+                logger.error(ExceptionUtils.getStackTrace(e));
+                throw new IllegalArgumentException("Segment cache start fail : " + key, e);
+            }
+        });
+    }
+
+    /**
+     * Running cache of host:port
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @return null : no cache
+     */
+    public static ElasticSearchSegmentCache get(String esHost, int esPort){
+        return CACHE_MAP.isEmpty() ? null : CACHE_MAP.get(getKey(esHost, esPort));
+    }
+
+    /**
+     * Stop segment cache of host:port ( segment files are kept )
+     *
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     */
+    public static void stop(String esHost, int esPort){
+        ElasticSearchSegmentCache cache = CACHE_MAP.remove(getKey(esHost, esPort));
+        if(cache != null){
+            cache.release();
+        }
+    }
+
+    @Override
+    public void close(){
+        CACHE_MAP.remove(getKey(esHost, esPort), this);
+        release();
+    }
+
+    public void setMaxSegmentHits(int maxSegmentHits) {
+        this.maxSegmentHits = maxSegmentHits;
+    }
+
+    public int getMaxSegmentHits() {
+        return maxSegmentHits;
+    }
+
+    /**
+     * Segment count
+     *
+     * @return
+     */
+    public synchronized int size(){
+        return segmentMap.size();
+    }
+
+    /**
+     * Segment file is cached
+     *
+     * @param fileName - Segment file name
+     * @return
+     */
+    synchronized boolean contains(String fileName){
+        return segmentMap.containsKey(fileName);
+    }
+
+    /**
+     * Segment bytes on disk
+     *
+     * @return
+     */
+    public synchronized long getTotalBytes(){
+        return totalBytes;
+    }
+
+    /**
+     * Delete every segment file
+     */
+    public synchronized void clear(){
+        for(Segment segment : segmentMap.values()){
+            delete(segment.path);
+        }
+        segmentMap.clear();
+        skipMap.clear();
+        totalBytes = 0;
+    }
+
+    private synchronized void release(){
+        fillExecutor.shutdownNow();
+        segmentMap.clear();
+        totalBytes = 0;
+    }
+
+    /**
+     * Search of a closed window ( page of the cached hits, an uncached window is queued for a background fill )
+     *
+     * @param querySpec - Query Spec
+     * @param pagingSize - Page Size
+     * @param pageNum - Select page num
+     * @return null : not answerable ( open window, window not filled yet, window over maxSegmentHits )
+     */
+    ElasticSearchDataListInfo search(ElasticSearchQuerySpec querySpec, int pagingSize, int pageNum){
+
+        if(querySpec.getEndTime() > System.currentTimeMillis() - settleMs){
+            return null;
+        }
+
+        long start = System.nanoTime();
+
+        try{
+            String filterKey = getFilterKey(querySpec);
+
+            Segment segment = find(filterKey, querySpec);
+            if(segment == null){
+                fillAsync(filterKey, querySpec);
+                return null;
+            }
+
+            // hit range of the request
+            int from = segment.search(querySpec.getStartTime(), true);
+            int to = segment.search(querySpec.getEndTime(), querySpec.isEndExclusive());
+
+            int size = ElasticSearchSearchUtil.getPagingSize(pagingSize);
+            boolean desc = StringUtils.equals(querySpec.getSort(), ElasticSearchSearchUtil.SORT_DESC);
+
+            ElasticSearchDataListInfo elasticSearchDataListInfo = new ElasticSearchDataListInfo();
+            elasticSearchDataListInfo.setTotalCount(to - from);
+
+            long pageStart = (long) Math.max(0, pageNum - 1) * size;
+            for(long i = pageStart; i < pageStart + size && i < to - from; i++){
+
+                ElasticSearchDataInfo elasticSearchDataInfo = segment.getDataInfo(desc ? to - 1 - (int) i : from + (int) i);
+
+                elasticSearchDataListInfo.addDataList(elasticSearchDataInfo);
+                elasticSearchDataListInfo.addMessageList(ElasticSearchSearchUtil.getMessage(elasticSearchDataInfo));
+            }
+
+            elasticSearchDataListInfo = ElasticSearchSearchUtil.setPagingData(elasticSearchDataListInfo, pagingSize, pageNum);
+            elasticSearchDataListInfo.setElapsedMsTime((System.nanoTime()-start)/ 1000000.0);
+
+            return elasticSearchDataListInfo;
+
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
+            return null;
+        }
+    }
+
+    /**
+     * Cached segment covering the request window
+     */
+    private synchronized Segment find(String filterKey, ElasticSearchQuerySpec querySpec){
+
+        for(Map.Entry<String, Segment> entry : segmentMap.entrySet()){
+
+            Segment segment = entry.getValue();
+
+            if(segment.covers(filterKey, querySpec.getStartTime(), querySpec.getEndTime(), querySpec.isEndExclusive())){
+
+                // access order ( in memory & across restarts )
+                segmentMap.get(entry.getKey());
+                touch(segment.path);
+
+                return segment;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Queue a background fill of the request window ( skipped when over maxSegmentHits, already queued or the queue is full )
+     */
+    private void fillAsync(String filterKey, ElasticSearchQuerySpec querySpec) throws Exception{
+
+        String fileName = getFileName(filterKey, querySpec);
+
+        synchronized (this){
+            if(skipMap.containsKey(fileName) || !fillingSet.add(fileName)){
+                return;
+            }
+        }
+
+        try{
+            fillExecutor.execute(() -> {
+                try{
+                    fill(fileName, filterKey, querySpec);
+                }catch (Exception e){
+                    logger.error(ExceptionUtils.getStackTrace(e));
+                }
+            });
+        }catch (RejectedExecutionException e){
+            synchronized (this){
+                fillingSet.remove(fileName);
+            }
+        }
+    }
+
+    /**
+     * Stream every hit of the request window into a new segment ( fileName is in fillingSet, removed at the end )
+     */
+    private void fill(String fileName, String filterKey, ElasticSearchQuerySpec querySpec) throws Exception{
+
+        try(ElasticSearchScrollIterator iterator = new ElasticSearchScrollIterator(ElasticSearchClientRegistry.getClient(esHost, esPort),
+                ElasticSearchSearchUtil.getSegmentSearchRequest(querySpec), ElasticSearchSearchUtil.DEFAULT_SCROLL_KEEP_ALIVE,
+                ElasticSearchMetrics.start(ElasticSearchSearchUtil.getMetricsName(querySpec, "segmentFill"), null))){
+
+            if(iterator.getTotalCount() > maxSegmentHits){
+                synchronized (this){
+                    skipMap.put(fileName, Boolean.TRUE);
+                }
+                logger.debug("Segment skip " + querySpec + " : " + iterator.getTotalCount() + " hits > " + maxSegmentHits);
+                return;
+            }
+
+            Segment segment = write(fileName, filterKey, querySpec, iterator);
+            if(segment != null){
+                logger.debug("Segment fill " + querySpec + " : " + segment.hitCount + " hits, " + segment.bytes + " bytes");
+            }
+
+        }finally {
+            synchronized (this){
+                fillingSet.remove(fileName);
+            }
+        }
+    }
+
+    /**
+     * Write hits ( ascending time ) of the request window into a new segment and add it to the cache
+     *
+     * @param fileName - Segment file name ( getFileName )
+     * @param filterKey - Filter key ( getFilterKey )
+     * @param querySpec - Query Spec ( window )
+     * @param hitIterator - Hits ordered by time, _uid
+     * @return null : window over the segment bytes ( skipped )
+     */
+    Segment write(String fileName, String filterKey, ElasticSearchQuerySpec querySpec, Iterator<ElasticSearchDataInfo> hitIterator) throws Exception{
+
+        Files.createDirectories(directory);
+
+        Path dataPath = directory.resolve(fileName + ".data" + TEMP_SUFFIX);
+        Path tempPath = directory.resolve(fileName + TEMP_SUFFIX);
+
+        try{
+            long[] times = new long[1024];
+            int[] offsets = new int[1025];
+            int hitCount = 0;
+
+            // hit data
+            try(DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(dataPath)))){
+
+                while (hitIterator.hasNext()){
+
+                    ElasticSearchDataInfo elasticSearchDataInfo = hitIterator.next();
+
+                    if(hitCount == times.length){
+                        times = Arrays.copyOf(times, times.length << 1);
+                        offsets = Arrays.copyOf(offsets, offsets.length << 1);
+                    }
+
+                    times[hitCount] = elasticSearchDataInfo.getTime();
+
+                    writeString(output, elasticSearchDataInfo.getTimeStr());
+                    writeString(output, elasticSearchDataInfo.getHost());
+                    writeString(output, elasticSearchDataInfo.getFileName());
+                    writeString(output, elasticSearchDataInfo.getMessage());
+
+                    hitCount++;
+
+                    // mapped segment ( int offsets ) & disk limit
+                    if(output.size() > Math.min(maxBytes, MAX_SEGMENT_BYTES)){
+                        synchronized (this){
+                            skipMap.put(fileName, Boolean.TRUE);
+                        }
+                        logger.debug("Segment skip " + querySpec + " : over " + Math.min(maxBytes, MAX_SEGMENT_BYTES) + " bytes");
+                        return null;
+                    }
+                    offsets[hitCount] = output.size();
+                }
+            }
+
+            // header & indexes, then hit data
+            byte[] filterKeyBytes = filterKey.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer header = ByteBuffer.allocate(33 + filterKeyBytes.length + hitCount * 8 + (hitCount + 1) * 4);
+            header.putInt(MAGIC).putInt(VERSION);
+            header.putLong(querySpec.getStartTime()).putLong(querySpec.getEndTime()).put((byte) (querySpec.isEndExclusive() ? 1 : 0));
+            header.putInt(filterKeyBytes.length).put(filterKeyBytes);
+            header.putInt(hitCount);
+            for(int i = 0; i < hitCount; i++){
+                header.putLong(times[i]);
+            }
+            for(int i = 0; i <= hitCount; i++){
+                header.putInt(offsets[i]);
+            }
+            header.flip();
+
+            try(FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                FileChannel dataChannel = FileChannel.open(dataPath, StandardOpenOption.READ)){
+
+                while(header.hasRemaining()){
+                    channel.write(header);
+                }
+
+                long position = 0;
+                long dataSize = dataChannel.size();
+                while(position < dataSize){
+                    position += dataChannel.transferTo(position, dataSize - position, channel);
+                }
+
+                channel.force(true);
+            }
+
+            Path path = directory.resolve(fileName);
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            Segment segment = new Segment(path);
+
+            synchronized (this){
+                add(fileName, segment);
+                evict();
+            }
+
+            return segment;
+
+        }finally {
+            delete(dataPath);
+            delete(tempPath);
+        }
+    }
+
+    /**
+     * Load segments of a previous run ( oldest access first )
+     */
+    private synchronized void load() throws IOException{
+
+        Files.createDirectories(directory);
+
+        File[] files = directory.toFile().listFiles();
+        if(files == null){
+            return;
+        }
+
+        ArrayList<File> segmentFileList = new ArrayList<>();
+        for(File file : files){
+            if(file.getName().endsWith(TEMP_SUFFIX)){
+                delete(file.toPath());
+            }else if(file.getName().endsWith(SEGMENT_SUFFIX)){
+                segmentFileList.add(file);
+            }
+        }
+
+        segmentFileList.sort((file1, file2) -> Long.compare(file1.lastModified(), file2.lastModified()));
+
+        for(File file : segmentFileList){
+            try{
+                add(file.getName(), new Segment(file.toPath()));
+            }catch (Exception e){
+                logger.error("Segment load fail : " + file + "\n" + ExceptionUtils.getStackTrace(e));
+                delete(file.toPath());
+            }
+        }
+
+        evict();
+
+        logger.info("Segment cache " + getKey(esHost, esPort) + " : " + segmentMap.size() + " segments, " + totalBytes + " bytes");
+    }
+
+    private void add(String fileName, Segment segment){
+        Segment replaced = segmentMap.put(fileName, segment);
+        if(replaced != null){
+            totalBytes -= replaced.bytes;
+        }
+        totalBytes += segment.bytes;
+    }
+
+    /**
+     * Delete least recently used segments over maxBytes
+     */
+    private void evict(){
+        while(totalBytes > maxBytes && !segmentMap.isEmpty()){
+            Map.Entry<String, Segment> eldest = segmentMap.entrySet().iterator().next();
+            segmentMap.remove(eldest.getKey());
+            totalBytes -= eldest.getValue().bytes;
+            delete(eldest.getValue().path);
+        }
+    }
+
+    /**
+     * Filters of the request ( query context & host & file & message, time range and sort excluded )
+     * Host / file lists are sorted ( same terms in another order -> same segment )
+     */
+    static String getFilterKey(ElasticSearchQuerySpec querySpec){
+        return ElasticSearchSearchUtil.getQueryContext() + "|" + getSortedList(querySpec.getHostList()) + "|" + getSortedList(querySpec.getFileList()) + "|" + querySpec.getMessageFilter();
+    }
+
+    private static List<String> getSortedList(List<String> list){
+
+        if(list == null || list.size() < 2){
+            return list;
+        }
+
+        ArrayList<String> sortedList = new ArrayList<>(list);
+        sortedList.sort(Comparator.nullsFirst(Comparator.naturalOrder()));
+
+        return sortedList;
+    }
+
+    /**
+     * sha1( filter key ) _ start _ end _ ( e : end exclusive, i : end inclusive ) .seg
+     */
+    static String getFileName(String filterKey, ElasticSearchQuerySpec querySpec) throws Exception{
+
+        byte[] digest = MessageDigest.getInstance("SHA-1").digest(filterKey.getBytes(StandardCharsets.UTF_8));
+
+        StringBuilder fileName = new StringBuilder();
+        for(byte b : digest){
+            fileName.append(String.format("%02x", b));
+        }
+
+        return fileName.append("_").append(querySpec.getStartTime()).append("_").append(querySpec.getEndTime())
+                .append(querySpec.isEndExclusive() ? "_e" : "_i").append(SEGMENT_SUFFIX).toString();
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException{
+        if(value == null){
+            output.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(ByteBuffer view){
+        int length = view.getInt();
+        if(length < 0){
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void touch(Path path){
+        try{
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+        }catch (Exception e){
+            logger.debug("Segment touch fail : " + path);
+        }
+    }
+
+    private static void delete(Path path){
+        try{
+            Files.deleteIfExists(path);
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
+        }
+    }
+
+    private static String getKey(String esHost, int esPort){
+        return esHost + ":" + esPort;
+    }
+}
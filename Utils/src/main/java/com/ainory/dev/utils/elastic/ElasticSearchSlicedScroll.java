@@ -0,0 +1,274 @@
+package com.ainory.dev.utils.elastic;
+
+import com.ainory.dev.utils.elastic.entity.ElasticSearchDataInfo;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.slice.SliceBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * ElasticSearch Sliced Scroll
+ *
+ * Splits one scroll query into N slices fetched concurrently.
+ * Every slice hands its scroll batches to the calling thread through a bounded queue,
+ * the calling thread merges them by @timestamp ( comparator ) or passes them through unordered.
+ * The consumer is always called from the calling thread.
+ *
+ * The ordered merge waits on every slice, so it runs the slices on a pool of sliceCount daemon threads owned by the export
+ * ( shut down when the export returns ).
+ * Unordered slices share one queue and run on the given executor ( any pool size ).
+ */
+class ElasticSearchSlicedScroll {
+
+    private static final Logger logger = LoggerFactory.getLogger(ElasticSearchSlicedScroll.class);
+
+    // Batches buffered per slice
+    private static final int QUEUE_CAPACITY = 2;
+    private static final long POLL_MS = 100;
+
+    private static final ArrayList<ElasticSearchDataInfo> END_OF_SLICE = new ArrayList<>(0);
+
+    private final RestHighLevelClient restHighLevelClient;
+    private final SearchRequest searchRequest;
+    private final int sliceCount;
+    private final TimeValue keepAlive;
+
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+    private final AtomicReference<Exception> error = new AtomicReference<>();
+    private final AtomicLong totalCount = new AtomicLong(0);
+
+    private static class SliceCursor {
+        private final int sliceId;
+        private final BlockingQueue<ArrayList<ElasticSearchDataInfo>> queue;
+        private ArrayList<ElasticSearchDataInfo> batch;
+        private int index;
+
+        private SliceCursor(int sliceId, BlockingQueue<ArrayList<ElasticSearchDataInfo>> queue) {
+            this.sliceId = sliceId;
+            this.queue = queue;
+        }
+
+        private ElasticSearchDataInfo head(){
+            return batch.get(index);
+        }
+    }
+
+    /**
+     * @param restHighLevelClient - Client
+     * @param searchRequest - Search Request ( query, sort, size : scroll batch size )
+     * @param sliceCount - Slice Count
+     * @param keepAlive - Scroll keep alive
+     */
+    ElasticSearchSlicedScroll(RestHighLevelClient restHighLevelClient, SearchRequest searchRequest, int sliceCount, TimeValue keepAlive) {
+        this.restHighLevelClient = restHighLevelClient;
+        this.searchRequest = searchRequest;
+        this.sliceCount = sliceCount;
+        this.keepAlive = keepAlive;
+    }
+
+    /**
+     * Export every hit to consumer
+     *
+     * @param executorService - Slice fetch executor of unordered export ( at least sliceCount threads for full parallelism, ordered : not used )
+     * @param comparator - Merge order ( null : unordered )
+     * @param consumer - Hit Consumer
+     * @return total hit count
+     * @throws Exception
+     */
+    long export(ExecutorService executorService, Comparator<ElasticSearchDataInfo> comparator, Consumer<ElasticSearchDataInfo> consumer) throws Exception{
+
+        try{
+            if(comparator == null){
+                exportUnordered(executorService, consumer);
+            }else {
+                exportOrdered(comparator, consumer);
+            }
+
+            if(error.get() != null){
+                throw error.get();
+            }
+
+            return totalCount.get();
+        }finally {
+            // stop producers ( consumer fail / interrupted )
+            cancelled.set(true);
+        }
+    }
+
+    private void exportUnordered(ExecutorService executorService, Consumer<ElasticSearchDataInfo> consumer) throws Exception{
+
+        BlockingQueue<ArrayList<ElasticSearchDataInfo>> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY * sliceCount);
+
+        for(int sliceId = 0; sliceId < sliceCount; sliceId++){
+            executorService.submit(getSliceTask(sliceId, queue));
+        }
+
+        int endCount = 0;
+        while (endCount < sliceCount){
+
+            ArrayList<ElasticSearchDataInfo> batch = take(queue);
+
+            if(batch == END_OF_SLICE){
+                endCount++;
+                continue;
+            }
+
+            for(ElasticSearchDataInfo elasticSearchDataInfo : batch){
+                consumer.accept(elasticSearchDataInfo);
+            }
+        }
+    }
+
+    private void exportOrdered(Comparator<ElasticSearchDataInfo> comparator, Consumer<ElasticSearchDataInfo> consumer) throws Exception{
+
+        ArrayList<SliceCursor> sliceCursorList = new ArrayList<>(sliceCount);
+
+        for(int sliceId = 0; sliceId < sliceCount; sliceId++){
+            SliceCursor sliceCursor = new SliceCursor(sliceId, new ArrayBlockingQueue<>(QUEUE_CAPACITY));
+            sliceCursorList.add(sliceCursor);
+        }
+
+        // one thread per slice : the merge needs every slice running at the same time
+        AtomicInteger threadCount = new AtomicInteger(0);
+        ExecutorService sliceExecutorService = Executors.newFixedThreadPool(sliceCount, runnable -> {
+            Thread thread = new Thread(runnable, "es-slice-" + threadCount.getAndIncrement() + "/" + sliceCount);
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try{
+            for(SliceCursor sliceCursor : sliceCursorList){
+                sliceExecutorService.execute(getSliceTask(sliceCursor.sliceId, sliceCursor.queue));
+            }
+
+            merge(sliceCursorList, comparator, consumer);
+        }finally {
+            cancelled.set(true);
+            sliceExecutorService.shutdownNow();
+        }
+    }
+
+    private void merge(ArrayList<SliceCursor> sliceCursorList, Comparator<ElasticSearchDataInfo> comparator, Consumer<ElasticSearchDataInfo> consumer) throws Exception{
+
+        PriorityQueue<SliceCursor> mergeQueue = new PriorityQueue<>(sliceCount, (o1, o2) -> {
+            int compare = comparator.compare(o1.head(), o2.head());
+            return compare != 0 ? compare : Integer.compare(o1.sliceId, o2.sliceId);
+        });
+
+        for(SliceCursor sliceCursor : sliceCursorList){
+            if(nextBatch(sliceCursor)){
+                mergeQueue.add(sliceCursor);
+            }
+        }
+
+        while (!mergeQueue.isEmpty()){
+
+            SliceCursor sliceCursor = mergeQueue.poll();
+
+            consumer.accept(sliceCursor.head());
+            sliceCursor.batch.set(sliceCursor.index++, null);
+
+            if(sliceCursor.index < sliceCursor.batch.size() || nextBatch(sliceCursor)){
+                mergeQueue.add(sliceCursor);
+            }
+        }
+    }
+
+    private boolean nextBatch(SliceCursor sliceCursor) throws Exception{
+
+        ArrayList<ElasticSearchDataInfo> batch = take(sliceCursor.queue);
+
+        if(batch == END_OF_SLICE){
+            sliceCursor.batch = null;
+            return false;
+        }
+
+        sliceCursor.batch = batch;
+        sliceCursor.index = 0;
+
+        return true;
+    }
+
+    private Runnable getSliceTask(int sliceId, BlockingQueue<ArrayList<ElasticSearchDataInfo>> queue){
+
+        return () -> {
+
+            SearchRequest sliceSearchRequest = new SearchRequest(searchRequest.indices());
+            sliceSearchRequest.indicesOptions(searchRequest.indicesOptions());
+            sliceSearchRequest.source(searchRequest.source().copyWithNewSlice(new SliceBuilder(sliceId, sliceCount)));
+
+            int batchSize = Math.max(1, searchRequest.source().size());
+
+            try(ElasticSearchScrollIterator iterator = new ElasticSearchScrollIterator(restHighLevelClient, sliceSearchRequest, keepAlive)){
+
+                totalCount.addAndGet(iterator.getTotalCount());
+
+                ArrayList<ElasticSearchDataInfo> batch = new ArrayList<>(batchSize);
+                while (!cancelled.get() && iterator.hasNext()){
+                    batch.add(iterator.next());
+
+                    if(batch.size() == batchSize){
+                        put(queue, batch);
+                        batch = new ArrayList<>(batchSize);
+                    }
+                }
+
+                if(!batch.isEmpty()){
+                    put(queue, batch);
+                }
+            }catch (Exception e){
+                logger.error("Slice " + sliceId + "/" + sliceCount + " fail : " + ExceptionUtils.getStackTrace(e));
+                error.compareAndSet(null, e);
+                cancelled.set(true);
+            }finally {
+                put(queue, END_OF_SLICE);
+            }
+        };
+    }
+
+    private void put(BlockingQueue<ArrayList<ElasticSearchDataInfo>> queue, ArrayList<ElasticSearchDataInfo> batch){
+
+        try{
+            while (!cancelled.get()){
+                if(queue.offer(batch, POLL_MS, TimeUnit.MILLISECONDS)){
+                    return;
+                }
+            }
+        }catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            cancelled.set(true);
+        }
+    }
+
+    private ArrayList<ElasticSearchDataInfo> take(BlockingQueue<ArrayList<ElasticSearchDataInfo>> queue) throws Exception{
+
+        while (true){
+            ArrayList<ElasticSearchDataInfo> batch = queue.poll(POLL_MS, TimeUnit.MILLISECONDS);
+
+            if(batch != null){
+                return batch;
+            }
+
+            if(error.get() != null){
+                throw error.get();
+            }
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package com.ainory.dev.utils.elastic;
+
+import com.ainory.dev.utils.elastic.entity.ElasticSearchDataInfo;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.search.SearchHit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.Collection;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ElasticSearch Tail Session ( tail -f )
+ *
+ * Polls with search_after on ( @timestamp, _uid ) from the last delivered document, so every poll returns new documents only
+ * and its cost follows the new log volume, not the window size.
+ * Poll interval is adaptive : minPollIntervalMs while documents arrive, doubled on every empty poll up to maxPollIntervalMs.
+ * Documents are delivered through a bounded buffer, polling pauses while the buffer is full ( nothing is dropped ).
+ *
+ * A poll reads up to now - lagMs only. A document becomes searchable after the index refresh ( 1s by default ) and reaches
+ * the cluster after its ingest delay ( shipper batching, queues ), so it can show up with a @timestamp older than documents
+ * already visible. Reading the lagMs old edge only ( default DEFAULT_LAG_MS ) keeps search_after from moving past it.
+ * Documents made visible more than lagMs after their @timestamp are not delivered : raise lagMs for slow pipelines.
+ */
+public class ElasticSearchTailSession implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ElasticSearchTailSession.class);
+
+    public static final long DEFAULT_MIN_POLL_INTERVAL_MS = 500;
+    public static final long DEFAULT_MAX_POLL_INTERVAL_MS = 10000;
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    // refresh interval ( 1s ) + typical ingest delay
+    public static final long DEFAULT_LAG_MS = 5000;
+
+    private final String esHost;
+    private final int esPort;
+    private final ElasticSearchQuerySpec querySpec;
+    private final BlockingQueue<ElasticSearchDataInfo> queue;
+
+    // read by the poller thread on every poll
+    private volatile long minPollIntervalMs = DEFAULT_MIN_POLL_INTERVAL_MS;
+    private volatile long maxPollIntervalMs = DEFAULT_MAX_POLL_INTERVAL_MS;
+    private volatile int batchSize = DEFAULT_BATCH_SIZE;
+    private volatile long lagMs = DEFAULT_LAG_MS;
+
+    private ScheduledExecutorService scheduler;
+
+    // Poller thread only
+    private Object[] lastSortValues;
+    private long lastTime;
+
+    private volatile long pollIntervalMs;
+    private volatile long deliveredCount = 0;
+    private volatile boolean running = false;
+
+    /**
+     * @param esHost - ElasticSearch HTTP Host
+     * @param esPort - ElasticSearch HTTP Port
+     * @param querySpec - Query Spec ( startTime : tail start, endTime / sort ignored )
+     * @param bufferSize - Delivery buffer size
+     */
+    public ElasticSearchTailSession(String esHost, int esPort, ElasticSearchQuerySpec querySpec, int bufferSize) {
+        this.esHost = esHost;
+        this.esPort = esPort;
+        this.querySpec = querySpec.sort(ElasticSearchSearchUtil.SORT_ASC);
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, bufferSize));
+        this.lastTime = querySpec.getStartTime();
+    }
+
+    /**
+     * Start polling ( daemon thread )
+     */
+    public synchronized void start(){
+
+        if(scheduler != null){
+            return;
+        }
+
+        pollIntervalMs = minPollIntervalMs;
+        running = true;
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "es-tail-" + esHost + ":" + esPort);
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.execute(this::fetchAndSchedule);
+    }
+
+    /**
+     * Next document
+     *
+     * @param timeout
+     * @param unit
+     * @return null : no document within timeout
+     * @throws InterruptedException
+     */
+    public ElasticSearchDataInfo poll(long timeout, TimeUnit unit) throws InterruptedException{
+        return queue.poll(timeout, unit);
+    }
+
+    /**
+     * Buffered documents ( non blocking )
+     *
+     * @param collection - Target
+     * @param maxCount - Max document count
+     * @return drained document count
+     */
+    public int drainTo(Collection<? super ElasticSearchDataInfo> collection, int maxCount){
+        return queue.drainTo(collection, maxCount);
+    }
+
+    private void fetchAndSchedule(){
+
+        if(!running){
+            return;
+        }
+
+        int size = batchSize;
+
+        try{
+            int hitCount = fetch(size);
+
+            // catch up without waiting while full batches arrive
+            if(hitCount == size){
+                pollIntervalMs = 0;
+            }else if(hitCount > 0){
+                pollIntervalMs = minPollIntervalMs;
+            }else{
+                pollIntervalMs = Math.min(Math.max(pollIntervalMs, minPollIntervalMs) * 2, maxPollIntervalMs);
+            }
+
+        }catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            return;
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
+            pollIntervalMs = maxPollIntervalMs;
+        }
+
+        try{
+            if(running){
+                scheduler.schedule(this::fetchAndSchedule, pollIntervalMs, TimeUnit.MILLISECONDS);
+            }
+        }catch (RejectedExecutionException e){
+            // closed
+        }
+    }
+
+    /**
+     * One poll ( lastTime <= @timestamp <= now - lagMs, after last delivered document )
+     *
+     * @param size - Max documents
+     * @return hit count
+     * @throws Exception
+     */
+    private int fetch(int size) throws Exception{
+
+        long endTime = System.currentTimeMillis() - lagMs;
+
+        // tail start not settled yet
+        if(endTime < lastTime){
+            return 0;
+        }
+
+        RestHighLevelClient restHighLevelClient = ElasticSearchClientRegistry.getClient(esHost, esPort);
+
+        SearchResponse searchResponse = restHighLevelClient.search(ElasticSearchSearchUtil.getSearchAfterRequest(
+                querySpec.between(lastTime, endTime), size, lastSortValues));
+
+        SearchHit[] searchHits = searchResponse.getHits().getHits();
+
+        for(SearchHit hit : searchHits){
+
+            // blocks while the buffer is full
+            queue.put(ElasticSearchSearchUtil.getDataInfo(hit));
+
+            lastSortValues = hit.getSortValues();
+            lastTime = ((Number) lastSortValues[0]).longValue();
+            deliveredCount++;
+        }
+
+        return searchHits.length;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Delivered ( buffered ) document count
+     *
+     * @return
+     */
+    public long getDeliveredCount() {
+        return deliveredCount;
+    }
+
+    public long getPollIntervalMs() {
+        return pollIntervalMs;
+    }
+
+    public long getMinPollIntervalMs() {
+        return minPollIntervalMs;
+    }
+
+    /**
+     * @param minPollIntervalMs - Poll interval while documents arrive ( applied from the next poll )
+     */
+    public void setMinPollIntervalMs(long minPollIntervalMs) {
+        this.minPollIntervalMs = minPollIntervalMs;
+    }
+
+    public long getMaxPollIntervalMs() {
+        return maxPollIntervalMs;
+    }
+
+    /**
+     * @param maxPollIntervalMs - Poll interval upper bound when idle ( applied from the next poll )
+     */
+    public void setMaxPollIntervalMs(long maxPollIntervalMs) {
+        this.maxPollIntervalMs = maxPollIntervalMs;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @param batchSize - Max documents per poll ( applied from the next poll )
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public long getLagMs() {
+        return lagMs;
+    }
+
+    /**
+     * @param lagMs - Age of the newest polled documents (ms) : refresh interval + ingest delay ( applied from the next poll )
+     */
+    public void setLagMs(long lagMs) {
+        this.lagMs = Math.max(0, lagMs);
+    }
+
+    /**
+     * Stop polling ( buffered documents can still be polled )
+     */
+    @Override
+    public synchronized void close() {
+
+        running = false;
+
+        if(scheduler != null){
+            scheduler.shutdownNow();
+        }
+    }
+}
@@ -1,25 +1,39 @@
 package com.ainory.dev.utils.elastic.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
+ * Series are kept in seriesMap ( columnar ). aggregationMap / aggregationObjectMap are legacy views :
+ * each get builds a read only view from seriesMap ( ElasticSearchLegacyViews ), changing a returned map, list or bucket
+ * throws UnsupportedOperationException ( use putSeries / putAggregationMap / putAggregationObjectMap ).
+ * Hold the returned map instead of calling the getter per key.
+ * JSON : aggregationMap and aggregationObjectMap ( same data, with a timeStr per bucket ), built when serialized.
+ *
  * @author ainory on 2017. 10. 19..
  */
 public class ElasticSearchAggregationListInfo {
 
     private double elapsedMsTime = 0.0;
 
-    //               key   ,         x or y, value
-    private  HashMap<String, HashMap<String, ArrayList<Long>>> aggregationMap = new HashMap<>();
-    private  HashMap<String, ArrayList<ElasticSearchAggregationInfo>> aggregationObjectMap = new HashMap<>();
+    //                     key   , columnar series
+    private LinkedHashMap<String, ElasticSearchAggregationSeries> seriesMap = new LinkedHashMap<>();
 
     private String requestStartTime;
     private String requestEndTime;
 
+    // effective resolution ( series buckets )
     private int period;
     private String periodUnit;
 
+    // requested resolution ( coarsened to period / periodUnit when the range has too many buckets )
+    private int requestPeriod;
+    private String requestPeriodUnit;
+
     public double getElapsedMsTime() {
         return elapsedMsTime;
     }
@@ -28,28 +42,63 @@ public class ElasticSearchAggregationListInfo {
         this.elapsedMsTime = elapsedMsTime;
     }
 
+    @JsonIgnore
+    public LinkedHashMap<String, ElasticSearchAggregationSeries> getSeriesMap() {
+        return seriesMap;
+    }
+
+    public void setSeriesMap(LinkedHashMap<String, ElasticSearchAggregationSeries> seriesMap) {
+        this.seriesMap = seriesMap;
+    }
+
+    public ElasticSearchAggregationSeries getSeries(String key) {
+        return seriesMap.get(key);
+    }
+
+    public void putSeries(String key, ElasticSearchAggregationSeries series) {
+        this.seriesMap.put(key, series);
+    }
+
+    /**
+     * Legacy x / y view of seriesMap ( read only, built on every call )
+     *
+     * @return
+     */
     public HashMap<String, HashMap<String, ArrayList<Long>>> getAggregationMap() {
-        return aggregationMap;
+        return ElasticSearchLegacyViews.aggregationMap(seriesMap);
     }
 
     public void setAggregationMap(HashMap<String, HashMap<String, ArrayList<Long>>> aggregationMap) {
-        this.aggregationMap = aggregationMap;
+        LinkedHashMap<String, ElasticSearchAggregationSeries> seriesMap = new LinkedHashMap<>();
+        for(Map.Entry<String, HashMap<String, ArrayList<Long>>> entry : aggregationMap.entrySet()){
+            seriesMap.put(entry.getKey(), ElasticSearchAggregationSeries.of(entry.getValue().get("x"), entry.getValue().get("y")));
+        }
+        setSeriesMap(seriesMap);
     }
 
     public void putAggregationMap(String key, HashMap<String, ArrayList<Long>> aggregationMap) {
-        this.aggregationMap.put(key, aggregationMap);
+        putSeries(key, ElasticSearchAggregationSeries.of(aggregationMap.get("x"), aggregationMap.get("y")));
     }
 
+    /**
+     * Legacy object view of seriesMap ( read only, built on every call )
+     *
+     * @return
+     */
     public HashMap<String, ArrayList<ElasticSearchAggregationInfo>> getAggregationObjectMap() {
-        return aggregationObjectMap;
+        return ElasticSearchLegacyViews.aggregationObjectMap(seriesMap);
     }
 
     public void setAggregationObjectMap(HashMap<String, ArrayList<ElasticSearchAggregationInfo>> aggregationObjectMap) {
-        this.aggregationObjectMap = aggregationObjectMap;
+        LinkedHashMap<String, ElasticSearchAggregationSeries> seriesMap = new LinkedHashMap<>();
+        for(Map.Entry<String, ArrayList<ElasticSearchAggregationInfo>> entry : aggregationObjectMap.entrySet()){
+            seriesMap.put(entry.getKey(), ElasticSearchAggregationSeries.of(entry.getValue()));
+        }
+        setSeriesMap(seriesMap);
     }
 
     public void putAggregationObjectMap(String key, ArrayList<ElasticSearchAggregationInfo> aggregationObjectMap) {
-        this.aggregationObjectMap.put(key, aggregationObjectMap);
+        putSeries(key, ElasticSearchAggregationSeries.of(aggregationObjectMap));
     }
 
     public String getRequestStartTime() {
@@ -83,4 +132,20 @@ public class ElasticSearchAggregationListInfo {
     public void setPeriodUnit(String periodUnit) {
         this.periodUnit = periodUnit;
     }
+
+    public int getRequestPeriod() {
+        return requestPeriod;
+    }
+
+    public void setRequestPeriod(int requestPeriod) {
+        this.requestPeriod = requestPeriod;
+    }
+
+    public String getRequestPeriodUnit() {
+        return requestPeriodUnit;
+    }
+
+    public void setRequestPeriodUnit(String requestPeriodUnit) {
+        this.requestPeriodUnit = requestPeriodUnit;
+    }
 }
@@ -0,0 +1,226 @@
+package com.ainory.dev.utils.elastic.entity;
+
+import org.apache.commons.lang3.time.FastDateFormat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.TimeZone;
+
+/**
+ * Aggregation time series ( columnar )
+ *
+ * Bucket times and counts are kept in primitive arrays ( time ascending ).
+ * timeStr is not stored, it is formatted on demand ( getTimeStr ).
+ */
+public class ElasticSearchAggregationSeries {
+
+    private static final String DATE_FORMAT_DEFAULT = "yyyy-MM-dd HH:mm:ss.SSS";
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private long[] times;
+    private long[] counts;
+    private int size = 0;
+
+    // timeStr time zone
+    private TimeZone timeZone = TimeZone.getTimeZone("Asia/Seoul");
+
+    public ElasticSearchAggregationSeries() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity - Initial bucket capacity
+     */
+    public ElasticSearchAggregationSeries(int capacity) {
+        this.times = new long[Math.max(1, capacity)];
+        this.counts = new long[Math.max(1, capacity)];
+    }
+
+    /**
+     * @param times - Bucket times ( epoch millis, ascending )
+     * @param counts - Bucket counts ( same length as times )
+     */
+    public ElasticSearchAggregationSeries(long[] times, long[] counts) {
+        if(times.length != counts.length){
+            throw new IllegalArgumentException("times.length(" + times.length + ") != counts.length(" + counts.length + ")");
+        }
+        this.times = times;
+        this.counts = counts;
+        this.size = times.length;
+    }
+
+    /**
+     * Append bucket
+     *
+     * @param time - Bucket time ( epoch millis )
+     * @param count - Doc count
+     */
+    public void add(long time, long count){
+        if(size == times.length){
+            int capacity = times.length << 1;
+            times = Arrays.copyOf(times, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+        }
+        times[size] = time;
+        counts[size] = count;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long getTime(int index) {
+        checkIndex(index);
+        return times[index];
+    }
+
+    public long getCount(int index) {
+        checkIndex(index);
+        return counts[index];
+    }
+
+    /**
+     * Bucket time string ( yyyy-MM-dd HH:mm:ss.SSS, timeZone )
+     *
+     * @param index
+     * @return
+     */
+    public String getTimeStr(int index) {
+        return FastDateFormat.getInstance(DATE_FORMAT_DEFAULT, timeZone).format(getTime(index));
+    }
+
+    public TimeZone getTimeZone() {
+        return timeZone;
+    }
+
+    public void setTimeZone(TimeZone timeZone) {
+        this.timeZone = timeZone;
+    }
+
+    public long getFirstTime() {
+        return getTime(0);
+    }
+
+    public long getLastTime() {
+        return getTime(size-1);
+    }
+
+    /**
+     * Bucket times ( trimmed to size, not copied )
+     *
+     * @return
+     */
+    public long[] getTimes() {
+        trim();
+        return times;
+    }
+
+    /**
+     * Bucket counts ( trimmed to size, not copied )
+     *
+     * @return
+     */
+    public long[] getCounts() {
+        trim();
+        return counts;
+    }
+
+    /**
+     * Boxed x list ( legacy aggregationMap "x" )
+     *
+     * @return
+     */
+    public ArrayList<Long> getXList() {
+        ArrayList<Long> xList = new ArrayList<>(size);
+        for(int i = 0; i < size; i++){
+            xList.add(times[i]);
+        }
+        return xList;
+    }
+
+    /**
+     * Boxed y list ( legacy aggregationMap "y" )
+     *
+     * @return
+     */
+    public ArrayList<Long> getYList() {
+        ArrayList<Long> yList = new ArrayList<>(size);
+        for(int i = 0; i < size; i++){
+            yList.add(counts[i]);
+        }
+        return yList;
+    }
+
+    /**
+     * Object list ( legacy aggregationObjectMap )
+     *
+     * @return
+     */
+    public ArrayList<ElasticSearchAggregationInfo> getObjectList() {
+        FastDateFormat fastDateFormat = FastDateFormat.getInstance(DATE_FORMAT_DEFAULT, timeZone);
+        ArrayList<ElasticSearchAggregationInfo> objectList = new ArrayList<>(size);
+        for(int i = 0; i < size; i++){
+            ElasticSearchAggregationInfo elasticSearchAggregationInfo = new ElasticSearchAggregationInfo();
+            elasticSearchAggregationInfo.setTime(times[i]);
+            elasticSearchAggregationInfo.setCount(counts[i]);
+            elasticSearchAggregationInfo.setTimeStr(fastDateFormat.format(times[i]));
+            objectList.add(elasticSearchAggregationInfo);
+        }
+        return objectList;
+    }
+
+    /**
+     * From legacy x / y lists
+     *
+     * @param xList - Bucket times
+     * @param yList - Bucket counts
+     * @return
+     */
+    public static ElasticSearchAggregationSeries of(ArrayList<Long> xList, ArrayList<Long> yList){
+        ElasticSearchAggregationSeries series = new ElasticSearchAggregationSeries(xList.size());
+        for(int i = 0; i < xList.size(); i++){
+            series.add(xList.get(i), yList.get(i));
+        }
+        return series;
+    }
+
+    /**
+     * From legacy object list
+     *
+     * @param objectList
+     * @return
+     */
+    public static ElasticSearchAggregationSeries of(ArrayList<ElasticSearchAggregationInfo> objectList){
+        ElasticSearchAggregationSeries series = new ElasticSearchAggregationSeries(objectList.size());
+        for(ElasticSearchAggregationInfo elasticSearchAggregationInfo : objectList){
+            series.add(elasticSearchAggregationInfo.getTime(), elasticSearchAggregationInfo.getCount());
+        }
+        return series;
+    }
+
+    private void trim(){
+        if(size != times.length){
+            times = Arrays.copyOf(times, size);
+            counts = Arrays.copyOf(counts, size);
+        }
+    }
+
+    private void checkIndex(int index){
+        if(index < 0 || index >= size){
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ElasticSearchAggregationSeries{" +
+                "size=" + size +
+                '}';
+    }
+}
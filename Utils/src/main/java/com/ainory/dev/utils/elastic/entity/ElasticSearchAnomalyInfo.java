@@ -0,0 +1,92 @@
+package com.ainory.dev.utils.elastic.entity;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * Aggregation bucket anomaly ( spike / drop of a series )
+ */
+public class ElasticSearchAnomalyInfo {
+
+    // series key ( aggregationMap key )
+    private String key;
+
+    private long time;
+    private String timeStr;
+    private long count;
+
+    // baseline before the bucket ( EWMA mean / stddev )
+    private double expected;
+    private double deviation;
+
+    // ( count - expected ) / deviation ( + : spike, - : drop )
+    private double score;
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public void setTime(long time) {
+        this.time = time;
+    }
+
+    public String getTimeStr() {
+        return timeStr;
+    }
+
+    public void setTimeStr(String timeStr) {
+        this.timeStr = timeStr;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public double getExpected() {
+        return expected;
+    }
+
+    public void setExpected(double expected) {
+        this.expected = expected;
+    }
+
+    public double getDeviation() {
+        return deviation;
+    }
+
+    public void setDeviation(double deviation) {
+        this.deviation = deviation;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    public void setScore(double score) {
+        this.score = score;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this)
+                .append("key", key)
+                .append("time", time)
+                .append("timeStr", timeStr)
+                .append("count", count)
+                .append("expected", expected)
+                .append("deviation", deviation)
+                .append("score", score)
+                .toString();
+    }
+}
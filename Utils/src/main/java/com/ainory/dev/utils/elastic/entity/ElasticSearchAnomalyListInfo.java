@@ -0,0 +1,79 @@
+package com.ainory.dev.utils.elastic.entity;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import java.util.ArrayList;
+
+/**
+ * Anomalies of an aggregation ( |score| desc )
+ */
+public class ElasticSearchAnomalyListInfo {
+
+    private double elapsedMsTime = 0.0;
+
+    // scanned series
+    private int keyCount = 0;
+
+    // newly closed buckets processed
+    private long bucketCount = 0;
+
+    // keys evicted by this call ( no new bucket for evictBuckets buckets )
+    private int evictedKeyCount = 0;
+
+    private ArrayList<ElasticSearchAnomalyInfo> anomalyList = new ArrayList<>();
+
+    public double getElapsedMsTime() {
+        return elapsedMsTime;
+    }
+
+    public void setElapsedMsTime(double elapsedMsTime) {
+        this.elapsedMsTime = elapsedMsTime;
+    }
+
+    public int getKeyCount() {
+        return keyCount;
+    }
+
+    public void setKeyCount(int keyCount) {
+        this.keyCount = keyCount;
+    }
+
+    public long getBucketCount() {
+        return bucketCount;
+    }
+
+    public void setBucketCount(long bucketCount) {
+        this.bucketCount = bucketCount;
+    }
+
+    public int getEvictedKeyCount() {
+        return evictedKeyCount;
+    }
+
+    public void setEvictedKeyCount(int evictedKeyCount) {
+        this.evictedKeyCount = evictedKeyCount;
+    }
+
+    public ArrayList<ElasticSearchAnomalyInfo> getAnomalyList() {
+        return anomalyList;
+    }
+
+    public void setAnomalyList(ArrayList<ElasticSearchAnomalyInfo> anomalyList) {
+        this.anomalyList = anomalyList;
+    }
+
+    public void addAnomalyList(ElasticSearchAnomalyInfo elasticSearchAnomalyInfo) {
+        this.anomalyList.add(elasticSearchAnomalyInfo);
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this)
+                .append("elapsedMsTime", elapsedMsTime)
+                .append("keyCount", keyCount)
+                .append("bucketCount", bucketCount)
+                .append("evictedKeyCount", evictedKeyCount)
+                .append("anomalyList", anomalyList)
+                .toString();
+    }
+}
@@ -14,6 +14,9 @@ public class ElasticSearchDataListInfo {
     private int currentPageCount = 0;
     private double elapsedMsTime = 0.0;
 
+    // search_after cursor of next page ( null : last page )
+    private String nextCursor;
+
     private ArrayList<ElasticSearchDataInfo> dataList = new ArrayList<>();
     private ArrayList<String> messageList = new ArrayList<>();
 
@@ -49,6 +52,14 @@ public class ElasticSearchDataListInfo {
         this.elapsedMsTime = elapsedMsTime;
     }
 
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
     public ArrayList<ElasticSearchDataInfo> getDataList() {
         return dataList;
     }
@@ -79,6 +90,7 @@ public class ElasticSearchDataListInfo {
                 .append("totalCount", totalCount)
                 .append("totalPageCount", totalPageCount)
                 .append("currentPageCount", currentPageCount)
+                .append("nextCursor", nextCursor)
                 .append("dataList", dataList)
                 .append("messageList", messageList)
                 .toString();
@@ -0,0 +1,308 @@
+package com.ainory.dev.utils.elastic.entity;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Read only legacy views of ElasticSearchAggregationListInfo seriesMap
+ *
+ * The legacy getters return HashMap / ArrayList / ElasticSearchAggregationInfo, a view is built from the series on every call.
+ * Every mutator of a view throws UnsupportedOperationException, an edit that could not reach the series fails instead of
+ * being lost ( write with putSeries / putAggregationMap / putAggregationObjectMap ).
+ */
+final class ElasticSearchLegacyViews {
+
+    private static final String READ_ONLY_MESSAGE = "read only view of seriesMap ( use putSeries / putAggregationMap / putAggregationObjectMap )";
+
+    private ElasticSearchLegacyViews() {
+    }
+
+    /**
+     * key -> { "x" : bucket times, "y" : bucket counts }
+     */
+    static HashMap<String, HashMap<String, ArrayList<Long>>> aggregationMap(Map<String, ElasticSearchAggregationSeries> seriesMap){
+
+        HashMap<String, HashMap<String, ArrayList<Long>>> aggregationMap = new HashMap<>();
+        for(Map.Entry<String, ElasticSearchAggregationSeries> entry : seriesMap.entrySet()){
+            HashMap<String, ArrayList<Long>> dataMap = new HashMap<>();
+            dataMap.put("x", new ReadOnlyArrayList<>(entry.getValue().getXList()));
+            dataMap.put("y", new ReadOnlyArrayList<>(entry.getValue().getYList()));
+            aggregationMap.put(entry.getKey(), new ReadOnlyHashMap<>(dataMap));
+        }
+        return new ReadOnlyHashMap<>(aggregationMap);
+    }
+
+    /**
+     * key -> bucket objects ( timeStr, time, count )
+     */
+    static HashMap<String, ArrayList<ElasticSearchAggregationInfo>> aggregationObjectMap(Map<String, ElasticSearchAggregationSeries> seriesMap){
+
+        HashMap<String, ArrayList<ElasticSearchAggregationInfo>> aggregationObjectMap = new HashMap<>();
+        for(Map.Entry<String, ElasticSearchAggregationSeries> entry : seriesMap.entrySet()){
+            ElasticSearchAggregationSeries series = entry.getValue();
+            ArrayList<ElasticSearchAggregationInfo> objectList = new ArrayList<>(series.size());
+            for(int i = 0; i < series.size(); i++){
+                objectList.add(new ReadOnlyAggregationInfo(series.getTimeStr(i), series.getTime(i), series.getCount(i)));
+            }
+            aggregationObjectMap.put(entry.getKey(), new ReadOnlyArrayList<>(objectList));
+        }
+        return new ReadOnlyHashMap<>(aggregationObjectMap);
+    }
+
+    static final class ReadOnlyHashMap<K, V> extends HashMap<K, V> {
+
+        private static final long serialVersionUID = 1L;
+
+        ReadOnlyHashMap(Map<K, V> map) {
+            // HashMap(Map) copies without put()
+            super(map);
+        }
+
+        @Override
+        public V put(K key, V value) {
+            throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+        }
+
+        @Override
+        public void putAll(Map<? extends K, ? extends V> m) {
+            throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+        }
+
+        @Override
+        public V remove(Object key) {
+            throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+        }
+
+        @Override
+        public boolean remove(Object key, Object value) {
+            throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+        }
+
+        @Override
+        public void clear() {
+            throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+        }
+
+        @Override
+        public V putIfAbsent(K key, V value) {
+            throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+        }
+
+        @Override
+        public boolean replace(K key, V oldValue, V newValue) {
+            throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+        }
+
+        @Override
+        public V replace(K key, V value) {
+            throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+        }
+
+        @Override
+        public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+            throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+        }
+
+        @Override
+        public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+            throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+        }
+
+        @Override
+        public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+            throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+        }
+
+        @Override
+        public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+            throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+        }
+
+        @Override
+        public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+            throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+        }
+
+        @Override
+        public Set<K> keySet() {
+            return Collections.unmodifiableSet(super.keySet());
+        }
+
+        @Override
+        public Collection<V> values() {
+            return Collections.unmodifiableCollection(super.values());
+        }
+
+        @Override
+        public Set<Map.Entry<K, V>> entrySet() {
+
+            Set<Map.Entry<K, V>> entrySet = super.entrySet();
+
+            // immutable entries ( setValue ), iterator without remove
+            return new AbstractSet<Map.Entry<K, V>>() {
+                @Override
+                public Iterator<Map.Entry<K, V>> iterator() {
+                    Iterator<Map.Entry<K, V>> iterator = entrySet.iterator();
+                    return new Iterator<Map.Entry<K, V>>() {
+                        @Override
+                        public boolean hasNext() {
+                            return iterator.hasNext();
+                        }
+
+                        @Override
+                        public Map.Entry<K, V> next() {
+                            return new AbstractMap.SimpleImmutableEntry<>(iterator.next());
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return entrySet.size();
+                }
+            };
+        }
+    }
+
+    static final class ReadOnlyArrayList<E> extends ArrayList<E> {
+
+        private static final long serialVersionUID = 1L;
+
+        ReadOnlyArrayList(Collection<E> collection) {
+            super(collection);
+        }
+
+        @Override
+        public boolean add(E e) {
+            throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+        }
+
+        @Override
+        public void add(int index, E element) {
+            throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+        }
+
+        @Override
+        public boolean addAll(Collection<? extends E> c) {
+            throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+        }
+
+        @Override
+        public boolean addAll(int index, Collection<? extends E> c) {
+            throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+        }
+
+        @Override
+        public E set(int index, E element) {
+            throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+        }
+
+        @Override
+        public E remove(int index) {
+            throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+        }
+
+        @Override
+        public boolean removeAll(Collection<?> c) {
+            throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+        }
+
+        @Override
+        public boolean retainAll(Collection<?> c) {
+            throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+        }
+
+        @Override
+        public boolean removeIf(Predicate<? super E> filter) {
+            throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+        }
+
+        @Override
+        public void replaceAll(UnaryOperator<E> operator) {
+            throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+        }
+
+        @Override
+        public void sort(Comparator<? super E> c) {
+            throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+        }
+
+        @Override
+        public void clear() {
+            throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+        }
+
+        @Override
+        protected void removeRange(int fromIndex, int toIndex) {
+            throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+        }
+
+        // iterators & sub lists through ArrayList's own sub list ( does not call the overridden methods )
+        @Override
+        public Iterator<E> iterator() {
+            return readOnly().iterator();
+        }
+
+        @Override
+        public ListIterator<E> listIterator() {
+            return readOnly().listIterator();
+        }
+
+        @Override
+        public ListIterator<E> listIterator(int index) {
+            return readOnly().listIterator(index);
+        }
+
+        @Override
+        public List<E> subList(int fromIndex, int toIndex) {
+            return Collections.unmodifiableList(super.subList(fromIndex, toIndex));
+        }
+
+        private List<E> readOnly(){
+            return Collections.unmodifiableList(super.subList(0, size()));
+        }
+    }
+
+    static final class ReadOnlyAggregationInfo extends ElasticSearchAggregationInfo {
+
+        ReadOnlyAggregationInfo(String timeStr, long time, long count) {
+            super.setTimeStr(timeStr);
+            super.setTime(time);
+            super.setCount(count);
+        }
+
+        @Override
+        public void setTimeStr(String timeStr) {
+            throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+        }
+
+        @Override
+        public void setTime(long time) {
+            throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+        }
+
+        @Override
+        public void setCount(long count) {
+            throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.ainory.dev.utils.elastic.entity;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import java.util.ArrayList;
+
+/**
+ * Log pattern ( message template, variable tokens : <*> )
+ */
+public class ElasticSearchLogPatternInfo {
+
+    private String template;
+    private long count = 0;
+    private long firstTime = 0;
+    private long lastTime = 0;
+
+    // first lines of the pattern ( bounded )
+    private ArrayList<ElasticSearchDataInfo> sampleList = new ArrayList<>();
+
+    public String getTemplate() {
+        return template;
+    }
+
+    public void setTemplate(String template) {
+        this.template = template;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public long getFirstTime() {
+        return firstTime;
+    }
+
+    public void setFirstTime(long firstTime) {
+        this.firstTime = firstTime;
+    }
+
+    public long getLastTime() {
+        return lastTime;
+    }
+
+    public void setLastTime(long lastTime) {
+        this.lastTime = lastTime;
+    }
+
+    public ArrayList<ElasticSearchDataInfo> getSampleList() {
+        return sampleList;
+    }
+
+    public void setSampleList(ArrayList<ElasticSearchDataInfo> sampleList) {
+        this.sampleList = sampleList;
+    }
+
+    public void addSampleList(ElasticSearchDataInfo elasticSearchDataInfo) {
+        this.sampleList.add(elasticSearchDataInfo);
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this)
+                .append("template", template)
+                .append("count", count)
+                .append("firstTime", firstTime)
+                .append("lastTime", lastTime)
+                .append("sampleList", sampleList)
+                .toString();
+    }
+}
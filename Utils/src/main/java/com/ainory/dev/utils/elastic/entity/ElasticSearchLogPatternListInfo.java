@@ -0,0 +1,67 @@
+package com.ainory.dev.utils.elastic.entity;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import java.util.ArrayList;
+
+/**
+ * Log patterns of a search ( count desc )
+ */
+public class ElasticSearchLogPatternListInfo {
+
+    // clustered lines
+    private long totalCount = 0;
+
+    // lines of patterns evicted by the pattern limit ( not in patternList )
+    private long evictedCount = 0;
+
+    private double elapsedMsTime = 0.0;
+
+    private ArrayList<ElasticSearchLogPatternInfo> patternList = new ArrayList<>();
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public void setTotalCount(long totalCount) {
+        this.totalCount = totalCount;
+    }
+
+    public long getEvictedCount() {
+        return evictedCount;
+    }
+
+    public void setEvictedCount(long evictedCount) {
+        this.evictedCount = evictedCount;
+    }
+
+    public double getElapsedMsTime() {
+        return elapsedMsTime;
+    }
+
+    public void setElapsedMsTime(double elapsedMsTime) {
+        this.elapsedMsTime = elapsedMsTime;
+    }
+
+    public ArrayList<ElasticSearchLogPatternInfo> getPatternList() {
+        return patternList;
+    }
+
+    public void setPatternList(ArrayList<ElasticSearchLogPatternInfo> patternList) {
+        this.patternList = patternList;
+    }
+
+    public void addPatternList(ElasticSearchLogPatternInfo elasticSearchLogPatternInfo) {
+        this.patternList.add(elasticSearchLogPatternInfo);
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this)
+                .append("totalCount", totalCount)
+                .append("evictedCount", evictedCount)
+                .append("elapsedMsTime", elapsedMsTime)
+                .append("patternList", patternList)
+                .toString();
+    }
+}
@@ -0,0 +1,119 @@
+package com.ainory.dev.utils.elastic.entity;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * Metric summary of one ( method, aggregationType, metric )
+ *
+ * Latency metrics are in milliseconds, hits / bytes are per call.
+ */
+public class ElasticSearchMetricsInfo {
+
+    private String method;
+    private String aggregationType;
+    private String metric;
+
+    private long count = 0;
+    private double min = 0.0;
+    private double mean = 0.0;
+    private double p50 = 0.0;
+    private double p90 = 0.0;
+    private double p99 = 0.0;
+    private double max = 0.0;
+
+    public String getMethod() {
+        return method;
+    }
+
+    public void setMethod(String method) {
+        this.method = method;
+    }
+
+    public String getAggregationType() {
+        return aggregationType;
+    }
+
+    public void setAggregationType(String aggregationType) {
+        this.aggregationType = aggregationType;
+    }
+
+    public String getMetric() {
+        return metric;
+    }
+
+    public void setMetric(String metric) {
+        this.metric = metric;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public void setMin(double min) {
+        this.min = min;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public void setMean(double mean) {
+        this.mean = mean;
+    }
+
+    public double getP50() {
+        return p50;
+    }
+
+    public void setP50(double p50) {
+        this.p50 = p50;
+    }
+
+    public double getP90() {
+        return p90;
+    }
+
+    public void setP90(double p90) {
+        this.p90 = p90;
+    }
+
+    public double getP99() {
+        return p99;
+    }
+
+    public void setP99(double p99) {
+        this.p99 = p99;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public void setMax(double max) {
+        this.max = max;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this)
+                .append("method", method)
+                .append("aggregationType", aggregationType)
+                .append("metric", metric)
+                .append("count", count)
+                .append("min", min)
+                .append("mean", mean)
+                .append("p50", p50)
+                .append("p90", p90)
+                .append("p99", p99)
+                .append("max", max)
+                .toString();
+    }
+}
@@ -2,13 +2,19 @@ package com.ainory.dev.utils.kafka;
 
 
 import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.kafka.clients.producer.Callback;
 import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Created by ainory on 2016. 9. 30..
@@ -16,7 +22,8 @@ import java.util.Properties;
 public class KafkaProducerUtil {
     private static final Logger logger = LoggerFactory.getLogger(KafkaProducerUtil.class);
 
-    private KafkaProducer<String,String> producer;
+    // null after closeProducer
+    private volatile Producer<String,String> producer;
     private String topic;
 
     private final String DEFAULT_ACKS = "1";
@@ -80,6 +87,16 @@ public class KafkaProducerUtil {
         this.topic = topic;
     }
 
+    /**
+     * Producer given by the caller ( ex) MockProducer )
+     * @param producer
+     * @param topic
+     */
+    KafkaProducerUtil(Producer<String,String> producer, String topic) {
+        this.producer = producer;
+        this.topic = topic;
+    }
+
     /**
      * Message Send
      * @param message
@@ -88,6 +105,8 @@ public class KafkaProducerUtil {
      */
     public boolean sendMessage(String message, boolean flushFlag){
 
+        Producer<String,String> producer = this.producer;
+
         try{
             if(producer != null){
                 producer.send(new ProducerRecord<String, String>(topic, message));
@@ -123,6 +142,11 @@ public class KafkaProducerUtil {
      */
     public boolean sendMessageList(ArrayList<String> msgList) throws Exception{
 
+        if(msgList == null){
+            logger.error("Message list is null");
+            return false;
+        }
+
         long start = System.nanoTime();
         int successCount = 0;
 
@@ -131,7 +155,7 @@ public class KafkaProducerUtil {
                 successCount++;
             }
         }
-        producer.flush();
+        flush();
 
         long end = System.nanoTime();
         logger.debug("Message Send Complete(Total: "+ msgList.size() +" /Success: "+successCount+") - "+(end-start)/1000000.0+"ms");
@@ -140,10 +164,126 @@ public class KafkaProducerUtil {
     }
 
     /**
-     * Close Producer
+     * Message Send ( async, never flushed : batched by batch.size / linger.ms )
+     * @param message
+     * @return completed with the record metadata on delivery, exceptionally on failure ( on the producer I/O thread, see sendMessageAsync(key, message, callback) )
+     */
+    public CompletableFuture<RecordMetadata> sendMessageAsync(String message){
+        return sendMessageAsync(null, message, null);
+    }
+
+    /**
+     * Message Send ( async, never flushed : batched by batch.size / linger.ms )
+     *
+     * callback runs on the producer I/O thread before the future completes, keep it short ( no blocking call, no flush )
+     * The future completes on the producer I/O thread : dependent stages ( thenApply, thenAccept ... ) run on it and stall every send,
+     * chain blocking or slow work with the *Async variants and an executor ( ex) future.thenAcceptAsync(action, executor) )
+     * send blocks only while the topic metadata is unknown ( metadata.fetch.timeout.ms ) or the producer buffer is full
+     *
+     * @param key - Record key ( null : round robin partition )
+     * @param message
+     * @param callback - Delivery result of the record ( metadata or exception, null : none )
+     * @return completed with the record metadata on delivery, exceptionally on failure ( on the producer I/O thread )
+     */
+    public CompletableFuture<RecordMetadata> sendMessageAsync(String key, String message, Callback callback){
+
+        CompletableFuture<RecordMetadata> future = new CompletableFuture<>();
+
+        Producer<String,String> producer = this.producer;
+
+        try{
+            if(producer == null){
+                throw new IllegalStateException("Producer is closed");
+            }
+
+            producer.send(new ProducerRecord<String, String>(topic, key, message), (metadata, exception) -> {
+
+                if(callback != null){
+                    try{
+                        callback.onCompletion(metadata, exception);
+                    }catch (Exception e){
+                        logger.error(ExceptionUtils.getStackTrace(e));
+                    }
+                }
+
+                if(exception != null){
+                    future.completeExceptionally(exception);
+                }else{
+                    future.complete(metadata);
+                }
+            });
+
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
+
+            if(callback != null){
+                try{
+                    callback.onCompletion(null, e);
+                }catch (Exception callbackException){
+                    logger.error(ExceptionUtils.getStackTrace(callbackException));
+                }
+            }
+            future.completeExceptionally(e);
+        }
+
+        return future;
+    }
+
+    /**
+     * Message List Send ( async, never flushed )
+     * @param msgList
+     * @return completed with the delivered message count when every record is acknowledged or failed ( on the producer I/O thread, see sendMessageAsync(key, message, callback) ),
+     *         0 for a null list
+     */
+    public CompletableFuture<Integer> sendMessageListAsync(List<String> msgList){
+
+        if(msgList == null){
+            logger.error("Message list is null");
+            return CompletableFuture.completedFuture(0);
+        }
+
+        long start = System.nanoTime();
+        AtomicInteger successCount = new AtomicInteger();
+
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[msgList.size()];
+        for(int i = 0; i < futures.length; i++){
+            futures[i] = sendMessageAsync(null, msgList.get(i), (metadata, exception) -> {
+                if(exception == null){
+                    successCount.incrementAndGet();
+                }
+            });
+        }
+
+        return CompletableFuture.allOf(futures).handle((result, exception) -> {
+            logger.debug("Message Send Complete(Total: "+ msgList.size() +" /Success: "+successCount.get()+") - "+(System.nanoTime()-start)/1000000.0+"ms");
+            return successCount.get();
+        });
+    }
+
+    /**
+     * Flush Producer ( blocks until every sent record is acknowledged or failed )
+     */
+    public void flush(){
+
+        Producer<String,String> producer = this.producer;
+
+        try{
+            if(producer != null){
+                producer.flush();
+            }
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
+        }
+    }
+
+    /**
+     * Close Producer ( later sends fail : sendMessage false, sendMessageAsync exceptionally )
      */
     public void closeProducer(){
 
+        Producer<String,String> producer = this.producer;
+        this.producer = null;
+
         try{
             if(producer != null){
                 producer.flush();
@@ -0,0 +1,25 @@
+package com.ainory.dev.utils.elastic;
+
+import org.junit.Test;
+
+import static com.ainory.dev.utils.elastic.ElasticSearchSearchUtil.PERIOD_UNIT_MINUTE;
+
+public class ElasticSearchAggregationBatchTest {
+
+    private static final String START_TIME = "2017-12-20 00:00:00.000";
+    private static final String END_TIME = "2017-12-20 01:00:00.000";
+
+    @Test(expected = IllegalArgumentException.class)
+    public void duplicatePanelNameIsRejected(){
+        new ElasticSearchAggregationBatch("127.0.0.1", 9400)
+                .aggregationAll("panel", START_TIME, END_TIME, 1, PERIOD_UNIT_MINUTE)
+                .aggregationHost("panel", START_TIME, END_TIME, 1, PERIOD_UNIT_MINUTE);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void duplicatePanelNameAcrossKindsIsRejected() throws Exception{
+        new ElasticSearchAggregationBatch("127.0.0.1", 9400)
+                .aggregationAll("panel", START_TIME, END_TIME, 1, PERIOD_UNIT_MINUTE)
+                .search("panel", ElasticSearchQuerySpec.range(START_TIME, END_TIME), 100);
+    }
+}
@@ -0,0 +1,183 @@
+package com.ainory.dev.utils.elastic;
+
+import com.ainory.dev.utils.elastic.entity.ElasticSearchAggregationListInfo;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.ainory.dev.utils.elastic.ElasticSearchSearchUtil.PERIOD_UNIT_MINUTE;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tail refresh & merge of the aggregation cache against ElasticSearchStandIn
+ */
+public class ElasticSearchAggregationCacheTest {
+
+    private static final String ES_HOST = "es-cache-test";
+    private static final int ES_PORT = 9200;
+
+    // 2017-12-20 00:00:00.000 +09:00
+    private static final long START = 1513695600000L;
+    private static final long MINUTE = 60000L;
+
+    private ElasticSearchStandIn standIn;
+    private ElasticSearchAggregationCache aggregationCache;
+
+    @Before
+    public void setUp() throws Exception{
+        standIn = new ElasticSearchStandIn(0, 4).start();
+        standIn.route(ES_HOST, ES_PORT);
+
+        aggregationCache = new ElasticSearchAggregationCache(10);
+    }
+
+    @After
+    public void tearDown(){
+        ElasticSearchSearchUtil.setQueryContext(null);
+        standIn.close();
+    }
+
+    @Test
+    public void tailOfTheCachedTermsIsMerged() throws Exception{
+
+        // window [00:00, 00:05] : host1 1 ~ 6, host2 10 per bucket / tail [00:05, 00:06] : host1 only
+
+        standIn.addResponse(ElasticSearchStandIn.ENDPOINT.SEARCH, ElasticSearchAggregationCache.TOP_AGGREGATION_PREFIX,
+                response("\"sterms#TOP_HOST\":" + terms(bucket("host1", 21), bucket("host2", 60)) + ","
+                        + "\"filter#TAIL\":{\"doc_count\":13,\"sterms#HOST\":" + terms(bucket("host1", 13, histogram(5, 6, 7))) + "}"));
+        standIn.addResponse(ElasticSearchStandIn.ENDPOINT.SEARCH,
+                response("\"sterms#HOST\":" + terms(bucket("host1", 21, histogram(0, 1, 2, 3, 4, 5, 6)), bucket("host2", 60, histogram(0, 10, 10, 10, 10, 10, 10)))));
+
+        aggregationCache.aggregationHost(ES_HOST, ES_PORT, "2017-12-20 00:00:00.000", "2017-12-20 00:05:00.000", 1, PERIOD_UNIT_MINUTE);
+        assertEquals(1, standIn.getRequestCount(ElasticSearchStandIn.ENDPOINT.SEARCH));
+
+        ElasticSearchAggregationListInfo merged = aggregationCache.aggregationHost(ES_HOST, ES_PORT, "2017-12-20 00:01:00.000", "2017-12-20 00:06:00.000", 1, PERIOD_UNIT_MINUTE);
+        assertEquals(2, standIn.getRequestCount(ElasticSearchStandIn.ENDPOINT.SEARCH));
+
+        // tail restricted to the cached terms
+        String requestBody = standIn.getLastRequestBody(ElasticSearchStandIn.ENDPOINT.SEARCH);
+        assertTrue(requestBody.contains("\"include\":[\"host1\",\"host2\"]"));
+
+        // closed buckets 00:01 ~ 00:04 from the cache, 00:05 ~ 00:06 from the tail, host2 missing in the tail -> 0
+        assertArrayEquals(times(1, 6), merged.getSeries("host1").getTimes());
+        assertArrayEquals(new long[]{ 2, 3, 4, 5, 6, 7 }, merged.getSeries("host1").getCounts());
+        assertArrayEquals(times(1, 6), merged.getSeries("host2").getTimes());
+        assertArrayEquals(new long[]{ 10, 10, 10, 10, 0, 0 }, merged.getSeries("host2").getCounts());
+    }
+
+    @Test
+    public void changedTopTermsQueryTheWholeWindow() throws Exception{
+
+        // host3 entered the top terms of the window
+        standIn.addResponse(ElasticSearchStandIn.ENDPOINT.SEARCH, ElasticSearchAggregationCache.TOP_AGGREGATION_PREFIX,
+                response("\"sterms#TOP_HOST\":" + terms(bucket("host3", 100), bucket("host2", 60)) + ","
+                        + "\"filter#TAIL\":{\"doc_count\":0,\"sterms#HOST\":" + terms() + "}"));
+        standIn.addResponse(ElasticSearchStandIn.ENDPOINT.SEARCH,
+                response("\"sterms#HOST\":" + terms(bucket("host1", 21, histogram(0, 1, 2, 3, 4, 5, 6)), bucket("host2", 60, histogram(0, 10, 10, 10, 10, 10, 10)))));
+
+        aggregationCache.aggregationHost(ES_HOST, ES_PORT, "2017-12-20 00:00:00.000", "2017-12-20 00:05:00.000", 1, PERIOD_UNIT_MINUTE);
+        aggregationCache.aggregationHost(ES_HOST, ES_PORT, "2017-12-20 00:01:00.000", "2017-12-20 00:06:00.000", 1, PERIOD_UNIT_MINUTE);
+
+        // tail + whole window
+        assertEquals(3, standIn.getRequestCount(ElasticSearchStandIn.ENDPOINT.SEARCH));
+        assertFalse(standIn.getLastRequestBody(ElasticSearchStandIn.ENDPOINT.SEARCH).contains(ElasticSearchAggregationCache.TOP_AGGREGATION_PREFIX));
+    }
+
+    @Test
+    public void queryContextIsPartOfTheKey() throws Exception{
+
+        standIn.addResponse(ElasticSearchStandIn.ENDPOINT.SEARCH, response("\"date_histogram#TIME_COUNT\":" + histogram(0, 1, 2, 3, 4, 5, 6)));
+
+        aggregationCache.aggregationAll(ES_HOST, ES_PORT, "2017-12-20 00:00:00.000", "2017-12-20 00:05:00.000", 1, PERIOD_UNIT_MINUTE);
+
+        ElasticSearchQueryContext queryContext = new ElasticSearchQueryContext();
+        queryContext.setIndexPattern("other-*");
+        ElasticSearchSearchUtil.setQueryContext(queryContext);
+
+        // same window : whole window on the new indices, not the cached result
+        aggregationCache.aggregationAll(ES_HOST, ES_PORT, "2017-12-20 00:00:00.000", "2017-12-20 00:05:00.000", 1, PERIOD_UNIT_MINUTE);
+
+        assertEquals(2, standIn.getRequestCount(ElasticSearchStandIn.ENDPOINT.SEARCH));
+        assertEquals(2, aggregationCache.size());
+    }
+
+    @Test
+    public void asyncAggregationGoesThroughTheStartedCache() throws Exception{
+
+        standIn.addResponse(ElasticSearchStandIn.ENDPOINT.SEARCH, response("\"date_histogram#TIME_COUNT\":" + histogram(0, 1, 2, 3, 4, 5, 6)));
+
+        ElasticSearchAggregationCache.start(ES_HOST, ES_PORT);
+        try{
+            ElasticSearchAggregationListInfo elasticSearchAggregationListInfo = ElasticSearchAsyncSearchUtil.aggregationAll(ES_HOST, ES_PORT, "2017-12-20 00:00:00.000", "2017-12-20 00:05:00.000", 1, PERIOD_UNIT_MINUTE)
+                    .get(10, TimeUnit.SECONDS);
+            assertArrayEquals(times(0, 5), elasticSearchAggregationListInfo.getSeries(ElasticSearchSearchUtil.AGGREGATION_TYPE.ALL.name()).getTimes());
+
+            ElasticSearchAsyncSearchUtil.aggregationAll(ES_HOST, ES_PORT, "2017-12-20 00:00:00.000", "2017-12-20 00:05:00.000", 1, PERIOD_UNIT_MINUTE)
+                    .get(10, TimeUnit.SECONDS);
+
+            // whole window, then the tail of the cached window
+            assertEquals(2, standIn.getRequestCount(ElasticSearchStandIn.ENDPOINT.SEARCH));
+            assertEquals(1, ElasticSearchAggregationCache.get(ES_HOST, ES_PORT).size());
+        }finally {
+            ElasticSearchAggregationCache.stop(ES_HOST, ES_PORT);
+        }
+    }
+
+    @Test
+    public void queryContextSwitchClearsTheStartedCaches() throws Exception{
+
+        standIn.addResponse(ElasticSearchStandIn.ENDPOINT.SEARCH, response("\"date_histogram#TIME_COUNT\":" + histogram(0, 1, 2, 3, 4, 5, 6)));
+
+        ElasticSearchAggregationCache startedCache = ElasticSearchAggregationCache.start(ES_HOST, ES_PORT);
+        try{
+            startedCache.aggregationAll(ES_HOST, ES_PORT, "2017-12-20 00:00:00.000", "2017-12-20 00:05:00.000", 1, PERIOD_UNIT_MINUTE);
+            assertEquals(1, startedCache.size());
+
+            ElasticSearchSearchUtil.setQueryContext(new ElasticSearchQueryContext());
+            assertEquals(0, startedCache.size());
+        }finally {
+            ElasticSearchAggregationCache.stop(ES_HOST, ES_PORT);
+        }
+    }
+
+    private static long[] times(int from, int to){
+        long[] times = new long[to - from + 1];
+        for(int i = 0; i < times.length; i++){
+            times[i] = START + (from + i) * MINUTE;
+        }
+        return times;
+    }
+
+    private static String response(String aggregations){
+        return "{\"took\":1,\"timed_out\":false,\"_shards\":{\"total\":1,\"successful\":1,\"failed\":0},"
+                + "\"hits\":{\"total\":0,\"max_score\":null,\"hits\":[]},\"aggregations\":{" + aggregations + "}}";
+    }
+
+    private static String terms(String... buckets){
+        return "{\"doc_count_error_upper_bound\":0,\"sum_other_doc_count\":0,\"buckets\":[" + String.join(",", buckets) + "]}";
+    }
+
+    private static String bucket(String key, long docCount){
+        return "{\"key\":\"" + key + "\",\"doc_count\":" + docCount + "}";
+    }
+
+    private static String bucket(String key, long docCount, String histogram){
+        return "{\"key\":\"" + key + "\",\"doc_count\":" + docCount + ",\"date_histogram#TIME_COUNT\":" + histogram + "}";
+    }
+
+    /**
+     * Minute buckets from START + firstMinute
+     */
+    private static String histogram(int firstMinute, long... counts){
+        StringBuilder json = new StringBuilder("{\"buckets\":[");
+        for(int i = 0; i < counts.length; i++){
+            json.append(i > 0 ? "," : "").append("{\"key\":").append(START + (firstMinute + i) * MINUTE).append(",\"doc_count\":").append(counts[i]).append('}');
+        }
+        return json.append("]}").toString();
+    }
+}
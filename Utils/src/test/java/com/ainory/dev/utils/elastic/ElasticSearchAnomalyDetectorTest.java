@@ -0,0 +1,142 @@
+package com.ainory.dev.utils.elastic;
+
+import com.ainory.dev.utils.elastic.entity.ElasticSearchAggregationListInfo;
+import com.ainory.dev.utils.elastic.entity.ElasticSearchAggregationSeries;
+import com.ainory.dev.utils.elastic.entity.ElasticSearchAnomalyInfo;
+import com.ainory.dev.utils.elastic.entity.ElasticSearchAnomalyListInfo;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ElasticSearchAnomalyDetectorTest {
+
+    private static final long MINUTE = 60000L;
+
+    // 2017-12-20 00:00:00.000 +09:00
+    private static final long START = 1513695600000L;
+
+    @Test
+    public void spikeAfterWarmup(){
+
+        ElasticSearchAnomalyDetector detector = new ElasticSearchAnomalyDetector();
+
+        ElasticSearchAnomalyListInfo elasticSearchAnomalyListInfo = detector.detect(aggregation(series("host1", 20, 100, 1000), series("host2", 21, 100, -1)), 0);
+
+        assertEquals(42, elasticSearchAnomalyListInfo.getBucketCount());
+        assertEquals(1, elasticSearchAnomalyListInfo.getAnomalyList().size());
+
+        ElasticSearchAnomalyInfo elasticSearchAnomalyInfo = elasticSearchAnomalyListInfo.getAnomalyList().get(0);
+        assertEquals("host1", elasticSearchAnomalyInfo.getKey());
+        assertEquals(START + 20 * MINUTE, elasticSearchAnomalyInfo.getTime());
+        assertEquals(1000, elasticSearchAnomalyInfo.getCount());
+        assertEquals(100.0, elasticSearchAnomalyInfo.getExpected(), 0.0);
+    }
+
+    @Test
+    public void noScoreDuringWarmup(){
+
+        ElasticSearchAnomalyDetector detector = new ElasticSearchAnomalyDetector();
+
+        assertTrue(detector.detect(aggregation(series("host1", 5, 100, 1000)), 0).getAnomalyList().isEmpty());
+    }
+
+    @Test
+    public void incrementalCallProcessesNewBucketsOnly(){
+
+        ElasticSearchAnomalyDetector detector = new ElasticSearchAnomalyDetector();
+
+        assertEquals(10, detector.detect(aggregation(series("host1", 10, 100, -1)), 0).getBucketCount());
+        assertEquals(2, detector.detect(aggregation(series("host1", 12, 100, -1)), 0).getBucketCount());
+        assertEquals(0, detector.detect(aggregation(series("host1", 12, 100, -1)), 0).getBucketCount());
+    }
+
+    @Test
+    public void silentKeyIsEvicted(){
+
+        ElasticSearchAnomalyDetector detector = new ElasticSearchAnomalyDetector(ElasticSearchAnomalyDetector.DEFAULT_ALPHA, ElasticSearchAnomalyDetector.DEFAULT_THRESHOLD,
+                ElasticSearchAnomalyDetector.DEFAULT_WARMUP, ElasticSearchAnomalyDetector.DEFAULT_MIN_DELTA, 5);
+
+        detector.detect(aggregation(series("host1", 20, 100, -1), series("host2", 20, 100, -1), series("host3", 20, 100, -1)), 0);
+        assertEquals(3, detector.getKeyCount());
+
+        // host2 last bucket 19 : 4 buckets missed -> kept
+        ElasticSearchAnomalyListInfo elasticSearchAnomalyListInfo = detector.detect(aggregation(series("host1", 24, 100, -1), series("host3", 24, 100, -1)), 0);
+        assertEquals(0, elasticSearchAnomalyListInfo.getEvictedKeyCount());
+        assertEquals(3, detector.getKeyCount());
+
+        // 5 buckets missed -> evicted ( host3 moved into its slot )
+        elasticSearchAnomalyListInfo = detector.detect(aggregation(series("host1", 25, 100, -1), series("host3", 25, 100, -1)), 0);
+        assertEquals(1, elasticSearchAnomalyListInfo.getEvictedKeyCount());
+        assertEquals(2, detector.getKeyCount());
+
+        // moved state keeps its baseline
+        elasticSearchAnomalyListInfo = detector.detect(aggregation(series("host1", 26, 100, -1), series("host3", 25, 100, 1000)), 0);
+        assertEquals(1, elasticSearchAnomalyListInfo.getAnomalyList().size());
+        assertEquals("host3", elasticSearchAnomalyListInfo.getAnomalyList().get(0).getKey());
+        assertEquals(100.0, elasticSearchAnomalyListInfo.getAnomalyList().get(0).getExpected(), 0.0);
+
+        // host2 back -> new state, every bucket of the window processed again
+        elasticSearchAnomalyListInfo = detector.detect(aggregation(series("host1", 27, 100, -1), series("host2", 27, 100, -1)), 0);
+        assertEquals(3, detector.getKeyCount());
+        assertEquals(1 + 27, elasticSearchAnomalyListInfo.getBucketCount());
+    }
+
+    @Test
+    public void keyChurnIsBounded(){
+
+        ElasticSearchAnomalyDetector detector = new ElasticSearchAnomalyDetector(ElasticSearchAnomalyDetector.DEFAULT_ALPHA, ElasticSearchAnomalyDetector.DEFAULT_THRESHOLD,
+                ElasticSearchAnomalyDetector.DEFAULT_WARMUP, ElasticSearchAnomalyDetector.DEFAULT_MIN_DELTA, 10);
+
+        // a new key every bucket ( container hosts )
+        for(int i = 1; i <= 1000; i++){
+            ElasticSearchAggregationListInfo elasticSearchAggregationListInfo = aggregation();
+            elasticSearchAggregationListInfo.putSeries("host-" + i, new ElasticSearchAggregationSeries(new long[]{ START + i * MINUTE }, new long[]{ 100 }));
+            detector.detect(elasticSearchAggregationListInfo, 0);
+        }
+
+        assertEquals(10, detector.getKeyCount());
+    }
+
+    @Test
+    public void periodChangeClearsTheState(){
+
+        ElasticSearchAnomalyDetector detector = new ElasticSearchAnomalyDetector();
+        detector.detect(aggregation(series("host1", 10, 100, -1)), 0);
+
+        ElasticSearchAggregationListInfo elasticSearchAggregationListInfo = aggregation(series("host1", 10, 100, -1));
+        elasticSearchAggregationListInfo.setPeriod(5);
+
+        assertEquals(10, detector.detect(elasticSearchAggregationListInfo, 0).getBucketCount());
+        assertEquals(1, detector.getKeyCount());
+    }
+
+    private static ElasticSearchAggregationListInfo aggregation(Object[]... seriesList){
+
+        ElasticSearchAggregationListInfo elasticSearchAggregationListInfo = new ElasticSearchAggregationListInfo();
+        elasticSearchAggregationListInfo.setPeriod(1);
+        elasticSearchAggregationListInfo.setPeriodUnit(ElasticSearchSearchUtil.PERIOD_UNIT_MINUTE);
+
+        for(Object[] series : seriesList){
+            elasticSearchAggregationListInfo.putSeries((String) series[0], (ElasticSearchAggregationSeries) series[1]);
+        }
+
+        return elasticSearchAggregationListInfo;
+    }
+
+    /**
+     * bucketCount buckets of count from START, spike : count of one more last bucket ( < 0 : none )
+     */
+    private static Object[] series(String key, int bucketCount, long count, long spike){
+
+        ElasticSearchAggregationSeries series = new ElasticSearchAggregationSeries(bucketCount + 1);
+        for(int i = 0; i < bucketCount; i++){
+            series.add(START + i * MINUTE, count);
+        }
+        if(spike >= 0){
+            series.add(START + bucketCount * MINUTE, spike);
+        }
+
+        return new Object[]{ key, series };
+    }
+}
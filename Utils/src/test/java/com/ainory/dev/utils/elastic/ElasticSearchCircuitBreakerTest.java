@@ -0,0 +1,169 @@
+package com.ainory.dev.utils.elastic;
+
+import com.ainory.dev.utils.elastic.ElasticSearchCircuitBreaker.CircuitOpenException;
+import com.ainory.dev.utils.elastic.ElasticSearchCircuitBreaker.STATE;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ElasticSearchCircuitBreakerTest {
+
+    private static final long LONG_OPEN_MS = 60000;
+
+    @Test
+    public void staysClosedBelowMinimumCallCount() throws Exception{
+        ElasticSearchCircuitBreaker circuitBreaker = new ElasticSearchCircuitBreaker("test", 50, 4, 10, LONG_OPEN_MS);
+
+        call(circuitBreaker, true);
+        call(circuitBreaker, true);
+        call(circuitBreaker, true);
+
+        assertEquals(STATE.CLOSED, circuitBreaker.getState());
+        assertEquals(100, circuitBreaker.getFailureRatePercent());
+    }
+
+    @Test
+    public void opensAtFailureRate() throws Exception{
+        ElasticSearchCircuitBreaker circuitBreaker = new ElasticSearchCircuitBreaker("test", 50, 4, 10, LONG_OPEN_MS);
+
+        call(circuitBreaker, false);
+        call(circuitBreaker, true);
+        call(circuitBreaker, false);
+        assertEquals(STATE.CLOSED, circuitBreaker.getState());
+
+        // 2 / 4 = 50%
+        call(circuitBreaker, true);
+        assertEquals(STATE.OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    public void staysClosedUnderFailureRate() throws Exception{
+        ElasticSearchCircuitBreaker circuitBreaker = new ElasticSearchCircuitBreaker("test", 50, 4, 10, LONG_OPEN_MS);
+
+        for(int i = 0; i < 10; i++){
+            call(circuitBreaker, i % 4 == 0);
+        }
+
+        assertEquals(STATE.CLOSED, circuitBreaker.getState());
+        assertEquals(30, circuitBreaker.getFailureRatePercent());
+    }
+
+    @Test
+    public void oldOutcomesLeaveTheWindow() throws Exception{
+        ElasticSearchCircuitBreaker circuitBreaker = new ElasticSearchCircuitBreaker("test", 50, 4, 4, LONG_OPEN_MS);
+
+        call(circuitBreaker, true);
+        for(int i = 0; i < 4; i++){
+            call(circuitBreaker, false);
+        }
+        assertEquals(0, circuitBreaker.getFailureRatePercent());
+
+        call(circuitBreaker, true);
+        assertEquals(STATE.CLOSED, circuitBreaker.getState());
+
+        // window : false false true true
+        call(circuitBreaker, true);
+        assertEquals(STATE.OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    public void openFailsFast() throws Exception{
+        ElasticSearchCircuitBreaker circuitBreaker = open(LONG_OPEN_MS);
+
+        try{
+            circuitBreaker.acquire();
+            fail("acquire while open");
+        }catch (CircuitOpenException e){
+            assertEquals(STATE.OPEN, circuitBreaker.getState());
+        }
+    }
+
+    @Test
+    public void halfOpenLetsOneProbeThrough() throws Exception{
+        ElasticSearchCircuitBreaker circuitBreaker = open(0);
+
+        circuitBreaker.acquire();
+        assertEquals(STATE.HALF_OPEN, circuitBreaker.getState());
+
+        try{
+            circuitBreaker.acquire();
+            fail("second call while probing");
+        }catch (CircuitOpenException e){
+            assertEquals(STATE.HALF_OPEN, circuitBreaker.getState());
+        }
+    }
+
+    @Test
+    public void probeSuccessCloses() throws Exception{
+        ElasticSearchCircuitBreaker circuitBreaker = open(0);
+
+        call(circuitBreaker, false);
+
+        assertEquals(STATE.CLOSED, circuitBreaker.getState());
+        assertEquals(0, circuitBreaker.getFailureRatePercent());
+
+        // fresh window after closing
+        call(circuitBreaker, true);
+        assertEquals(STATE.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    public void probeFailureReopens() throws Exception{
+        ElasticSearchCircuitBreaker circuitBreaker = open(0);
+
+        call(circuitBreaker, true);
+
+        assertEquals(STATE.OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    public void releasedProbeCanBeRetried() throws Exception{
+        ElasticSearchCircuitBreaker circuitBreaker = open(0);
+
+        // client side timeout of the probe
+        circuitBreaker.acquire();
+        circuitBreaker.release();
+        assertEquals(STATE.HALF_OPEN, circuitBreaker.getState());
+
+        call(circuitBreaker, false);
+        assertEquals(STATE.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    public void releaseIsNotRecorded() throws Exception{
+        ElasticSearchCircuitBreaker circuitBreaker = new ElasticSearchCircuitBreaker("test", 50, 2, 10, LONG_OPEN_MS);
+
+        call(circuitBreaker, true);
+        for(int i = 0; i < 5; i++){
+            circuitBreaker.acquire();
+            circuitBreaker.release();
+        }
+
+        assertEquals(STATE.CLOSED, circuitBreaker.getState());
+        assertEquals(100, circuitBreaker.getFailureRatePercent());
+    }
+
+    /**
+     * Breaker opened by failures ( minimumCallCount 2 )
+     */
+    private static ElasticSearchCircuitBreaker open(long openMs) throws Exception{
+
+        ElasticSearchCircuitBreaker circuitBreaker = new ElasticSearchCircuitBreaker("test", 50, 2, 10, openMs);
+        call(circuitBreaker, true);
+        call(circuitBreaker, true);
+        assertEquals(STATE.OPEN, circuitBreaker.getState());
+
+        return circuitBreaker;
+    }
+
+    private static void call(ElasticSearchCircuitBreaker circuitBreaker, boolean failure) throws Exception{
+
+        circuitBreaker.acquire();
+        if(failure){
+            circuitBreaker.onFailure();
+        }else{
+            circuitBreaker.onSuccess();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.ainory.dev.utils.elastic;
+
+import org.apache.http.HttpHost;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Adaptive timeout, timeout accounting & hedge of plain searches against ElasticSearchStandIn
+ */
+public class ElasticSearchGuardedClientTest {
+
+    private static final String ES_HOST = "es-guarded-test";
+    private static final int ES_PORT = 9200;
+    private static final String HEDGE_HOST = "es-hedge-test";
+    private static final int HEDGE_PORT = 9201;
+
+    private static final String SEARCH_RESPONSE = "{\"took\":1,\"timed_out\":false,\"_shards\":{\"total\":1,\"successful\":1,\"failed\":0},"
+            + "\"hits\":{\"total\":0,\"max_score\":null,\"hits\":[]}}";
+
+    private ElasticSearchStandIn standIn;
+    private ElasticSearchStandIn hedgeStandIn;
+    private RestClient restClient;
+
+    @Before
+    public void setUp() throws Exception{
+        standIn = new ElasticSearchStandIn(0, 8).start();
+        standIn.addResponse(ElasticSearchStandIn.ENDPOINT.SEARCH, SEARCH_RESPONSE);
+
+        restClient = RestClient.builder(new HttpHost(standIn.getHost(), standIn.getPort())).build();
+    }
+
+    @After
+    public void tearDown() throws Exception{
+        ElasticSearchClientRegistry.setHedge(ES_HOST, ES_PORT, null, 0);
+        restClient.close();
+        standIn.close();
+        if(hedgeStandIn != null){
+            hedgeStandIn.close();
+            ElasticSearchClientRegistry.close(HEDGE_HOST, HEDGE_PORT);
+        }
+    }
+
+    @Test
+    public void timeoutClimbsWhenTheClusterGetsSlower() throws Exception{
+
+        ElasticSearchLatencyTracker latencyTracker = new ElasticSearchLatencyTracker(0.99, 3.0, 50, 2000, 0.95);
+        record(latencyTracker, 35, 10);
+
+        ElasticSearchGuardedClient client = client(new ElasticSearchCircuitBreaker(ES_HOST, 50, 1000, 1000, 60000), latencyTracker);
+        assertEquals(50, client.getTimeoutMs());
+
+        // every call 100ms : timed out at 50ms until the timeout samples move the timeout up
+        standIn.setLatency(100, 0);
+
+        int timeoutCount = 0;
+        while(true){
+            try{
+                client.search(searchRequest());
+                break;
+            }catch (IOException e){
+                assertTrue(++timeoutCount < 40);
+            }
+        }
+
+        assertEquals(timeoutCount, client.getTimeoutCount());
+        assertTrue(client.getTimeoutMs() > 100);
+        assertEquals(ElasticSearchCircuitBreaker.STATE.CLOSED, client.getCircuitBreaker().getState());
+    }
+
+    @Test
+    public void repeatedTimeoutsOpenTheCircuit() throws Exception{
+
+        ElasticSearchGuardedClient client = client(new ElasticSearchCircuitBreaker(ES_HOST, 50, 4, 10, 60000),
+                new ElasticSearchLatencyTracker(0.99, 3.0, 50, 50, 0.95));
+
+        standIn.setLatency(300, 0);
+
+        // single timeouts are not cluster failures
+        for(int i = 1; i < ElasticSearchGuardedClient.TIMEOUT_FAILURE_COUNT; i++){
+            searchTimeout(client);
+        }
+        assertEquals(0, client.getCircuitBreaker().getFailureRatePercent());
+
+        // from the TIMEOUT_FAILURE_COUNT-th consecutive timeout on : failures ( minimum call count 4 )
+        for(int i = 0; i < 4; i++){
+            searchTimeout(client);
+        }
+        assertEquals(ElasticSearchCircuitBreaker.STATE.OPEN, client.getCircuitBreaker().getState());
+        assertEquals(ElasticSearchGuardedClient.TIMEOUT_FAILURE_COUNT - 1 + 4, client.getTimeoutCount());
+
+        try{
+            client.search(searchRequest());
+            fail();
+        }catch (ElasticSearchCircuitBreaker.CircuitOpenException e){
+            // fail fast
+        }
+    }
+
+    @Test
+    public void successResetsConsecutiveTimeouts() throws Exception{
+
+        ElasticSearchGuardedClient client = client(new ElasticSearchCircuitBreaker(ES_HOST, 50, 1, 10, 60000),
+                new ElasticSearchLatencyTracker(0.99, 3.0, 200, 200, 0.95));
+
+        for(int i = 0; i < 3; i++){
+            standIn.setLatency(400, 0);
+            for(int j = 1; j < ElasticSearchGuardedClient.TIMEOUT_FAILURE_COUNT; j++){
+                searchTimeout(client);
+            }
+            standIn.setLatency(0, 0);
+            client.search(searchRequest());
+        }
+
+        assertEquals(0, client.getCircuitBreaker().getFailureRatePercent());
+    }
+
+    @Test
+    public void slowPrimaryIsHedged() throws Exception{
+
+        hedgeStandIn = new ElasticSearchStandIn(0, 8).start();
+        hedgeStandIn.addResponse(ElasticSearchStandIn.ENDPOINT.SEARCH, SEARCH_RESPONSE);
+        hedgeStandIn.route(HEDGE_HOST, HEDGE_PORT);
+        ElasticSearchClientRegistry.setHedge(ES_HOST, ES_PORT, HEDGE_HOST, HEDGE_PORT);
+
+        // hedge delay 20ms, timeout 2s
+        ElasticSearchLatencyTracker latencyTracker = new ElasticSearchLatencyTracker(0.99, 3.0, 2000, 5000, 0.95);
+        record(latencyTracker, 35, 20);
+
+        ElasticSearchGuardedClient client = client(new ElasticSearchCircuitBreaker(ES_HOST, 50, 1000, 1000, 60000), latencyTracker);
+
+        standIn.setLatency(1000, 0);
+
+        long start = System.nanoTime();
+        SearchResponse searchResponse = client.search(searchRequest());
+        long elapsedMs = (System.nanoTime() - start) / 1000000;
+
+        assertEquals(0, searchResponse.getHits().getTotalHits());
+        assertTrue(elapsedMs < 1000);
+        assertEquals(1, client.getHedgeCount());
+        assertEquals(0, client.getTimeoutCount());
+        assertEquals(1, hedgeStandIn.getRequestCount(ElasticSearchStandIn.ENDPOINT.SEARCH));
+    }
+
+    private ElasticSearchGuardedClient client(ElasticSearchCircuitBreaker circuitBreaker, ElasticSearchLatencyTracker latencyTracker){
+        // named like a registry client ( host:port ) : hedge lookup
+        return new ElasticSearchGuardedClient(restClient, ES_HOST + ":" + ES_PORT, circuitBreaker, latencyTracker);
+    }
+
+    private static SearchRequest searchRequest(){
+        return new SearchRequest().source(new SearchSourceBuilder().size(0));
+    }
+
+    private static void searchTimeout(ElasticSearchGuardedClient client) throws Exception{
+        try{
+            client.search(searchRequest());
+            fail();
+        }catch (ElasticSearchCircuitBreaker.CircuitOpenException e){
+            throw e;
+        }catch (IOException e){
+            // timed out
+        }
+    }
+
+    private static void record(ElasticSearchLatencyTracker latencyTracker, int count, long latencyMs){
+        for(int i = 0; i < count; i++){
+            latencyTracker.record(latencyMs);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.ainory.dev.utils.elastic;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ElasticSearchLatencyTrackerTest {
+
+    @Test
+    public void maxTimeoutUntilMinimumSampleCount(){
+
+        ElasticSearchLatencyTracker latencyTracker = new ElasticSearchLatencyTracker(0.99, 3.0, 100, 30000, 0.95);
+
+        record(latencyTracker, ElasticSearchLatencyTracker.DEFAULT_MINIMUM_SAMPLE_COUNT - 1, 50);
+
+        assertEquals(30000, latencyTracker.getTimeoutMs());
+        assertEquals(-1, latencyTracker.getHedgeDelayMs());
+    }
+
+    @Test
+    public void timeoutIsPercentileTimesMultiplier(){
+
+        ElasticSearchLatencyTracker latencyTracker = new ElasticSearchLatencyTracker(0.99, 3.0, 100, 30000, 0.95);
+
+        // 90 x 50ms, 9 x 400ms ( recomputed at sample 20 + 15, then every 16 samples : 35, 51, 67, 83, 99 )
+        record(latencyTracker, 90, 50);
+        record(latencyTracker, 9, 400);
+
+        assertEquals(1200, latencyTracker.getTimeoutMs());
+        assertEquals(400, latencyTracker.getHedgeDelayMs());
+    }
+
+    @Test
+    public void timeoutIsClamped(){
+
+        ElasticSearchLatencyTracker latencyTracker = new ElasticSearchLatencyTracker(0.99, 3.0, 1000, 2000, 0.95);
+
+        record(latencyTracker, 35, 10);
+        assertEquals(1000, latencyTracker.getTimeoutMs());
+        assertEquals(10, latencyTracker.getHedgeDelayMs());
+
+        record(latencyTracker, ElasticSearchLatencyTracker.DEFAULT_SAMPLE_SIZE, 5000);
+        assertEquals(2000, latencyTracker.getTimeoutMs());
+    }
+
+    @Test
+    public void timeoutSamplesRaiseTheTimeout(){
+
+        ElasticSearchLatencyTracker latencyTracker = new ElasticSearchLatencyTracker(0.99, 3.0, 1000, 30000, 0.95);
+
+        // 100ms baseline -> clamped to 1s
+        record(latencyTracker, 499, 100);
+        assertEquals(1000, latencyTracker.getTimeoutMs());
+
+        // cluster at 1.5s for good : every call times out and is recorded as its 1s timeout
+        record(latencyTracker, 16, 1000);
+        assertEquals(3000, latencyTracker.getTimeoutMs());
+    }
+
+    private static void record(ElasticSearchLatencyTracker latencyTracker, int count, long latencyMs){
+        for(int i = 0; i < count; i++){
+            latencyTracker.record(latencyMs);
+        }
+    }
+}
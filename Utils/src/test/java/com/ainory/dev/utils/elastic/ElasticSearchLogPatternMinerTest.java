@@ -0,0 +1,193 @@
+package com.ainory.dev.utils.elastic;
+
+import com.ainory.dev.utils.elastic.entity.ElasticSearchDataInfo;
+import com.ainory.dev.utils.elastic.entity.ElasticSearchLogPatternInfo;
+import com.ainory.dev.utils.elastic.entity.ElasticSearchLogPatternListInfo;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class ElasticSearchLogPatternMinerTest {
+
+    @Test
+    public void tokensWithDigitsAreMasked(){
+
+        ElasticSearchLogPatternMiner miner = new ElasticSearchLogPatternMiner();
+        miner.accept(hit(1, "Connection from 10.0.0.1 closed"));
+        miner.accept(hit(2, "Connection from 10.0.0.2 closed"));
+
+        ElasticSearchLogPatternListInfo elasticSearchLogPatternListInfo = miner.getPatternListInfo(0);
+
+        assertEquals(1, elasticSearchLogPatternListInfo.getPatternList().size());
+        assertPattern(elasticSearchLogPatternListInfo.getPatternList().get(0), "Connection from <*> closed", 2);
+    }
+
+    @Test
+    public void differingTokensAfterThePrefixBecomeWildcards(){
+
+        ElasticSearchLogPatternMiner miner = new ElasticSearchLogPatternMiner();
+        miner.accept(hit(1, "user login ok alice"));
+        miner.accept(hit(2, "user login ok bob"));
+        miner.accept(hit(3, "user login ok carol"));
+
+        List<ElasticSearchLogPatternInfo> patternList = miner.getPatternListInfo(0).getPatternList();
+
+        assertEquals(1, patternList.size());
+        assertPattern(patternList.get(0), "user login ok <*>", 3);
+    }
+
+    @Test
+    public void prefixTokensAndTokenCountSplitPatterns(){
+
+        ElasticSearchLogPatternMiner miner = new ElasticSearchLogPatternMiner();
+        miner.accept(hit(1, "user alice logged in"));
+        miner.accept(hit(2, "user bob logged in"));
+        miner.accept(hit(3, "user alice logged in twice"));
+
+        assertEquals(3, miner.getPatternCount());
+    }
+
+    @Test
+    public void similarityThreshold(){
+
+        ElasticSearchLogPatternMiner miner = new ElasticSearchLogPatternMiner();
+
+        // 2 of 5 same = 0.4 -> joined
+        miner.accept(hit(1, "a b c d e"));
+        miner.accept(hit(2, "a b x y z"));
+        assertEquals(1, miner.getPatternCount());
+        assertPattern(miner.getPatternListInfo(0).getPatternList().get(0), "a b <*> <*> <*>", 2);
+
+        // 2 of 6 same -> new pattern
+        miner.accept(hit(3, "a b c d e f"));
+        miner.accept(hit(4, "a b u v w x"));
+        assertEquals(3, miner.getPatternCount());
+    }
+
+    @Test
+    public void samplesAndTimeRange(){
+
+        ElasticSearchLogPatternMiner miner = new ElasticSearchLogPatternMiner(10);
+        for(long time : new long[]{ 500, 100, 900, 300 }){
+            miner.accept(hit(time, "request " + time + " done"));
+        }
+        miner.accept(hit(50, null));
+        miner.accept(null);
+
+        ElasticSearchLogPatternInfo elasticSearchLogPatternInfo = miner.getPatternListInfo(0).getPatternList().get(0);
+
+        assertEquals(4, miner.getTotalCount());
+        assertEquals(100, elasticSearchLogPatternInfo.getFirstTime());
+        assertEquals(900, elasticSearchLogPatternInfo.getLastTime());
+
+        // first DEFAULT_SAMPLE_COUNT lines
+        assertEquals(ElasticSearchLogPatternMiner.DEFAULT_SAMPLE_COUNT, elasticSearchLogPatternInfo.getSampleList().size());
+        assertEquals("request 500 done", elasticSearchLogPatternInfo.getSampleList().get(0).getMessage());
+    }
+
+    @Test
+    public void patternsAreSortedByCountAndLimited(){
+
+        ElasticSearchLogPatternMiner miner = new ElasticSearchLogPatternMiner();
+        accept(miner, "disk full", 2);
+        accept(miner, "cache miss on read", 5);
+        accept(miner, "worker stopped", 1);
+
+        ElasticSearchLogPatternListInfo elasticSearchLogPatternListInfo = miner.getPatternListInfo(2);
+
+        assertEquals(8, elasticSearchLogPatternListInfo.getTotalCount());
+        assertEquals(2, elasticSearchLogPatternListInfo.getPatternList().size());
+        assertPattern(elasticSearchLogPatternListInfo.getPatternList().get(0), "cache miss on read", 5);
+        assertPattern(elasticSearchLogPatternListInfo.getPatternList().get(1), "disk full", 2);
+    }
+
+    @Test
+    public void evictionKeepsFrequentPatterns(){
+
+        ElasticSearchLogPatternMiner miner = new ElasticSearchLogPatternMiner(2);
+        accept(miner, "cache miss on read", 3);
+        accept(miner, "disk full", 1);
+
+        // full -> smaller of the least recently matched ( disk full ) evicted
+        accept(miner, "worker stopped", 1);
+
+        ElasticSearchLogPatternListInfo elasticSearchLogPatternListInfo = miner.getPatternListInfo(0);
+
+        assertEquals(2, miner.getPatternCount());
+        assertEquals(5, elasticSearchLogPatternListInfo.getTotalCount());
+        assertEquals(1, elasticSearchLogPatternListInfo.getEvictedCount());
+        assertPattern(elasticSearchLogPatternListInfo.getPatternList().get(0), "cache miss on read", 3);
+        assertPattern(elasticSearchLogPatternListInfo.getPatternList().get(1), "worker stopped", 1);
+
+        // evicted pattern starts over
+        accept(miner, "disk full", 1);
+        assertEquals(2, miner.getPatternCount());
+        assertEquals(2, miner.getPatternListInfo(0).getEvictedCount());
+    }
+
+    @Test
+    public void fullTreeNodeSendsTokensToTheWildcardChild(){
+
+        ElasticSearchLogPatternMiner miner = new ElasticSearchLogPatternMiner(ElasticSearchLogPatternMiner.DEFAULT_DEPTH, ElasticSearchLogPatternMiner.DEFAULT_SIMILARITY,
+                2, ElasticSearchLogPatternMiner.DEFAULT_MAX_PATTERNS, ElasticSearchLogPatternMiner.DEFAULT_MAX_TOKENS, ElasticSearchLogPatternMiner.DEFAULT_SAMPLE_COUNT);
+
+        miner.accept(hit(1, "alpha started"));
+        miner.accept(hit(2, "beta started"));
+        miner.accept(hit(3, "gamma started"));
+
+        List<ElasticSearchLogPatternInfo> patternList = miner.getPatternListInfo(0).getPatternList();
+
+        assertEquals(2, patternList.size());
+        assertPattern(patternList.get(0), "<*> started", 2);
+        assertPattern(patternList.get(1), "alpha started", 1);
+    }
+
+    @Test
+    public void longLinesAreCut(){
+
+        ElasticSearchLogPatternMiner miner = new ElasticSearchLogPatternMiner(ElasticSearchLogPatternMiner.DEFAULT_DEPTH, ElasticSearchLogPatternMiner.DEFAULT_SIMILARITY,
+                ElasticSearchLogPatternMiner.DEFAULT_MAX_CHILDREN, ElasticSearchLogPatternMiner.DEFAULT_MAX_PATTERNS, 3, ElasticSearchLogPatternMiner.DEFAULT_SAMPLE_COUNT);
+
+        miner.accept(hit(1, "  stack trace line one of many  "));
+        miner.accept(hit(2, "stack trace line two of many"));
+
+        List<ElasticSearchLogPatternInfo> patternList = miner.getPatternListInfo(0).getPatternList();
+
+        assertEquals(1, patternList.size());
+        assertPattern(patternList.get(0), "stack trace line", 2);
+    }
+
+    @Test
+    public void clear(){
+
+        ElasticSearchLogPatternMiner miner = new ElasticSearchLogPatternMiner();
+        accept(miner, "disk full", 2);
+
+        miner.clear();
+
+        assertEquals(0, miner.getTotalCount());
+        assertEquals(0, miner.getPatternCount());
+        assertEquals(new ArrayList<ElasticSearchLogPatternInfo>(), miner.getPatternListInfo(0).getPatternList());
+    }
+
+    private static void accept(ElasticSearchLogPatternMiner miner, String message, int count){
+        for(int i = 0; i < count; i++){
+            miner.accept(hit(i, message));
+        }
+    }
+
+    private static ElasticSearchDataInfo hit(long time, String message){
+        ElasticSearchDataInfo elasticSearchDataInfo = new ElasticSearchDataInfo();
+        elasticSearchDataInfo.setTime(time);
+        elasticSearchDataInfo.setMessage(message);
+        return elasticSearchDataInfo;
+    }
+
+    private static void assertPattern(ElasticSearchLogPatternInfo elasticSearchLogPatternInfo, String template, long count){
+        assertEquals(template, elasticSearchLogPatternInfo.getTemplate());
+        assertEquals(count, elasticSearchLogPatternInfo.getCount());
+    }
+}
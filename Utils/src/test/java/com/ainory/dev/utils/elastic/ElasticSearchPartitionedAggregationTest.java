@@ -0,0 +1,66 @@
+package com.ainory.dev.utils.elastic;
+
+import com.ainory.dev.utils.elastic.ElasticSearchSearchUtil.AGGREGATION_TYPE;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.elasticsearch.action.search.SearchResponse;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ElasticSearchPartitionedAggregationTest {
+
+    @Test
+    public void completePartition() throws Exception{
+
+        SearchResponse searchResponse = response("{\"sterms#HOST\":" + terms(0, bucket("host1", 3, null)) + "}");
+
+        assertEquals(0, ElasticSearchPartitionedAggregation.getOtherDocCount(AGGREGATION_TYPE.HOST, searchResponse));
+        assertEquals(0, ElasticSearchPartitionedAggregation.getInnerOtherDocCount(AGGREGATION_TYPE.HOST, searchResponse));
+    }
+
+    @Test
+    public void truncatedPartition() throws Exception{
+
+        SearchResponse searchResponse = response("{\"sterms#FILE\":" + terms(42, bucket("app.log", 3, null)) + "}");
+
+        assertEquals(42, ElasticSearchPartitionedAggregation.getOtherDocCount(AGGREGATION_TYPE.FILE, searchResponse));
+        assertEquals(0, ElasticSearchPartitionedAggregation.getInnerOtherDocCount(AGGREGATION_TYPE.FILE, searchResponse));
+    }
+
+    @Test
+    public void truncatedFileTermsOfHostFile() throws Exception{
+
+        SearchResponse searchResponse = response("{\"sterms#HOST_FILE\":" + terms(0,
+                bucket("host1", 10, "{\"sterms#FILE\":" + terms(0, bucket("app.log", 10, null)) + "}"),
+                bucket("host2", 20, "{\"sterms#FILE\":" + terms(7, bucket("app.log", 13, null)) + "}"),
+                bucket("host3", 30, "{\"sterms#FILE\":" + terms(4, bucket("app.log", 26, null)) + "}")) + "}");
+
+        assertEquals(0, ElasticSearchPartitionedAggregation.getOtherDocCount(AGGREGATION_TYPE.HOST_FILE, searchResponse));
+        assertEquals(7, ElasticSearchPartitionedAggregation.getInnerOtherDocCount(AGGREGATION_TYPE.HOST_FILE, searchResponse));
+    }
+
+    @Test
+    public void retryTermsSizeDoubles(){
+        assertEquals(1500, ElasticSearchPartitionedAggregation.getRetryTermsSize(750));
+        assertEquals(Integer.MAX_VALUE, ElasticSearchPartitionedAggregation.getRetryTermsSize(Integer.MAX_VALUE / 2 + 1));
+    }
+
+    private static SearchResponse response(String aggregations) throws Exception{
+        String json = "{\"took\":1,\"timed_out\":false,\"_shards\":{\"total\":1,\"successful\":1,\"failed\":0},"
+                + "\"hits\":{\"total\":0,\"max_score\":0.0,\"hits\":[]},\"aggregations\":" + aggregations + "}";
+        return ElasticSearchRequestConverter.parseSearchResponse(new StringEntity(json, ContentType.APPLICATION_JSON));
+    }
+
+    private static String terms(long otherDocCount, String... buckets){
+        return "{\"doc_count_error_upper_bound\":0,\"sum_other_doc_count\":" + otherDocCount + ",\"buckets\":[" + String.join(",", buckets) + "]}";
+    }
+
+    private static String bucket(String key, long docCount, String aggregations){
+        String bucket = "{\"key\":\"" + key + "\",\"doc_count\":" + docCount;
+        if(aggregations != null){
+            bucket += "," + aggregations.substring(1, aggregations.length() - 1);
+        }
+        return bucket + "}";
+    }
+}
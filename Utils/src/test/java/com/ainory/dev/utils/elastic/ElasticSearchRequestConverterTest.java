@@ -0,0 +1,103 @@
+package com.ainory.dev.utils.elastic;
+
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.util.EntityUtils;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.search.MultiSearchRequest;
+import org.elasticsearch.action.search.MultiSearchResponse;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ElasticSearchRequestConverterTest {
+
+    @Test
+    public void searchEndpoint(){
+        assertEquals("/_search", ElasticSearchRequestConverter.getSearchEndpoint(new SearchRequest()));
+        assertEquals("/log-2017.12.20,log-2017.12.21/_search", ElasticSearchRequestConverter.getSearchEndpoint(new SearchRequest("log-2017.12.20", "log-2017.12.21")));
+        assertEquals("/log-2017.12.20/log/_search", ElasticSearchRequestConverter.getSearchEndpoint(new SearchRequest("log-2017.12.20").types("log")));
+    }
+
+    @Test
+    public void searchParams(){
+        SearchRequest searchRequest = new SearchRequest("log-2017.12.20").routing("host1").preference("_local");
+
+        Map<String, String> params = ElasticSearchRequestConverter.getSearchParams(searchRequest);
+
+        assertEquals("true", params.get("typed_keys"));
+        assertEquals("host1", params.get("routing"));
+        assertEquals("_local", params.get("preference"));
+        assertEquals("query_then_fetch", params.get("search_type"));
+        assertNull(params.get("scroll"));
+    }
+
+    @Test
+    public void searchEntity() throws Exception{
+        assertNull(ElasticSearchRequestConverter.getSearchEntity(new SearchRequest()));
+
+        SearchRequest searchRequest = new SearchRequest().source(new SearchSourceBuilder().size(7));
+        assertTrue(new String(EntityUtils.toByteArray(ElasticSearchRequestConverter.getSearchEntity(searchRequest)), "UTF-8").contains("\"size\":7"));
+    }
+
+    @Test
+    public void parseSearchResponseWithAggregation() throws Exception{
+        String json = "{\"took\":3,\"timed_out\":false,\"_shards\":{\"total\":1,\"successful\":1,\"failed\":0},"
+                + "\"hits\":{\"total\":5,\"max_score\":0.0,\"hits\":[]},"
+                + "\"aggregations\":{\"sterms#HOST\":{\"doc_count_error_upper_bound\":0,\"sum_other_doc_count\":0,"
+                + "\"buckets\":[{\"key\":\"host1\",\"doc_count\":3},{\"key\":\"host2\",\"doc_count\":2}]}}}";
+
+        SearchResponse searchResponse = ElasticSearchRequestConverter.parseSearchResponse(new StringEntity(json, ContentType.APPLICATION_JSON));
+
+        assertEquals(5, searchResponse.getHits().getTotalHits());
+        Terms terms = searchResponse.getAggregations().get("HOST");
+        assertEquals(2, terms.getBuckets().size());
+        assertEquals(3, terms.getBucketByKey("host1").getDocCount());
+    }
+
+    @Test
+    public void multiSearchEntity() throws Exception{
+        MultiSearchRequest multiSearchRequest = new MultiSearchRequest();
+        multiSearchRequest.add(new SearchRequest("log-2017.12.20").source(new SearchSourceBuilder().size(0)));
+        multiSearchRequest.add(new SearchRequest("log-2017.12.21").routing("host1"));
+
+        String[] lines = new String(EntityUtils.toByteArray(ElasticSearchRequestConverter.getMultiSearchEntity(multiSearchRequest)), "UTF-8").split("\n", -1);
+
+        // header + source per search, trailing new line
+        assertEquals(5, lines.length);
+        assertTrue(lines[0].contains("\"index\":[\"log-2017.12.20\"]"));
+        assertTrue(lines[1].contains("\"size\":0"));
+        assertTrue(lines[2].contains("\"routing\":\"host1\""));
+        assertEquals("{}", lines[3]);
+        assertEquals("", lines[4]);
+    }
+
+    @Test
+    public void parseMultiSearchResponseKeepsItemsApart() throws Exception{
+        String json = "{\"responses\":["
+                + "{\"took\":1,\"timed_out\":false,\"_shards\":{\"total\":1,\"successful\":1,\"failed\":0},\"hits\":{\"total\":3,\"max_score\":0.0,\"hits\":[]},\"status\":200},"
+                + "{\"error\":{\"root_cause\":[],\"type\":\"index_not_found_exception\",\"reason\":\"no such index\"},\"status\":404},"
+                + "{\"took\":2,\"timed_out\":true,\"_shards\":{\"total\":1,\"successful\":1,\"failed\":0},\"hits\":{\"total\":7,\"max_score\":0.0,\"hits\":[]},\"status\":200}"
+                + "]}";
+
+        MultiSearchResponse multiSearchResponse = ElasticSearchRequestConverter.parseMultiSearchResponse(new StringEntity(json, ContentType.APPLICATION_JSON));
+
+        assertEquals(3, multiSearchResponse.getResponses().length);
+        assertEquals(3, multiSearchResponse.getResponses()[0].getResponse().getHits().getTotalHits());
+
+        assertTrue(multiSearchResponse.getResponses()[1].isFailure());
+        assertEquals(RestStatus.NOT_FOUND, ((ElasticsearchException) multiSearchResponse.getResponses()[1].getFailure()).status());
+
+        assertTrue(multiSearchResponse.getResponses()[2].getResponse().isTimedOut());
+        assertEquals(7, multiSearchResponse.getResponses()[2].getResponse().getHits().getTotalHits());
+    }
+}
@@ -0,0 +1,82 @@
+package com.ainory.dev.utils.elastic;
+
+import org.junit.Test;
+
+import static com.ainory.dev.utils.elastic.ElasticSearchSearchUtil.PERIOD_UNIT_DAY;
+import static com.ainory.dev.utils.elastic.ElasticSearchSearchUtil.PERIOD_UNIT_HOUR;
+import static com.ainory.dev.utils.elastic.ElasticSearchSearchUtil.PERIOD_UNIT_MINUTE;
+import static com.ainory.dev.utils.elastic.ElasticSearchSearchUtil.PERIOD_UNIT_SECOND;
+import static com.ainory.dev.utils.elastic.ElasticSearchSearchUtilTest.millis;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ElasticSearchResolutionPlannerTest {
+
+    private static final String DAY_START = "2017-11-01 00:00:00.000";
+    private static final String DAY_END = "2017-11-02 00:00:00.000";
+
+    // every step of the ladder
+    private static final int[] STEP_PERIODS = {1, 5, 10, 15, 30, 1, 5, 10, 15, 30, 1, 3, 6, 12, 1, 7, 30};
+    private static final String[] STEP_UNITS = {
+            PERIOD_UNIT_SECOND, PERIOD_UNIT_SECOND, PERIOD_UNIT_SECOND, PERIOD_UNIT_SECOND, PERIOD_UNIT_SECOND,
+            PERIOD_UNIT_MINUTE, PERIOD_UNIT_MINUTE, PERIOD_UNIT_MINUTE, PERIOD_UNIT_MINUTE, PERIOD_UNIT_MINUTE,
+            PERIOD_UNIT_HOUR, PERIOD_UNIT_HOUR, PERIOD_UNIT_HOUR, PERIOD_UNIT_HOUR,
+            PERIOD_UNIT_DAY, PERIOD_UNIT_DAY, PERIOD_UNIT_DAY};
+
+    @Test
+    public void requestedResolutionIsKeptWhenItFits(){
+        assertResolution(1, PERIOD_UNIT_HOUR, ElasticSearchResolutionPlanner.plan(DAY_START, DAY_END, 1, PERIOD_UNIT_HOUR, 2000));
+        assertResolution(1, PERIOD_UNIT_SECOND, ElasticSearchResolutionPlanner.plan(DAY_START, DAY_END, 1, PERIOD_UNIT_SECOND, 0));
+        assertResolution(1, PERIOD_UNIT_SECOND, ElasticSearchResolutionPlanner.plan(DAY_START, DAY_END, 1, PERIOD_UNIT_SECOND, -1));
+    }
+
+    @Test
+    public void finestFittingStepIsPicked(){
+        // 1 day : 1s -> 86402 points, 30s -> 2882, 1m -> 1442
+        assertResolution(1, PERIOD_UNIT_MINUTE, ElasticSearchResolutionPlanner.plan(DAY_START, DAY_END, 1, PERIOD_UNIT_SECOND, 2000));
+
+        // 30 days : 15m -> 2882, 30m -> 1442
+        assertResolution(30, PERIOD_UNIT_MINUTE, ElasticSearchResolutionPlanner.plan("2017-11-01 00:00:00.000", "2017-12-01 00:00:00.000", 1, PERIOD_UNIT_MINUTE, 2000));
+
+        // 1 day : 2h is not a step, 3h -> 10 points
+        assertResolution(3, PERIOD_UNIT_HOUR, ElasticSearchResolutionPlanner.plan(DAY_START, DAY_END, 2, PERIOD_UNIT_HOUR, 10));
+    }
+
+    @Test
+    public void lastStepIsTheCoarsest(){
+        // 1 year : 30d -> 14 points, still over maxPoints
+        assertResolution(30, PERIOD_UNIT_DAY, ElasticSearchResolutionPlanner.plan("2017-01-01 00:00:00.000", "2018-01-01 00:00:00.000", 1, PERIOD_UNIT_SECOND, 10));
+
+        // requested period coarser than every step
+        assertResolution(60, PERIOD_UNIT_DAY, ElasticSearchResolutionPlanner.plan("2017-01-01 00:00:00.000", "2018-01-01 00:00:00.000", 60, PERIOD_UNIT_DAY, 2));
+    }
+
+    @Test
+    public void requestedResolutionIsKeptOnParseError(){
+        assertResolution(1, PERIOD_UNIT_SECOND, ElasticSearchResolutionPlanner.plan("2017-11-01", DAY_END, 1, PERIOD_UNIT_SECOND, 10));
+    }
+
+    @Test
+    public void everyStepBucketsOnTheGridOfItsPeriod() throws Exception{
+
+        long time = millis("2017-11-01 15:03:07.123");
+
+        for(int i = 0; i < STEP_PERIODS.length; i++){
+            long periodMillis = ElasticSearchSearchUtil.dateUnitConvertMillis(STEP_PERIODS[i], STEP_UNITS[i]);
+            long bucketStart = ElasticSearchSearchUtil.getBucketStartMillis(time, periodMillis);
+            String step = STEP_PERIODS[i] + STEP_UNITS[i];
+
+            assertTrue(step, bucketStart <= time && time < bucketStart + periodMillis);
+            assertEquals(step, bucketStart, ElasticSearchSearchUtil.getBucketStartMillis(bucketStart, periodMillis));
+            assertEquals(step, bucketStart + periodMillis, ElasticSearchSearchUtil.getBucketStartMillis(bucketStart + periodMillis, periodMillis));
+        }
+
+        // 5m window starting at 10:03 keeps the 10:00 bucket ( extended_bounds, gap filling, cache merge )
+        assertEquals(millis("2017-11-01 10:00:00.000"), ElasticSearchSearchUtil.getBucketStartMillis("2017-11-01 10:03:00.000", 5, PERIOD_UNIT_MINUTE));
+        assertEquals(millis("2017-11-01 06:00:00.000"), ElasticSearchSearchUtil.getBucketStartMillis("2017-11-01 10:03:00.000", 6, PERIOD_UNIT_HOUR));
+    }
+
+    private static void assertResolution(int period, String periodUnit, ElasticSearchResolutionPlanner.Resolution resolution){
+        assertEquals(period + periodUnit, resolution.getPeriod() + resolution.getPeriodUnit());
+    }
+}
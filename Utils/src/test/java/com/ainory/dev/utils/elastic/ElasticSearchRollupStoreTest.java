@@ -0,0 +1,325 @@
+package com.ainory.dev.utils.elastic;
+
+import com.ainory.dev.utils.elastic.ElasticSearchSearchUtil.AGGREGATION_TYPE;
+import com.ainory.dev.utils.elastic.entity.ElasticSearchAggregationListInfo;
+import com.ainory.dev.utils.elastic.entity.ElasticSearchAggregationSeries;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static com.ainory.dev.utils.elastic.ElasticSearchSearchUtil.PERIOD_UNIT_HOUR;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Rollup answers against the raw aggregation of the same range ( ElasticSearchStandIn answering from an in memory document set )
+ */
+public class ElasticSearchRollupStoreTest {
+
+    private static final String ES_HOST = "es-rollup-test";
+    private static final int ES_PORT = 9200;
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final long RETENTION_MS = TimeUnit.DAYS.toMillis(2);
+    private static final long SETTLE_MS = TimeUnit.HOURS.toMillis(3);
+
+    private static final int DOCUMENT_COUNT = 5000;
+
+    private ElasticSearchStandIn standIn;
+    private ElasticSearchRollupStore rollupStore;
+
+    private long now;
+
+    @Before
+    public void setUp() throws Exception{
+
+        now = System.currentTimeMillis();
+
+        standIn = new ElasticSearchStandIn(0, 4).start();
+        standIn.route(ES_HOST, ES_PORT);
+        standIn.setResponder(ElasticSearchStandIn.ENDPOINT.SEARCH, new DocumentIndex(documents(now - RETENTION_MS, now)));
+
+        rollupStore = ElasticSearchRollupStore.start(ES_HOST, ES_PORT, 1, PERIOD_UNIT_HOUR, RETENTION_MS, SETTLE_MS, TimeUnit.HOURS.toMillis(1));
+
+        // waits for the scheduled first refresh, rolls up what is left
+        rollupStore.refresh();
+    }
+
+    @After
+    public void tearDown(){
+        ElasticSearchRollupStore.stop(ES_HOST, ES_PORT);
+        standIn.close();
+    }
+
+    @Test
+    public void rollupAnswerEqualsRawAggregation() throws Exception{
+
+        // partial first bucket ( raw head ), rollups, buckets after now - SETTLE_MS ( raw recent edge )
+        String startTime = ElasticSearchSearchUtil.getTimeString(ElasticSearchSearchUtil.getBucketStartMillis(now - 30 * HOUR, HOUR) + TimeUnit.MINUTES.toMillis(20));
+        String endTime = ElasticSearchSearchUtil.getTimeString(now);
+
+        for(AGGREGATION_TYPE aggregation_type : new AGGREGATION_TYPE[]{AGGREGATION_TYPE.ALL, AGGREGATION_TYPE.HOST, AGGREGATION_TYPE.HOST_FILE}){
+
+            long requestCount = standIn.getRequestCount(ElasticSearchStandIn.ENDPOINT.SEARCH);
+
+            ElasticSearchAggregationListInfo rollup = rollupStore.aggregation(aggregation_type, startTime, endTime, 1, PERIOD_UNIT_HOUR);
+            assertNotNull(aggregation_type.name(), rollup);
+
+            // head & recent edge only ( terms : cardinality + partition each )
+            assertEquals(aggregation_type.name(), aggregation_type == AGGREGATION_TYPE.ALL ? 2 : 4, standIn.getRequestCount(ElasticSearchStandIn.ENDPOINT.SEARCH) - requestCount);
+
+            ElasticSearchAggregationListInfo raw = ElasticSearchSearchUtil.aggregationRaw(ES_HOST, ES_PORT, aggregation_type, startTime, endTime, 1, PERIOD_UNIT_HOUR);
+
+            assertFalse(aggregation_type.name(), raw.getSeriesMap().isEmpty());
+            assertEquals(aggregation_type.name(), raw.getSeriesMap().keySet(), rollup.getSeriesMap().keySet());
+
+            for(Map.Entry<String, ElasticSearchAggregationSeries> entry : raw.getSeriesMap().entrySet()){
+                ElasticSearchAggregationSeries rollupSeries = rollup.getSeries(entry.getKey());
+                assertArrayEquals(entry.getKey(), entry.getValue().getTimes(), rollupSeries.getTimes());
+                assertArrayEquals(entry.getKey(), entry.getValue().getCounts(), rollupSeries.getCounts());
+            }
+        }
+    }
+
+    /**
+     * Documents of 4 hosts / 3 files in [from, to) , some without file or host
+     */
+    private static List<Document> documents(long from, long to){
+
+        Random random = new Random(20);
+
+        List<Document> documentList = new ArrayList<>(DOCUMENT_COUNT);
+        for(int i = 0; i < DOCUMENT_COUNT; i++){
+            long time = from + (long) (random.nextDouble() * (to - from));
+            String host = random.nextInt(20) == 0 ? null : "host" + (1 + random.nextInt(4));
+            String file = random.nextInt(10) == 0 ? null : "app" + (1 + random.nextInt(3)) + ".log";
+            documentList.add(new Document(time, host, file));
+        }
+        return documentList;
+    }
+
+    private static final class Document {
+        private final long time;
+        private final String host;
+        private final String file;
+
+        private Document(long time, String host, String file) {
+            this.time = time;
+            this.host = host;
+            this.file = file;
+        }
+
+        private String get(String field){
+            return field.startsWith("host") ? host : field.startsWith("file") ? file : null;
+        }
+    }
+
+    /**
+     * _search of size 0 over the documents : @timestamp range query, date_histogram ( fixed interval, extended_bounds ),
+     * terms ( include partition / terms, order doc count desc, term asc ), cardinality
+     */
+    private static final class DocumentIndex implements Function<String, String> {
+
+        private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+        private final List<Document> documentList;
+
+        private DocumentIndex(List<Document> documentList) {
+            this.documentList = documentList;
+        }
+
+        @Override
+        public String apply(String requestBody){
+            try{
+                JsonNode request = OBJECT_MAPPER.readTree(requestBody);
+                JsonNode range = find(request.get("query"), "range").get("@timestamp");
+
+                long from = range.get("from").isNull() ? Long.MIN_VALUE : range.get("from").asLong() + (range.path("include_lower").asBoolean(true) ? 0 : 1);
+                long to = range.get("to").isNull() ? Long.MAX_VALUE : range.get("to").asLong() - (range.path("include_upper").asBoolean(true) ? 0 : 1);
+
+                List<Document> hitList = new ArrayList<>();
+                for(Document document : documentList){
+                    if(document.time >= from && document.time <= to){
+                        hitList.add(document);
+                    }
+                }
+
+                ObjectNode response = OBJECT_MAPPER.createObjectNode();
+                response.put("took", 1);
+                response.put("timed_out", false);
+                response.putObject("_shards").put("total", 1).put("successful", 1).put("failed", 0);
+                response.putObject("hits").put("total", hitList.size()).put("max_score", 0.0).putArray("hits");
+                response.set("aggregations", aggregations(request.get("aggregations"), hitList));
+
+                return OBJECT_MAPPER.writeValueAsString(response);
+
+            }catch (Exception e){
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private static JsonNode find(JsonNode node, String name){
+
+            if(node == null || node.has(name)){
+                return node == null ? null : node.get(name);
+            }
+
+            for(JsonNode child : node){
+                JsonNode found = find(child, name);
+                if(found != null){
+                    return found;
+                }
+            }
+            return null;
+        }
+
+        private static ObjectNode aggregations(JsonNode aggregations, List<Document> documentList) throws Exception{
+
+            ObjectNode result = OBJECT_MAPPER.createObjectNode();
+            if(aggregations == null){
+                return result;
+            }
+
+            Iterator<Map.Entry<String, JsonNode>> iterator = aggregations.fields();
+            while(iterator.hasNext()){
+                Map.Entry<String, JsonNode> entry = iterator.next();
+                JsonNode aggregation = entry.getValue();
+
+                if(aggregation.has("date_histogram")){
+                    result.set("date_histogram#" + entry.getKey(), dateHistogram(aggregation.get("date_histogram"), aggregation.get("aggregations"), documentList));
+                }else if(aggregation.has("terms")){
+                    result.set("sterms#" + entry.getKey(), terms(aggregation.get("terms"), aggregation.get("aggregations"), documentList));
+                }else if(aggregation.has("cardinality")){
+                    Set<String> keySet = new HashSet<>();
+                    for(Document document : documentList){
+                        String key = document.get(aggregation.get("cardinality").get("field").asText());
+                        if(key != null){
+                            keySet.add(key);
+                        }
+                    }
+                    result.putObject("cardinality#" + entry.getKey()).put("value", keySet.size());
+                }else{
+                    throw new IllegalArgumentException("Unsupported aggregation : " + aggregation);
+                }
+            }
+            return result;
+        }
+
+        private static ObjectNode dateHistogram(JsonNode dateHistogram, JsonNode subAggregations, List<Document> documentList) throws Exception{
+
+            long interval = ElasticSearchSearchUtil.dateUnitConvertMillis(Integer.parseInt(dateHistogram.get("interval").asText().replaceAll("\\D", "")),
+                    dateHistogram.get("interval").asText().replaceAll("\\d", ""));
+            ZoneId zoneId = ZoneId.of(dateHistogram.path("time_zone").asText("UTC"));
+
+            TreeMap<Long, List<Document>> bucketMap = new TreeMap<>();
+            for(Document document : documentList){
+                bucketMap.computeIfAbsent(round(document.time, interval, zoneId), key -> new ArrayList<>()).add(document);
+            }
+
+            // min_doc_count 0 : every bucket between the first & last bucket, extended to the bounds
+            JsonNode extendedBounds = dateHistogram.get("extended_bounds");
+            if(dateHistogram.path("min_doc_count").asLong(1) == 0 && (extendedBounds != null || !bucketMap.isEmpty())){
+                long first = extendedBounds == null ? bucketMap.firstKey() : round(extendedBounds.get("min").asLong(), interval, zoneId);
+                long last = extendedBounds == null ? bucketMap.lastKey() : round(extendedBounds.get("max").asLong(), interval, zoneId);
+                if(!bucketMap.isEmpty()){
+                    first = Math.min(first, bucketMap.firstKey());
+                    last = Math.max(last, bucketMap.lastKey());
+                }
+                for(long key = first; key <= last; key += interval){
+                    bucketMap.putIfAbsent(key, new ArrayList<>());
+                }
+            }
+
+            ObjectNode result = OBJECT_MAPPER.createObjectNode();
+            ArrayNode buckets = result.putArray("buckets");
+            for(Map.Entry<Long, List<Document>> entry : bucketMap.entrySet()){
+                ObjectNode bucket = buckets.addObject().put("key", entry.getKey()).put("doc_count", entry.getValue().size());
+                bucket.setAll(aggregations(subAggregations, entry.getValue()));
+            }
+            return result;
+        }
+
+        /**
+         * Fixed interval rounding of the ES date_histogram in a time zone
+         */
+        private static long round(long time, long interval, ZoneId zoneId){
+            long offset = zoneId.getRules().getOffset(Instant.ofEpochMilli(time)).getTotalSeconds() * 1000L;
+            return Math.floorDiv(time + offset, interval) * interval - offset;
+        }
+
+        private static ObjectNode terms(JsonNode terms, JsonNode subAggregations, List<Document> documentList) throws Exception{
+
+            String field = terms.get("field").asText();
+            JsonNode include = terms.get("include");
+
+            LinkedHashMap<String, List<Document>> termMap = new LinkedHashMap<>();
+            for(Document document : documentList){
+                String key = document.get(field);
+                if(key != null && included(include, key)){
+                    termMap.computeIfAbsent(key, k -> new ArrayList<>()).add(document);
+                }
+            }
+
+            List<Map.Entry<String, List<Document>>> entryList = new ArrayList<>(termMap.entrySet());
+            entryList.sort((o1, o2) -> {
+                int compare = Integer.compare(o2.getValue().size(), o1.getValue().size());
+                return compare != 0 ? compare : o1.getKey().compareTo(o2.getKey());
+            });
+
+            int size = terms.path("size").asInt(10);
+            long otherDocCount = 0;
+
+            ObjectNode result = OBJECT_MAPPER.createObjectNode();
+            result.put("doc_count_error_upper_bound", 0);
+            ArrayNode buckets = OBJECT_MAPPER.createArrayNode();
+            for(int i = 0; i < entryList.size(); i++){
+                Map.Entry<String, List<Document>> entry = entryList.get(i);
+                if(i >= size){
+                    otherDocCount += entry.getValue().size();
+                    continue;
+                }
+                ObjectNode bucket = buckets.addObject().put("key", entry.getKey()).put("doc_count", entry.getValue().size());
+                bucket.setAll(aggregations(subAggregations, entry.getValue()));
+            }
+            result.put("sum_other_doc_count", otherDocCount);
+            result.set("buckets", buckets);
+            return result;
+        }
+
+        private static boolean included(JsonNode include, String key){
+
+            if(include == null){
+                return true;
+            }
+            if(include.has("partition")){
+                return Math.floorMod(key.hashCode(), include.get("num_partitions").asInt()) == include.get("partition").asInt();
+            }
+            for(JsonNode term : include){
+                if(term.asText().equals(key)){
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.ainory.dev.utils.elastic;
+
+import com.ainory.dev.utils.elastic.entity.ElasticSearchAggregationListInfo;
+import com.ainory.dev.utils.elastic.entity.ElasticSearchAggregationSeries;
+import org.junit.After;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+import static com.ainory.dev.utils.elastic.ElasticSearchSearchUtil.PERIOD_UNIT_DAY;
+import static com.ainory.dev.utils.elastic.ElasticSearchSearchUtil.PERIOD_UNIT_HOUR;
+import static com.ainory.dev.utils.elastic.ElasticSearchSearchUtil.PERIOD_UNIT_MINUTE;
+import static com.ainory.dev.utils.elastic.ElasticSearchSearchUtil.PERIOD_UNIT_SECOND;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ElasticSearchSearchUtilTest {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    @After
+    public void tearDown(){
+        ElasticSearchSearchUtil.setQueryContext(null);
+    }
+
+    @Test
+    public void bucketStartOfDayIsLocalMidnight() throws Exception{
+        assertEquals(millis("2017-11-01 00:00:00.000"), ElasticSearchSearchUtil.getBucketStartMillis("2017-11-01 15:00:00.000", 1, PERIOD_UNIT_DAY));
+        assertEquals(millis("2017-11-01 00:00:00.000"), ElasticSearchSearchUtil.getBucketStartMillis("2017-11-01 09:00:00.000", 1, PERIOD_UNIT_DAY));
+        assertEquals(millis("2017-11-02 00:00:00.000"), ElasticSearchSearchUtil.getBucketStartMillis("2017-11-02 00:00:00.000", 1, PERIOD_UNIT_DAY));
+    }
+
+    @Test
+    public void bucketStartOfMultiUnitPeriodIsOnTheLocalGrid() throws Exception{
+        assertEquals(millis("2017-11-01 09:00:00.000"), ElasticSearchSearchUtil.getBucketStartMillis("2017-11-01 10:30:00.000", 3, PERIOD_UNIT_HOUR));
+        assertEquals(millis("2017-11-01 12:00:00.000"), ElasticSearchSearchUtil.getBucketStartMillis("2017-11-01 15:00:00.000", 12, PERIOD_UNIT_HOUR));
+        assertEquals(millis("2017-11-01 10:00:00.000"), ElasticSearchSearchUtil.getBucketStartMillis("2017-11-01 10:03:00.000", 5, PERIOD_UNIT_MINUTE));
+        assertEquals(millis("2017-11-01 10:03:15.000"), ElasticSearchSearchUtil.getBucketStartMillis("2017-11-01 10:03:29.999", 15, PERIOD_UNIT_SECOND));
+
+        // 7d buckets start on the local epoch grid ( Thursday )
+        assertEquals(millis("2017-10-26 00:00:00.000"), ElasticSearchSearchUtil.getBucketStartMillis("2017-11-01 15:00:00.000", 7, PERIOD_UNIT_DAY));
+    }
+
+    @Test
+    public void bucketStartFollowsTheQueryContextTimeZone() throws Exception{
+
+        ElasticSearchQueryContext queryContext = new ElasticSearchQueryContext();
+        queryContext.setZoneId("Asia/Kolkata");
+        ElasticSearchSearchUtil.setQueryContext(queryContext);
+
+        // +05:30 : local hour, not the UTC hour
+        assertEquals(millis("2017-11-01 10:00:00.000"), ElasticSearchSearchUtil.getBucketStartMillis("2017-11-01 10:45:00.000", 1, PERIOD_UNIT_HOUR));
+        assertEquals(millis("2017-11-01 00:00:00.000"), ElasticSearchSearchUtil.getBucketStartMillis("2017-11-01 03:00:00.000", 1, PERIOD_UNIT_DAY));
+    }
+
+    @Test
+    public void queryContextIsCopied() throws Exception{
+
+        ElasticSearchQueryContext queryContext = new ElasticSearchQueryContext();
+        queryContext.setZoneId("Asia/Kolkata");
+        ElasticSearchSearchUtil.setQueryContext(queryContext);
+
+        // later changes of the caller's context are not applied
+        queryContext.setZoneId("UTC");
+        assertEquals("Asia/Kolkata", ElasticSearchSearchUtil.getQueryContext().getZoneId());
+
+        try{
+            ElasticSearchSearchUtil.getQueryContext().setZoneId("UTC");
+            fail();
+        }catch (UnsupportedOperationException e){
+            // read only
+        }
+
+        // modifiable copy of the running context
+        ElasticSearchQueryContext copy = new ElasticSearchQueryContext(ElasticSearchSearchUtil.getQueryContext());
+        copy.setZoneId("UTC");
+        assertEquals("Asia/Kolkata", ElasticSearchSearchUtil.getQueryContext().getZoneId());
+    }
+
+    @Test
+    public void pagingSizeFallsBackToTheDefault(){
+
+        // DEFAULT_SIZE 10000
+        assertEquals(10000, ElasticSearchSearchUtil.getPagingSize(0));
+        assertEquals(10000, ElasticSearchSearchUtil.getPagingSize(-1));
+        assertEquals(10000, ElasticSearchSearchUtil.getPagingSize(10001));
+        assertEquals(50, ElasticSearchSearchUtil.getPagingSize(50));
+    }
+
+    @Test
+    public void gapFillKeepsACompleteSeries() throws Exception{
+        ElasticSearchAggregationSeries series = series("2017-11-01 10:00:00.000", MINUTE, 1, 2, 3);
+        assertSame(series, fill(series, "2017-11-01 10:00:00.000", "2017-11-01 10:02:30.000", 1, PERIOD_UNIT_MINUTE));
+    }
+
+    @Test
+    public void gapFillHeadTailAndInnerGaps() throws Exception{
+
+        long start = millis("2017-11-01 10:00:00.000");
+
+        // head
+        assertSeries(fill(series("2017-11-01 10:02:00.000", MINUTE, 5, 6), "2017-11-01 10:00:00.000", "2017-11-01 10:03:00.000", 1, PERIOD_UNIT_MINUTE),
+                start, MINUTE, 0, 0, 5, 6);
+
+        // tail
+        assertSeries(fill(series("2017-11-01 10:00:00.000", MINUTE, 5, 6), "2017-11-01 10:00:00.000", "2017-11-01 10:03:59.999", 1, PERIOD_UNIT_MINUTE),
+                start, MINUTE, 5, 6, 0, 0);
+
+        // inner
+        ElasticSearchAggregationSeries inner = new ElasticSearchAggregationSeries();
+        inner.add(start, 1);
+        inner.add(start + 3 * MINUTE, 4);
+        inner.add(start + 4 * MINUTE, 5);
+        assertSeries(fill(inner, "2017-11-01 10:00:00.000", "2017-11-01 10:04:00.000", 1, PERIOD_UNIT_MINUTE),
+                start, MINUTE, 1, 0, 0, 4, 5);
+
+        // head + inner + tail
+        ElasticSearchAggregationSeries all = new ElasticSearchAggregationSeries();
+        all.add(start + MINUTE, 2);
+        all.add(start + 3 * MINUTE, 4);
+        assertSeries(fill(all, "2017-11-01 10:00:00.000", "2017-11-01 10:05:00.000", 1, PERIOD_UNIT_MINUTE),
+                start, MINUTE, 0, 2, 0, 4, 0, 0);
+    }
+
+    @Test
+    public void gapFillOfUnalignedStart() throws Exception{
+
+        // 5m from 10:03 : grid starts at the 10:00 bucket
+        assertSeries(fill(series("2017-11-01 10:10:00.000", TimeUnit.MINUTES.toMillis(5), 3, 0, 4), "2017-11-01 10:03:00.000", "2017-11-01 10:27:00.000", 5, PERIOD_UNIT_MINUTE),
+                millis("2017-11-01 10:00:00.000"), TimeUnit.MINUTES.toMillis(5), 0, 0, 3, 0, 4, 0);
+
+        // 1d from 15:00 : local midnight buckets
+        assertSeries(fill(series("2017-11-02 00:00:00.000", TimeUnit.DAYS.toMillis(1), 7), "2017-11-01 15:00:00.000", "2017-11-03 15:00:00.000", 1, PERIOD_UNIT_DAY),
+                millis("2017-11-01 00:00:00.000"), TimeUnit.DAYS.toMillis(1), 0, 7, 0);
+
+        // 3h from 10:30 : 09:00 grid
+        assertSeries(fill(series("2017-11-01 12:00:00.000", TimeUnit.HOURS.toMillis(3), 2), "2017-11-01 10:30:00.000", "2017-11-01 16:00:00.000", 3, PERIOD_UNIT_HOUR),
+                millis("2017-11-01 09:00:00.000"), TimeUnit.HOURS.toMillis(3), 0, 2, 0);
+    }
+
+    @Test
+    public void gapFillOfEmptyResult() throws Exception{
+
+        ElasticSearchAggregationListInfo all = ElasticSearchSearchUtil.checkAggregationData(listInfo("2017-11-01 10:03:00.000", "2017-11-01 10:17:00.000", 5, PERIOD_UNIT_MINUTE), ElasticSearchSearchUtil.AGGREGATION_TYPE.ALL.name());
+        assertSeries(all.getSeries(ElasticSearchSearchUtil.AGGREGATION_TYPE.ALL.name()), millis("2017-11-01 10:00:00.000"), TimeUnit.MINUTES.toMillis(5), 0, 0, 0, 0);
+
+        // terms aggregations stay empty
+        ElasticSearchAggregationListInfo host = ElasticSearchSearchUtil.checkAggregationData(listInfo("2017-11-01 10:03:00.000", "2017-11-01 10:17:00.000", 5, PERIOD_UNIT_MINUTE), ElasticSearchSearchUtil.AGGREGATION_TYPE.HOST.name());
+        assertTrue(host.getSeriesMap().isEmpty());
+
+        ElasticSearchAggregationSeries empty = new ElasticSearchAggregationSeries();
+        assertSame(empty, fill(empty, "2017-11-01 10:00:00.000", "2017-11-01 10:05:00.000", 1, PERIOD_UNIT_MINUTE));
+    }
+
+    @Test
+    public void gapFillOfEverySeriesOfAResult() throws Exception{
+
+        ElasticSearchAggregationListInfo elasticSearchAggregationListInfo = listInfo("2017-11-01 10:00:00.000", "2017-11-01 10:02:00.000", 1, PERIOD_UNIT_MINUTE);
+        elasticSearchAggregationListInfo.putSeries("host1", series("2017-11-01 10:01:00.000", MINUTE, 1));
+        elasticSearchAggregationListInfo.putSeries("host2", series("2017-11-01 10:00:00.000", MINUTE, 2, 3, 4));
+
+        ElasticSearchSearchUtil.checkAggregationData(elasticSearchAggregationListInfo, ElasticSearchSearchUtil.AGGREGATION_TYPE.HOST.name());
+
+        long start = millis("2017-11-01 10:00:00.000");
+        assertSeries(elasticSearchAggregationListInfo.getSeries("host1"), start, MINUTE, 0, 1, 0);
+        assertSeries(elasticSearchAggregationListInfo.getSeries("host2"), start, MINUTE, 2, 3, 4);
+    }
+
+    @Test
+    public void cursorRoundTrip(){
+
+        String cursor = ElasticSearchSearchUtil.getCursor(7, new Object[]{ 1513728000123L, "log#AWBz-x_1\nid" });
+
+        assertEquals(7, ElasticSearchSearchUtil.getCursorPageNum(cursor));
+        assertArrayEquals(new Object[]{ 1513728000123L, "log#AWBz-x_1\nid" }, ElasticSearchSearchUtil.getCursorSortValues(cursor));
+
+        // url safe, no padding
+        assertTrue(cursor.matches("[A-Za-z0-9_-]+"));
+    }
+
+    @Test
+    public void malformedCursorIsRejected(){
+        assertMalformedCursor("not a cursor!");
+        assertMalformedCursor(encode("2\n1513728000123"));
+        assertMalformedCursor(encode("two\n1513728000123\nlog#1"));
+        assertMalformedCursor(encode("2\nyesterday\nlog#1"));
+        assertMalformedCursor(encode("1\n1513728000123\nlog#1"));
+        assertMalformedCursor(encode(""));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void searchAfterRejectsMalformedCursor(){
+        // fails before any request
+        ElasticSearchSearchUtil.searchAfter("127.0.0.1", 9400, ElasticSearchQuerySpec.rangeMillis(0, 1000), 10, "not a cursor!");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void searchAfterOfTimeStringsRejectsMalformedCursor(){
+        ElasticSearchSearchUtil.searchAfter("127.0.0.1", 9400, "2017-12-20 00:00:00.000", "2017-12-20 01:00:00.000", null, null, null, null, 10, encode("2\n1513728000123"));
+    }
+
+    private static void assertMalformedCursor(String cursor){
+        try{
+            ElasticSearchSearchUtil.getCursorSortValues(cursor);
+            fail("cursor accepted : " + cursor);
+        }catch (IllegalArgumentException e){
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Malformed cursor"));
+        }
+    }
+
+    private static String encode(String cursor){
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static ElasticSearchAggregationSeries fill(ElasticSearchAggregationSeries series, String startTime, String endTime, int period, String periodUnit) throws Exception{
+        return ElasticSearchSearchUtil.checkAndDummySetAggregationData(series,
+                ElasticSearchSearchUtil.getBucketStartMillis(startTime, period, periodUnit),
+                ElasticSearchSearchUtil.getBucketStartMillis(endTime, period, periodUnit),
+                ElasticSearchSearchUtil.dateUnitConvertMillis(period, periodUnit));
+    }
+
+    /**
+     * Series of consecutive buckets
+     */
+    private static ElasticSearchAggregationSeries series(String firstTime, long periodMillis, long... counts) throws Exception{
+        ElasticSearchAggregationSeries series = new ElasticSearchAggregationSeries();
+        for(int i = 0; i < counts.length; i++){
+            series.add(millis(firstTime) + i * periodMillis, counts[i]);
+        }
+        return series;
+    }
+
+    private static ElasticSearchAggregationListInfo listInfo(String startTime, String endTime, int period, String periodUnit){
+        ElasticSearchAggregationListInfo elasticSearchAggregationListInfo = new ElasticSearchAggregationListInfo();
+        elasticSearchAggregationListInfo.setRequestStartTime(startTime);
+        elasticSearchAggregationListInfo.setRequestEndTime(endTime);
+        elasticSearchAggregationListInfo.setPeriod(period);
+        elasticSearchAggregationListInfo.setPeriodUnit(periodUnit);
+        return elasticSearchAggregationListInfo;
+    }
+
+    private static void assertSeries(ElasticSearchAggregationSeries series, long firstTime, long periodMillis, long... counts){
+        long[] times = new long[counts.length];
+        for(int i = 0; i < counts.length; i++){
+            times[i] = firstTime + i * periodMillis;
+        }
+        assertArrayEquals(times, series.getTimes());
+        assertArrayEquals(counts, series.getCounts());
+    }
+
+    static long millis(String time) throws Exception{
+        return Long.parseLong(ElasticSearchSearchUtil.getMilliTime(time));
+    }
+}
@@ -0,0 +1,271 @@
+package com.ainory.dev.utils.elastic;
+
+import com.ainory.dev.utils.elastic.ElasticSearchSegmentCache.Segment;
+import com.ainory.dev.utils.elastic.entity.ElasticSearchDataInfo;
+import com.ainory.dev.utils.elastic.entity.ElasticSearchDataListInfo;
+import org.elasticsearch.search.sort.FieldSortBuilder;
+import org.elasticsearch.search.sort.SortBuilder;
+import org.elasticsearch.search.sort.SortOrder;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ElasticSearchSegmentCacheTest {
+
+    private static final String ES_HOST = "segment-test";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @After
+    public void tearDown(){
+        for(int esPort = 1; esPort <= 3; esPort++){
+            ElasticSearchSegmentCache.stop(ES_HOST, esPort);
+        }
+    }
+
+    @Test
+    public void segmentRoundTrip() throws Exception{
+
+        ElasticSearchSegmentCache cache = start(1, Long.MAX_VALUE);
+        ElasticSearchQuerySpec querySpec = ElasticSearchQuerySpec.rangeMillis(1000, 2000).hosts(list("host1"));
+
+        List<ElasticSearchDataInfo> hitList = new ArrayList<>();
+        hitList.add(hit(1000, "host1", "app.log", "first"));
+        hitList.add(hit(1500, null, "app.log", "한글 message"));
+        hitList.add(hit(2000, "host1", null, ""));
+
+        Segment segment = write(cache, querySpec, hitList);
+
+        assertEquals(3, segment.getHitCount());
+        for(int i = 0; i < hitList.size(); i++){
+            ElasticSearchDataInfo expected = hitList.get(i);
+            ElasticSearchDataInfo actual = segment.getDataInfo(i);
+
+            assertEquals(expected.getTime(), segment.getTime(i));
+            assertEquals(expected.getTime(), actual.getTime());
+            assertEquals(expected.getTimeStr(), actual.getTimeStr());
+            assertEquals(expected.getHost(), actual.getHost());
+            assertEquals(expected.getFileName(), actual.getFileName());
+            assertEquals(expected.getMessage(), actual.getMessage());
+        }
+
+        // header ( window & filter key ) read back
+        String filterKey = ElasticSearchSegmentCache.getFilterKey(querySpec);
+        assertTrue(segment.covers(filterKey, 1000, 2000, false));
+        assertFalse(segment.covers(filterKey, 999, 2000, false));
+        assertFalse(segment.covers(filterKey, 1000, 2001, false));
+        assertFalse(segment.covers(ElasticSearchSegmentCache.getFilterKey(querySpec.hosts(list("host2"))), 1000, 2000, false));
+    }
+
+    @Test
+    public void emptySegment() throws Exception{
+
+        ElasticSearchSegmentCache cache = start(1, Long.MAX_VALUE);
+
+        Segment segment = write(cache, ElasticSearchQuerySpec.rangeMillis(1000, 2000), new ArrayList<>());
+
+        assertEquals(0, segment.getHitCount());
+        assertEquals(0, segment.search(1500, true));
+    }
+
+    @Test
+    public void segmentSearchBoundaries() throws Exception{
+
+        ElasticSearchSegmentCache cache = start(1, Long.MAX_VALUE);
+
+        Segment segment = write(cache, ElasticSearchQuerySpec.rangeMillis(1000, 2000), hits(1000, 1100, 1100, 1100, 1500, 2000));
+
+        assertEquals(0, segment.search(999, true));
+        assertEquals(0, segment.search(1000, true));
+        assertEquals(1, segment.search(1000, false));
+
+        // equal times : inclusive -> first, exclusive -> after the last
+        assertEquals(1, segment.search(1100, true));
+        assertEquals(4, segment.search(1100, false));
+        assertEquals(4, segment.search(1200, true));
+
+        assertEquals(5, segment.search(2000, true));
+        assertEquals(6, segment.search(2000, false));
+        assertEquals(6, segment.search(2001, true));
+    }
+
+    @Test
+    public void endExclusiveCovers() throws Exception{
+
+        ElasticSearchSegmentCache cache = start(1, Long.MAX_VALUE);
+
+        ElasticSearchQuerySpec exclusiveSpec = ElasticSearchQuerySpec.before("2017-12-20 01:00:00.000", 60);
+        long startTime = exclusiveSpec.getStartTime();
+        long endTime = exclusiveSpec.getEndTime();
+        String filterKey = ElasticSearchSegmentCache.getFilterKey(exclusiveSpec);
+
+        Segment exclusive = write(cache, exclusiveSpec, hits(startTime, endTime - 1));
+
+        // [start, end) does not hold the hits at end
+        assertTrue(exclusive.covers(filterKey, startTime, endTime, true));
+        assertFalse(exclusive.covers(filterKey, startTime, endTime, false));
+        assertTrue(exclusive.covers(filterKey, startTime, endTime - 1, false));
+
+        Segment inclusive = write(cache, ElasticSearchQuerySpec.rangeMillis(startTime, endTime), hits(startTime, endTime));
+
+        // [start, end] holds [start, end)
+        assertTrue(inclusive.covers(filterKey, startTime, endTime, false));
+        assertTrue(inclusive.covers(filterKey, startTime, endTime, true));
+    }
+
+    @Test
+    public void pagesOfCachedWindow() throws Exception{
+
+        ElasticSearchSegmentCache cache = start(1, Long.MAX_VALUE);
+
+        write(cache, ElasticSearchQuerySpec.rangeMillis(1000, 2000), hits(1000, 1100, 1100, 1100, 1500, 2000));
+
+        ElasticSearchQuerySpec querySpec = ElasticSearchQuerySpec.rangeMillis(1100, 1500);
+
+        ElasticSearchDataListInfo page1 = cache.search(querySpec, 2, 1);
+        assertEquals(4, page1.getTotalCount());
+        assertEquals(2, page1.getTotalPageCount());
+        assertMessages(page1, "1", "2");
+
+        assertMessages(cache.search(querySpec, 2, 2), "3", "4");
+        assertEquals(0, cache.search(querySpec, 2, 3).getDataList().size());
+
+        // DESC : reversed time, _uid order
+        assertMessages(cache.search(querySpec.sort(ElasticSearchSearchUtil.SORT_DESC), 2, 1), "4", "3");
+
+        // open window ( not settled ) -> raw search, no fill queued
+        assertNull(cache.search(ElasticSearchQuerySpec.rangeMillis(System.currentTimeMillis(), System.currentTimeMillis()), 2, 1));
+    }
+
+    @Test
+    public void evictionByBytes() throws Exception{
+
+        ElasticSearchSegmentCache probe = start(1, Long.MAX_VALUE);
+        write(probe, ElasticSearchQuerySpec.rangeMillis(10000, 11000), hits(10000, 10500, 11000));
+        long segmentBytes = probe.getTotalBytes();
+
+        // room for 3 segments ( same hit bytes per window )
+        ElasticSearchSegmentCache cache = start(2, segmentBytes * 3 + segmentBytes / 2);
+
+        ElasticSearchQuerySpec first = ElasticSearchQuerySpec.rangeMillis(10000, 11000);
+        ElasticSearchQuerySpec second = ElasticSearchQuerySpec.rangeMillis(11000, 12000);
+        ElasticSearchQuerySpec third = ElasticSearchQuerySpec.rangeMillis(12000, 13000);
+        ElasticSearchQuerySpec fourth = ElasticSearchQuerySpec.rangeMillis(13000, 14000);
+
+        write(cache, first, hits(10000, 10500, 11000));
+        write(cache, second, hits(11000, 11500, 12000));
+        write(cache, third, hits(12000, 12500, 13000));
+        assertEquals(3, cache.size());
+        assertEquals(segmentBytes * 3, cache.getTotalBytes());
+
+        // first used again -> second is the least recently used
+        assertEquals(3, cache.search(first, 10, 1).getTotalCount());
+
+        write(cache, fourth, hits(13000, 13500, 14000));
+
+        assertEquals(3, cache.size());
+        assertEquals(segmentBytes * 3, cache.getTotalBytes());
+        assertTrue(cache.contains(getFileName(first)));
+        assertFalse(cache.contains(getFileName(second)));
+        assertTrue(cache.contains(getFileName(third)));
+        assertTrue(cache.contains(getFileName(fourth)));
+
+        Path directory = temporaryFolder.getRoot().toPath().resolve("2").resolve(ES_HOST + "_2");
+        assertFalse(Files.exists(directory.resolve(getFileName(second))));
+        assertTrue(Files.exists(directory.resolve(getFileName(fourth))));
+    }
+
+    @Test
+    public void segmentsAreLoadedAfterRestart() throws Exception{
+
+        ElasticSearchSegmentCache cache = start(3, Long.MAX_VALUE);
+        ElasticSearchQuerySpec querySpec = ElasticSearchQuerySpec.rangeMillis(1000, 2000);
+        write(cache, querySpec, hits(1000, 1500, 2000));
+        long totalBytes = cache.getTotalBytes();
+
+        ElasticSearchSegmentCache.stop(ES_HOST, 3);
+        cache = start(3, Long.MAX_VALUE);
+
+        assertEquals(1, cache.size());
+        assertEquals(totalBytes, cache.getTotalBytes());
+        assertMessages(cache.search(querySpec, 10, 1), "0", "1", "2");
+    }
+
+    @Test
+    public void pagingAndFillShareTieOrder() throws Exception{
+
+        ElasticSearchQuerySpec querySpec = ElasticSearchQuerySpec.rangeMillis(1000, 2000);
+
+        List<SortBuilder<?>> fillSorts = ElasticSearchSearchUtil.getSegmentSearchRequest(querySpec.sort(ElasticSearchSearchUtil.SORT_DESC)).source().sorts();
+        List<SortBuilder<?>> pagingSorts = ElasticSearchSearchUtil.getPagingSearchRequest(querySpec, 10).source().sorts();
+
+        assertEquals(2, fillSorts.size());
+        assertEquals(pagingSorts, fillSorts);
+        assertEquals("_uid", ((FieldSortBuilder) fillSorts.get(1)).getFieldName());
+
+        // DESC page : every sort reversed ( segment read backwards )
+        for(SortBuilder<?> sortBuilder : ElasticSearchSearchUtil.getPagingSearchRequest(querySpec.sort(ElasticSearchSearchUtil.SORT_DESC), 10).source().sorts()){
+            assertEquals(SortOrder.DESC, sortBuilder.order());
+        }
+    }
+
+    private ElasticSearchSegmentCache start(int esPort, long maxBytes) throws Exception{
+        return ElasticSearchSegmentCache.start(ES_HOST, esPort, temporaryFolder.getRoot().toPath().resolve(String.valueOf(esPort)), maxBytes, ElasticSearchSegmentCache.DEFAULT_SETTLE_MS);
+    }
+
+    private static Segment write(ElasticSearchSegmentCache cache, ElasticSearchQuerySpec querySpec, List<ElasticSearchDataInfo> hitList) throws Exception{
+        return cache.write(getFileName(querySpec), ElasticSearchSegmentCache.getFilterKey(querySpec), querySpec, hitList.iterator());
+    }
+
+    private static String getFileName(ElasticSearchQuerySpec querySpec) throws Exception{
+        return ElasticSearchSegmentCache.getFileName(ElasticSearchSegmentCache.getFilterKey(querySpec), querySpec);
+    }
+
+    /**
+     * Hits of the times ( message : index )
+     */
+    private static List<ElasticSearchDataInfo> hits(long... times){
+        List<ElasticSearchDataInfo> hitList = new ArrayList<>();
+        for(int i = 0; i < times.length; i++){
+            hitList.add(hit(times[i], "host1", "app.log", String.valueOf(i)));
+        }
+        return hitList;
+    }
+
+    private static ElasticSearchDataInfo hit(long time, String host, String fileName, String message){
+        ElasticSearchDataInfo elasticSearchDataInfo = new ElasticSearchDataInfo();
+        elasticSearchDataInfo.setTime(time);
+        elasticSearchDataInfo.setTimeStr(String.valueOf(time));
+        elasticSearchDataInfo.setHost(host);
+        elasticSearchDataInfo.setFileName(fileName);
+        elasticSearchDataInfo.setMessage(message);
+        return elasticSearchDataInfo;
+    }
+
+    private static ArrayList<String> list(String... values){
+        ArrayList<String> list = new ArrayList<>();
+        for(String value : values){
+            list.add(value);
+        }
+        return list;
+    }
+
+    private static void assertMessages(ElasticSearchDataListInfo elasticSearchDataListInfo, String... messages){
+        assertEquals(messages.length, elasticSearchDataListInfo.getDataList().size());
+        for(int i = 0; i < messages.length; i++){
+            assertEquals(messages[i], elasticSearchDataListInfo.getDataList().get(i).getMessage());
+        }
+    }
+}
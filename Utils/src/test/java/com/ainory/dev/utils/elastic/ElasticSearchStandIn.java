@@ -0,0 +1,594 @@
+package com.ainory.dev.utils.elastic;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * ElasticSearch Stand-in
+ *
+ * Local HTTP server answering _search, _search/scroll and _msearch with recorded responses,
+ * for integration tests and offline load replay of the search / aggregation path.
+ *
+ * - responses : per endpoint, computed by the responder if set, matched by request body substring, otherwise served round robin
+ *               ( scroll : every scroll search gets a fresh _scroll_id, pages are served in order per scroll id,
+ *                 the last page repeats -> record an empty last page. Unknown / cleared scroll ids answer 404 )
+ * - latency   : fixed + uniform jitter, plus a slow tail ( slowRate of requests take slowMs )
+ * - failure   : errorRate of requests answer errorStatus, disconnectRate of requests are dropped without response
+ *
+ * route(esHost, esPort) sends every registry client of esHost:esPort to the stand-in,
+ * so ElasticSearchSearchUtil is used unchanged with the production host names.
+ * Test support only : test source set ( src/test/java ), not shipped in the library jar ( ex) ElasticSearchStandInLoadTest ).
+ *
+ *  ex)
+ *      try(ElasticSearchStandIn standIn = new ElasticSearchStandIn(0)){
+ *          standIn.loadResponses(Paths.get("fixtures"));
+ *          standIn.setLatency(20, 10);
+ *          standIn.setFailure(0.01, 503, 0);
+ *          standIn.start();
+ *          standIn.route("es-host", 9200);
+ *          new ElasticSearchAggregationBatch("es-host", 9200).aggregationAll("all", ...).search("log", ...).execute();
+ *      }
+ */
+public class ElasticSearchStandIn implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ElasticSearchStandIn.class);
+
+    public enum ENDPOINT {SEARCH, SCROLL, MSEARCH}
+
+    public static final int DEFAULT_THREAD_COUNT = 32;
+
+    private static final String CONTENT_TYPE = "application/json; charset=UTF-8";
+    private static final Pattern SCROLL_ID_PATTERN = Pattern.compile("\"scroll_id\"\\s*:\\s*\"([^\"]+)\"");
+    private static final Pattern CLEAR_SCROLL_ID_PATTERN = Pattern.compile("\"scroll_id\"\\s*:\\s*(\\[[^\\]]*\\]|\"[^\"]*\")");
+    private static final Pattern QUOTED_PATTERN = Pattern.compile("\"([^\"]+)\"");
+    private static final Pattern RESPONSE_SCROLL_ID_PATTERN = Pattern.compile("(\"_scroll_id\"\\s*:\\s*\")[^\"]+(\")");
+
+    private static final String INFO_RESPONSE = "{\"name\":\"stand-in\",\"cluster_name\":\"stand-in\",\"cluster_uuid\":\"_na_\","
+            + "\"version\":{\"number\":\"5.6.0\",\"build_hash\":\"_na_\",\"build_date\":\"_na_\",\"build_snapshot\":false,\"lucene_version\":\"6.6.0\"},\"tagline\":\"You Know, for Search\"}";
+    private static final String CLEAR_SCROLL_RESPONSE = "{\"succeeded\":true,\"num_freed\":1}";
+
+    private final int port;
+    private final int threadCount;
+
+    private final Map<ENDPOINT, List<Response>> responseMap = new EnumMap<>(ENDPOINT.class);
+    private final Map<ENDPOINT, AtomicInteger> roundRobinMap = new EnumMap<>(ENDPOINT.class);
+    private final Map<ENDPOINT, AtomicLong> requestCountMap = new EnumMap<>(ENDPOINT.class);
+    private final Map<ENDPOINT, AtomicReference<String>> lastRequestBodyMap = new EnumMap<>(ENDPOINT.class);
+    private final Map<ENDPOINT, Function<String, String>> responderMap = new ConcurrentHashMap<>();
+
+    //                                  scroll_id ( issued by the stand-in ), next page index
+    private final ConcurrentHashMap<String, AtomicInteger> scrollCursorMap = new ConcurrentHashMap<>();
+    private final AtomicLong scrollIdSequence = new AtomicLong();
+
+    //                                  routed host:port
+    private final List<String> routeList = new CopyOnWriteArrayList<>();
+
+    private final AtomicLong errorCount = new AtomicLong();
+    private final AtomicLong disconnectCount = new AtomicLong();
+
+    private volatile long latencyMs = 0;
+    private volatile long jitterMs = 0;
+    private volatile double slowRate = 0;
+    private volatile long slowMs = 0;
+    private volatile double errorRate = 0;
+    private volatile int errorStatus = 503;
+    private volatile double disconnectRate = 0;
+
+    private HttpServer httpServer;
+    private ExecutorService executorService;
+
+    private static class Response {
+        private final String match;
+        private final String body;
+
+        private Response(String match, String body) {
+            this.match = match;
+            this.body = body;
+        }
+    }
+
+    /**
+     * @param port - Listen port ( 0 : any free port, see getPort() after start )
+     */
+    public ElasticSearchStandIn(int port) {
+        this(port, DEFAULT_THREAD_COUNT);
+    }
+
+    /**
+     * @param port - Listen port ( 0 : any free port, see getPort() after start )
+     * @param threadCount - Handler threads ( concurrent requests, latency is slept on these threads )
+     */
+    public ElasticSearchStandIn(int port, int threadCount) {
+        this.port = port;
+        this.threadCount = threadCount;
+
+        for(ENDPOINT endpoint : ENDPOINT.values()){
+            responseMap.put(endpoint, new CopyOnWriteArrayList<>());
+            roundRobinMap.put(endpoint, new AtomicInteger());
+            requestCountMap.put(endpoint, new AtomicLong());
+            lastRequestBodyMap.put(endpoint, new AtomicReference<>());
+        }
+    }
+
+    /**
+     * Start listening on the loopback address
+     *
+     * @return
+     * @throws IOException
+     */
+    public synchronized ElasticSearchStandIn start() throws IOException{
+
+        if(httpServer != null){
+            return this;
+        }
+
+        executorService = Executors.newFixedThreadPool(threadCount, runnable -> {
+            Thread thread = new Thread(runnable, "es-stand-in");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        httpServer.createContext("/", this::handle);
+        httpServer.setExecutor(executorService);
+        httpServer.start();
+
+        logger.info("ElasticSearch stand-in started : " + getHost() + ":" + getPort());
+
+        return this;
+    }
+
+    /**
+     * Route registry clients of esHost:esPort to this stand-in ( removed on close )
+     *
+     * @param esHost - ElasticSearch HTTP Host used by the caller
+     * @param esPort - ElasticSearch HTTP Port used by the caller
+     */
+    public void route(String esHost, int esPort){
+        ElasticSearchClientRegistry.setRoute(esHost, esPort, getHost(), getPort());
+        routeList.add(esHost + ":" + esPort);
+    }
+
+    /**
+     * Recorded response, served round robin with the other responses of the endpoint
+     *
+     * @param endpoint - SEARCH, SCROLL, MSEARCH
+     * @param body - Response JSON ( typed_keys for aggregations )
+     */
+    public void addResponse(ENDPOINT endpoint, String body){
+        addResponse(endpoint, null, body);
+    }
+
+    /**
+     * Recorded response for requests containing match ( checked in insertion order before round robin )
+     *
+     * @param endpoint - SEARCH, SCROLL, MSEARCH
+     * @param match - Request body substring ( ex) "date_histogram", "\"HOST_FILE\"" ), null : any request
+     * @param body - Response JSON ( typed_keys for aggregations )
+     */
+    public void addResponse(ENDPOINT endpoint, String match, String body){
+        responseMap.get(endpoint).add(new Response(match, body));
+    }
+
+    /**
+     * Computed responses ( ex) aggregations of an in memory document set ), checked before the recorded responses
+     *
+     * @param endpoint - SEARCH, SCROLL, MSEARCH
+     * @param responder - Request body -> response JSON ( typed_keys for aggregations, null : recorded responses ), null : remove
+     */
+    public void setResponder(ENDPOINT endpoint, Function<String, String> responder){
+        if(responder == null){
+            responderMap.remove(endpoint);
+        }else{
+            responderMap.put(endpoint, responder);
+        }
+    }
+
+    /**
+     * Load recorded responses of a directory, endpoint by file name prefix ( search*.json, scroll*.json, msearch*.json )
+     * Files are added in name order ( scroll pages : scroll-001.json, scroll-002.json ... )
+     *
+     * @param directory
+     * @return loaded file count
+     * @throws IOException
+     */
+    public int loadResponses(Path directory) throws IOException{
+
+        List<Path> pathList = new ArrayList<>();
+        try(DirectoryStream<Path> directoryStream = Files.newDirectoryStream(directory, "*.json")){
+            for(Path path : directoryStream){
+                pathList.add(path);
+            }
+        }
+        pathList.sort(null);
+
+        int count = 0;
+        for(Path path : pathList){
+            String fileName = path.getFileName().toString();
+
+            ENDPOINT endpoint;
+            if(fileName.startsWith("msearch")){
+                endpoint = ENDPOINT.MSEARCH;
+            }else if(fileName.startsWith("scroll")){
+                endpoint = ENDPOINT.SCROLL;
+            }else if(fileName.startsWith("search")){
+                endpoint = ENDPOINT.SEARCH;
+            }else{
+                logger.warn("Unknown response file skipped : " + path);
+                continue;
+            }
+
+            addResponse(endpoint, new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+            count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * Clear recorded responses & scroll cursors
+     */
+    public void clearResponses(){
+        for(ENDPOINT endpoint : ENDPOINT.values()){
+            responseMap.get(endpoint).clear();
+        }
+        scrollCursorMap.clear();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException{
+
+        try{
+            String path = exchange.getRequestURI().getPath();
+            String method = exchange.getRequestMethod();
+            String requestBody = readBody(exchange.getRequestBody());
+
+            if(StringUtils.equals(path, "/") || StringUtils.isEmpty(path)){
+                // info / ping
+                send(exchange, 200, "HEAD".equals(method) ? null : INFO_RESPONSE);
+                return;
+            }
+
+            ENDPOINT endpoint;
+            if(path.endsWith("/_search/scroll") || path.startsWith("/_search/scroll")){
+                if("DELETE".equals(method)){
+                    clearScroll(requestBody);
+                    send(exchange, 200, CLEAR_SCROLL_RESPONSE);
+                    return;
+                }
+                endpoint = ENDPOINT.SCROLL;
+            }else if(path.endsWith("/_msearch")){
+                endpoint = ENDPOINT.MSEARCH;
+            }else if(path.endsWith("/_search")){
+                endpoint = ENDPOINT.SEARCH;
+            }else{
+                send(exchange, 400, getErrorBody(400, "illegal_argument_exception", "stand-in does not serve " + method + " " + path));
+                return;
+            }
+
+            lastRequestBodyMap.get(endpoint).set(requestBody);
+            requestCountMap.get(endpoint).incrementAndGet();
+
+            sleepLatency();
+
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            if(disconnectRate > 0 && random.nextDouble() < disconnectRate){
+                // no response, connection closed
+                disconnectCount.incrementAndGet();
+                return;
+            }
+            if(errorRate > 0 && random.nextDouble() < errorRate){
+                errorCount.incrementAndGet();
+                send(exchange, errorStatus, getErrorBody(errorStatus, "stand_in_injected_exception", "injected failure"));
+                return;
+            }
+
+            String scrollId = null;
+            if(endpoint == ENDPOINT.SCROLL){
+                Matcher matcher = SCROLL_ID_PATTERN.matcher(requestBody);
+                scrollId = matcher.find() ? matcher.group(1) : StringUtils.trimToEmpty(requestBody);
+
+                if(!scrollCursorMap.containsKey(scrollId)){
+                    send(exchange, 404, getErrorBody(404, "search_context_missing_exception", "No search context found for id [" + scrollId + "]"));
+                    return;
+                }
+            }
+
+            String responseBody = endpoint == ENDPOINT.SCROLL ? getScrollResponseBody(scrollId) : getResponseBody(endpoint, requestBody);
+
+            if(responseBody != null && endpoint == ENDPOINT.SEARCH && StringUtils.contains(exchange.getRequestURI().getQuery(), "scroll=")){
+                responseBody = openScroll(responseBody);
+            }
+
+            if(responseBody == null){
+                send(exchange, 404, getErrorBody(404, "resource_not_found_exception", "no recorded " + endpoint.name() + " response"));
+                return;
+            }
+
+            send(exchange, 200, responseBody);
+
+        }catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+        }catch (Exception e){
+            logger.error(ExceptionUtils.getStackTrace(e));
+            send(exchange, 500, getErrorBody(500, "stand_in_exception", e.getMessage()));
+        }finally {
+            exchange.close();
+        }
+    }
+
+    private String getResponseBody(ENDPOINT endpoint, String requestBody){
+
+        Function<String, String> responder = responderMap.get(endpoint);
+        if(responder != null){
+            String responseBody = responder.apply(requestBody);
+            if(responseBody != null){
+                return responseBody;
+            }
+        }
+
+        String responseBody = select(responseMap.get(endpoint), roundRobinMap.get(endpoint), requestBody);
+
+        if(responseBody == null && endpoint == ENDPOINT.MSEARCH){
+            // no recorded msearch -> one recorded search response per request ( header / body line pairs )
+            int requestCount = Math.max(1, StringUtils.countMatches(requestBody.trim(), '\n') / 2 + 1);
+            StringBuilder stringBuilder = new StringBuilder("{\"responses\":[");
+            for(int i = 0; i < requestCount; i++){
+                String searchBody = select(responseMap.get(ENDPOINT.SEARCH), roundRobinMap.get(ENDPOINT.SEARCH), requestBody);
+                if(searchBody == null){
+                    return null;
+                }
+                stringBuilder.append(i > 0 ? "," : "").append(searchBody);
+            }
+            responseBody = stringBuilder.append("]}").toString();
+        }
+
+        return responseBody;
+    }
+
+    /**
+     * Issue a fresh scroll id for a scroll search ( recorded _scroll_id replaced, cursor at the first scroll page )
+     */
+    private String openScroll(String responseBody){
+
+        if(!RESPONSE_SCROLL_ID_PATTERN.matcher(responseBody).find()){
+            return responseBody;
+        }
+
+        String scrollId = "stand-in-scroll-" + scrollIdSequence.incrementAndGet();
+        scrollCursorMap.put(scrollId, new AtomicInteger());
+
+        return setScrollId(responseBody, scrollId);
+    }
+
+    /**
+     * Next page of scrollId ( the page carries scrollId as _scroll_id ), null : no recorded page or cleared meanwhile
+     */
+    private String getScrollResponseBody(String scrollId){
+
+        List<Response> responseList = responseMap.get(ENDPOINT.SCROLL);
+        AtomicInteger cursor = scrollCursorMap.get(scrollId);
+        if(responseList.isEmpty() || cursor == null){
+            return null;
+        }
+
+        int index = cursor.getAndIncrement();
+
+        return setScrollId(responseList.get(Math.min(index, responseList.size() - 1)).body, scrollId);
+    }
+
+    private static String setScrollId(String responseBody, String scrollId){
+        return RESPONSE_SCROLL_ID_PATTERN.matcher(responseBody).replaceFirst("$1" + Matcher.quoteReplacement(scrollId) + "$2");
+    }
+
+    /**
+     * Remove the cursors of a clear scroll request ( {"scroll_id":["id", ...]} or {"scroll_id":"id"} )
+     */
+    private void clearScroll(String requestBody){
+
+        Matcher matcher = CLEAR_SCROLL_ID_PATTERN.matcher(requestBody);
+        if(!matcher.find()){
+            return;
+        }
+
+        Matcher idMatcher = QUOTED_PATTERN.matcher(matcher.group(1));
+        while(idMatcher.find()){
+            scrollCursorMap.remove(idMatcher.group(1));
+        }
+    }
+
+    private static String select(List<Response> responseList, AtomicInteger roundRobin, String requestBody){
+
+        if(responseList.isEmpty()){
+            return null;
+        }
+
+        List<Response> anyList = new ArrayList<>(responseList.size());
+        for(Response response : responseList){
+            if(response.match == null){
+                anyList.add(response);
+            }else if(StringUtils.contains(requestBody, response.match)){
+                return response.body;
+            }
+        }
+
+        if(anyList.isEmpty()){
+            return null;
+        }
+
+        return anyList.get((roundRobin.getAndIncrement() & Integer.MAX_VALUE) % anyList.size()).body;
+    }
+
+    private void sleepLatency() throws InterruptedException{
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        long sleepMs = latencyMs + (jitterMs > 0 ? random.nextLong(jitterMs + 1) : 0);
+        if(slowRate > 0 && random.nextDouble() < slowRate){
+            sleepMs = Math.max(sleepMs, slowMs);
+        }
+
+        if(sleepMs > 0){
+            TimeUnit.MILLISECONDS.sleep(sleepMs);
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException{
+
+        if(body == null){
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+        exchange.sendResponseHeaders(status, bytes.length);
+
+        try(OutputStream outputStream = exchange.getResponseBody()){
+            outputStream.write(bytes);
+        }
+    }
+
+    private static String readBody(InputStream inputStream) throws IOException{
+
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+
+        int read;
+        while((read = inputStream.read(buffer)) != -1){
+            byteArrayOutputStream.write(buffer, 0, read);
+        }
+
+        return new String(byteArrayOutputStream.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static String getErrorBody(int status, String type, String reason){
+        String escapedReason = StringUtils.replace(StringUtils.defaultString(reason), "\"", "'");
+        return "{\"error\":{\"root_cause\":[{\"type\":\"" + type + "\",\"reason\":\"" + escapedReason + "\"}],"
+                + "\"type\":\"" + type + "\",\"reason\":\"" + escapedReason + "\"},\"status\":" + status + "}";
+    }
+
+    /**
+     * Stop server & remove routes
+     */
+    @Override
+    public synchronized void close(){
+
+        for(String route : routeList){
+            int index = route.lastIndexOf(':');
+            ElasticSearchClientRegistry.setRoute(route.substring(0, index), Integer.parseInt(route.substring(index + 1)), null, 0);
+        }
+        routeList.clear();
+
+        if(httpServer != null){
+            httpServer.stop(0);
+            httpServer = null;
+        }
+        if(executorService != null){
+            executorService.shutdownNow();
+            executorService = null;
+        }
+
+        logger.info("ElasticSearch stand-in stopped");
+    }
+
+    public String getHost(){
+        return InetAddress.getLoopbackAddress().getHostAddress();
+    }
+
+    /**
+     * @return bound port ( after start )
+     */
+    public int getPort(){
+        return httpServer == null ? port : httpServer.getAddress().getPort();
+    }
+
+    /**
+     * Response latency = latencyMs + uniform( 0 ~ jitterMs )
+     *
+     * @param latencyMs - Fixed latency (ms)
+     * @param jitterMs - Random jitter (ms)
+     */
+    public void setLatency(long latencyMs, long jitterMs){
+        this.latencyMs = latencyMs;
+        this.jitterMs = jitterMs;
+    }
+
+    /**
+     * Slow tail ( hedging / adaptive timeout tests )
+     *
+     * @param slowRate - Ratio of slow requests ( 0 ~ 1 )
+     * @param slowMs - Latency of slow requests (ms)
+     */
+    public void setSlowTail(double slowRate, long slowMs){
+        this.slowRate = slowRate;
+        this.slowMs = slowMs;
+    }
+
+    /**
+     * Failure injection ( circuit breaker tests )
+     *
+     * @param errorRate - Ratio of error responses ( 0 ~ 1 )
+     * @param errorStatus - Error response HTTP status ( ex) 429, 500, 503 )
+     * @param disconnectRate - Ratio of requests closed without response ( 0 ~ 1 )
+     */
+    public void setFailure(double errorRate, int errorStatus, double disconnectRate){
+        this.errorRate = errorRate;
+        this.errorStatus = errorStatus;
+        this.disconnectRate = disconnectRate;
+    }
+
+    public long getRequestCount(ENDPOINT endpoint){
+        return requestCountMap.get(endpoint).get();
+    }
+
+    /**
+     * Body of the last request ( query assertions )
+     *
+     * @param endpoint
+     * @return null : no request yet
+     */
+    public String getLastRequestBody(ENDPOINT endpoint){
+        return lastRequestBodyMap.get(endpoint).get();
+    }
+
+    public long getErrorCount() {
+        return errorCount.get();
+    }
+
+    public long getDisconnectCount() {
+        return disconnectCount.get();
+    }
+}
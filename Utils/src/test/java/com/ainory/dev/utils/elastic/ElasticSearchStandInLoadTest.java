@@ -0,0 +1,198 @@
+package com.ainory.dev.utils.elastic;
+
+import com.ainory.dev.utils.elastic.entity.ElasticSearchAggregationListInfo;
+import com.ainory.dev.utils.elastic.entity.ElasticSearchDataListInfo;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.ainory.dev.utils.elastic.ElasticSearchSearchUtil.PERIOD_UNIT_MINUTE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Offline load test of the batch _msearch path ( ElasticSearchAggregationBatch -> ElasticSearchGuardedClient.multiSearch )
+ * against ElasticSearchStandIn
+ */
+public class ElasticSearchStandInLoadTest {
+
+    private static final String ES_HOST = "es-load-test";
+    private static final int ES_PORT = 9200;
+
+    private static final String START_TIME = "2017-12-20 00:00:00.000";
+    private static final String END_TIME = "2017-12-20 00:02:00.000";
+
+    // 2017-12-20 00:00:00.000 +09:00
+    private static final long START = 1513695600000L;
+    private static final long MINUTE = 60000L;
+
+    private static final int THREAD_COUNT = 8;
+    private static final int BATCH_PER_THREAD = 25;
+
+    private ElasticSearchStandIn standIn;
+
+    @Before
+    public void setUp() throws Exception{
+        standIn = new ElasticSearchStandIn(0, THREAD_COUNT).start();
+        standIn.route(ES_HOST, ES_PORT);
+    }
+
+    @After
+    public void tearDown(){
+        standIn.close();
+    }
+
+    @Test
+    public void recordedMultiSearchIsDemultiplexedPerPanel() throws Exception{
+
+        standIn.addResponse(ElasticSearchStandIn.ENDPOINT.MSEARCH, "{\"responses\":[" + item(histogram(3, 5, 7)) + "," + item(hostTerms()) + "," + item(hits(3)) + "]}");
+
+        ElasticSearchAggregationBatch.Result result = batch().execute();
+
+        assertPanels(result);
+        assertEquals(1, standIn.getRequestCount(ElasticSearchStandIn.ENDPOINT.MSEARCH));
+        assertEquals(0, standIn.getRequestCount(ElasticSearchStandIn.ENDPOINT.SEARCH));
+    }
+
+    @Test
+    public void searchResponsesStandInForMultiSearchItems() throws Exception{
+
+        // no recorded _msearch -> every item is the recorded search response ( hits & aggregations of all panels )
+        standIn.addResponse(ElasticSearchStandIn.ENDPOINT.SEARCH, "{" + took() + "," + hits(3) + ",\"aggregations\":{"
+                + histogram(3, 5, 7) + "," + hostTerms() + "}}");
+
+        assertPanels(batch().execute());
+        assertEquals(1, standIn.getRequestCount(ElasticSearchStandIn.ENDPOINT.MSEARCH));
+    }
+
+    @Test
+    public void failedItemKeepsTheOtherPanels() throws Exception{
+
+        standIn.addResponse(ElasticSearchStandIn.ENDPOINT.MSEARCH, "{\"responses\":[" + item(histogram(3, 5, 7))
+                + ",{\"error\":{\"root_cause\":[],\"type\":\"index_not_found_exception\",\"reason\":\"no such index\"},\"status\":404},"
+                + item(hits(3)) + "]}");
+
+        ElasticSearchAggregationBatch.Result result = batch().execute();
+
+        assertEquals(15, sum(result.getAggregation("all")));
+        assertTrue(result.getAggregation("host").getSeriesMap().isEmpty());
+        assertEquals(3, result.getSearch("log").getDataList().size());
+    }
+
+    @Test
+    public void concurrentBatchesUnderLatencyAndFailures() throws Exception{
+
+        standIn.addResponse(ElasticSearchStandIn.ENDPOINT.MSEARCH, "{\"responses\":[" + item(histogram(3, 5, 7)) + "," + item(hostTerms()) + "," + item(hits(3)) + "]}");
+        standIn.setLatency(2, 3);
+        standIn.setFailure(0.05, 503, 0);
+
+        ExecutorService executorService = Executors.newFixedThreadPool(THREAD_COUNT);
+        try{
+            List<Future<Integer>> futureList = new ArrayList<>();
+            for(int i = 0; i < THREAD_COUNT; i++){
+                boolean async = i % 2 == 0;
+                futureList.add(executorService.submit(() -> {
+                    int failCount = 0;
+                    for(int j = 0; j < BATCH_PER_THREAD; j++){
+                        ElasticSearchAggregationBatch.Result result = async ? batch().executeAsync().get(10, TimeUnit.SECONDS) : batch().execute();
+
+                        // 503 -> every panel empty, otherwise every panel decoded
+                        if(result.getSearch("log").getDataList().isEmpty()){
+                            assertTrue(result.getAggregation("all").getSeriesMap().isEmpty());
+                            assertTrue(result.getAggregation("host").getSeriesMap().isEmpty());
+                            failCount++;
+                        }else{
+                            assertPanels(result);
+                        }
+                    }
+                    return failCount;
+                }));
+            }
+
+            long failCount = 0;
+            for(Future<Integer> future : futureList){
+                failCount += future.get(60, TimeUnit.SECONDS);
+            }
+
+            assertEquals(THREAD_COUNT * BATCH_PER_THREAD, standIn.getRequestCount(ElasticSearchStandIn.ENDPOINT.MSEARCH));
+            assertEquals(standIn.getErrorCount(), failCount);
+        }finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private static ElasticSearchAggregationBatch batch() throws Exception{
+        return new ElasticSearchAggregationBatch(ES_HOST, ES_PORT)
+                .aggregationAll("all", START_TIME, END_TIME, 1, PERIOD_UNIT_MINUTE)
+                .aggregationHost("host", START_TIME, END_TIME, 1, PERIOD_UNIT_MINUTE)
+                .search("log", ElasticSearchQuerySpec.range(START_TIME, END_TIME), 3);
+    }
+
+    private static void assertPanels(ElasticSearchAggregationBatch.Result result){
+
+        ElasticSearchAggregationListInfo all = result.getAggregation("all");
+        assertNotNull(all.getSeries(ElasticSearchSearchUtil.AGGREGATION_TYPE.ALL.name()));
+        assertEquals(15, sum(all));
+
+        ElasticSearchAggregationListInfo host = result.getAggregation("host");
+        assertEquals(2, host.getSeriesMap().size());
+        assertEquals(9, host.getSeries("host1").getCount(0) + host.getSeries("host2").getCount(0));
+
+        ElasticSearchDataListInfo log = result.getSearch("log");
+        assertEquals(3, log.getDataList().size());
+        assertEquals(3, log.getTotalCount());
+        assertEquals("host1", log.getDataList().get(0).getHost());
+        assertFalse(log.getMessageList().isEmpty());
+    }
+
+    private static long sum(ElasticSearchAggregationListInfo elasticSearchAggregationListInfo){
+        long sum = 0;
+        for(long count : elasticSearchAggregationListInfo.getSeries(ElasticSearchSearchUtil.AGGREGATION_TYPE.ALL.name()).getCounts()){
+            sum += count;
+        }
+        return sum;
+    }
+
+    private static String item(String body){
+        return "{" + took() + "," + (body.startsWith("\"hits\"") ? body : hits(0) + ",\"aggregations\":{" + body + "}") + ",\"status\":200}";
+    }
+
+    private static String took(){
+        return "\"took\":1,\"timed_out\":false,\"_shards\":{\"total\":1,\"successful\":1,\"failed\":0}";
+    }
+
+    private static String hits(int hitCount){
+        StringBuilder json = new StringBuilder("\"hits\":{\"total\":").append(hitCount).append(",\"max_score\":null,\"hits\":[");
+        for(int i = 0; i < hitCount; i++){
+            long time = START + i * 1000L;
+            json.append(i > 0 ? "," : "")
+                    .append("{\"_index\":\"log-2017.12.19\",\"_type\":\"log\",\"_id\":\"id").append(i).append("\",\"_score\":null,\"_source\":{")
+                    .append("\"@timestamp\":\"2017-12-19T15:00:0").append(i).append(".000Z\",\"host\":\"host").append(i % 2 + 1)
+                    .append("\",\"file\":\"app.log\",\"message\":\"line ").append(i).append("\"},\"sort\":[").append(time).append(",\"log#id").append(i).append("\"]}");
+        }
+        return json.append("]}").toString();
+    }
+
+    private static String histogram(long... counts){
+        StringBuilder json = new StringBuilder("\"date_histogram#TIME_COUNT\":{\"buckets\":[");
+        for(int i = 0; i < counts.length; i++){
+            json.append(i > 0 ? "," : "").append("{\"key\":").append(START + i * MINUTE).append(",\"doc_count\":").append(counts[i]).append('}');
+        }
+        return json.append("]}").toString();
+    }
+
+    private static String hostTerms(){
+        return "\"sterms#HOST\":{\"doc_count_error_upper_bound\":0,\"sum_other_doc_count\":0,\"buckets\":["
+                + "{\"key\":\"host1\",\"doc_count\":4,\"date_histogram#TIME_COUNT\":{\"buckets\":[{\"key\":" + START + ",\"doc_count\":4}]}},"
+                + "{\"key\":\"host2\",\"doc_count\":5,\"date_histogram#TIME_COUNT\":{\"buckets\":[{\"key\":" + START + ",\"doc_count\":5}]}}]}";
+    }
+}
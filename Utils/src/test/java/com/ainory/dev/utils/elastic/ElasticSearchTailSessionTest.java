@@ -0,0 +1,123 @@
+package com.ainory.dev.utils.elastic;
+
+import com.ainory.dev.utils.elastic.entity.ElasticSearchDataInfo;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tail session poll window against ElasticSearchStandIn
+ */
+public class ElasticSearchTailSessionTest {
+
+    private static final String ES_HOST = "es-tail-test";
+    private static final int ES_PORT = 9200;
+
+    private static final Pattern FROM_PATTERN = Pattern.compile("\"from\"\\s*:\\s*(\\d+)");
+    private static final Pattern TO_PATTERN = Pattern.compile("\"to\"\\s*:\\s*(\\d+)");
+
+    private ElasticSearchStandIn standIn;
+
+    @Before
+    public void setUp() throws Exception{
+        standIn = new ElasticSearchStandIn(0, 4).start();
+        standIn.route(ES_HOST, ES_PORT);
+    }
+
+    @After
+    public void tearDown(){
+        standIn.close();
+    }
+
+    @Test
+    public void pollStopsAtTheLagEdge() throws Exception{
+
+        long startTime = System.currentTimeMillis() - 60000;
+
+        // first poll : 2 documents, next polls ( search_after ) : none
+        standIn.addResponse(ElasticSearchStandIn.ENDPOINT.SEARCH, "search_after", response());
+        standIn.addResponse(ElasticSearchStandIn.ENDPOINT.SEARCH, response(startTime + 1000, startTime + 2000));
+
+        long lagMs = 5000;
+        long pollStart = System.currentTimeMillis();
+
+        try(ElasticSearchTailSession tailSession = ElasticSearchSearchUtil.searchTail(ES_HOST, ES_PORT,
+                ElasticSearchQuerySpec.rangeMillis(startTime, Long.MAX_VALUE), 100, 20, 50, 100, lagMs)){
+
+            assertNotNull(tailSession.poll(5, TimeUnit.SECONDS));
+            ElasticSearchDataInfo elasticSearchDataInfo = tailSession.poll(5, TimeUnit.SECONDS);
+            assertNotNull(elasticSearchDataInfo);
+            assertEquals("line 1", elasticSearchDataInfo.getMessage());
+
+            waitRequestCount(2);
+            long pollEnd = System.currentTimeMillis();
+
+            // next poll starts at the last delivered document, ends lagMs before now
+            String requestBody = standIn.getLastRequestBody(ElasticSearchStandIn.ENDPOINT.SEARCH);
+            assertTrue(requestBody.contains("search_after"));
+            assertEquals(startTime + 2000, getLong(FROM_PATTERN, requestBody));
+            long endTime = getLong(TO_PATTERN, requestBody);
+            assertTrue(endTime >= pollStart - lagMs && endTime <= pollEnd - lagMs);
+
+            assertNull(tailSession.poll(100, TimeUnit.MILLISECONDS));
+            assertEquals(2, tailSession.getDeliveredCount());
+        }
+    }
+
+    @Test
+    public void noPollInsideTheLag() throws Exception{
+
+        standIn.addResponse(ElasticSearchStandIn.ENDPOINT.SEARCH, response());
+
+        try(ElasticSearchTailSession tailSession = ElasticSearchSearchUtil.searchTail(ES_HOST, ES_PORT,
+                ElasticSearchQuerySpec.rangeMillis(System.currentTimeMillis(), Long.MAX_VALUE), 100, 20, 50, 100, 60000)){
+
+            Thread.sleep(300);
+            assertEquals(0, standIn.getRequestCount(ElasticSearchStandIn.ENDPOINT.SEARCH));
+
+            // tail start settled
+            tailSession.setLagMs(0);
+            waitRequestCount(1);
+        }
+    }
+
+    private void waitRequestCount(long requestCount) throws InterruptedException{
+        long deadline = System.currentTimeMillis() + 5000;
+        while(standIn.getRequestCount(ElasticSearchStandIn.ENDPOINT.SEARCH) < requestCount){
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static long getLong(Pattern pattern, String requestBody){
+        Matcher matcher = pattern.matcher(requestBody);
+        assertTrue(requestBody, matcher.find());
+        return Long.parseLong(matcher.group(1));
+    }
+
+    /**
+     * Search response, one hit per time
+     */
+    private static String response(long... times){
+
+        StringBuilder json = new StringBuilder("{\"took\":1,\"timed_out\":false,\"_shards\":{\"total\":1,\"successful\":1,\"failed\":0},")
+                .append("\"hits\":{\"total\":").append(times.length).append(",\"max_score\":null,\"hits\":[");
+        for(int i = 0; i < times.length; i++){
+            json.append(i > 0 ? "," : "")
+                    .append("{\"_index\":\"log\",\"_type\":\"log\",\"_id\":\"id").append(i).append("\",\"_score\":null,\"_source\":{")
+                    .append("\"@timestamp\":\"").append(Instant.ofEpochMilli(times[i])).append("\",\"host\":\"host1\",")
+                    .append("\"file\":\"app.log\",\"message\":\"line ").append(i).append("\"},\"sort\":[").append(times[i]).append(",\"log#id").append(i).append("\"]}");
+        }
+        return json.append("]}}").toString();
+    }
+}
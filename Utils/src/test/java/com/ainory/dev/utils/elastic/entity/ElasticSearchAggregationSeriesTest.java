@@ -0,0 +1,188 @@
+package com.ainory.dev.utils.elastic.entity;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ElasticSearchAggregationSeriesTest {
+
+    private static final long MINUTE = 60000L;
+
+    // 2017-12-20 00:00:00.000 +09:00
+    private static final long START = 1513695600000L;
+
+    @Test
+    public void addGrowsPastCapacity(){
+
+        ElasticSearchAggregationSeries series = new ElasticSearchAggregationSeries(1);
+        for(int i = 0; i < 100; i++){
+            series.add(START + i * MINUTE, i);
+        }
+
+        assertEquals(100, series.size());
+        assertEquals(100, series.getTimes().length);
+        assertEquals(100, series.getCounts().length);
+        assertEquals(START, series.getFirstTime());
+        assertEquals(START + 99 * MINUTE, series.getLastTime());
+        assertEquals(42, series.getCount(42));
+    }
+
+    @Test
+    public void arraysAreTrimmedToSize(){
+
+        ElasticSearchAggregationSeries series = new ElasticSearchAggregationSeries();
+        series.add(START, 3);
+        series.add(START + MINUTE, 5);
+
+        assertArrayEquals(new long[]{ START, START + MINUTE }, series.getTimes());
+        assertArrayEquals(new long[]{ 3, 5 }, series.getCounts());
+
+        // still appendable after trim
+        series.add(START + 2 * MINUTE, 7);
+        assertArrayEquals(new long[]{ 3, 5, 7 }, series.getCounts());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void arraysOfDifferentLengthAreRejected(){
+        new ElasticSearchAggregationSeries(new long[]{ START, START + MINUTE }, new long[]{ 1 });
+    }
+
+    @Test
+    public void indexOutOfSize(){
+
+        ElasticSearchAggregationSeries series = new ElasticSearchAggregationSeries(16);
+        series.add(START, 1);
+
+        try{
+            series.getTime(1);
+            fail("index 1 of size 1");
+        }catch (IndexOutOfBoundsException e){
+            assertEquals("Index: 1, Size: 1", e.getMessage());
+        }
+    }
+
+    @Test
+    public void timeStrIsFormattedInTheSeriesTimeZone(){
+
+        ElasticSearchAggregationSeries series = new ElasticSearchAggregationSeries(new long[]{ START }, new long[]{ 1 });
+        assertEquals("2017-12-20 00:00:00.000", series.getTimeStr(0));
+
+        series.setTimeZone(TimeZone.getTimeZone("UTC"));
+        assertEquals("2017-12-19 15:00:00.000", series.getTimeStr(0));
+        assertEquals("2017-12-19 15:00:00.000", series.getObjectList().get(0).getTimeStr());
+    }
+
+    @Test
+    public void legacyListsRoundTrip(){
+
+        ElasticSearchAggregationSeries series = new ElasticSearchAggregationSeries(new long[]{ START, START + MINUTE }, new long[]{ 3, 0 });
+
+        assertEquals(Arrays.asList(START, START + MINUTE), series.getXList());
+        assertEquals(Arrays.asList(3L, 0L), series.getYList());
+
+        ElasticSearchAggregationSeries fromLists = ElasticSearchAggregationSeries.of(series.getXList(), series.getYList());
+        assertArrayEquals(series.getTimes(), fromLists.getTimes());
+        assertArrayEquals(series.getCounts(), fromLists.getCounts());
+
+        ElasticSearchAggregationSeries fromObjects = ElasticSearchAggregationSeries.of(series.getObjectList());
+        assertArrayEquals(series.getTimes(), fromObjects.getTimes());
+        assertArrayEquals(series.getCounts(), fromObjects.getCounts());
+    }
+
+    @Test
+    public void legacyViewsFollowTheSeries(){
+
+        ElasticSearchAggregationListInfo elasticSearchAggregationListInfo = new ElasticSearchAggregationListInfo();
+        elasticSearchAggregationListInfo.putSeries("host1", new ElasticSearchAggregationSeries(new long[]{ START }, new long[]{ 1 }));
+
+        assertEquals(1, elasticSearchAggregationListInfo.getAggregationMap().size());
+        assertEquals(1, elasticSearchAggregationListInfo.getAggregationObjectMap().size());
+
+        // series changed after a view was read
+        elasticSearchAggregationListInfo.putSeries("host2", new ElasticSearchAggregationSeries(new long[]{ START }, new long[]{ 2 }));
+        elasticSearchAggregationListInfo.getSeries("host1").add(START + MINUTE, 4);
+
+        HashMap<String, HashMap<String, ArrayList<Long>>> aggregationMap = elasticSearchAggregationListInfo.getAggregationMap();
+        assertEquals(2, aggregationMap.size());
+        assertEquals(Arrays.asList(1L, 4L), aggregationMap.get("host1").get("y"));
+        assertEquals(2, elasticSearchAggregationListInfo.getAggregationObjectMap().get("host1").size());
+    }
+
+    @Test
+    public void legacyViewsAreReadOnly(){
+
+        ElasticSearchAggregationListInfo elasticSearchAggregationListInfo = new ElasticSearchAggregationListInfo();
+        elasticSearchAggregationListInfo.putSeries("host1", new ElasticSearchAggregationSeries(new long[]{ START }, new long[]{ 1 }));
+
+        HashMap<String, HashMap<String, ArrayList<Long>>> aggregationMap = elasticSearchAggregationListInfo.getAggregationMap();
+        assertReadOnly(() -> aggregationMap.get("host1").get("y").set(0, 99L));
+        assertReadOnly(() -> aggregationMap.get("host1").get("y").add(99L));
+        assertReadOnly(() -> aggregationMap.get("host1").put("y", new ArrayList<>()));
+        assertReadOnly(() -> aggregationMap.remove("host1"));
+        assertReadOnly(() -> aggregationMap.keySet().clear());
+        assertReadOnly(() -> aggregationMap.entrySet().iterator().next().setValue(new HashMap<>()));
+        assertReadOnly(() -> aggregationMap.values().iterator().next().clear());
+
+        HashMap<String, ArrayList<ElasticSearchAggregationInfo>> aggregationObjectMap = elasticSearchAggregationListInfo.getAggregationObjectMap();
+        assertReadOnly(() -> aggregationObjectMap.get("host1").get(0).setCount(99));
+        assertReadOnly(() -> aggregationObjectMap.get("host1").iterator().remove());
+        assertReadOnly(() -> aggregationObjectMap.get("host1").subList(0, 1).clear());
+        assertReadOnly(() -> aggregationObjectMap.put("host2", new ArrayList<>()));
+
+        assertEquals(1, elasticSearchAggregationListInfo.getSeries("host1").getCount(0));
+        assertEquals(1, elasticSearchAggregationListInfo.getSeriesMap().size());
+
+        // legacy writes go through the put / set adapters
+        HashMap<String, ArrayList<Long>> dataMap = new HashMap<>();
+        dataMap.put("x", new ArrayList<>(Arrays.asList(START)));
+        dataMap.put("y", new ArrayList<>(Arrays.asList(99L)));
+        elasticSearchAggregationListInfo.putAggregationMap("host1", dataMap);
+
+        assertEquals(99, elasticSearchAggregationListInfo.getSeries("host1").getCount(0));
+    }
+
+    @Test
+    public void jsonHasBothLegacyViews() throws Exception{
+
+        ElasticSearchAggregationListInfo elasticSearchAggregationListInfo = new ElasticSearchAggregationListInfo();
+        elasticSearchAggregationListInfo.setPeriod(1);
+        elasticSearchAggregationListInfo.setPeriodUnit("m");
+        elasticSearchAggregationListInfo.putSeries("host1", new ElasticSearchAggregationSeries(new long[]{ START, START + MINUTE }, new long[]{ 3, 5 }));
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        String json = objectMapper.writeValueAsString(elasticSearchAggregationListInfo);
+
+        JsonNode jsonNode = objectMapper.readTree(json);
+        assertTrue(jsonNode.has("aggregationMap"));
+        assertEquals(2, jsonNode.get("aggregationObjectMap").get("host1").size());
+        assertEquals(5, jsonNode.get("aggregationObjectMap").get("host1").get(1).get("count").asLong());
+        assertEquals("2017-12-20 00:01:00.000", jsonNode.get("aggregationObjectMap").get("host1").get(1).get("timeStr").asText());
+        assertFalse(jsonNode.has("seriesMap"));
+
+        ElasticSearchAggregationListInfo read = objectMapper.readValue(json, ElasticSearchAggregationListInfo.class);
+        assertArrayEquals(new long[]{ START, START + MINUTE }, read.getSeries("host1").getTimes());
+        assertArrayEquals(new long[]{ 3, 5 }, read.getSeries("host1").getCounts());
+        assertNull(read.getSeries("host2"));
+    }
+
+    private static void assertReadOnly(Runnable change){
+        try{
+            change.run();
+            fail();
+        }catch (UnsupportedOperationException e){
+            // read only view
+        }
+    }
+}
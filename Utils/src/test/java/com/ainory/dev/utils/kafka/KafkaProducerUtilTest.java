@@ -0,0 +1,134 @@
+package com.ainory.dev.utils.kafka;
+
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Future / callback contract of the async sends against a MockProducer ( records completed by the test )
+ */
+public class KafkaProducerUtilTest {
+
+    private static final String TOPIC = "TEST";
+
+    private MockProducer<String, String> mockProducer;
+    private KafkaProducerUtil kafkaProducerUtil;
+
+    @Before
+    public void setUp(){
+        mockProducer = new MockProducer<>(false, new StringSerializer(), new StringSerializer());
+        kafkaProducerUtil = new KafkaProducerUtil(mockProducer, TOPIC);
+    }
+
+    @Test
+    public void callbackRunsBeforeTheFutureCompletes() throws Exception{
+
+        List<String> eventList = new ArrayList<>();
+        RecordMetadata[] callbackMetadata = new RecordMetadata[1];
+
+        CompletableFuture<RecordMetadata> future = kafkaProducerUtil.sendMessageAsync("key", "message", (metadata, exception) -> {
+            callbackMetadata[0] = metadata;
+            eventList.add("callback");
+        });
+        future.thenRun(() -> eventList.add("future"));
+
+        // not acknowledged yet
+        assertFalse(future.isDone());
+        assertTrue(eventList.isEmpty());
+        assertEquals("key", mockProducer.history().get(0).key());
+        assertEquals(TOPIC, mockProducer.history().get(0).topic());
+
+        mockProducer.completeNext();
+
+        assertSame(callbackMetadata[0], future.get(1, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("callback", "future"), eventList);
+    }
+
+    @Test
+    public void failedSendCompletesExceptionally() throws Exception{
+
+        Exception[] callbackException = new Exception[1];
+        RuntimeException sendException = new RuntimeException("broker down");
+
+        CompletableFuture<RecordMetadata> future = kafkaProducerUtil.sendMessageAsync(null, "message", (metadata, exception) -> callbackException[0] = exception);
+
+        mockProducer.errorNext(sendException);
+
+        assertSame(sendException, callbackException[0]);
+        assertSame(sendException, cause(future));
+    }
+
+    @Test
+    public void failingCallbackStillCompletesTheFuture() throws Exception{
+
+        CompletableFuture<RecordMetadata> future = kafkaProducerUtil.sendMessageAsync(null, "message", (metadata, exception) -> {
+            throw new IllegalStateException("callback fail");
+        });
+
+        mockProducer.completeNext();
+
+        assertEquals(TOPIC, future.get(1, TimeUnit.SECONDS).topic());
+    }
+
+    @Test
+    public void closedProducerFailsFast() throws Exception{
+
+        kafkaProducerUtil.closeProducer();
+
+        Exception[] callbackException = new Exception[1];
+        CompletableFuture<RecordMetadata> future = kafkaProducerUtil.sendMessageAsync(null, "message", (metadata, exception) -> callbackException[0] = exception);
+
+        assertTrue(future.isCompletedExceptionally());
+        assertTrue(cause(future) instanceof IllegalStateException);
+        assertSame(cause(future), callbackException[0]);
+        assertFalse(kafkaProducerUtil.sendMessage("message"));
+        assertTrue(mockProducer.history().isEmpty());
+    }
+
+    @Test
+    public void listCompletesWithTheDeliveredCount() throws Exception{
+
+        CompletableFuture<Integer> future = kafkaProducerUtil.sendMessageListAsync(Arrays.asList("message1", "message2", "message3"));
+
+        mockProducer.completeNext();
+        mockProducer.errorNext(new RuntimeException("broker down"));
+        assertFalse(future.isDone());
+
+        mockProducer.completeNext();
+
+        assertEquals(2, (int) future.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void nullListIsLoggedAndSkipped() throws Exception{
+
+        assertEquals(0, (int) kafkaProducerUtil.sendMessageListAsync(null).get(1, TimeUnit.SECONDS));
+        assertFalse(kafkaProducerUtil.sendMessageList(null));
+        assertTrue(mockProducer.history().isEmpty());
+    }
+
+    private static Throwable cause(CompletableFuture<?> future) throws Exception{
+        try{
+            future.get(1, TimeUnit.SECONDS);
+            fail();
+            return null;
+        }catch (ExecutionException e){
+            return e.getCause();
+        }
+    }
+}